@@ -1,5 +1,65 @@
 grammar JavaSubset;
 
+// Keywords and the boolean/null literals have no lexer rules of their own: they are matched
+// as IDENTIFIER and reclassified in emit() through the Keywords perfect-hash table.
+tokens {
+    //Data Type Keywords
+    BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, BOOLEAN, CHAR, STRINGARGS, STRING,
+    //Conditional Keywords
+    IF, ELSE, FOR, WHILE, DO,
+    //More Keywords
+    RETURN, CLASS, PUBLIC, PRIVATE, PROTECTED, STATIC, VOID, IMPORT, NEW,
+    //Eventually change this, these are all classes that are basically acting as keywords for the time being
+    SIMPLE_KEYWORDS,
+    TRUE, FALSE, NULL_LITERAL
+}
+
+@lexer::members {
+    // The tokens{} types of a combined grammar are only generated into the parser; mirror them here
+    public static final int BYTE = JavaSubsetParser.BYTE;
+    public static final int SHORT = JavaSubsetParser.SHORT;
+    public static final int INT = JavaSubsetParser.INT;
+    public static final int LONG = JavaSubsetParser.LONG;
+    public static final int FLOAT = JavaSubsetParser.FLOAT;
+    public static final int DOUBLE = JavaSubsetParser.DOUBLE;
+    public static final int BOOLEAN = JavaSubsetParser.BOOLEAN;
+    public static final int CHAR = JavaSubsetParser.CHAR;
+    public static final int STRINGARGS = JavaSubsetParser.STRINGARGS;
+    public static final int STRING = JavaSubsetParser.STRING;
+    public static final int IF = JavaSubsetParser.IF;
+    public static final int ELSE = JavaSubsetParser.ELSE;
+    public static final int FOR = JavaSubsetParser.FOR;
+    public static final int WHILE = JavaSubsetParser.WHILE;
+    public static final int DO = JavaSubsetParser.DO;
+    public static final int RETURN = JavaSubsetParser.RETURN;
+    public static final int CLASS = JavaSubsetParser.CLASS;
+    public static final int PUBLIC = JavaSubsetParser.PUBLIC;
+    public static final int PRIVATE = JavaSubsetParser.PRIVATE;
+    public static final int PROTECTED = JavaSubsetParser.PROTECTED;
+    public static final int STATIC = JavaSubsetParser.STATIC;
+    public static final int VOID = JavaSubsetParser.VOID;
+    public static final int IMPORT = JavaSubsetParser.IMPORT;
+    public static final int NEW = JavaSubsetParser.NEW;
+    public static final int SIMPLE_KEYWORDS = JavaSubsetParser.SIMPLE_KEYWORDS;
+    public static final int TRUE = JavaSubsetParser.TRUE;
+    public static final int FALSE = JavaSubsetParser.FALSE;
+    public static final int NULL_LITERAL = JavaSubsetParser.NULL_LITERAL;
+
+    @Override
+    public Token emit() {
+        if (_type == IDENTIFIER) {
+            _type = Keywords.lookup(_input, _tokenStartCharIndex, getCharIndex());
+            if (_type == STRING && Keywords.followedByArgs(_input)) { //'String[] args' is one token, done for simplicity
+                for (int i = 0; i < Keywords.argsSuffixLength(); i++) {
+                    getInterpreter().consume(_input);
+                }
+                _type = STRINGARGS;
+            }
+        }
+        return super.emit();
+    }
+}
+
 // =======================================================================================================================================
 //                                                             Lexer Rules
 // =======================================================================================================================================
@@ -8,36 +68,6 @@ grammar JavaSubset;
 STRINGLIT     : '"' (~["\\] | '\\' .)*? '"' ;
 CHARACTER     : '\'' (~['\\] | '\\' .) '\'' ;
 
-//Data Type Keywords
-BYTE : 'byte' ;
-SHORT : 'short' ;
-INT : 'int' ;
-LONG : 'long' ;
-FLOAT : 'float' ;
-DOUBLE : 'double' ;
-BOOLEAN : 'boolean' ;
-CHAR : 'char' ;
-STRINGARGS : 'String[] args' ; //done short-term for simplicity
-STRING : 'String' ;
-
-//Conditional Keywords
-IF : 'if' ;
-ELSE : 'else' ;
-FOR : 'for' ;
-WHILE : 'while' ;
-DO : 'do' ;
-
-//More Keywords
-RETURN : 'return' ;
-CLASS : 'class' ;
-PUBLIC : 'public' ;
-PRIVATE : 'private' ;
-PROTECTED : 'protected' ;
-STATIC : 'static' ;
-VOID : 'void' ;
-IMPORT : 'import' ;
-NEW : 'new' ;
-
 //Two-Character
 INCREMENT  : '++' ;
 DECREMENT  : '--' ;
@@ -65,20 +95,10 @@ NOT        : '!' ;
 ASSIGN     : '=' ;
 
 
-//Eventually change this, these are all classes that are basically acting as keywords for the time being
-SIMPLE_KEYWORDS : 'Integer' | 'Double' | 'Float' | 'Character' | 'Boolean' | 'Byte' | 'Long' | 'Object' | 'Void' ;  //SIMPLE_KEYWORDS means keywords for simplicity's sake
-
 //Integer Literals Involving Letters
 HEX_LITERAL : '0' [xX] [0-9a-fA-F]+;
 BINARY_LITERAL : '0' [bB] [01]+;
 
-// Boolean Literals
-TRUE : 'true';
-FALSE : 'false';
-
-// Null Literal
-NULL_LITERAL : 'null';
-
 INVALID_IDENTIFIER: [0-9]+[a-zA-Z_][a-zA-Z0-9_]* ; 
 IDENTIFIER     : [a-zA-Z_][a-zA-Z0-9_]*;
 
@@ -96,6 +116,8 @@ EXPONENT_PART : [eE] [+-]? [0-9]+;
 DOT           : '.' ;
 LPAREN        : '(' ;
 RPAREN        : ')' ;
+LBRACKET      : '[' ;
+RBRACKET      : ']' ;
 LBRACE        : '{' ;
 RBRACE        : '}' ;
 SEMI          : ';' ;
@@ -180,9 +202,14 @@ type
     | BOOLEAN
     | CHAR
     | STRING
+    | arrayType
     //| IDENTIFIER // For user-defined types
     ;
 
+arrayType
+    : (INT | BOOLEAN | CHAR) LBRACKET RBRACKET
+    ;
+
 variableDeclarationExpression
     : type variableDeclarators
     ;
@@ -200,7 +227,7 @@ variableDeclaration
     ;
 
 assignment
-    : IDENTIFIER ASSIGN expression
+    : IDENTIFIER (LBRACKET expression RBRACKET)? ASSIGN expression
     ;
 
 expressionStatement
@@ -249,12 +276,37 @@ primaryExpression
     : integerLiteral
     | STRINGLIT
     | CHARACTER
+    | methodCall
+    | arrayAccess
+    | arrayLength
+    | arrayCreation
     | IDENTIFIER
     | LPAREN expression RPAREN
     | booleanLiteral
     | NULL_LITERAL
     ;
 
+methodCall
+    : IDENTIFIER LPAREN argumentList? RPAREN
+    ;
+
+argumentList
+    : expression (COMMA expression)*
+    ;
+
+arrayAccess
+    : IDENTIFIER LBRACKET expression RBRACKET
+    ;
+
+//Only .length, which AstBuilder checks
+arrayLength
+    : IDENTIFIER DOT IDENTIFIER
+    ;
+
+arrayCreation
+    : NEW (INT | BOOLEAN | CHAR) LBRACKET expression RBRACKET
+    ;
+
 booleanLiteral
     : TRUE
     | FALSE
@@ -0,0 +1,94 @@
+// Training corpus for the serialized DFA cache (see DfaCache). It should exercise every
+// lexer and parser rule the way real programs do; it is never compiled or run.
+public class Training {
+    private int count = 0;
+    protected static long total = 0x7FFF;
+    double ratio = 1.5e-3, scale = 2.0;
+    boolean ready = true;
+    char initial = 'a', escaped = '\n';
+    String greeting = "hello \"world\"";
+
+    public static void main(String[] args) {
+        byte small = 0b0101;
+        short mask = 017;
+        float half = 0.5f;
+        int i, j = 10;
+        /* block comments
+           span lines */
+        for (i = 0, j = 1; i < 10; i++, j--) {
+            small += 1;
+        }
+        for (int k = 0; k <= j; k = k + 1) {
+            total -= k;
+            total *= 2;
+            total /= 3;
+            total %= 5;
+        }
+        for (;;) {
+            return;
+        }
+    }
+
+    private int compute(int a, long b, boolean flag) {
+        int result = (a + 3) * 4 - a / 2 % 7;
+        result = -result;
+        ++result;
+        --result;
+        result--;
+        if (result >= 10 && flag || !ready) {
+            result = result - 1;
+        } else if (result != 0) {
+            result = a;
+        } else {
+            ;
+        }
+        while (result > 0) {
+            result = result - 1;
+        }
+        do {
+            result++;
+        } while (result < 5 == false);
+        {
+            String name = null;
+        }
+        return result;
+    }
+
+    static void log(String message, char level, float f, double d, short s, byte b) {
+        count = count + 1;
+        message = "level";
+    }
+}
+
+class Counter {
+    int value;
+
+    int next() {
+        value++;
+        return value;
+    }
+
+    int gcd(int a, int b) {
+        if (b == 0) {
+            return a;
+        }
+        return gcd(b, a % b);
+    }
+
+    void reset() {
+        value = gcd(next(), 12) * 2;
+        reset();
+    }
+
+    int histogram(int seed) {
+        int[] counts = new int[16];
+        boolean[] seen = new boolean[16];
+        char[] marks = new char[4];
+        for (int i = 0; i < counts.length; i++) {
+            counts[(seed * i) % 16] = counts[i] + 1;
+            seen[i] = counts[i] > 0;
+        }
+        marks[0] = 'x';
+        return counts[seed % 16];
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Computes analyses of IR functions on demand and caches them until a pass changes the
+ * function. Analyses may ask for other analyses, so dominators reuse the cached CFG.
+ *
+ * When a pass changes a function, {@link #invalidate} drops its results, except that a
+ * pass which {@link Pass#preservesCfg() preserves the CFG} keeps the CFG-only ones.
+ *
+ * Different functions may be analyzed on different threads at once, as long as each
+ * function is only used by one thread at a time, which is how the PassManager runs them.
+ */
+public final class AnalysisManager {
+    //IrFunction has identity equality, so each function is its own key
+    private final Map<IrFunction, Map<Analysis<?>, Object>> cache = new ConcurrentHashMap<>();
+    private final Map<Analysis<?>, LongAdder> computations = new ConcurrentHashMap<>();
+    private final Map<Analysis<?>, LongAdder> nanos = new ConcurrentHashMap<>();
+    //Time spent in analyses computed on behalf of the one being computed, per thread
+    private final ThreadLocal<long[]> nestedNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public <T> T get(Analysis<T> analysis, IrFunction function) {
+        Map<Analysis<?>, Object> results = cache.computeIfAbsent(function, f -> new HashMap<>());
+        Object result = results.get(analysis);
+        if (result == null) {
+            long[] nested = nestedNanos.get();
+            long outer = nested[0];
+            nested[0] = 0;
+            long start = System.nanoTime();
+            result = analysis.compute.apply(function, this);
+            long elapsed = System.nanoTime() - start;
+            //Charge each analysis only for itself, not for the ones it asked for
+            nanos.computeIfAbsent(analysis, a -> new LongAdder()).add(elapsed - nested[0]);
+            nested[0] = outer + elapsed;
+            computations.computeIfAbsent(analysis, a -> new LongAdder()).increment();
+            results.put(analysis, result);
+        }
+        return analysis.type.cast(result);
+    }
+
+    //Drops a changed function's results; CFG-only ones survive when keepCfg is set
+    public void invalidate(IrFunction function, boolean keepCfg) {
+        Map<Analysis<?>, Object> results = cache.get(function);
+        if (results != null) {
+            results.keySet().removeIf(analysis -> !(keepCfg && analysis.cfgOnly));
+        }
+    }
+
+    public void invalidateAll(boolean keepCfg) {
+        for (IrFunction function : cache.keySet()) {
+            invalidate(function, keepCfg);
+        }
+    }
+
+    //How many times an analysis has been computed, over all functions
+    public int getComputeCount(Analysis<?> analysis) {
+        LongAdder count = computations.get(analysis);
+        return count == null ? 0 : count.intValue();
+    }
+
+    public long getNanos(Analysis<?> analysis) {
+        LongAdder time = nanos.get(analysis);
+        return time == null ? 0 : time.sum();
+    }
+
+    /**
+     * A kind of analysis result. {@code cfgOnly} analyses depend on nothing but the blocks
+     * and their branch targets.
+     */
+    public static final class Analysis<T> {
+        public static final Analysis<Cfg> CFG = new Analysis<>("cfg", Cfg.class, true, (f, analyses) -> new Cfg(f));
+        public static final Analysis<Dominators> DOMINATORS = new Analysis<>("dominators", Dominators.class, true,
+                (f, analyses) -> new Dominators(analyses.get(CFG, f)));
+        public static final Analysis<Loops> LOOPS = new Analysis<>("loops", Loops.class, true,
+                (f, analyses) -> new Loops(analyses.get(CFG, f), analyses.get(DOMINATORS, f)));
+        public static final Analysis<Liveness> LIVENESS = new Analysis<>("liveness", Liveness.class, false,
+                (f, analyses) -> new Liveness(f));
+
+        private final String name;
+        private final Class<T> type;
+        private final boolean cfgOnly;
+        private final BiFunction<IrFunction, AnalysisManager, T> compute;
+
+        private Analysis(String name, Class<T> type, boolean cfgOnly, BiFunction<IrFunction, AnalysisManager, T> compute) {
+            this.name = name;
+            this.type = type;
+            this.cfgOnly = cfgOnly;
+            this.compute = compute;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Analysis<?>[] values() {
+            return new Analysis<?>[] {CFG, DOMINATORS, LOOPS, LIVENESS};
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
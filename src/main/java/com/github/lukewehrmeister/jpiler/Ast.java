@@ -0,0 +1,780 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.List;
+
+/**
+ * The compact syntax tree both visitors run on. {@link AstBuilder} lowers the ANTLR parse
+ * tree into it: tokens and terminal nodes are dropped, identifiers become interned name IDs,
+ * literals are decoded, and the single-child precedence chains of the grammar
+ * (logicalOr -> ... -> primary) collapse so a bare literal is one node instead of nine.
+ *
+ * Every node gets a dense ID in creation order; {@link SemanticAnnotations} indexes its
+ * side tables by it.
+ */
+public final class Ast {
+    private Ast() {
+    }
+
+    public abstract static class Node {
+        private final int id;
+
+        Node(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public abstract <R> R accept(AstVisitor<R> visitor);
+    }
+
+    public abstract static class Statement extends Node {
+        Statement(int id) {
+            super(id);
+        }
+    }
+
+    public abstract static class Expression extends Node {
+        Expression(int id) {
+            super(id);
+        }
+    }
+
+    // ===============================================================================================================
+    //                                               Declarations
+    // ===============================================================================================================
+
+    public static final class CompilationUnit extends Node {
+        private final List<ClassDeclaration> classes;
+        private final NameTable names;
+        private final int nodeCount;
+
+        CompilationUnit(int id, List<ClassDeclaration> classes, NameTable names, int nodeCount) {
+            super(id);
+            this.classes = classes;
+            this.names = names;
+            this.nodeCount = nodeCount;
+        }
+
+        public List<ClassDeclaration> getClasses() {
+            return classes;
+        }
+
+        public NameTable getNames() {
+            return names;
+        }
+
+        //Number of nodes in this tree; every node ID is below it
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitCompilationUnit(this);
+        }
+    }
+
+    public static final class ClassDeclaration extends Node {
+        private final int nameId;
+        private final String accessModifier;
+        private final List<Node> members;
+
+        ClassDeclaration(int id, int nameId, String accessModifier, List<Node> members) {
+            super(id);
+            this.nameId = nameId;
+            this.accessModifier = accessModifier;
+            this.members = members;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        public String getAccessModifier() {
+            return accessModifier;
+        }
+
+        //MethodDeclarations and field VariableDeclarations in source order
+        public List<Node> getMembers() {
+            return members;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitClassDeclaration(this);
+        }
+    }
+
+    public static final class MethodDeclaration extends Node {
+        private final int nameId;
+        private final String accessModifier;
+        private final SemanticType returnType;
+        private final List<Parameter> parameters;
+        private final Block body;
+
+        MethodDeclaration(int id, int nameId, String accessModifier, SemanticType returnType,
+                          List<Parameter> parameters, Block body) {
+            super(id);
+            this.nameId = nameId;
+            this.accessModifier = accessModifier;
+            this.returnType = returnType;
+            this.parameters = parameters;
+            this.body = body;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        public String getAccessModifier() {
+            return accessModifier;
+        }
+
+        public SemanticType getReturnType() {
+            return returnType;
+        }
+
+        public List<Parameter> getParameters() {
+            return parameters;
+        }
+
+        public Block getBody() {
+            return body;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitMethodDeclaration(this);
+        }
+    }
+
+    public static final class Parameter extends Node {
+        private final int nameId;
+        private final SemanticType type;
+
+        Parameter(int id, int nameId, SemanticType type) {
+            super(id);
+            this.nameId = nameId;
+            this.type = type;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        public SemanticType getType() {
+            return type;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitParameter(this);
+        }
+    }
+
+    public static final class VariableDeclaration extends Statement {
+        private final SemanticType type;
+        private final List<Declarator> declarators;
+
+        VariableDeclaration(int id, SemanticType type, List<Declarator> declarators) {
+            super(id);
+            this.type = type;
+            this.declarators = declarators;
+        }
+
+        public SemanticType getType() {
+            return type;
+        }
+
+        public List<Declarator> getDeclarators() {
+            return declarators;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitVariableDeclaration(this);
+        }
+    }
+
+    public static final class Declarator extends Node {
+        private final int nameId;
+        private final Expression initializer;
+
+        Declarator(int id, int nameId, Expression initializer) {
+            super(id);
+            this.nameId = nameId;
+            this.initializer = initializer;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        //null when the variable is declared without a value
+        public Expression getInitializer() {
+            return initializer;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitDeclarator(this);
+        }
+    }
+
+    // ===============================================================================================================
+    //                                               Statements
+    // ===============================================================================================================
+
+    public static final class Block extends Statement {
+        private final List<Statement> statements;
+
+        Block(int id, List<Statement> statements) {
+            super(id);
+            this.statements = statements;
+        }
+
+        public List<Statement> getStatements() {
+            return statements;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitBlock(this);
+        }
+    }
+
+    public static final class ExpressionStatement extends Statement {
+        private final Expression expression;
+
+        ExpressionStatement(int id, Expression expression) {
+            super(id);
+            this.expression = expression;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitExpressionStatement(this);
+        }
+    }
+
+    public static final class If extends Statement {
+        private final Expression condition;
+        private final Block thenBlock;
+        private final Statement elseBranch;
+
+        If(int id, Expression condition, Block thenBlock, Statement elseBranch) {
+            super(id);
+            this.condition = condition;
+            this.thenBlock = thenBlock;
+            this.elseBranch = elseBranch;
+        }
+
+        public Expression getCondition() {
+            return condition;
+        }
+
+        public Block getThenBlock() {
+            return thenBlock;
+        }
+
+        //A Block, a nested If for "else if", or null
+        public Statement getElseBranch() {
+            return elseBranch;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitIf(this);
+        }
+    }
+
+    public static final class While extends Statement {
+        private final Expression condition;
+        private final Block body;
+
+        While(int id, Expression condition, Block body) {
+            super(id);
+            this.condition = condition;
+            this.body = body;
+        }
+
+        public Expression getCondition() {
+            return condition;
+        }
+
+        public Block getBody() {
+            return body;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitWhile(this);
+        }
+    }
+
+    public static final class DoWhile extends Statement {
+        private final Block body;
+        private final Expression condition;
+
+        DoWhile(int id, Block body, Expression condition) {
+            super(id);
+            this.body = body;
+            this.condition = condition;
+        }
+
+        public Block getBody() {
+            return body;
+        }
+
+        public Expression getCondition() {
+            return condition;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitDoWhile(this);
+        }
+    }
+
+    public static final class For extends Statement {
+        private final VariableDeclaration initDeclaration;
+        private final List<Assignment> initAssignments;
+        private final Expression condition;
+        private final List<Expression> updates;
+        private final Block body;
+
+        For(int id, VariableDeclaration initDeclaration, List<Assignment> initAssignments,
+            Expression condition, List<Expression> updates, Block body) {
+            super(id);
+            this.initDeclaration = initDeclaration;
+            this.initAssignments = initAssignments;
+            this.condition = condition;
+            this.updates = updates;
+            this.body = body;
+        }
+
+        //null unless the init clause declares variables
+        public VariableDeclaration getInitDeclaration() {
+            return initDeclaration;
+        }
+
+        public List<Assignment> getInitAssignments() {
+            return initAssignments;
+        }
+
+        //null for "for (;;)"
+        public Expression getCondition() {
+            return condition;
+        }
+
+        public List<Expression> getUpdates() {
+            return updates;
+        }
+
+        public Block getBody() {
+            return body;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitFor(this);
+        }
+    }
+
+    public static final class Return extends Statement {
+        private final Expression value;
+
+        Return(int id, Expression value) {
+            super(id);
+            this.value = value;
+        }
+
+        //null for a bare "return;"
+        public Expression getValue() {
+            return value;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitReturn(this);
+        }
+    }
+
+    public static final class Empty extends Statement {
+        Empty(int id) {
+            super(id);
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitEmpty(this);
+        }
+    }
+
+    // ===============================================================================================================
+    //                                               Expressions
+    // ===============================================================================================================
+
+    public enum BinaryOperator {
+        OR("||"), AND("&&"),
+        EQ("=="), NE("!="),
+        LT("<"), LE("<="), GT(">"), GE(">="),
+        ADD("+"), SUB("-"),
+        MUL("*"), DIV("/"), REM("%");
+
+        private final String symbol;
+
+        BinaryOperator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public static BinaryOperator fromSymbol(String symbol) {
+            for (BinaryOperator op : values()) {
+                if (op.symbol.equals(symbol)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown binary operator: " + symbol);
+        }
+    }
+
+    public enum UnaryOperator {
+        PLUS("+"), NEGATE("-"), NOT("!"), PRE_INCREMENT("++"), PRE_DECREMENT("--");
+
+        private final String symbol;
+
+        UnaryOperator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public static UnaryOperator fromSymbol(String symbol) {
+            for (UnaryOperator op : values()) {
+                if (op.symbol.equals(symbol)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown unary operator: " + symbol);
+        }
+    }
+
+    public static final class Assignment extends Expression {
+        private final int nameId;
+        private final Expression index;
+        private final Expression value;
+
+        Assignment(int id, int nameId, Expression index, Expression value) {
+            super(id);
+            this.nameId = nameId;
+            this.index = index;
+            this.value = value;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        //The element assigned, as in a[i] = value, or null when the whole variable is
+        public Expression getIndex() {
+            return index;
+        }
+
+        public Expression getValue() {
+            return value;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitAssignment(this);
+        }
+    }
+
+    public static final class Binary extends Expression {
+        private final BinaryOperator operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(int id, BinaryOperator operator, Expression left, Expression right) {
+            super(id);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public BinaryOperator getOperator() {
+            return operator;
+        }
+
+        public Expression getLeft() {
+            return left;
+        }
+
+        public Expression getRight() {
+            return right;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitBinary(this);
+        }
+    }
+
+    public static final class Unary extends Expression {
+        private final UnaryOperator operator;
+        private final Expression operand;
+
+        Unary(int id, UnaryOperator operator, Expression operand) {
+            super(id);
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        public UnaryOperator getOperator() {
+            return operator;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitUnary(this);
+        }
+    }
+
+    public static final class Postfix extends Expression {
+        private final Expression operand;
+        private final int[] steps;
+
+        Postfix(int id, Expression operand, int[] steps) {
+            super(id);
+            this.operand = operand;
+            this.steps = steps;
+        }
+
+        public Expression getOperand() {
+            return operand;
+        }
+
+        //+1 for each ++ and -1 for each --, in source order
+        public int[] getSteps() {
+            return steps;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitPostfix(this);
+        }
+    }
+
+    public static final class Name extends Expression {
+        private final int nameId;
+
+        Name(int id, int nameId) {
+            super(id);
+            this.nameId = nameId;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitName(this);
+        }
+    }
+
+    public static final class Call extends Expression {
+        private final int nameId;
+        private final List<Expression> arguments;
+
+        Call(int id, int nameId, List<Expression> arguments) {
+            super(id);
+            this.nameId = nameId;
+            this.arguments = arguments;
+        }
+
+        //The called method, one of the enclosing class's
+        public int getNameId() {
+            return nameId;
+        }
+
+        public List<Expression> getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitCall(this);
+        }
+    }
+
+    //a[index]
+    public static final class ArrayAccess extends Expression {
+        private final int nameId;
+        private final Expression index;
+
+        ArrayAccess(int id, int nameId, Expression index) {
+            super(id);
+            this.nameId = nameId;
+            this.index = index;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        public Expression getIndex() {
+            return index;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitArrayAccess(this);
+        }
+    }
+
+    //a.length
+    public static final class ArrayLength extends Expression {
+        private final int nameId;
+
+        ArrayLength(int id, int nameId) {
+            super(id);
+            this.nameId = nameId;
+        }
+
+        public int getNameId() {
+            return nameId;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitArrayLength(this);
+        }
+    }
+
+    //new elementType[length]
+    public static final class NewArray extends Expression {
+        private final SemanticType elementType;
+        private final Expression length;
+
+        NewArray(int id, SemanticType elementType, Expression length) {
+            super(id);
+            this.elementType = elementType;
+            this.length = length;
+        }
+
+        public SemanticType getElementType() {
+            return elementType;
+        }
+
+        public Expression getLength() {
+            return length;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitNewArray(this);
+        }
+    }
+
+    public static final class IntLiteral extends Expression {
+        private final long value;
+
+        IntLiteral(int id, long value) {
+            super(id);
+            this.value = value;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitIntLiteral(this);
+        }
+    }
+
+    public static final class BooleanLiteral extends Expression {
+        private final boolean value;
+
+        BooleanLiteral(int id, boolean value) {
+            super(id);
+            this.value = value;
+        }
+
+        public boolean getValue() {
+            return value;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitBooleanLiteral(this);
+        }
+    }
+
+    public static final class StringLiteral extends Expression {
+        private final String text;
+
+        StringLiteral(int id, String text) {
+            super(id);
+            this.text = text;
+        }
+
+        //The literal as written, quotes and escapes included
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitStringLiteral(this);
+        }
+    }
+
+    public static final class CharLiteral extends Expression {
+        private final String text;
+
+        CharLiteral(int id, String text) {
+            super(id);
+            this.text = text;
+        }
+
+        //The literal as written, quotes and escapes included
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitCharLiteral(this);
+        }
+    }
+
+    public static final class NullLiteral extends Expression {
+        NullLiteral(int id) {
+            super(id);
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitNullLiteral(this);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Lowers a JavaSubsetParser parse tree into the compact {@link Ast}. Once lowering is
+ * done nothing refers back to the parse tree or its tokens, so it can be discarded.
+ */
+public class AstBuilder {
+    private final NameTable names;
+    private int nextId = 0;
+
+    public AstBuilder(NameTable names) {
+        this.names = names;
+    }
+
+    public Ast.CompilationUnit build(JavaSubsetParser.CompilationUnitContext ctx) {
+        List<Ast.ClassDeclaration> classes = new ArrayList<>();
+        for (JavaSubsetParser.ClassDeclarationContext classCtx : ctx.classDeclaration()) {
+            classes.add(lowerClass(classCtx));
+        }
+        int id = nextId++;
+        return new Ast.CompilationUnit(id, List.copyOf(classes), names, nextId);
+    }
+
+    private int nameOf(TerminalNode identifier) {
+        return names.idOf(identifier.getSymbol());
+    }
+
+    private static String accessModifierOf(JavaSubsetParser.AccessModifierContext ctx) {
+        return ctx != null ? ctx.getText() : "default";
+    }
+
+    // ===============================================================================================================
+    //                                               Declarations
+    // ===============================================================================================================
+
+    private Ast.ClassDeclaration lowerClass(JavaSubsetParser.ClassDeclarationContext ctx) {
+        int nameId = nameOf(ctx.IDENTIFIER());
+        List<Ast.Node> members = new ArrayList<>();
+        for (JavaSubsetParser.ClassBodyDeclarationContext declCtx : ctx.classBody().classBodyDeclaration()) {
+            if (declCtx.methodDeclaration() != null) {
+                members.add(lowerMethod(declCtx.methodDeclaration()));
+            } else if (declCtx.variableDeclaration() != null) {
+                members.add(lowerVariableDeclaration(declCtx.variableDeclaration().type(),
+                        declCtx.variableDeclaration().variableDeclarators()));
+            }
+        }
+        return new Ast.ClassDeclaration(nextId++, nameId, accessModifierOf(ctx.accessModifier()), List.copyOf(members));
+    }
+
+    private Ast.MethodDeclaration lowerMethod(JavaSubsetParser.MethodDeclarationContext ctx) {
+        SemanticType returnType = SemanticType.fromString(ctx.returnType().getText());
+        int nameId = nameOf(ctx.IDENTIFIER());
+
+        List<Ast.Parameter> parameters = new ArrayList<>();
+        if (ctx.parameterList() != null) {
+            for (JavaSubsetParser.ParameterContext paramCtx : ctx.parameterList().parameter()) {
+                SemanticType type = SemanticType.fromString(paramCtx.type().getText());
+                parameters.add(new Ast.Parameter(nextId++, nameOf(paramCtx.IDENTIFIER()), type));
+            }
+        }
+
+        Ast.Block body = lowerBlock(ctx.block());
+        return new Ast.MethodDeclaration(nextId++, nameId, accessModifierOf(ctx.accessModifier()), returnType,
+                List.copyOf(parameters), body);
+    }
+
+    private Ast.VariableDeclaration lowerVariableDeclaration(JavaSubsetParser.TypeContext typeCtx,
+                                                            JavaSubsetParser.VariableDeclaratorsContext declsCtx) {
+        SemanticType type = SemanticType.fromString(typeCtx.getText());
+        List<Ast.Declarator> declarators = new ArrayList<>();
+        for (JavaSubsetParser.VariableDeclaratorContext declCtx : declsCtx.variableDeclarator()) {
+            int nameId = nameOf(declCtx.IDENTIFIER());
+            Ast.Expression init = declCtx.expression() != null ? lowerExpression(declCtx.expression()) : null;
+            declarators.add(new Ast.Declarator(nextId++, nameId, init));
+        }
+        return new Ast.VariableDeclaration(nextId++, type, List.copyOf(declarators));
+    }
+
+    // ===============================================================================================================
+    //                                               Statements
+    // ===============================================================================================================
+
+    private Ast.Block lowerBlock(JavaSubsetParser.BlockContext ctx) {
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (JavaSubsetParser.StatementContext stmtCtx : ctx.statement()) {
+            statements.add(lowerStatement(stmtCtx));
+        }
+        return new Ast.Block(nextId++, List.copyOf(statements));
+    }
+
+    private Ast.Statement lowerStatement(JavaSubsetParser.StatementContext ctx) {
+        if (ctx.variableDeclaration() != null) {
+            return lowerVariableDeclaration(ctx.variableDeclaration().type(), ctx.variableDeclaration().variableDeclarators());
+        } else if (ctx.assignment() != null) {
+            Ast.Assignment assignment = lowerAssignment(ctx.assignment());
+            return new Ast.ExpressionStatement(nextId++, assignment);
+        } else if (ctx.expressionStatement() != null) {
+            Ast.Expression expression = lowerExpression(ctx.expressionStatement().expression());
+            return new Ast.ExpressionStatement(nextId++, expression);
+        } else if (ctx.controlStructure() != null) {
+            return lowerControlStructure(ctx.controlStructure());
+        } else if (ctx.block() != null) {
+            return lowerBlock(ctx.block());
+        } else if (ctx.returnStatement() != null) {
+            JavaSubsetParser.ReturnStatementContext retCtx = ctx.returnStatement();
+            Ast.Expression value = retCtx.expression() != null ? lowerExpression(retCtx.expression()) : null;
+            return new Ast.Return(nextId++, value);
+        }
+        return new Ast.Empty(nextId++);
+    }
+
+    private Ast.Statement lowerControlStructure(JavaSubsetParser.ControlStructureContext ctx) {
+        if (ctx.ifStatement() != null) {
+            return lowerIf(ctx.ifStatement());
+        } else if (ctx.whileLoop() != null) {
+            Ast.Expression condition = lowerExpression(ctx.whileLoop().expression());
+            Ast.Block body = lowerBlock(ctx.whileLoop().block());
+            return new Ast.While(nextId++, condition, body);
+        } else if (ctx.doWhileLoop() != null) {
+            Ast.Block body = lowerBlock(ctx.doWhileLoop().block());
+            Ast.Expression condition = lowerExpression(ctx.doWhileLoop().expression());
+            return new Ast.DoWhile(nextId++, body, condition);
+        }
+        return lowerFor(ctx.forLoop());
+    }
+
+    private Ast.If lowerIf(JavaSubsetParser.IfStatementContext ctx) {
+        Ast.Expression condition = lowerExpression(ctx.expression());
+        Ast.Block thenBlock = lowerBlock(ctx.block(0));
+        Ast.Statement elseBranch = null;
+        if (ctx.ELSE() != null) {
+            elseBranch = ctx.ifStatement() != null ? lowerIf(ctx.ifStatement()) : lowerBlock(ctx.block(1));
+        }
+        return new Ast.If(nextId++, condition, thenBlock, elseBranch);
+    }
+
+    private Ast.For lowerFor(JavaSubsetParser.ForLoopContext ctx) {
+        Ast.VariableDeclaration initDeclaration = null;
+        List<Ast.Assignment> initAssignments = new ArrayList<>();
+        if (ctx.variableDeclarationExpression() != null) {
+            initDeclaration = lowerVariableDeclaration(ctx.variableDeclarationExpression().type(),
+                    ctx.variableDeclarationExpression().variableDeclarators());
+        } else if (ctx.assignmentExpressionList() != null) {
+            for (JavaSubsetParser.AssignmentContext assignCtx : ctx.assignmentExpressionList().assignment()) {
+                initAssignments.add(lowerAssignment(assignCtx));
+            }
+        }
+
+        Ast.Expression condition = ctx.expression() != null ? lowerExpression(ctx.expression()) : null;
+
+        List<Ast.Expression> updates = new ArrayList<>();
+        if (ctx.updateExpressionList() != null) {
+            for (JavaSubsetParser.UpdateExpressionContext updateCtx : ctx.updateExpressionList().updateExpression()) {
+                if (updateCtx.assignment() != null) {
+                    updates.add(lowerAssignment(updateCtx.assignment()));
+                } else if (updateCtx.unaryExpression() != null) {
+                    updates.add(lowerUnary(updateCtx.unaryExpression()));
+                } else if (updateCtx.postfixExpression() != null) {
+                    updates.add(lowerPostfix(updateCtx.postfixExpression()));
+                }
+            }
+        }
+
+        Ast.Block body = lowerBlock(ctx.block());
+        return new Ast.For(nextId++, initDeclaration, List.copyOf(initAssignments), condition, List.copyOf(updates), body);
+    }
+
+    // ===============================================================================================================
+    //                                               Expressions
+    // ===============================================================================================================
+
+    private Ast.Assignment lowerAssignment(JavaSubsetParser.AssignmentContext ctx) {
+        int nameId = nameOf(ctx.IDENTIFIER());
+        //a[i] = value has the index as its first expression
+        Ast.Expression index = ctx.LBRACKET() != null ? lowerExpression(ctx.expression(0)) : null;
+        Ast.Expression value = lowerExpression(ctx.expression(ctx.expression().size() - 1));
+        return new Ast.Assignment(nextId++, nameId, index, value);
+    }
+
+    private Ast.Expression lowerExpression(JavaSubsetParser.ExpressionContext ctx) {
+        if (ctx.assignment() != null) {
+            return lowerAssignment(ctx.assignment());
+        }
+        return lowerLogicalOr(ctx.logicalOrExpression());
+    }
+
+    // Each precedence level below folds its operands left-associatively; a level with a
+    // single operand returns that operand's node unchanged, collapsing the chain.
+
+    private Ast.Expression lowerLogicalOr(JavaSubsetParser.LogicalOrExpressionContext ctx) {
+        Ast.Expression result = lowerLogicalAnd(ctx.logicalAndExpression(0));
+        for (int i = 1; i < ctx.logicalAndExpression().size(); i++) {
+            Ast.Expression right = lowerLogicalAnd(ctx.logicalAndExpression(i));
+            result = new Ast.Binary(nextId++, Ast.BinaryOperator.OR, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerLogicalAnd(JavaSubsetParser.LogicalAndExpressionContext ctx) {
+        Ast.Expression result = lowerEquality(ctx.equalityExpression(0));
+        for (int i = 1; i < ctx.equalityExpression().size(); i++) {
+            Ast.Expression right = lowerEquality(ctx.equalityExpression(i));
+            result = new Ast.Binary(nextId++, Ast.BinaryOperator.AND, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerEquality(JavaSubsetParser.EqualityExpressionContext ctx) {
+        Ast.Expression result = lowerRelational(ctx.relationalExpression(0));
+        for (int i = 1; i < ctx.relationalExpression().size(); i++) {
+            Ast.Expression right = lowerRelational(ctx.relationalExpression(i));
+            Ast.BinaryOperator op = Ast.BinaryOperator.fromSymbol(ctx.equalityOperator(i - 1).getText());
+            result = new Ast.Binary(nextId++, op, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerRelational(JavaSubsetParser.RelationalExpressionContext ctx) {
+        Ast.Expression result = lowerAdditive(ctx.additiveExpression(0));
+        for (int i = 1; i < ctx.additiveExpression().size(); i++) {
+            Ast.Expression right = lowerAdditive(ctx.additiveExpression(i));
+            Ast.BinaryOperator op = Ast.BinaryOperator.fromSymbol(ctx.relationalOperator(i - 1).getText());
+            result = new Ast.Binary(nextId++, op, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerAdditive(JavaSubsetParser.AdditiveExpressionContext ctx) {
+        Ast.Expression result = lowerMultiplicative(ctx.multiplicativeExpression(0));
+        for (int i = 1; i < ctx.multiplicativeExpression().size(); i++) {
+            Ast.Expression right = lowerMultiplicative(ctx.multiplicativeExpression(i));
+            Ast.BinaryOperator op = Ast.BinaryOperator.fromSymbol(ctx.additiveOperator(i - 1).getText());
+            result = new Ast.Binary(nextId++, op, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerMultiplicative(JavaSubsetParser.MultiplicativeExpressionContext ctx) {
+        Ast.Expression result = lowerUnary(ctx.unaryExpression(0));
+        for (int i = 1; i < ctx.unaryExpression().size(); i++) {
+            Ast.Expression right = lowerUnary(ctx.unaryExpression(i));
+            Ast.BinaryOperator op = Ast.BinaryOperator.fromSymbol(ctx.multiplicativeOperator(i - 1).getText());
+            result = new Ast.Binary(nextId++, op, result, right);
+        }
+        return result;
+    }
+
+    private Ast.Expression lowerUnary(JavaSubsetParser.UnaryExpressionContext ctx) {
+        if (ctx.unaryOperator() == null) {
+            return lowerPostfix(ctx.postfixExpression());
+        }
+        Ast.Expression operand = lowerUnary(ctx.unaryExpression());
+        Ast.UnaryOperator op = Ast.UnaryOperator.fromSymbol(ctx.unaryOperator().getText());
+        return new Ast.Unary(nextId++, op, operand);
+    }
+
+    private Ast.Expression lowerPostfix(JavaSubsetParser.PostfixExpressionContext ctx) {
+        Ast.Expression operand = lowerPrimary(ctx.primaryExpression());
+        if (ctx.postfixOperator().isEmpty()) {
+            return operand;
+        }
+        int[] steps = new int[ctx.postfixOperator().size()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = ctx.postfixOperator(i).INCREMENT() != null ? 1 : -1;
+        }
+        return new Ast.Postfix(nextId++, operand, steps);
+    }
+
+    private Ast.Expression lowerPrimary(JavaSubsetParser.PrimaryExpressionContext ctx) {
+        if (ctx.integerLiteral() != null) {
+            return new Ast.IntLiteral(nextId++, parseIntegerLiteral(ctx.integerLiteral()));
+        } else if (ctx.STRINGLIT() != null) {
+            return new Ast.StringLiteral(nextId++, ctx.STRINGLIT().getText());
+        } else if (ctx.CHARACTER() != null) {
+            return new Ast.CharLiteral(nextId++, ctx.CHARACTER().getText());
+        } else if (ctx.methodCall() != null) {
+            return lowerCall(ctx.methodCall());
+        } else if (ctx.arrayAccess() != null) {
+            JavaSubsetParser.ArrayAccessContext access = ctx.arrayAccess();
+            return new Ast.ArrayAccess(nextId++, nameOf(access.IDENTIFIER()), lowerExpression(access.expression()));
+        } else if (ctx.arrayLength() != null) {
+            return lowerArrayLength(ctx.arrayLength());
+        } else if (ctx.arrayCreation() != null) {
+            JavaSubsetParser.ArrayCreationContext creation = ctx.arrayCreation();
+            SemanticType elementType = SemanticType.fromString(creation.getChild(1).getText());
+            return new Ast.NewArray(nextId++, elementType, lowerExpression(creation.expression()));
+        } else if (ctx.IDENTIFIER() != null) {
+            return new Ast.Name(nextId++, nameOf(ctx.IDENTIFIER()));
+        } else if (ctx.expression() != null) {
+            return lowerExpression(ctx.expression());
+        } else if (ctx.booleanLiteral() != null) {
+            return new Ast.BooleanLiteral(nextId++, ctx.booleanLiteral().TRUE() != null);
+        }
+        return new Ast.NullLiteral(nextId++);
+    }
+
+    private Ast.Call lowerCall(JavaSubsetParser.MethodCallContext ctx) {
+        int nameId = nameOf(ctx.IDENTIFIER());
+        List<Ast.Expression> arguments = new ArrayList<>();
+        if (ctx.argumentList() != null) {
+            for (JavaSubsetParser.ExpressionContext argCtx : ctx.argumentList().expression()) {
+                arguments.add(lowerExpression(argCtx));
+            }
+        }
+        return new Ast.Call(nextId++, nameId, List.copyOf(arguments));
+    }
+
+    //Arrays have no members but length
+    private Ast.ArrayLength lowerArrayLength(JavaSubsetParser.ArrayLengthContext ctx) {
+        String member = ctx.IDENTIFIER(1).getText();
+        if (!member.equals("length")) {
+            throw new IllegalArgumentException("Unknown member '" + member + "'; only an array's length can be read.");
+        }
+        return new Ast.ArrayLength(nextId++, nameOf(ctx.IDENTIFIER(0)));
+    }
+
+    private static long parseIntegerLiteral(JavaSubsetParser.IntegerLiteralContext ctx) {
+        String text = ctx.getText();
+        try {
+            if (ctx.HEX_LITERAL() != null) {
+                return Long.parseLong(text.substring(2), 16);
+            } else if (ctx.BINARY_LITERAL() != null) {
+                return Long.parseLong(text.substring(2), 2);
+            } else if (ctx.OCTAL_LITERAL() != null) {
+                return Long.parseLong(text.substring(1), 8);
+            }
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Integer literal out of range: " + text, e);
+        }
+    }
+}
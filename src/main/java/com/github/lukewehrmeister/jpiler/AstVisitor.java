@@ -0,0 +1,66 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * Visitor over the lowered {@link Ast}, one method per node type.
+ */
+public interface AstVisitor<R> {
+    default R visit(Ast.Node node) {
+        return node.accept(this);
+    }
+
+    R visitCompilationUnit(Ast.CompilationUnit node);
+
+    R visitClassDeclaration(Ast.ClassDeclaration node);
+
+    R visitMethodDeclaration(Ast.MethodDeclaration node);
+
+    R visitParameter(Ast.Parameter node);
+
+    R visitVariableDeclaration(Ast.VariableDeclaration node);
+
+    R visitDeclarator(Ast.Declarator node);
+
+    R visitBlock(Ast.Block node);
+
+    R visitExpressionStatement(Ast.ExpressionStatement node);
+
+    R visitIf(Ast.If node);
+
+    R visitWhile(Ast.While node);
+
+    R visitDoWhile(Ast.DoWhile node);
+
+    R visitFor(Ast.For node);
+
+    R visitReturn(Ast.Return node);
+
+    R visitEmpty(Ast.Empty node);
+
+    R visitAssignment(Ast.Assignment node);
+
+    R visitBinary(Ast.Binary node);
+
+    R visitUnary(Ast.Unary node);
+
+    R visitPostfix(Ast.Postfix node);
+
+    R visitName(Ast.Name node);
+
+    R visitCall(Ast.Call node);
+
+    R visitArrayAccess(Ast.ArrayAccess node);
+
+    R visitArrayLength(Ast.ArrayLength node);
+
+    R visitNewArray(Ast.NewArray node);
+
+    R visitIntLiteral(Ast.IntLiteral node);
+
+    R visitBooleanLiteral(Ast.BooleanLiteral node);
+
+    R visitStringLiteral(Ast.StringLiteral node);
+
+    R visitCharLiteral(Ast.CharLiteral node);
+
+    R visitNullLiteral(Ast.NullLiteral node);
+}
@@ -0,0 +1,466 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Removes bounds checks that can never fail, such as the one of {@code a[i]} in
+ * {@code for (int i = 0; i < a.length; i++)}.
+ *
+ * A forward range analysis gives every register and slot an interval of the values it
+ * may hold. As in {@link SparseConditionalConstantPropagation}, the IR is not in SSA
+ * form, so the intervals are tracked per block: a block starts from the hull of what its
+ * executable predecessors leave behind, and is visited again whenever that grows. Slots
+ * hold 0 on entry; parameters, globals, array elements and call results can be anything.
+ * Addition, subtraction and multiplication are followed unless they may overflow, and
+ * division, remainder and {@code and} by a non-negative constant bound their result.
+ *
+ * A conditional branch on a comparison made in its own block narrows the compared
+ * registers along each edge, and the slot a register was loaded from when nothing has
+ * stored to it since; an edge whose ranges come out empty is never taken. A check that
+ * passes narrows its index the same way. Once a loop header has been visited twice, a
+ * bound that an edge back to it still moves jumps to the int limit, so loops reach a
+ * fixed point at once, and the header's branch then bounds the index again in the body.
+ *
+ * A check whose index always lies within the array is deleted.
+ */
+public final class BoundsCheckElimination implements FunctionPass {
+    //Visits of a block after which a bound that keeps growing is widened to the int limit
+    private static final int WIDENING_VISITS = 2;
+
+    @Override
+    public String getName() {
+        return "bce";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        if (function.getBlocks().stream().flatMap(block -> block.getInstructions().stream())
+                .noneMatch(instruction -> instruction.getOpcode() == IrOpcode.BOUNDS_CHECK)) {
+            return false;
+        }
+        Solver solver = new Solver(function, analyses.get(AnalysisManager.Analysis.CFG, function));
+        solver.solve();
+        Set<IrInstruction> redundant = solver.redundantChecks();
+        boolean changed = false;
+        for (IrBlock block : function.getBlocks()) {
+            changed |= block.getInstructions().removeIf(redundant::contains);
+        }
+        return changed;
+    }
+
+    /**
+     * The values from lo to hi inclusive, within the int range; empty when lo > hi. Bounds
+     * are longs so that arithmetic on them cannot overflow before it is checked.
+     */
+    static final class Range {
+        static final Range FULL = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        final long lo;
+        final long hi;
+
+        Range(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        static Range of(long lo, long hi) {
+            return lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE ? FULL : new Range(lo, hi);
+        }
+
+        boolean isEmpty() {
+            return lo > hi;
+        }
+
+        boolean isConstant() {
+            return lo == hi;
+        }
+
+        boolean within(long low, long high) {
+            return lo >= low && hi <= high;
+        }
+
+        Range hull(Range other) {
+            return new Range(Math.min(lo, other.lo), Math.max(hi, other.hi));
+        }
+
+        Range intersect(long low, long high) {
+            return new Range(Math.max(lo, low), Math.min(hi, high));
+        }
+
+        //This range, with each bound that other moves past pushed to the int limit
+        Range widen(Range other) {
+            return new Range(other.lo < lo ? Integer.MIN_VALUE : lo, other.hi > hi ? Integer.MAX_VALUE : hi);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Range range && range.lo == lo && range.hi == hi;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lo) * 31 + Long.hashCode(hi);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + lo + ", " + hi + "]";
+        }
+    }
+
+    private static final class Solver {
+        private final IrFunction function;
+        private final Set<IrValue> slots;
+        //Ranges on entry to every block reached so far; a value missing from one may hold anything
+        private final Map<IrBlock, Map<IrValue, Range>> entryStates = new HashMap<>();
+        private final Map<IrBlock, Integer> visits = new HashMap<>();
+        private final Cfg cfg;
+        private final PriorityQueue<IrBlock> worklist;
+        private final Set<IrBlock> queued = new HashSet<>();
+
+        Solver(IrFunction function, Cfg cfg) {
+            this.function = function;
+            this.cfg = cfg;
+            this.slots = StackSlotColoring.candidates(function).keySet();
+            //Reverse postorder settles a loop's body before it goes round again
+            this.worklist = new PriorityQueue<>(Comparator.comparingInt(cfg::getOrder));
+        }
+
+        void solve() {
+            Map<IrValue, Range> entry = new HashMap<>();
+            for (IrValue slot : slots) {
+                entry.put(slot, new Range(0, 0));
+            }
+            IrBlock first = function.getEntryBlock();
+            entryStates.put(first, entry);
+            enqueue(first);
+            while (!worklist.isEmpty()) {
+                IrBlock block = worklist.poll();
+                queued.remove(block);
+                visits.merge(block, 1, Integer::sum);
+                visit(block, null);
+            }
+        }
+
+        //The checks of reachable blocks whose index is always in bounds, once solved
+        Set<IrInstruction> redundantChecks() {
+            Set<IrInstruction> redundant = new HashSet<>();
+            for (IrBlock block : function.getBlocks()) {
+                if (entryStates.containsKey(block)) {
+                    visit(block, redundant);
+                }
+            }
+            return redundant;
+        }
+
+        private void enqueue(IrBlock block) {
+            if (queued.add(block)) {
+                worklist.add(block);
+            }
+        }
+
+        //Runs the block from its entry state and flows what it leaves to its successors
+        private void visit(IrBlock block, Set<IrInstruction> redundant) {
+            Map<IrValue, Range> state = new HashMap<>(entryStates.get(block));
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                IrInstruction instruction = instructions.get(i);
+                switch (instruction.getOpcode()) {
+                    case ALLOCA, STORE_ELEMENT -> {
+                    }
+                    case STORE -> {
+                        if (slots.contains(instruction.getOperand(1))) {
+                            state.put(instruction.getOperand(1), range(instruction.getOperand(0), state));
+                        }
+                    }
+                    case LOAD -> state.put(instruction.getResult(), slots.contains(instruction.getOperand(0))
+                            ? range(instruction.getOperand(0), state) : Range.FULL);
+                    case BOUNDS_CHECK -> {
+                        IrValue index = instruction.getOperand(0);
+                        Range range = range(index, state);
+                        int length = instruction.getLength();
+                        if (redundant != null && range.within(0, length - 1)) {
+                            redundant.add(instruction);
+                        }
+                        Range passed = range.intersect(0, length - 1);
+                        if (passed.isEmpty()) {
+                            //Always fails, so nothing after it runs
+                            return;
+                        }
+                        if (index instanceof IrValue.Register) {
+                            state.put(index, passed);
+                        }
+                    }
+                    case BR -> {
+                        flow(block, instruction.getTargets().get(0), state);
+                        return;
+                    }
+                    case COND_BR -> {
+                        branch(block, instructions, i, state);
+                        return;
+                    }
+                    case RET -> {
+                        return;
+                    }
+                    default -> {
+                        if (instruction.getResult() != null) {
+                            state.put(instruction.getResult(), instruction.getOpcode().isBinary()
+                                    ? arithmetic(instruction, state) : Range.FULL);
+                        }
+                    }
+                }
+            }
+            //Falls through to the next block, if any
+            for (IrBlock next : Cfg.successors(function, block)) {
+                flow(block, next, state);
+            }
+        }
+
+        private static Range range(IrValue value, Map<IrValue, Range> state) {
+            if (value instanceof IrValue.Constant constant) {
+                return new Range(constant.getValue(), constant.getValue());
+            }
+            return state.getOrDefault(value, Range.FULL);
+        }
+
+        private static Range arithmetic(IrInstruction instruction, Map<IrValue, Range> state) {
+            if (instruction.getType() != IrType.I32) {
+                return Range.FULL;
+            }
+            Range a = range(instruction.getOperand(0), state);
+            Range b = range(instruction.getOperand(1), state);
+            switch (instruction.getOpcode()) {
+                case ADD -> {
+                    return Range.of(a.lo + b.lo, a.hi + b.hi);
+                }
+                case SUB -> {
+                    return Range.of(a.lo - b.hi, a.hi - b.lo);
+                }
+                case MUL -> {
+                    long p = a.lo * b.lo;
+                    long q = a.lo * b.hi;
+                    long r = a.hi * b.lo;
+                    long s = a.hi * b.hi;
+                    return Range.of(Math.min(Math.min(p, q), Math.min(r, s)), Math.max(Math.max(p, q), Math.max(r, s)));
+                }
+                case SDIV -> {
+                    //Truncating division by a positive constant keeps the order
+                    if (b.isConstant() && b.lo > 0) {
+                        return new Range(a.lo / b.lo, a.hi / b.lo);
+                    }
+                }
+                case SREM -> {
+                    //The remainder takes the dividend's sign and is smaller than the divisor
+                    if (b.isConstant() && b.lo > 0) {
+                        long max = b.lo - 1;
+                        if (a.lo >= 0) {
+                            return new Range(0, Math.min(a.hi, max));
+                        }
+                        if (a.hi <= 0) {
+                            return new Range(Math.max(a.lo, -max), 0);
+                        }
+                        return new Range(-max, max);
+                    }
+                }
+                case AND -> {
+                    //A non-negative operand keeps the result between 0 and itself
+                    if (a.lo >= 0 || b.lo >= 0) {
+                        long hi = a.lo >= 0 && b.lo >= 0 ? Math.min(a.hi, b.hi) : a.lo >= 0 ? a.hi : b.hi;
+                        return new Range(0, hi);
+                    }
+                }
+                default -> {
+                }
+            }
+            return Range.FULL;
+        }
+
+        /**
+         * Flows the state along both edges of the conditional branch at index at, each
+         * narrowed by what taking it says about the comparison the condition holds.
+         */
+        private void branch(IrBlock block, List<IrInstruction> instructions, int at, Map<IrValue, Range> state) {
+            IrInstruction branch = instructions.get(at);
+            IrBlock ifTrue = branch.getTargets().get(0);
+            IrBlock ifFalse = branch.getTargets().get(1);
+            IrValue condition = branch.getOperand(0);
+            if (condition instanceof IrValue.Constant constant) {
+                flow(block, constant.getValue() != 0 ? ifTrue : ifFalse, state);
+                return;
+            }
+            int compareAt = lastDefinition(instructions, condition, at);
+            IrInstruction compare = compareAt < 0 ? null : instructions.get(compareAt);
+            if (ifTrue == ifFalse || compare == null || !compare.getOpcode().isCompare()
+                    || compare.getType() != IrType.I32
+                    || lastDefinition(instructions, compare.getOperand(0), at) > compareAt
+                    || lastDefinition(instructions, compare.getOperand(1), at) > compareAt) {
+                flow(block, ifTrue, state);
+                flow(block, ifFalse, state);
+                return;
+            }
+            Map<IrValue, Range> taken = narrow(instructions, compareAt, at, compare.getOpcode(), compare, state);
+            if (taken != null) {
+                flow(block, ifTrue, taken);
+            }
+            Map<IrValue, Range> notTaken = narrow(instructions, compareAt, at, negate(compare.getOpcode()), compare, state);
+            if (notTaken != null) {
+                flow(block, ifFalse, notTaken);
+            }
+        }
+
+        //The state once left opcode right is known to hold, or null when it cannot
+        private Map<IrValue, Range> narrow(List<IrInstruction> instructions, int compareAt, int at, IrOpcode opcode,
+                                           IrInstruction compare, Map<IrValue, Range> state) {
+            IrValue left = compare.getOperand(0);
+            IrValue right = compare.getOperand(1);
+            Range l = range(left, state);
+            Range r = range(right, state);
+            Range newLeft;
+            Range newRight;
+            switch (opcode) {
+                case ICMP_SLT -> {
+                    newLeft = l.intersect(Integer.MIN_VALUE, r.hi - 1);
+                    newRight = r.intersect(l.lo + 1, Integer.MAX_VALUE);
+                }
+                case ICMP_SLE -> {
+                    newLeft = l.intersect(Integer.MIN_VALUE, r.hi);
+                    newRight = r.intersect(l.lo, Integer.MAX_VALUE);
+                }
+                case ICMP_SGT -> {
+                    newLeft = l.intersect(r.lo + 1, Integer.MAX_VALUE);
+                    newRight = r.intersect(Integer.MIN_VALUE, l.hi - 1);
+                }
+                case ICMP_SGE -> {
+                    newLeft = l.intersect(r.lo, Integer.MAX_VALUE);
+                    newRight = r.intersect(Integer.MIN_VALUE, l.hi);
+                }
+                case ICMP_EQ -> {
+                    newLeft = l.intersect(r.lo, r.hi);
+                    newRight = newLeft;
+                }
+                default -> {
+                    newLeft = excluding(l, r);
+                    newRight = excluding(r, l);
+                }
+            }
+            if (newLeft.isEmpty() || newRight.isEmpty()) {
+                return null;
+            }
+            Map<IrValue, Range> narrowed = new HashMap<>(state);
+            narrowTo(instructions, compareAt, at, left, newLeft, narrowed);
+            narrowTo(instructions, compareAt, at, right, newRight, narrowed);
+            return narrowed;
+        }
+
+        //The range less other's one value when that is at one of its ends
+        private static Range excluding(Range range, Range other) {
+            if (!other.isConstant()) {
+                return range;
+            }
+            if (other.lo == range.lo) {
+                return new Range(range.lo + 1, range.hi);
+            }
+            if (other.lo == range.hi) {
+                return new Range(range.lo, range.hi - 1);
+            }
+            return range;
+        }
+
+        //Narrows a compared register, and the slot it was loaded from if that still holds it at the branch
+        private void narrowTo(List<IrInstruction> instructions, int compareAt, int at, IrValue value, Range range,
+                              Map<IrValue, Range> state) {
+            if (!(value instanceof IrValue.Register)) {
+                return;
+            }
+            state.put(value, range);
+            int loadAt = lastDefinition(instructions, value, compareAt);
+            if (loadAt < 0 || instructions.get(loadAt).getOpcode() != IrOpcode.LOAD) {
+                return;
+            }
+            IrValue slot = instructions.get(loadAt).getOperand(0);
+            if (!slots.contains(slot)) {
+                return;
+            }
+            for (int i = loadAt + 1; i < at; i++) {
+                IrInstruction instruction = instructions.get(i);
+                if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1).equals(slot)) {
+                    return;
+                }
+            }
+            Range held = range(slot, state);
+            state.put(slot, held.intersect(range.lo, range.hi));
+        }
+
+        //Index of the last instruction before end that defines value, or -1
+        private static int lastDefinition(List<IrInstruction> instructions, IrValue value, int end) {
+            for (int i = end - 1; i >= 0; i--) {
+                if (value.equals(instructions.get(i).getResult())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static IrOpcode negate(IrOpcode opcode) {
+            return switch (opcode) {
+                case ICMP_EQ -> IrOpcode.ICMP_NE;
+                case ICMP_NE -> IrOpcode.ICMP_EQ;
+                case ICMP_SLT -> IrOpcode.ICMP_SGE;
+                case ICMP_SGE -> IrOpcode.ICMP_SLT;
+                case ICMP_SGT -> IrOpcode.ICMP_SLE;
+                default -> IrOpcode.ICMP_SGT;
+            };
+        }
+
+        /**
+         * Marks the edge executable and joins the ranges it carries into the target's entry
+         * state. Only edges back to a loop header widen, so the ranges its branch narrows
+         * reach the body intact.
+         */
+        private void flow(IrBlock source, IrBlock target, Map<IrValue, Range> state) {
+            Map<IrValue, Range> entry = entryStates.get(target);
+            if (entry == null) {
+                entryStates.put(target, new HashMap<>(state));
+                enqueue(target);
+                return;
+            }
+            boolean widen = cfg.getOrder(target) <= cfg.getOrder(source)
+                    && visits.getOrDefault(target, 0) >= WIDENING_VISITS;
+            boolean changed = false;
+            Iterator<Map.Entry<IrValue, Range>> it = entry.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<IrValue, Range> value = it.next();
+                Range incoming = state.get(value.getKey());
+                if (incoming == null) {
+                    it.remove();
+                    changed = true;
+                    continue;
+                }
+                Range joined = value.getValue().hull(incoming);
+                if (widen) {
+                    joined = value.getValue().widen(joined);
+                }
+                if (!joined.equals(value.getValue())) {
+                    value.setValue(joined);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                enqueue(target);
+            }
+        }
+    }
+}
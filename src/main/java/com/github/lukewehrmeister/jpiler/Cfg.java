@@ -0,0 +1,113 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The control-flow graph of a function: successors and predecessors of every block, and
+ * the blocks reachable from the entry in reverse postorder.
+ *
+ * As in the backends, a block's successors are the targets of its first terminator, and
+ * a block without one falls through to the next block in layout order.
+ */
+public final class Cfg {
+    private final IrFunction function;
+    private final Map<IrBlock, List<IrBlock>> successors = new HashMap<>();
+    private final Map<IrBlock, List<IrBlock>> predecessors = new HashMap<>();
+    private final List<IrBlock> reversePostOrder = new ArrayList<>();
+    private final Map<IrBlock, Integer> order = new HashMap<>();
+
+    public Cfg(IrFunction function) {
+        this.function = function;
+        for (IrBlock block : function.getBlocks()) {
+            predecessors.put(block, new ArrayList<>());
+        }
+        for (IrBlock block : function.getBlocks()) {
+            //A conditional branch with both arms on one block is still a single edge
+            List<IrBlock> targets = new ArrayList<>(new LinkedHashSet<>(successors(function, block)));
+            successors.put(block, targets);
+            for (IrBlock target : targets) {
+                predecessors.get(target).add(block);
+            }
+        }
+        if (!function.getBlocks().isEmpty()) {
+            postOrder(function.getEntryBlock());
+            Collections.reverse(reversePostOrder);
+            for (int i = 0; i < reversePostOrder.size(); i++) {
+                order.put(reversePostOrder.get(i), i);
+            }
+        }
+    }
+
+    //Successors straight from the IR, without building a graph
+    static List<IrBlock> successors(IrFunction function, IrBlock block) {
+        IrInstruction terminator = block.getTerminator();
+        if (terminator != null) {
+            return terminator.getTargets();
+        }
+        List<IrBlock> blocks = function.getBlocks();
+        int next = blocks.indexOf(block) + 1;
+        return next < blocks.size() ? List.of(blocks.get(next)) : List.of();
+    }
+
+    //Iterative depth-first search, so deep chains of blocks cannot overflow the stack
+    private void postOrder(IrBlock entry) {
+        Set<IrBlock> visited = new HashSet<>();
+        Deque<IrBlock> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry);
+        nextChild.push(0);
+        while (!stack.isEmpty()) {
+            IrBlock block = stack.peek();
+            int child = nextChild.pop();
+            List<IrBlock> targets = successors.get(block);
+            if (child < targets.size()) {
+                nextChild.push(child + 1);
+                IrBlock target = targets.get(child);
+                if (visited.add(target)) {
+                    stack.push(target);
+                    nextChild.push(0);
+                }
+            } else {
+                stack.pop();
+                reversePostOrder.add(block);
+            }
+        }
+    }
+
+    public IrFunction getFunction() {
+        return function;
+    }
+
+    public List<IrBlock> getSuccessors(IrBlock block) {
+        return successors.get(block);
+    }
+
+    //Predecessors in layout order, unreachable ones included
+    public List<IrBlock> getPredecessors(IrBlock block) {
+        return predecessors.get(block);
+    }
+
+    //Blocks reachable from the entry, each before its successors except along back edges
+    public List<IrBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    public boolean isReachable(IrBlock block) {
+        return order.containsKey(block);
+    }
+
+    //Position of a reachable block in reverse postorder, or -1
+    public int getOrder(IrBlock block) {
+        return order.getOrDefault(block, -1);
+    }
+}
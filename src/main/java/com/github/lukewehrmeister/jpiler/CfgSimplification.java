@@ -0,0 +1,179 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tidies the control flow the generator leaves behind, such as the chain of
+ * {@code endif} blocks of an else-if ladder that only jump to one another, or the
+ * {@code for.update} block of a loop without updates. Until nothing changes it:
+ *
+ * - drops instructions after a block's terminator, and blocks no path reaches;
+ * - turns a conditional branch on a constant, or whose two targets are the same, into
+ *   a plain one;
+ * - threads branches through blocks that do nothing but jump on, and turns a jump to
+ *   the empty block a void function falls off the end of into {@code ret void};
+ * - merges a block into the one before it when that is its only predecessor and
+ *   jumps straight to it.
+ *
+ * Blocks that fall through to the next are first given an explicit branch, so blocks
+ * can be removed without changing where control goes. Only the last block of a
+ * function may fall off its end.
+ */
+public final class CfgSimplification implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "simplifycfg";
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        boolean changed = makeFallThroughsExplicit(function);
+        boolean simplified = true;
+        while (simplified) {
+            simplified = removeUnreachable(function);
+            simplified |= foldAndThread(function);
+            simplified |= merge(function);
+            changed |= simplified;
+        }
+        return changed;
+    }
+
+    private static boolean makeFallThroughsExplicit(IrFunction function) {
+        boolean changed = false;
+        List<IrBlock> blocks = function.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            List<IrInstruction> instructions = blocks.get(i).getInstructions();
+            IrInstruction terminator = blocks.get(i).getTerminator();
+            if (terminator == null && i + 1 < blocks.size()) {
+                instructions.add(IrInstruction.br(blocks.get(i + 1)));
+                changed = true;
+            } else if (terminator != null && instructions.get(instructions.size() - 1) != terminator) {
+                instructions.subList(instructions.indexOf(terminator) + 1, instructions.size()).clear();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean removeUnreachable(IrFunction function) {
+        Set<IrBlock> reached = new HashSet<>();
+        reach(function, function.getEntryBlock(), reached);
+        return function.getBlocks().retainAll(reached);
+    }
+
+    //Depth-first with an explicit stack, as long chains of blocks would overflow the call stack
+    private static void reach(IrFunction function, IrBlock entry, Set<IrBlock> reached) {
+        Deque<IrBlock> stack = new ArrayDeque<>();
+        stack.push(entry);
+        reached.add(entry);
+        while (!stack.isEmpty()) {
+            for (IrBlock successor : Cfg.successors(function, stack.pop())) {
+                if (reached.add(successor)) {
+                    stack.push(successor);
+                }
+            }
+        }
+    }
+
+    private static boolean foldAndThread(IrFunction function) {
+        boolean changed = false;
+        for (IrBlock block : function.getBlocks()) {
+            List<IrInstruction> instructions = block.getInstructions();
+            IrInstruction terminator = block.getTerminator();
+            if (terminator == null) {
+                continue;
+            }
+            for (int t = 0; t < terminator.getTargets().size(); t++) {
+                IrBlock target = forward(function, terminator.getTargets().get(t));
+                if (target != terminator.getTargets().get(t)) {
+                    terminator.setTarget(t, target);
+                    changed = true;
+                }
+            }
+            IrInstruction replacement = null;
+            if (terminator.getOpcode() == IrOpcode.COND_BR
+                    && terminator.getTargets().get(0) == terminator.getTargets().get(1)) {
+                replacement = IrInstruction.br(terminator.getTargets().get(0));
+            } else if (terminator.getOpcode() == IrOpcode.COND_BR
+                    && terminator.getOperand(0) instanceof IrValue.Constant condition) {
+                replacement = IrInstruction.br(terminator.getTargets().get(condition.getValue() != 0 ? 0 : 1));
+            } else if (terminator.getOpcode() == IrOpcode.BR && function.getReturnType() == IrType.VOID
+                    && fallsOffTheEnd(function, terminator.getTargets().get(0))) {
+                replacement = IrInstruction.ret(IrType.VOID, null);
+            }
+            if (replacement != null) {
+                instructions.set(instructions.size() - 1, replacement);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    //Where a branch to the block ends up after any blocks that only jump on
+    private static IrBlock forward(IrFunction function, IrBlock block) {
+        Set<IrBlock> seen = new HashSet<>();
+        IrBlock target = block;
+        while (target != function.getEntryBlock() && seen.add(target)) {
+            List<IrInstruction> instructions = target.getInstructions();
+            if (instructions.size() != 1 || instructions.get(0).getOpcode() != IrOpcode.BR) {
+                break;
+            }
+            IrBlock next = instructions.get(0).getTargets().get(0);
+            if (seen.contains(next)) {
+                //A cycle of empty blocks loops forever whichever one is entered
+                break;
+            }
+            target = next;
+        }
+        return target;
+    }
+
+    private static boolean fallsOffTheEnd(IrFunction function, IrBlock block) {
+        List<IrBlock> blocks = function.getBlocks();
+        return block.getInstructions().isEmpty() && blocks.get(blocks.size() - 1) == block;
+    }
+
+    private static boolean merge(IrFunction function) {
+        Map<IrBlock, Integer> predecessors = new HashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrBlock successor : Cfg.successors(function, block)) {
+                predecessors.merge(successor, 1, Integer::sum);
+            }
+        }
+        List<IrBlock> blocks = function.getBlocks();
+        boolean changed = false;
+        for (int i = 0; i < blocks.size(); i++) {
+            IrBlock block = blocks.get(i);
+            IrInstruction terminator = block.getTerminator();
+            if (terminator == null || terminator.getOpcode() != IrOpcode.BR) {
+                continue;
+            }
+            IrBlock successor = terminator.getTargets().get(0);
+            int at = blocks.indexOf(successor);
+            //A successor that falls off the end must stay last, so only merge it into the block just before
+            boolean fallsOff = successor.getTerminator() == null;
+            if (successor == block || successor == function.getEntryBlock()
+                    || predecessors.get(successor) != 1 || fallsOff && at != i + 1) {
+                continue;
+            }
+            List<IrInstruction> instructions = block.getInstructions();
+            instructions.remove(instructions.size() - 1);
+            instructions.addAll(successor.getInstructions());
+            blocks.remove(at);
+            if (at < i) {
+                i--;
+            }
+            //The merged block may now jump straight to another single-predecessor block
+            i--;
+            changed = true;
+        }
+        return changed;
+    }
+}
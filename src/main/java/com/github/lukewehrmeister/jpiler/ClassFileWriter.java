@@ -0,0 +1,392 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of the class file format to write classes of static int methods and
+ * static fields: a constant pool, fields, and methods with a Code attribute.
+ *
+ * Classes are written as version 49 (Java 5), the last version verified by type
+ * inference, so no StackMapTable is needed and dead code after a terminator is harmless.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int IASTORE = 0x4f;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IADD = 0x60;
+    static final int ISUB = 0x64;
+    static final int IMUL = 0x68;
+    static final int IDIV = 0x6c;
+    static final int IREM = 0x70;
+    static final int IAND = 0x7e;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEWARRAY = 0xbc;
+    static final int T_INT = 10;
+    static final int WIDE = 0xc4;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final String className;
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    ClassFileWriter(String className) {
+        this.className = className;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    //Each constant is keyed by its tag and contents so it is written once
+    private int constant(String key, ConstantBody body) {
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            body.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (poolCount > 0xffff) {
+            throw new IllegalStateException("Constant pool of " + className + " is full.");
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    private interface ConstantBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ' ' + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("F" + owner + '.' + name + ' ' + descriptor, out -> {
+            out.writeByte(CONSTANT_FIELDREF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("M" + owner + '.' + name + ' ' + descriptor, out -> {
+            out.writeByte(CONSTANT_METHODREF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    void addField(int access, String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        fields.add(new byte[] {
+            (byte) (access >> 8), (byte) access,
+            (byte) (nameIndex >> 8), (byte) nameIndex,
+            (byte) (descriptorIndex >> 8), (byte) descriptorIndex,
+            0, 0 //Attributes
+        });
+    }
+
+    //Starts a method; its parameters occupy the first parameterSlots locals
+    Code addMethod(int access, String name, String descriptor, int parameterSlots) {
+        Code code = new Code(access, utf8(name), utf8(descriptor), parameterSlots);
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int codeName = utf8("Code");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); //Interfaces
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.write(out, codeName);
+            }
+            out.writeShort(0); //Attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A branch target. Branches to it are written as placeholders and patched once it is placed.
+     */
+    static final class Label {
+        private int offset = -1;
+        private final List<Integer> references = new ArrayList<>();
+    }
+
+    /**
+     * The bytecode of one method. Tracks the operand stack depth as instructions are
+     * added, which is exact because every branch this writer sees leaves the stack empty.
+     */
+    final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        private Code(int access, int name, int descriptor, int parameterSlots) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = parameterSlots;
+        }
+
+        private void push(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            bytes.write(value);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        //An instruction without operands that changes the stack depth by delta
+        void op(int opcode, int delta) {
+            u1(opcode);
+            push(delta);
+        }
+
+        void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                int index = integer(value);
+                if (index <= 0xff) {
+                    u1(LDC);
+                    u1(index);
+                } else {
+                    u1(LDC_W);
+                    u2(index);
+                }
+            }
+            push(1);
+        }
+
+        private void local(int opcode, int index) {
+            maxLocals = Math.max(maxLocals, index + 1);
+            if (index > 0xff) {
+                u1(WIDE);
+                u1(opcode);
+                u2(index);
+            } else {
+                u1(opcode);
+                u1(index);
+            }
+        }
+
+        void iload(int index) {
+            local(ILOAD, index);
+            push(1);
+        }
+
+        void istore(int index) {
+            local(ISTORE, index);
+            push(-1);
+        }
+
+        void aload(int index) {
+            local(ALOAD, index);
+            push(1);
+        }
+
+        void astore(int index) {
+            local(ASTORE, index);
+            push(-1);
+        }
+
+        //Replaces the length on the stack with a new array of elements of a primitive type, such as T_INT
+        void newarray(int type) {
+            u1(NEWARRAY);
+            u1(type);
+        }
+
+        void getstatic(String owner, String name, String descriptor) {
+            u1(GETSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            push(1);
+        }
+
+        void putstatic(String owner, String name, String descriptor) {
+            u1(PUTSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            push(-1);
+        }
+
+        //Invokes a static method taking arguments ints and returning one value unless it is void
+        void invokestatic(String owner, String name, String descriptor, int arguments, boolean returnsValue) {
+            u1(INVOKESTATIC);
+            u2(methodRef(owner, name, descriptor));
+            push(-arguments + (returnsValue ? 1 : 0));
+        }
+
+        //goto or a conditional branch; conditional branches pop their one or two operands
+        void branch(int opcode, Label target) {
+            int operands = opcode == GOTO ? 0 : opcode >= IF_ICMPEQ ? 2 : 1;
+            push(-operands);
+            target.references.add(bytes.size());
+            u1(opcode);
+            u2(0);
+        }
+
+        void mark(Label label) {
+            label.offset = bytes.size();
+        }
+
+        private void write(DataOutputStream out, int codeName) throws IOException {
+            byte[] code = bytes.toByteArray();
+            if (code.length > 0xffff) {
+                throw new IllegalStateException("Method code is larger than 64KB.");
+            }
+            for (Label label : labels) {
+                if (label.offset < 0 && !label.references.isEmpty()) {
+                    throw new IllegalStateException("Branch to a label that was never placed.");
+                }
+                for (int at : label.references) {
+                    int offset = label.offset - at;
+                    if (offset > Short.MAX_VALUE || offset < Short.MIN_VALUE) {
+                        throw new IllegalStateException("Branch offset out of range: " + offset);
+                    }
+                    code[at + 1] = (byte) (offset >> 8);
+                    code[at + 2] = (byte) offset;
+                }
+            }
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); //Exception table
+            out.writeShort(0); //Attributes
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Evaluates arithmetic, logic and comparisons whose operands are all constants, and
+ * replaces the result register with the constant everywhere it is used.
+ *
+ * Folding follows the backends' 32-bit two's complement semantics. Division and
+ * remainder by zero are left alone so they still fail at run time, and only registers
+ * with a single definition are replaced; slots that are stored to more than once never
+ * qualify.
+ */
+public final class ConstantFolding implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "constfold";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Map<IrValue, Integer> definitions = countDefinitions(function);
+        boolean changed = false;
+        boolean folded = true;
+        //A fold can make a later instruction foldable, so go until nothing changes
+        while (folded) {
+            folded = false;
+            for (IrBlock block : function.getBlocks()) {
+                Iterator<IrInstruction> it = block.getInstructions().iterator();
+                while (it.hasNext()) {
+                    IrInstruction instruction = it.next();
+                    if (!instruction.getOpcode().isBinary() || definitions.get(instruction.getResult()) != 1) {
+                        continue;
+                    }
+                    IrValue value = fold(instruction);
+                    if (value != null) {
+                        it.remove();
+                        function.replaceUses(instruction.getResult(), value);
+                        folded = true;
+                    }
+                }
+            }
+            changed |= folded;
+        }
+        return changed;
+    }
+
+    static Map<IrValue, Integer> countDefinitions(IrFunction function) {
+        Map<IrValue, Integer> definitions = new HashMap<>();
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            definitions.merge(parameter.getRegister(), 1, Integer::sum);
+        }
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getResult() != null) {
+                    definitions.merge(instruction.getResult(), 1, Integer::sum);
+                } else if (instruction.getOpcode() == IrOpcode.STORE) {
+                    definitions.merge(instruction.getOperand(1), 1, Integer::sum);
+                }
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * The constant a binary instruction computes, or null if its operands are not both
+     * constants or it cannot be folded safely.
+     */
+    static IrValue.Constant fold(IrInstruction instruction) {
+        if (!(instruction.getOperand(0) instanceof IrValue.Constant left)
+                || !(instruction.getOperand(1) instanceof IrValue.Constant right)) {
+            return null;
+        }
+        IrType type = instruction.getType();
+        if (type != IrType.I32 && type != IrType.I1) {
+            return null;
+        }
+        int a = (int) left.getValue();
+        int b = (int) right.getValue();
+        IrOpcode opcode = instruction.getOpcode();
+        if (opcode.isCompare()) {
+            boolean result = switch (opcode) {
+                case ICMP_EQ -> a == b;
+                case ICMP_NE -> a != b;
+                case ICMP_SLT -> a < b;
+                case ICMP_SLE -> a <= b;
+                case ICMP_SGT -> a > b;
+                default -> a >= b;
+            };
+            return result ? IrValue.Constant.TRUE : IrValue.Constant.FALSE;
+        }
+        if ((opcode == IrOpcode.SDIV || opcode == IrOpcode.SREM) && b == 0) {
+            return null;
+        }
+        int result = switch (opcode) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            case SDIV -> a / b;
+            case SREM -> a % b;
+            case AND -> a & b;
+            case OR -> a | b;
+            case XOR -> a ^ b;
+            default -> throw new IllegalArgumentException("Unsupported instruction: " + opcode.getMnemonic());
+        };
+        if (type == IrType.I1) {
+            return (result & 1) != 0 ? IrValue.Constant.TRUE : IrValue.Constant.FALSE;
+        }
+        return IrValue.constant(result);
+    }
+}
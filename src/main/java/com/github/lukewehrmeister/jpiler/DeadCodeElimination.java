@@ -0,0 +1,65 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deletes instructions whose result is never used and that have no other effect: loads,
+ * element loads, allocas, arithmetic and comparisons. An element load's bounds check is
+ * an instruction of its own, and stays. Division and remainder stay unless the divisor is
+ * a non-zero constant, since removing them would remove a division by zero.
+ *
+ * A slot counts as used by its stores, so a slot that is written but never read survives
+ * this pass along with its stores.
+ */
+public final class DeadCodeElimination implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        boolean changed = false;
+        boolean removed = true;
+        //Deleting an instruction can leave its operands unused in turn
+        while (removed) {
+            Map<IrValue, Integer> uses = countUses(function);
+            removed = false;
+            for (IrBlock block : function.getBlocks()) {
+                removed |= block.getInstructions().removeIf(instruction -> instruction.getResult() != null
+                        && !uses.containsKey(instruction.getResult()) && isRemovable(instruction));
+            }
+            changed |= removed;
+        }
+        return changed;
+    }
+
+    static Map<IrValue, Integer> countUses(IrFunction function) {
+        Map<IrValue, Integer> uses = new HashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                for (IrValue operand : instruction.getOperands()) {
+                    if (!operand.isConstant()) {
+                        uses.merge(operand, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return uses;
+    }
+
+    private static boolean isRemovable(IrInstruction instruction) {
+        return switch (instruction.getOpcode()) {
+            case ALLOCA, LOAD, LOAD_ELEMENT -> true;
+            case SDIV, SREM -> instruction.getOperand(1) instanceof IrValue.Constant divisor && divisor.getValue() != 0;
+            default -> instruction.getOpcode().isBinary();
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes stores no load can observe. A store to a slot is dead when the slot is not
+ * live after it, whether it is overwritten first or never read again; {@link Liveness}
+ * already treats slots this way. Globals stay visible after the function returns, so a
+ * store to one only goes when a later store in the same block overwrites it with no
+ * load of it, or call that might load it, in between.
+ *
+ * Slots used other than as the pointer of a load or store keep all their stores.
+ */
+public final class DeadStoreElimination implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "dse";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Set<IrValue> slots = StackSlotColoring.candidates(function).keySet();
+        if (slots.isEmpty() && !storesGlobals(function)) {
+            return false;
+        }
+        Liveness liveness = analyses.get(AnalysisManager.Analysis.LIVENESS, function);
+        Set<IrInstruction> dead = new HashSet<>();
+        for (IrBlock block : function.getBlocks()) {
+            Set<IrValue> live = new HashSet<>(liveness.getLiveOut(block));
+            Set<IrValue> overwritten = new HashSet<>();
+            List<IrInstruction> instructions = liveness.getInstructions(block);
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                IrInstruction instruction = instructions.get(i);
+                if (instruction.getOpcode() == IrOpcode.STORE) {
+                    IrValue pointer = instruction.getOperand(1);
+                    boolean unread = slots.contains(pointer) ? !live.remove(pointer)
+                            : pointer instanceof IrValue.Global && !overwritten.add(pointer);
+                    if (unread) {
+                        dead.add(instruction);
+                    }
+                } else if (instruction.getOpcode() == IrOpcode.LOAD) {
+                    IrValue pointer = instruction.getOperand(0);
+                    live.add(pointer);
+                    if (!slots.contains(pointer) && !(pointer instanceof IrValue.Global)) {
+                        //A pointer loaded from memory could be any of them
+                        overwritten.clear();
+                    }
+                    overwritten.remove(pointer);
+                } else if (instruction.getOpcode() == IrOpcode.CALL) {
+                    overwritten.clear();
+                }
+            }
+        }
+        boolean changed = false;
+        for (IrBlock block : function.getBlocks()) {
+            changed |= block.getInstructions().removeIf(dead::contains);
+        }
+        return changed;
+    }
+
+    private static boolean storesGlobals(IrFunction function) {
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1) instanceof IrValue.Global) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,465 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.*;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+/**
+ * Serialized DFA caches for JavaSubsetLexer and JavaSubsetParser.
+ *
+ * ANTLR builds its prediction DFAs lazily, so every new JVM starts with them empty and
+ * sends the first few thousand tokens of a compile through full ATN simulation. The build
+ * runs {@link #main} over a training corpus and writes the DFAs it ends up with into the
+ * jar as {@value #RESOURCE}; {@link #loadBundled()} puts them back at startup.
+ *
+ * States are restored with their full ATN configurations, not just their edges, so a
+ * restored DFA behaves exactly like a trained one: input the corpus did not cover simply
+ * grows it from where training stopped. A cache written for a different grammar is
+ * recognized by the serialized ATNs' hashes and ignored.
+ */
+public final class DfaCache {
+    static final String RESOURCE = "dfa-cache.bin";
+
+    private static final int MAGIC = 0x4A444641; //"JDFA"
+    private static final int VERSION = 1;
+
+    private static final byte EMPTY_CONTEXT = 0;
+    private static final byte SINGLETON_CONTEXT = 1;
+    private static final byte ARRAY_CONTEXT = 2;
+
+    private DfaCache() {
+    }
+
+    /**
+     * Build-time trainer: lexes and parses every corpus file, then writes the DFAs.
+     * Usage: DfaCache <output-file> <corpus-file-or-dir>...
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DfaCache <output-file> <corpus-file-or-dir>...");
+            System.exit(1);
+        }
+        int files = 0;
+        for (int i = 1; i < args.length; i++) {
+            List<Path> sources;
+            try (Stream<Path> walk = Files.walk(Paths.get(args[i]))) {
+                sources = walk.filter(p -> p.toString().endsWith(".java")).sorted().toList();
+            }
+            for (Path source : sources) {
+                train(Files.readString(source));
+                files++;
+            }
+        }
+        Path output = Paths.get(args[0]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            write(out);
+        }
+        System.out.printf("DFA cache: %d lexer and %d parser states from %d files, %d bytes -> %s%n",
+                countStates(JavaSubsetLexer._decisionToDFA), countStates(JavaSubsetParser._decisionToDFA),
+                files, Files.size(output), output);
+    }
+
+    /**
+     * Runs the lexer and parser over code so their shared DFAs learn from it.
+     */
+    static void train(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        lexer.removeErrorListeners();
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        parser.compilationUnit();
+    }
+
+    /**
+     * Loads the cache bundled with the compiler, if there is one for this grammar.
+     * A missing, stale or unreadable cache only costs the warm-up it would have saved.
+     */
+    public static boolean loadBundled() {
+        try (InputStream in = DfaCache.class.getResourceAsStream(RESOURCE)) {
+            return in != null && read(new BufferedInputStream(in));
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    static int countStates(DFA[] dfas) {
+        int states = 0;
+        for (DFA dfa : dfas) {
+            states += dfa.states.size();
+        }
+        return states;
+    }
+
+    // =====================================================================================
+    //                                        Writing
+    // =====================================================================================
+
+    static void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(JavaSubsetLexer._serializedATN.hashCode());
+        out.writeInt(JavaSubsetParser._serializedATN.hashCode());
+        writeDfas(out, JavaSubsetLexer._ATN, JavaSubsetLexer._decisionToDFA, true);
+        writeDfas(out, JavaSubsetParser._ATN, JavaSubsetParser._decisionToDFA, false);
+        out.flush();
+    }
+
+    private static void writeDfas(DataOutputStream out, ATN atn, DFA[] dfas, boolean lexer) throws IOException {
+        //Prediction contexts form a DAG shared between configurations; write each node once, parents first
+        Map<PredictionContext, Integer> contextIds = new IdentityHashMap<>();
+        List<PredictionContext> contexts = new ArrayList<>();
+        for (DFA dfa : dfas) {
+            if (dfa.isPrecedenceDfa()) {
+                throw new IllegalStateException("Precedence DFAs are not supported (decision " + dfa.decision + ").");
+            }
+            for (DFAState state : dfa.states.keySet()) {
+                for (ATNConfig config : state.configs) {
+                    collectContext(config.context, contextIds, contexts);
+                }
+            }
+        }
+        out.writeInt(contexts.size());
+        for (PredictionContext context : contexts) {
+            if (context instanceof EmptyPredictionContext) {
+                out.writeByte(EMPTY_CONTEXT);
+            } else if (context instanceof SingletonPredictionContext singleton) {
+                out.writeByte(SINGLETON_CONTEXT);
+                out.writeInt(contextId(singleton.parent, contextIds));
+                out.writeInt(singleton.returnState);
+            } else {
+                ArrayPredictionContext array = (ArrayPredictionContext) context;
+                out.writeByte(ARRAY_CONTEXT);
+                out.writeInt(array.size());
+                for (int i = 0; i < array.size(); i++) {
+                    out.writeInt(contextId(array.parents[i], contextIds));
+                    out.writeInt(array.returnStates[i]);
+                }
+            }
+        }
+
+        out.writeInt(dfas.length);
+        for (DFA dfa : dfas) {
+            List<DFAState> states = new ArrayList<>(dfa.states.keySet());
+            states.sort(Comparator.comparingInt(s -> s.stateNumber));
+            out.writeInt(states.size());
+            for (DFAState state : states) {
+                writeState(out, atn, state, contextIds, lexer);
+            }
+            for (DFAState state : states) {
+                writeEdges(out, state);
+            }
+            out.writeInt(dfa.s0 == null ? -1 : dfa.s0.stateNumber);
+        }
+    }
+
+    private static void collectContext(PredictionContext context, Map<PredictionContext, Integer> ids,
+                                       List<PredictionContext> order) {
+        if (context == null || ids.containsKey(context)) {
+            return;
+        }
+        for (int i = 0; i < context.size(); i++) {
+            collectContext(context.getParent(i), ids, order);
+        }
+        ids.put(context, order.size());
+        order.add(context);
+    }
+
+    private static int contextId(PredictionContext context, Map<PredictionContext, Integer> ids) {
+        return context == null ? -1 : ids.get(context);
+    }
+
+    private static void writeState(DataOutputStream out, ATN atn, DFAState state,
+                                   Map<PredictionContext, Integer> contextIds, boolean lexer) throws IOException {
+        if (state.predicates != null) {
+            throw new IllegalStateException("Semantic predicates are not supported.");
+        }
+        out.writeInt(state.stateNumber);
+        out.writeBoolean(state.isAcceptState);
+        out.writeBoolean(state.requiresFullContext);
+        out.writeInt(state.prediction);
+        writeActions(out, atn, state.lexerActionExecutor);
+
+        ATNConfigSet configs = state.configs;
+        out.writeBoolean(configs.fullCtx);
+        out.writeInt(configs.uniqueAlt);
+        out.writeInt(configs.size());
+        for (ATNConfig config : configs) {
+            if (config.semanticContext != SemanticContext.Empty.Instance) {
+                throw new IllegalStateException("Semantic predicates are not supported.");
+            }
+            out.writeInt(config.state.stateNumber);
+            out.writeInt(config.alt);
+            out.writeInt(contextIds.get(config.context));
+            out.writeInt(config.reachesIntoOuterContext);
+            if (lexer) {
+                LexerATNConfig lexerConfig = (LexerATNConfig) config;
+                out.writeBoolean(lexerConfig.hasPassedThroughNonGreedyDecision());
+                writeActions(out, atn, lexerConfig.getLexerActionExecutor());
+            }
+        }
+    }
+
+    private static void writeActions(DataOutputStream out, ATN atn, LexerActionExecutor executor) throws IOException {
+        if (executor == null) {
+            out.writeInt(-1);
+            return;
+        }
+        LexerAction[] actions = executor.getLexerActions();
+        out.writeInt(actions.length);
+        for (LexerAction action : actions) {
+            int offset = -1;
+            if (action instanceof LexerIndexedCustomAction indexed) {
+                offset = indexed.getOffset();
+                action = indexed.getAction();
+            }
+            out.writeInt(offset);
+            out.writeInt(Arrays.asList(atn.lexerActions).indexOf(action));
+        }
+    }
+
+    private static void writeEdges(DataOutputStream out, DFAState state) throws IOException {
+        if (state.edges == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(state.edges.length);
+        int count = 0;
+        for (DFAState target : state.edges) {
+            if (target != null) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int i = 0; i < state.edges.length; i++) {
+            DFAState target = state.edges[i];
+            if (target != null) {
+                out.writeInt(i);
+                out.writeInt(target == ATNSimulator.ERROR ? -1 : target.stateNumber);
+            }
+        }
+    }
+
+    // =====================================================================================
+    //                                        Reading
+    // =====================================================================================
+
+    /**
+     * Replaces the lexer and parser DFAs with the ones in the stream.
+     * Returns false, leaving them untouched, if the stream was written for another grammar.
+     */
+    static boolean read(InputStream stream) throws IOException {
+        CacheInput in = new CacheInput(stream.readAllBytes());
+        if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != JavaSubsetLexer._serializedATN.hashCode()
+                || in.readInt() != JavaSubsetParser._serializedATN.hashCode()) {
+            return false;
+        }
+        DFA[] lexerDfas = readDfas(in, JavaSubsetLexer._ATN, true);
+        DFA[] parserDfas = readDfas(in, JavaSubsetParser._ATN, false);
+        //Only publish once both sections decoded; the simulators read these arrays directly
+        System.arraycopy(lexerDfas, 0, JavaSubsetLexer._decisionToDFA, 0, lexerDfas.length);
+        System.arraycopy(parserDfas, 0, JavaSubsetParser._decisionToDFA, 0, parserDfas.length);
+        return true;
+    }
+
+    private static DFA[] readDfas(CacheInput in, ATN atn, boolean lexer) throws IOException {
+        PredictionContext[] contexts = new PredictionContext[in.readInt()];
+        for (int i = 0; i < contexts.length; i++) {
+            byte kind = in.readByte();
+            if (kind == EMPTY_CONTEXT) {
+                contexts[i] = EmptyPredictionContext.Instance;
+            } else if (kind == SINGLETON_CONTEXT) {
+                PredictionContext parent = context(contexts, in.readInt());
+                contexts[i] = SingletonPredictionContext.create(parent, in.readInt());
+            } else if (kind == ARRAY_CONTEXT) {
+                int size = in.readInt();
+                PredictionContext[] parents = new PredictionContext[size];
+                int[] returnStates = new int[size];
+                for (int j = 0; j < size; j++) {
+                    parents[j] = context(contexts, in.readInt());
+                    returnStates[j] = in.readInt();
+                }
+                contexts[i] = new ArrayPredictionContext(parents, returnStates);
+            } else {
+                throw new IOException("Corrupt DFA cache: unknown context kind " + kind + ".");
+            }
+        }
+
+        int decisions = in.readInt();
+        if (decisions != atn.getNumberOfDecisions()) {
+            throw new IOException("Corrupt DFA cache: expected " + atn.getNumberOfDecisions() + " decisions.");
+        }
+        DFA[] dfas = new DFA[decisions];
+        for (int d = 0; d < decisions; d++) {
+            DFA dfa = new DFA(atn.getDecisionState(d), d);
+            DFAState[] states = new DFAState[in.readInt()];
+            Map<Integer, DFAState> byNumber = new HashMap<>();
+            for (int i = 0; i < states.length; i++) {
+                states[i] = readState(in, atn, contexts, lexer);
+                byNumber.put(states[i].stateNumber, states[i]);
+                dfa.states.put(states[i], states[i]);
+            }
+            for (DFAState state : states) {
+                readEdges(in, state, byNumber);
+            }
+            int s0 = in.readInt();
+            dfa.s0 = s0 < 0 ? null : byNumber.get(s0);
+            dfas[d] = dfa;
+        }
+        return dfas;
+    }
+
+    private static PredictionContext context(PredictionContext[] contexts, int id) {
+        return id < 0 ? null : contexts[id];
+    }
+
+    private static DFAState readState(CacheInput in, ATN atn, PredictionContext[] contexts, boolean lexer)
+            throws IOException {
+        int stateNumber = in.readInt();
+        boolean accept = in.readBoolean();
+        boolean fullContext = in.readBoolean();
+        int prediction = in.readInt();
+        LexerActionExecutor executor = readActions(in, atn);
+
+        boolean fullCtx = in.readBoolean();
+        int uniqueAlt = in.readInt();
+        int count = in.readInt();
+        ATNConfigSet configs = lexer ? new OrderedATNConfigSet() : new RestoredConfigSet(fullCtx);
+        for (int i = 0; i < count; i++) {
+            ATNState state = atn.states.get(in.readInt());
+            int alt = in.readInt();
+            PredictionContext context = contexts[in.readInt()];
+            int outerContext = in.readInt();
+            ATNConfig config;
+            if (lexer) {
+                boolean nonGreedy = in.readBoolean();
+                LexerATNConfig lexerConfig = new LexerATNConfig(state, alt, context, readActions(in, atn));
+                if (nonGreedy) {
+                    lexerConfig = new LexerATNConfig(new LexerATNConfig(lexerConfig, nonGreedyState(atn)), state);
+                }
+                config = lexerConfig;
+            } else {
+                config = new ATNConfig(state, alt, context, SemanticContext.Empty.Instance);
+            }
+            config.reachesIntoOuterContext = outerContext;
+            //The configurations were already distinct when written, so skip add()'s hashing and merging
+            configs.configs.add(config);
+            configs.dipsIntoOuterContext |= config.getOuterContextDepth() > 0;
+        }
+        configs.uniqueAlt = uniqueAlt;
+        if (fullContext) {
+            ((RestoredConfigSet) configs).restoreConflictingAlts();
+        }
+        configs.setReadonly(true);
+
+        DFAState state = new DFAState(configs);
+        state.stateNumber = stateNumber;
+        state.isAcceptState = accept;
+        state.requiresFullContext = fullContext;
+        state.prediction = prediction;
+        state.lexerActionExecutor = executor;
+        return state;
+    }
+
+    /**
+     * LexerATNConfig only records passing through a non-greedy decision when it is derived
+     * through one, so restoring that flag means deriving the configuration through such a state.
+     */
+    private static DecisionState nonGreedyState(ATN atn) throws IOException {
+        for (ATNState state : atn.states) {
+            if (state instanceof DecisionState decision && decision.nonGreedy) {
+                return decision;
+            }
+        }
+        throw new IOException("Corrupt DFA cache: the lexer has no non-greedy decision.");
+    }
+
+    private static LexerActionExecutor readActions(CacheInput in, ATN atn) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        LexerAction[] actions = new LexerAction[count];
+        for (int i = 0; i < count; i++) {
+            int offset = in.readInt();
+            LexerAction action = atn.lexerActions[in.readInt()];
+            actions[i] = offset < 0 ? action : new LexerIndexedCustomAction(offset, action);
+        }
+        return new LexerActionExecutor(actions);
+    }
+
+    private static void readEdges(CacheInput in, DFAState state, Map<Integer, DFAState> byNumber)
+            throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return;
+        }
+        state.edges = new DFAState[length];
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int symbol = in.readInt();
+            int target = in.readInt();
+            state.edges[symbol] = target < 0 ? ATNSimulator.ERROR : byNumber.get(target);
+        }
+    }
+
+    /**
+     * Big-endian reader over the whole cache. The cache is read once per JVM, mostly before
+     * the JIT has compiled anything, where DataInputStream's layered reads cost several times more.
+     */
+    private static final class CacheInput {
+        private final byte[] bytes;
+        private int pos;
+
+        CacheInput(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        byte readByte() throws IOException {
+            if (pos >= bytes.length) {
+                throw new EOFException("Truncated DFA cache.");
+            }
+            return bytes[pos++];
+        }
+
+        boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        int readInt() throws IOException {
+            if (pos + 4 > bytes.length) {
+                throw new EOFException("Truncated DFA cache.");
+            }
+            int value = (bytes[pos] & 0xFF) << 24 | (bytes[pos + 1] & 0xFF) << 16
+                    | (bytes[pos + 2] & 0xFF) << 8 | (bytes[pos + 3] & 0xFF);
+            pos += 4;
+            return value;
+        }
+    }
+
+    /**
+     * A parser configuration set whose SLL conflict, which only the simulator may set, is
+     * recomputed the way ParserATNSimulator derives it when it first builds the state.
+     */
+    private static final class RestoredConfigSet extends ATNConfigSet {
+        RestoredConfigSet(boolean fullCtx) {
+            super(fullCtx);
+        }
+
+        void restoreConflictingAlts() {
+            conflictingAlts = PredictionMode.getAlts(PredictionMode.getConflictingAltSubsets(this));
+        }
+    }
+}
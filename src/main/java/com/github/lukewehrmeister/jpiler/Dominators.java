@@ -0,0 +1,74 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dominator tree of a function's reachable blocks, computed with the iterative
+ * algorithm of Cooper, Harvey and Kennedy over the CFG's reverse postorder.
+ */
+public final class Dominators {
+    private final Cfg cfg;
+    private final Map<IrBlock, IrBlock> idom = new HashMap<>();
+
+    public Dominators(Cfg cfg) {
+        this.cfg = cfg;
+        List<IrBlock> order = cfg.getReversePostOrder();
+        if (order.isEmpty()) {
+            return;
+        }
+        IrBlock entry = order.get(0);
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.size(); i++) {
+                IrBlock block = order.get(i);
+                IrBlock dominator = null;
+                for (IrBlock predecessor : cfg.getPredecessors(block)) {
+                    if (idom.containsKey(predecessor)) {
+                        dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                    }
+                }
+                if (dominator != idom.get(block)) {
+                    idom.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private IrBlock intersect(IrBlock a, IrBlock b) {
+        while (a != b) {
+            while (cfg.getOrder(a) > cfg.getOrder(b)) {
+                a = idom.get(a);
+            }
+            while (cfg.getOrder(b) > cfg.getOrder(a)) {
+                b = idom.get(b);
+            }
+        }
+        return a;
+    }
+
+    //The closest strict dominator of a block, or null for the entry and unreachable blocks
+    public IrBlock getImmediateDominator(IrBlock block) {
+        IrBlock dominator = idom.get(block);
+        return dominator == block ? null : dominator;
+    }
+
+    //Whether every path from the entry to b goes through a; a block dominates itself
+    public boolean dominates(IrBlock a, IrBlock b) {
+        if (!idom.containsKey(a) || !idom.containsKey(b)) {
+            return false;
+        }
+        for (IrBlock block = b; ; block = idom.get(block)) {
+            if (block == a) {
+                return true;
+            }
+            if (idom.get(block) == block) {
+                return false;
+            }
+        }
+    }
+}
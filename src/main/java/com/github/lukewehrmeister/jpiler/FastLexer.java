@@ -0,0 +1,404 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.Arrays;
+
+/**
+ * Hand-written replacement for JavaSubsetLexer that JavaSubsetParser consumes unchanged.
+ *
+ * It produces the same tokens as the generated lexer, including INVALID_IDENTIFIER and
+ * INVALID_CHAR, with the same types, offsets, lines and columns; FastLexerTest checks
+ * this token for token. Instead of simulating the ATN it dispatches on a per-character
+ * class table and follows JavaSubset.g4's rules directly: the longest match wins and
+ * ties go to the rule defined first. Keywords are reclassified through {@link Keywords},
+ * exactly as the generated lexer's emit() does.
+ *
+ * With an {@link InterningTokenFactory}, identifiers are interned straight from the
+ * lexer's code-point copy of the input rather than read back through the CharStream.
+ */
+public class FastLexer implements TokenSource {
+    private static final byte OTHER = 0;
+    private static final byte LETTER = 1;
+    private static final byte DIGIT = 2;
+    private static final byte SPACE = 3;
+    private static final byte PUNCT = 4;
+
+    //Character class of every ASCII code point; anything beyond ASCII is OTHER
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = LETTER;
+            CLASSES[c - 'a' + 'A'] = LETTER;
+        }
+        CLASSES['_'] = LETTER;
+        for (int c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        for (char c : " \t\r\n".toCharArray()) {
+            CLASSES[c] = SPACE;
+        }
+        for (char c : "\"'+-*/%<>=!&|.()[]{};,".toCharArray()) {
+            CLASSES[c] = PUNCT;
+        }
+    }
+
+    private final CharStream input;
+    //Built on first use, so the constructor does not let this escape
+    private Pair<TokenSource, CharStream> source;
+    private final int[] text;
+    private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+
+    private int pos;
+    private int line = 1;
+    private int column;
+
+    public FastLexer(CharStream input) {
+        this.input = input;
+        this.text = codePoints(input);
+    }
+
+    //The input's code points, copied once without going through an IntStream
+    private static int[] codePoints(CharStream input) {
+        if (input.size() == 0) {
+            return new int[0];
+        }
+        String chars = input.getText(Interval.of(0, input.size() - 1));
+        int[] points = new int[input.size()];
+        int n = 0;
+        for (int i = 0; i < chars.length(); n++) {
+            int c = chars.codePointAt(i);
+            points[n] = c;
+            i += Character.charCount(c);
+        }
+        return n == points.length ? points : Arrays.copyOf(points, n);
+    }
+
+    private Pair<TokenSource, CharStream> source() {
+        if (source == null) {
+            source = new Pair<>(this, input);
+        }
+        return source;
+    }
+
+    private static byte classOf(int c) {
+        return c < 128 ? CLASSES[c] : OTHER;
+    }
+
+    private int at(int index) {
+        return index < text.length ? text[index] : -1;
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            if (pos >= text.length) {
+                input.seek(pos);
+                return factory.create(source(), Token.EOF, null, Token.DEFAULT_CHANNEL, pos, pos - 1, line, column);
+            }
+            int start = pos;
+            int c = text[pos];
+            int type;
+            int end;
+            switch (classOf(c)) {
+                case SPACE -> {
+                    end = start + 1;
+                    while (end < text.length && classOf(text[end]) == SPACE) {
+                        end++;
+                    }
+                    advance(end);
+                    continue;
+                }
+                case LETTER -> {
+                    end = identifierEnd(start);
+                    int exponent = exponentEnd(start);
+                    if (exponent > end) {
+                        type = JavaSubsetLexer.EXPONENT_PART;
+                        end = exponent;
+                    } else {
+                        type = Keywords.lookup(text, start, end);
+                        if (type == JavaSubsetLexer.STRING && Keywords.followedByArgs(text, end)) {
+                            type = JavaSubsetLexer.STRINGARGS;
+                            end += Keywords.argsSuffixLength();
+                        }
+                    }
+                }
+                case DIGIT -> {
+                    long match = number(start);
+                    type = (int) (match >>> 32);
+                    end = (int) match;
+                }
+                case PUNCT -> {
+                    long match = punctuation(start, c);
+                    if (match < 0) {
+                        advance((int) -match);
+                        continue;
+                    }
+                    type = (int) (match >>> 32);
+                    end = (int) match;
+                }
+                default -> {
+                    type = JavaSubsetLexer.INVALID_CHAR;
+                    end = start + 1;
+                }
+            }
+            int tokenLine = line;
+            int tokenColumn = column;
+            advance(end);
+            //Token factories may read the token back relative to the stream position, as with the generated lexer
+            input.seek(end);
+            if (type == JavaSubsetLexer.IDENTIFIER && factory instanceof InterningTokenFactory interning) {
+                return interning.createIdentifier(source(), text, start, end, tokenLine, tokenColumn);
+            }
+            return factory.create(source(), type, null, Token.DEFAULT_CHANNEL, start, end - 1, tokenLine, tokenColumn);
+        }
+    }
+
+    private static long match(int type, int end) {
+        return ((long) type << 32) | end;
+    }
+
+    //Moves to end, keeping line and column as ANTLR counts them: only '\n' starts a line
+    private void advance(int end) {
+        for (int i = pos; i < end; i++) {
+            if (text[i] == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        pos = end;
+    }
+
+    private int identifierEnd(int start) {
+        int end = start + 1;
+        while (end < text.length) {
+            byte cls = classOf(text[end]);
+            if (cls != LETTER && cls != DIGIT) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    private int digitsEnd(int from) {
+        int end = from;
+        while (end < text.length && classOf(text[end]) == DIGIT) {
+            end++;
+        }
+        return end;
+    }
+
+    //EXPONENT_PART : [eE] [+-]? [0-9]+ ; returns start when it does not match
+    private int exponentEnd(int start) {
+        int c = text[start];
+        if (c != 'e' && c != 'E') {
+            return start;
+        }
+        int i = start + 1;
+        if (at(i) == '+' || at(i) == '-') {
+            i++;
+        }
+        int end = digitsEnd(i);
+        return end > i ? end : start;
+    }
+
+    /**
+     * Every rule that can start with a digit, compared by match length in grammar order:
+     * HEX_LITERAL, BINARY_LITERAL, INVALID_IDENTIFIER, DECIMAL_LITERAL, OCTAL_LITERAL, FLOAT_LITERAL.
+     */
+    private long number(int start) {
+        int bestType = JavaSubsetLexer.DECIMAL_LITERAL;
+        int bestEnd = text[start] == '0' ? start + 1 : digitsEnd(start);
+
+        if (text[start] == '0') {
+            int x = at(start + 1);
+            if (x == 'x' || x == 'X') {
+                int end = start + 2;
+                while (end < text.length && Character.digit(text[end], 16) >= 0 && text[end] < 128) {
+                    end++;
+                }
+                if (end > start + 2) {
+                    bestType = JavaSubsetLexer.HEX_LITERAL;
+                    bestEnd = end;
+                }
+            } else if (x == 'b' || x == 'B') {
+                int end = start + 2;
+                while (at(end) == '0' || at(end) == '1') {
+                    end++;
+                }
+                if (end > start + 2) {
+                    bestType = JavaSubsetLexer.BINARY_LITERAL;
+                    bestEnd = end;
+                }
+            }
+        }
+
+        int digits = digitsEnd(start);
+        if (digits < text.length && classOf(text[digits]) == LETTER) {
+            int end = identifierEnd(digits);
+            if (end > bestEnd) {
+                bestType = JavaSubsetLexer.INVALID_IDENTIFIER;
+                bestEnd = end;
+            }
+        }
+
+        if (text[start] == '0') {
+            int end = start + 1;
+            while (at(end) >= '0' && at(end) <= '7') {
+                end++;
+            }
+            if (end > start + 1 && end > bestEnd) {
+                bestType = JavaSubsetLexer.OCTAL_LITERAL;
+                bestEnd = end;
+            }
+        }
+
+        if (at(digits) == '.') {
+            int end = digitsEnd(digits + 1);
+            int e = at(end);
+            if (e == 'e' || e == 'E') {
+                int i = end + 1;
+                if (at(i) == '+' || at(i) == '-') {
+                    i++;
+                }
+                int exponent = digitsEnd(i);
+                if (exponent > i) {
+                    end = exponent;
+                }
+            }
+            int suffix = at(end);
+            if (suffix == 'f' || suffix == 'F' || suffix == 'd' || suffix == 'D') {
+                end++;
+            }
+            if (end > bestEnd) {
+                bestType = JavaSubsetLexer.FLOAT_LITERAL;
+                bestEnd = end;
+            }
+        }
+        return match(bestType, bestEnd);
+    }
+
+    /**
+     * Operators, separators, literals and comments. Returns the token as match(type, end),
+     * or -end for a skipped comment.
+     */
+    private long punctuation(int start, int c) {
+        int next = at(start + 1);
+        switch (c) {
+            case '"': {
+                for (int i = start + 1; i < text.length; i++) {
+                    if (text[i] == '"') {
+                        return match(JavaSubsetLexer.STRINGLIT, i + 1);
+                    } else if (text[i] == '\\') {
+                        i++;
+                    }
+                }
+                return match(JavaSubsetLexer.INVALID_CHAR, start + 1);
+            }
+            case '\'': {
+                int close = next == '\\' ? start + 3 : start + 2;
+                if (next != '\'' && next != -1 && close < text.length && text[close] == '\'') {
+                    return match(JavaSubsetLexer.CHARACTER, close + 1);
+                }
+                return match(JavaSubsetLexer.INVALID_CHAR, start + 1);
+            }
+            case '+':
+                return next == '+' ? match(JavaSubsetLexer.INCREMENT, start + 2)
+                        : next == '=' ? match(JavaSubsetLexer.PLUSEQ, start + 2)
+                        : match(JavaSubsetLexer.PLUS, start + 1);
+            case '-':
+                return next == '-' ? match(JavaSubsetLexer.DECREMENT, start + 2)
+                        : next == '=' ? match(JavaSubsetLexer.MINEQ, start + 2)
+                        : match(JavaSubsetLexer.MINUS, start + 1);
+            case '*':
+                return next == '=' ? match(JavaSubsetLexer.TIMESEQ, start + 2) : match(JavaSubsetLexer.TIMES, start + 1);
+            case '/': {
+                if (next == '/') {
+                    int end = start + 2;
+                    while (end < text.length && text[end] != '\r' && text[end] != '\n') {
+                        end++;
+                    }
+                    return -end;
+                }
+                if (next == '*') {
+                    for (int i = start + 2; i + 1 < text.length; i++) {
+                        if (text[i] == '*' && text[i + 1] == '/') {
+                            return -(i + 2);
+                        }
+                    }
+                }
+                return next == '=' ? match(JavaSubsetLexer.DIVEQ, start + 2) : match(JavaSubsetLexer.DIVIDE, start + 1);
+            }
+            case '%':
+                return next == '=' ? match(JavaSubsetLexer.MODULEQ, start + 2) : match(JavaSubsetLexer.MODULUS, start + 1);
+            case '<':
+                return next == '=' ? match(JavaSubsetLexer.LE, start + 2) : match(JavaSubsetLexer.LT, start + 1);
+            case '>':
+                return next == '=' ? match(JavaSubsetLexer.GE, start + 2) : match(JavaSubsetLexer.GT, start + 1);
+            case '=':
+                return next == '=' ? match(JavaSubsetLexer.EQ, start + 2) : match(JavaSubsetLexer.ASSIGN, start + 1);
+            case '!':
+                return next == '=' ? match(JavaSubsetLexer.NEQ, start + 2) : match(JavaSubsetLexer.NOT, start + 1);
+            case '&':
+                return next == '&' ? match(JavaSubsetLexer.AND, start + 2) : match(JavaSubsetLexer.INVALID_CHAR, start + 1);
+            case '|':
+                return next == '|' ? match(JavaSubsetLexer.OR, start + 2) : match(JavaSubsetLexer.INVALID_CHAR, start + 1);
+            case '.':
+                return match(JavaSubsetLexer.DOT, start + 1);
+            case '(':
+                return match(JavaSubsetLexer.LPAREN, start + 1);
+            case ')':
+                return match(JavaSubsetLexer.RPAREN, start + 1);
+            case '[':
+                return match(JavaSubsetLexer.LBRACKET, start + 1);
+            case ']':
+                return match(JavaSubsetLexer.RBRACKET, start + 1);
+            case '{':
+                return match(JavaSubsetLexer.LBRACE, start + 1);
+            case '}':
+                return match(JavaSubsetLexer.RBRACE, start + 1);
+            case ';':
+                return match(JavaSubsetLexer.SEMI, start + 1);
+            case ',':
+                return match(JavaSubsetLexer.COMMA, start + 1);
+            default:
+                return match(JavaSubsetLexer.INVALID_CHAR, start + 1);
+        }
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return column;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public TokenFactory<? extends Token> getTokenFactory() {
+        return factory;
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * A transformation that rewrites one IR function in place.
+ *
+ * The PassManager may run one pass object over several functions at once on different
+ * threads, so a pass keeps its working state in locals rather than fields.
+ */
+public interface FunctionPass extends Pass {
+    //Returns whether the function changed
+    boolean run(IrFunction function, AnalysisManager analyses);
+
+    //Runs the pass with analyses computed just for this run
+    default boolean run(IrFunction function) {
+        return run(function, new AnalysisManager());
+    }
+}
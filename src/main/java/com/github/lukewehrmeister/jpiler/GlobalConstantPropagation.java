@@ -0,0 +1,92 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns fields that are never reassigned into constants: when the only store to a global
+ * is a constant in its class's {@code <clinit>}, every load of it in the class's other
+ * functions is replaced by that constant.
+ *
+ * The global and its store stay, since the field is still visible from outside the module.
+ * Loads inside {@code <clinit>} are left alone, as they may run before the store, and so
+ * is everything when {@code <clinit>} makes calls, since a function it calls may too.
+ */
+public final class GlobalConstantPropagation implements ModulePass {
+
+    @Override
+    public String getName() {
+        return "globalconst";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrModule module, AnalysisManager analyses) {
+        boolean changed = false;
+        for (IrClass irClass : module.getClasses()) {
+            for (IrGlobal global : irClass.getGlobals()) {
+                IrValue.Constant value = constantValue(irClass, global);
+                if (value == null) {
+                    continue;
+                }
+                for (IrFunction function : irClass.getFunctions()) {
+                    if (!function.getName().equals(IrClass.INITIALIZER)) {
+                        changed |= replaceLoads(function, global, value);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    //The value of a global that is only ever assigned one constant by the initializer, or null
+    private static IrValue.Constant constantValue(IrClass irClass, IrGlobal global) {
+        List<IrInstruction> stores = new ArrayList<>();
+        boolean inInitializer = true;
+        boolean initializerCalls = false;
+        for (IrFunction function : irClass.getFunctions()) {
+            boolean initializer = function.getName().equals(IrClass.INITIALIZER);
+            for (IrBlock block : function.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1).equals(global.getPointer())) {
+                        stores.add(instruction);
+                        inInitializer &= initializer;
+                    }
+                    initializerCalls |= initializer && instruction.getOpcode() == IrOpcode.CALL;
+                }
+            }
+        }
+        if (stores.isEmpty()) {
+            return IrValue.constant(0);
+        }
+        if (stores.size() == 1 && inInitializer && !initializerCalls
+                && stores.get(0).getOperand(0) instanceof IrValue.Constant constant) {
+            return constant;
+        }
+        return null;
+    }
+
+    private static boolean replaceLoads(IrFunction function, IrGlobal global, IrValue.Constant value) {
+        Map<IrValue, Integer> definitions = ConstantFolding.countDefinitions(function);
+        boolean changed = false;
+        for (IrBlock block : function.getBlocks()) {
+            Iterator<IrInstruction> it = block.getInstructions().iterator();
+            while (it.hasNext()) {
+                IrInstruction instruction = it.next();
+                if (instruction.getOpcode() == IrOpcode.LOAD && instruction.getOperand(0).equals(global.getPointer())
+                        && definitions.get(instruction.getResult()) == 1) {
+                    it.remove();
+                    function.replaceUses(instruction.getResult(), value);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+}
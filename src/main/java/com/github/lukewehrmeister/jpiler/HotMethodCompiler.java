@@ -0,0 +1,113 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * The second tier of {@link IrInterpreter}: compiles hot functions to JVM bytecode on a
+ * background thread and loads each as a hidden class, so the interpreter keeps running
+ * while HotSpot takes over the generated code.
+ *
+ * Compiled code shares the interpreter's globals array, so both tiers see the same state.
+ * A compiled function calls itself directly; its other calls go back through
+ * {@link #call} to the callee the interpreter supplied, which runs the callee's own
+ * compiled code once it has some.
+ * Closing stops the compile thread once the compile it is running, if any, is done;
+ * functions submitted after that stay interpreted.
+ */
+final class HotMethodCompiler implements AutoCloseable {
+    private static final String PREFIX = HotMethodCompiler.class.getPackageName().replace('.', '/') + "/Tier2$";
+    private static final MethodType ENTRY = MethodType.methodType(int.class, int[].class);
+
+    private final int[] globals;
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread compiler = new Thread(runnable, "jpiler-tier-up");
+        compiler.setDaemon(true);
+        return compiler;
+    });
+    private final AtomicInteger compiled = new AtomicInteger();
+
+    //A function compiled code calls other than itself
+    interface Callee {
+        int call(int[] arguments);
+    }
+
+    HotMethodCompiler(int[] globals) {
+        this.globals = globals;
+    }
+
+    //What compiled code invokes for a call outside its class; callee is an entry of its CALLEES
+    static int call(Object callee, int[] arguments) {
+        return ((Callee) callee).call(arguments);
+    }
+
+    /**
+     * Queues a function for compilation. Once loaded, install receives its entry point,
+     * of type (int[])int: the arguments in, the result (0 for void) out. A function the
+     * backend cannot compile is never installed and stays interpreted. callees gives what
+     * each function it calls by name, other than itself, resolves to.
+     */
+    void submit(String className, IrFunction function, ToIntFunction<String> globalSlots,
+                Function<String, Callee> callees, Consumer<MethodHandle> install) {
+        try {
+            thread.execute(() -> {
+                MethodHandle entry;
+                try {
+                    byte[] bytes = JvmBackend.compileStandalone(PREFIX + className + "$" + function.getName(), function,
+                            globalSlots);
+                    entry = load(bytes, JvmBackend.callees(function).stream().map(callees).toArray());
+                } catch (IllegalArgumentException | ReflectiveOperationException e) {
+                    return;
+                }
+                install.accept(entry);
+                compiled.incrementAndGet();
+            });
+        } catch (RejectedExecutionException e) {
+            //Closed: the function stays interpreted
+        }
+    }
+
+    private MethodHandle load(byte[] bytes, Object[] callees) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        Class<?> hidden = lookup.lookupClass();
+        try {
+            lookup.findStaticSetter(hidden, JvmBackend.GLOBALS, int[].class).invoke(globals);
+            lookup.findStaticSetter(hidden, JvmBackend.CALLEES, Object[].class).invoke(callees);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not link " + hidden.getName(), e);
+        }
+        return lookup.findStatic(hidden, "invoke", ENTRY);
+    }
+
+    //Blocks until everything submitted so far has been compiled or given up on
+    void awaitIdle() throws InterruptedException {
+        if (thread.isShutdown()) {
+            thread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            return;
+        }
+        try {
+            thread.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    int getCompiledCount() {
+        return compiled.get();
+    }
+
+    @Override
+    public void close() {
+        thread.shutdown();
+    }
+}
@@ -2,14 +2,39 @@ package com.github.lukewehrmeister.jpiler;
 
 import java.util.*;
 
-import org.antlr.v4.runtime.ParserRuleContext;
-
-public class IRGeneratorVisitor extends JavaSubsetBaseVisitor<String> {
-    private StringBuilder ir = new StringBuilder();
+/**
+ * Lowers the AST into an {@link IrModule}. Every local lives in an alloca'd slot that
+ * is loaded and stored around each use; fields become globals, and their initializers
+ * run in the class's {@code <clinit>} function.
+ *
+ * All of a method's slots are allocated in its entry block, however deeply their scope
+ * is nested, so a loop body never grows the stack. A variable that reuses the name of
+ * another local in the same method, by shadowing it or in a sibling scope, gets its own
+ * slot named {@code name.1}, {@code name.2} and so on. Registers are equal by name and
+ * temporaries are named {@code t0}, {@code t1} and so on, so a local or parameter with a
+ * name of that form always gets a suffix, starting from {@code name.1}.
+ *
+ * An array is an array alloca of its constant length. Its declaration runs a loop that
+ * stores 0 to every element, with a counter in a slot of its own, {@code name.zero},
+ * since the IR leaves elements undefined until stored. Every element access is preceded
+ * by a boundscheck, after the index and any stored value are evaluated, as in Java.
+ */
+public class IRGeneratorVisitor implements AstVisitor<IrValue> {
+    private final IrModule module = new IrModule();
     private int tempVarCounter = 0;
     private int labelCounter = 0;
-    private final Map<ParserRuleContext, SymbolTable> tableForContext;
-    private final Map<ParserRuleContext, Symbol> symbolMap;
+    private final SemanticAnnotations annotations;
+    private final NameTable names;
+    private Symbol currentMethod;
+    private IrClass currentClass;
+    private SymbolTable classScope;
+    private IrFunction initializer;
+    private IrFunction currentFunction;
+    private IrBlock currentBlock;
+    //Slots of the current method's locals, and where the next one goes in its entry block
+    private final Map<Symbol, IrValue.Register> localSlots = new HashMap<>();
+    private final Map<String, Integer> slotNameCounts = new HashMap<>();
+    private int allocaEnd;
 
 
 
@@ -18,55 +43,100 @@ public class IRGeneratorVisitor extends JavaSubsetBaseVisitor<String> {
     //                                               Helper Functions
     // ===============================================================================================================
     
-    public IRGeneratorVisitor(Map<ParserRuleContext, SymbolTable> tableForContext,
-                       Map<ParserRuleContext, Symbol> symbolMap) {
-        this.tableForContext = tableForContext;
-        this.symbolMap = symbolMap;
-    }
-
-    //java type to LLVM type
-    private static final Map<String, String> typeMapping = Map.of(
-        "byte", "i8",
-        "short", "i16",
-        "int", "i32",
-        "long", "i64",
-        "float", "float",
-        "double", "double",
-        "boolean", "i1",
-        "char", "i8",
-        "String", "i8*",
-        "void", "void" 
-    );
-
-    private void emitAllocasForScope(ParserRuleContext ctx) {
-        SymbolTable scope = tableForContext.get(ctx);
-        if (scope != null) {
-            for (Symbol symbol : scope.getSymbols().values()) {
-                if (symbol.getKind() == SymbolKind.VARIABLE) {
-                    String llvmType = mapJavaTypeToLLVM(symbol.getType().name().toLowerCase());
-                    ir.append("  %" + symbol.getName() + " = alloca " + llvmType + "\n");
+    public IRGeneratorVisitor(SemanticAnnotations annotations, NameTable names) {
+        this.annotations = annotations;
+        this.names = names;
+    }
+
+    private void emit(IrInstruction instruction) {
+        currentBlock.add(instruction);
+    }
+
+    private void startBlock(IrBlock block) {
+        currentFunction.getBlocks().add(block);
+        currentBlock = block;
+    }
+
+    //Allocates the scope's variables in the entry block, after the slots allocated so far
+    private void emitAllocasForScope(Ast.Node node) {
+        SymbolTable scope = annotations.getTable(node);
+        if (scope == null) {
+            return;
+        }
+        IrBlock entry = currentFunction.getBlocks().get(0);
+        for (Symbol symbol : scope.getSymbols()) {
+            if (symbol.getKind() == SymbolKind.VARIABLE) {
+                String name = names.name(symbol.getNameId());
+                int earlier = slotNameCounts.merge(name, 1, Integer::sum) - 1;
+                if (earlier == 0 && isTemporaryName(name)) {
+                    earlier = slotNameCounts.merge(name, 1, Integer::sum) - 1;
+                }
+                IrValue.Register slot = IrValue.register(earlier == 0 ? name : name + "." + earlier);
+                localSlots.put(symbol, slot);
+                if (symbol.getType().isArray()) {
+                    entry.getInstructions().add(allocaEnd++,
+                            IrInstruction.arrayAlloca(slot, elementTypeOf(symbol), symbol.getArrayLength()));
+                    entry.getInstructions().add(allocaEnd++, IrInstruction.alloca(zeroCounterOf(slot), IrType.I32));
+                } else {
+                    entry.getInstructions().add(allocaEnd++, IrInstruction.alloca(slot, typeOf(symbol)));
                 }
             }
         }
-    }    
+    }
+
+    private static IrType typeOf(Symbol symbol) {
+        return IrType.of(symbol.getType());
+    }
+
+    private static IrType elementTypeOf(Symbol symbol) {
+        return IrType.of(symbol.getType().getElementType());
+    }
+
+    //Slot of the loop counter that zeroes an array
+    private static IrValue.Register zeroCounterOf(IrValue.Register array) {
+        return IrValue.register(array.getName() + ".zero");
+    }
 
-    private String mapJavaTypeToLLVM(String javaType) {
-        if (!typeMapping.containsKey(javaType)) {
-            throw new IllegalArgumentException("Unknown Java type: " + javaType);
+    private boolean isField(Symbol symbol) {
+        return classScope != null && classScope.get(symbol.getNameId()) == symbol;
+    }
+
+    //Pointer operand for a variable; parameters live in the .addr slot made on method entry
+    private IrValue slotOf(Symbol symbol) {
+        String name = names.name(symbol.getNameId());
+        if (isField(symbol)) {
+            return IrValue.global(name);
+        }
+        IrValue.Register local = localSlots.get(symbol);
+        if (local != null) {
+            return local;
         }
-        return typeMapping.get(javaType);
+        return IrValue.register(symbol.getKind() == SymbolKind.PARAMETER ? parameterName(name) + ".addr" : name);
+    }
+
+    //Whether a source name could be mistaken for one of getUniqueTempVar's
+    private static boolean isTemporaryName(String name) {
+        return name.length() > 1 && name.charAt(0) == 't' && name.chars().skip(1).allMatch(c -> c >= '0' && c <= '9');
+    }
+
+    private static String parameterName(String name) {
+        return isTemporaryName(name) ? name + ".1" : name;
+    }
+
+    public IrModule getModule() {
+        return module;
     }
 
     public String getIR() {
-        return ir.toString();
+        return IrPrinter.print(module);
     }
 
-    private String getUniqueTempVar() {
-        return "%t" + (tempVarCounter++);
+    private IrValue.Register getUniqueTempVar() {
+        return IrValue.register("t" + (tempVarCounter++));
     }
 
-    private String getUniqueLabel(String base) {
-        return base + "." + (labelCounter++);
+    private IrBlock getUniqueLabel(String base) {
+        return new IrBlock(base + "." + (labelCounter++));
     }
 
     // ===============================================================================================================
@@ -74,536 +144,485 @@ public class IRGeneratorVisitor extends JavaSubsetBaseVisitor<String> {
     // ===============================================================================================================
 
     @Override
-    public String visitCompilationUnit(JavaSubsetParser.CompilationUnitContext ctx) {
-        for (JavaSubsetParser.ClassDeclarationContext classDecl : ctx.classDeclaration()) {
+    public IrValue visitCompilationUnit(Ast.CompilationUnit node) {
+        for (Ast.ClassDeclaration classDecl : node.getClasses()) {
             visit(classDecl);
         }
         return null;
     }
 
     @Override
-    public String visitClassDeclaration(JavaSubsetParser.ClassDeclarationContext ctx) {
-        String className = ctx.IDENTIFIER().getText();
-        ir.append("; === Class " + className + " ===\n");
-        
-        visit(ctx.classBody()); 
+    public IrValue visitClassDeclaration(Ast.ClassDeclaration node) {
+        String className = names.name(annotations.getSymbol(node).getNameId());
+        currentClass = new IrClass(className);
+        classScope = annotations.getTable(node);
+        module.getClasses().add(currentClass);
+
+        for (Ast.Node member : node.getMembers()) {
+            visit(member);
+        }
+
+        if (initializer != null) {
+            initializer.getBlocks().get(initializer.getBlocks().size() - 1).add(IrInstruction.ret(IrType.VOID, null));
+            currentClass.getFunctions().add(initializer);
+            initializer = null;
+        }
+        classScope = null;
         return null;
-    }    
-    
+    }
+
     @Override
-    public String visitClassBody(JavaSubsetParser.ClassBodyContext ctx) {
-        for (JavaSubsetParser.ClassBodyDeclarationContext decl : ctx.classBodyDeclaration()) {
-            visit(decl);
+    public IrValue visitMethodDeclaration(Ast.MethodDeclaration node) {
+        Symbol methodSymbol = annotations.getSymbol(node);
+        String methodName = names.name(methodSymbol.getNameId());
+
+        List<IrFunction.Parameter> paramList = new ArrayList<>();
+        for (Ast.Parameter param : node.getParameters()) {
+            Symbol paramSymbol = annotations.getSymbol(param);
+            if (paramSymbol == null) continue;
+
+            String name = parameterName(names.name(paramSymbol.getNameId()));
+            paramList.add(new IrFunction.Parameter(IrValue.register(name), typeOf(paramSymbol)));
         }
+
+        currentFunction = new IrFunction(methodName, typeOf(methodSymbol), paramList);
+        currentClass.getFunctions().add(currentFunction);
+        startBlock(new IrBlock(null));
+
+        for (IrFunction.Parameter param : paramList) {
+            IrValue.Register slot = IrValue.register(param.getRegister().getName() + ".addr");
+            emit(IrInstruction.alloca(slot, param.getType()));
+            emit(IrInstruction.store(param.getType(), param.getRegister(), slot));
+        }
+        localSlots.clear();
+        slotNameCounts.clear();
+        allocaEnd = currentBlock.getInstructions().size();
+
+        Symbol enclosing = currentMethod;
+        currentMethod = methodSymbol;
+        visit(node.getBody());
+        currentMethod = enclosing;
+        currentFunction = null;
+        currentBlock = null;
         return null;
     }
 
+    //Parameters are emitted by their MethodDeclaration
     @Override
-    public String visitClassBodyDeclaration(JavaSubsetParser.ClassBodyDeclarationContext ctx) {
-        if (ctx.methodDeclaration() != null) {
-            visit(ctx.methodDeclaration());
-        } else if (ctx.variableDeclaration() != null) {
-            visit(ctx.variableDeclaration());
-        }
+    public IrValue visitParameter(Ast.Parameter node) {
         return null;
     }
-    
+
     @Override
-    public String visitStatement(JavaSubsetParser.StatementContext ctx) {
-        if (ctx.variableDeclaration() != null) {
-            visit(ctx.variableDeclaration());
-        } else if (ctx.assignment() != null) {
-            visit(ctx.assignment());
-        } else if (ctx.expressionStatement() != null) {
-            visit(ctx.expressionStatement());
-        } else if (ctx.controlStructure() != null) {
-            visit(ctx.controlStructure());
-        } else if (ctx.block() != null) {
-            visit(ctx.block());
-        } else if (ctx.returnStatement() != null) {
-            visit(ctx.returnStatement());
+    public IrValue visitVariableDeclaration(Ast.VariableDeclaration node) {
+        for (Ast.Declarator declarator : node.getDeclarators()) {
+            visit(declarator);
         }
         return null;
     }
-    
+
     @Override
-    public String visitMethodDeclaration(JavaSubsetParser.MethodDeclarationContext ctx) {
-        Symbol methodSymbol = symbolMap.get(ctx);
-        String methodName = methodSymbol.getName();
-        String returnType = mapJavaTypeToLLVM(methodSymbol.getType().name().toLowerCase());
-
-        List<String> paramList = new ArrayList<>();
-        if (ctx.parameterList() != null) {
-            for (JavaSubsetParser.ParameterContext paramCtx : ctx.parameterList().parameter()) {
-                String paramName = paramCtx.IDENTIFIER().getText();
-                SemanticType paramType = SemanticType.fromString(paramCtx.type().getText());
-                String llvmType = mapJavaTypeToLLVM(paramType.name().toLowerCase());
-                paramList.add(llvmType + " %" + paramName);
-            }
+    public IrValue visitDeclarator(Ast.Declarator node) {
+        Symbol symbol = annotations.getSymbol(node);
+        if (symbol == null) {
+            return null;
         }
-    
-        ir.append("define " + returnType + " @" + methodName + "(" + String.join(", ", paramList) + ") {\n");
-    
-        if (ctx.parameterList() != null) {
-            for (JavaSubsetParser.ParameterContext paramCtx : ctx.parameterList().parameter()) {
-                Symbol paramSymbol = symbolMap.get(paramCtx);
-                if (paramSymbol == null) continue;
-    
-                String llvmType = mapJavaTypeToLLVM(paramSymbol.getType().name().toLowerCase());
-                String name = paramSymbol.getName();
-                ir.append("  %" + name + ".addr = alloca " + llvmType + "\n");
-                ir.append("  store " + llvmType + " %" + name + ", " + llvmType + "* %" + name + ".addr\n");
-            }
+        boolean field = currentFunction == null;
+        if (field) {
+            currentClass.getGlobals().add(new IrGlobal(IrValue.global(names.name(symbol.getNameId())), typeOf(symbol)));
         }
-    
-        visit(ctx.block());
-        ir.append("}\n\n");
-        return null;
-    }    
-    
-    @Override
-    public String visitVariableDeclarationExpression(JavaSubsetParser.VariableDeclarationExpressionContext ctx) {
-        for (JavaSubsetParser.VariableDeclaratorContext declCtx : ctx.variableDeclarators().variableDeclarator()) {
-            Symbol symbol = symbolMap.get(declCtx);
-            if (symbol == null) continue;
-    
-            if (declCtx.expression() != null) {
-                String rhs = visit(declCtx.expression());
-                String llvmType = mapJavaTypeToLLVM(symbol.getType().name().toLowerCase());
-                ir.append("  store " + llvmType + " " + rhs + ", " + llvmType + "* %" + symbol.getName() + "\n");
-            }
+        if (node.getInitializer() == null) {
+            return null;
         }
-    
-        return null;
-    }    
-    
-    @Override
-    public String visitVariableDeclaration(JavaSubsetParser.VariableDeclarationContext ctx) {
-        for (JavaSubsetParser.VariableDeclaratorContext declCtx : ctx.variableDeclarators().variableDeclarator()) {
-            Symbol symbol = symbolMap.get(declCtx);
-            if (symbol == null) continue;
-    
-            if (declCtx.expression() != null) {
-                String rhs = visit(declCtx.expression());
-                String llvmType = mapJavaTypeToLLVM(symbol.getType().name().toLowerCase());
-                ir.append("  store " + llvmType + " " + rhs + ", " + llvmType + "* %" + symbol.getName() + "\n");
+        if (symbol.getType().isArray()) {
+            emitZeroing(symbol);
+            return null;
+        }
+
+        //Field initializers run in <clinit>, which is built up as the class's fields are visited
+        if (field) {
+            if (initializer == null) {
+                initializer = new IrFunction(IrClass.INITIALIZER, IrType.VOID, new ArrayList<>());
+                initializer.getBlocks().add(new IrBlock(null));
             }
+            currentFunction = initializer;
+            currentBlock = initializer.getBlocks().get(initializer.getBlocks().size() - 1);
+        }
+        IrValue rhs = visit(node.getInitializer());
+        emit(IrInstruction.store(typeOf(symbol), rhs, slotOf(symbol)));
+        if (field) {
+            currentFunction = null;
+            currentBlock = null;
         }
-    
         return null;
     }
-     
+
+    //for (counter = 0; counter < length; counter++) array[counter] = 0, where the index needs no check
+    private void emitZeroing(Symbol symbol) {
+        IrValue.Register array = localSlots.get(symbol);
+        IrValue.Register counter = zeroCounterOf(array);
+        IrBlock condLabel = getUniqueLabel("zero.cond");
+        IrBlock bodyLabel = getUniqueLabel("zero.body");
+        IrBlock endLabel = getUniqueLabel("zero.end");
+
+        emit(IrInstruction.store(IrType.I32, IrValue.constant(0), counter));
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(condLabel);
+        IrValue.Register index = getUniqueTempVar();
+        emit(IrInstruction.load(index, IrType.I32, counter));
+        IrValue.Register inRange = getUniqueTempVar();
+        emit(IrInstruction.binary(IrOpcode.ICMP_SLT, inRange, IrType.I32, index, IrValue.constant(symbol.getArrayLength())));
+        emit(IrInstruction.condBr(inRange, bodyLabel, endLabel));
+
+        startBlock(bodyLabel);
+        emit(IrInstruction.storeElement(elementTypeOf(symbol), IrValue.constant(0), array, index));
+        IrValue.Register next = getUniqueTempVar();
+        emit(IrInstruction.binary(IrOpcode.ADD, next, IrType.I32, index, IrValue.constant(1)));
+        emit(IrInstruction.store(IrType.I32, next, counter));
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(endLabel);
+    }
+
     @Override
-    public String visitAssignment(JavaSubsetParser.AssignmentContext ctx) {
-        String varName = ctx.IDENTIFIER().getText();
-        Symbol symbol = symbolMap.get(ctx);
-    
+    public IrValue visitAssignment(Ast.Assignment node) {
+        Symbol symbol = annotations.getSymbol(node);
+
         if (symbol == null) {
-            System.err.println("Undeclared variable: " + varName);
-            return "0";
+            System.err.println("Undeclared variable: " + names.name(node.getNameId()));
+            return IrValue.constant(0);
         }
-    
-        String llvmType = mapJavaTypeToLLVM(symbol.getType().name().toLowerCase());
-        String rhsValue = visit(ctx.expression());
-    
-        ir.append("  store " + llvmType + " " + rhsValue + ", " + llvmType + "* %" + varName + "\n");
-    
+
+        if (node.getIndex() != null) {
+            IrValue index = visit(node.getIndex());
+            IrValue value = visit(node.getValue());
+            emit(IrInstruction.boundsCheck(index, symbol.getArrayLength()));
+            emit(IrInstruction.storeElement(elementTypeOf(symbol), value, slotOf(symbol), index));
+            return value;
+        }
+
+        IrValue rhsValue = visit(node.getValue());
+
+        emit(IrInstruction.store(typeOf(symbol), rhsValue, slotOf(symbol)));
+
         return rhsValue;
     }
-    
+
     @Override
-    public String visitExpression(JavaSubsetParser.ExpressionContext ctx) {
-        if (ctx.assignment() != null) {
-            return visit(ctx.assignment());
-        } else {
-            return visit(ctx.logicalOrExpression());
-        }
+    public IrValue visitExpressionStatement(Ast.ExpressionStatement node) {
+        visit(node.getExpression());
+        return null;
     }
-    
+
     @Override
-    public String visitLogicalOrExpression(JavaSubsetParser.LogicalOrExpressionContext ctx) {
-        String result = visit(ctx.logicalAndExpression(0));
-        for (int i = 1; i < ctx.logicalAndExpression().size(); i++) {
-            String right = visit(ctx.logicalAndExpression(i));
-            String temp = getUniqueTempVar();
-            ir.append("  " + temp + " = or i1 " + result + ", " + right + "\n");
-            result = temp;
-        }
-        return result;
+    public IrValue visitBinary(Ast.Binary node) {
+        IrValue left = visit(node.getLeft());
+        IrValue right = visit(node.getRight());
+        IrOpcode instruction = switch (node.getOperator()) {
+            case OR -> IrOpcode.OR;
+            case AND -> IrOpcode.AND;
+            case EQ -> IrOpcode.ICMP_EQ;
+            case NE -> IrOpcode.ICMP_NE;
+            case LT -> IrOpcode.ICMP_SLT;
+            case LE -> IrOpcode.ICMP_SLE;
+            case GT -> IrOpcode.ICMP_SGT;
+            case GE -> IrOpcode.ICMP_SGE;
+            case ADD -> IrOpcode.ADD;
+            case SUB -> IrOpcode.SUB;
+            case MUL -> IrOpcode.MUL;
+            case DIV -> IrOpcode.SDIV;
+            case REM -> IrOpcode.SREM;
+        };
+        IrType type = instruction == IrOpcode.OR || instruction == IrOpcode.AND ? IrType.I1 : IrType.I32;
+        IrValue.Register temp = getUniqueTempVar();
+        emit(IrInstruction.binary(instruction, temp, type, left, right));
+        return temp;
     }
-    
+
     @Override
-    public String visitLogicalAndExpression(JavaSubsetParser.LogicalAndExpressionContext ctx) {
-        String result = visit(ctx.equalityExpression(0));
-        for (int i = 1; i < ctx.equalityExpression().size(); i++) {
-            String right = visit(ctx.equalityExpression(i));
-            String temp = getUniqueTempVar();
-            ir.append("  " + temp + " = and i1 " + result + ", " + right + "\n");
-            result = temp;
+    public IrValue visitUnary(Ast.Unary node) {
+        IrValue operand = visit(node.getOperand());
+        if (node.getOperator() == Ast.UnaryOperator.PLUS) {
+            return operand;
         }
-        return result;
+
+        IrValue.Register temp = getUniqueTempVar();
+        switch (node.getOperator()) {
+            case NEGATE -> emit(IrInstruction.binary(IrOpcode.SUB, temp, IrType.I32, IrValue.constant(0), operand));
+            case NOT -> emit(IrInstruction.binary(IrOpcode.XOR, temp, IrType.I1, operand, IrValue.Constant.TRUE));
+            case PRE_INCREMENT, PRE_DECREMENT -> {
+                IrOpcode llvmOp = node.getOperator() == Ast.UnaryOperator.PRE_INCREMENT ? IrOpcode.ADD : IrOpcode.SUB;
+                emit(IrInstruction.binary(llvmOp, temp, IrType.I32, operand, IrValue.constant(1)));
+                Symbol symbol = annotations.getSymbol(node.getOperand());
+                if (symbol == null) {
+                    throw new RuntimeException("Prefix operators can only be applied to variables.");
+                }
+                emit(IrInstruction.store(IrType.I32, temp, slotOf(symbol)));
+            }
+            default -> throw new RuntimeException("Unknown unary op: " + node.getOperator().getSymbol());
+        }
+        return temp;
     }
-    
+
+
     @Override
-    public String visitEqualityExpression(JavaSubsetParser.EqualityExpressionContext ctx) {
-        String left = visit(ctx.relationalExpression(0));
-        for (int i = 1; i < ctx.relationalExpression().size(); i++) {
-            String right = visit(ctx.relationalExpression(i));
-            String op = ctx.equalityOperator(i - 1).getText();
-            String temp = getUniqueTempVar();
-            String llvmOp = op.equals("==") ? "icmp eq" : "icmp ne";
-            ir.append("  " + temp + " = " + llvmOp + " i32 " + left + ", " + right + "\n");
-            left = temp;
-        }
-        return left;
+    public IrValue visitPostfix(Ast.Postfix node) {
+        Symbol symbol = annotations.getSymbol(node.getOperand());
+        if (symbol == null) {
+            throw new RuntimeException("Postfix operators can only be applied to variables.");
+        }
+
+        IrValue varPtr = slotOf(symbol);
+
+        IrValue.Register original = getUniqueTempVar();
+        emit(IrInstruction.load(original, IrType.I32, varPtr));
+
+        IrValue currentValue = original;
+        for (int step : node.getSteps()) {
+            IrValue.Register updated = getUniqueTempVar();
+            IrOpcode llvmOp = step > 0 ? IrOpcode.ADD : IrOpcode.SUB;
+            emit(IrInstruction.binary(llvmOp, updated, IrType.I32, currentValue, IrValue.constant(1)));
+            emit(IrInstruction.store(IrType.I32, updated, varPtr));
+            currentValue = updated;
+        }
+
+        return original;
     }
-    
+
     @Override
-    public String visitRelationalExpression(JavaSubsetParser.RelationalExpressionContext ctx) {
-        String left = visit(ctx.additiveExpression(0));
-        for (int i = 1; i < ctx.additiveExpression().size(); i++) {
-            String right = visit(ctx.additiveExpression(i));
-            String op = ctx.relationalOperator(i - 1).getText();
-            String llvmOp = switch (op) {
-                case "<" -> "icmp slt";
-                case "<=" -> "icmp sle";
-                case ">" -> "icmp sgt";
-                case ">=" -> "icmp sge";
-                default -> throw new RuntimeException("Unknown relational operator: " + op);
-            };
-            String temp = getUniqueTempVar();
-            ir.append("  " + temp + " = " + llvmOp + " i32 " + left + ", " + right + "\n");
-            left = temp;
-        }
-        return left;
+    public IrValue visitName(Ast.Name node) {
+        Symbol symbol = annotations.getSymbol(node);
+        if (symbol == null) {
+            System.err.println("Undeclared variable " + names.name(node.getNameId()));
+            return IrValue.constant(0);
+        }
+
+        IrValue.Register result = getUniqueTempVar();
+        emit(IrInstruction.load(result, typeOf(symbol), slotOf(symbol)));
+        return result;
     }
-    
+
+    //Arguments are evaluated left to right; a void call's value is never read
     @Override
-    public String visitAdditiveExpression(JavaSubsetParser.AdditiveExpressionContext ctx) {
-        String result = visit(ctx.multiplicativeExpression(0));
-        for (int i = 1; i < ctx.multiplicativeExpression().size(); i++) {
-            String right = visit(ctx.multiplicativeExpression(i));
-            String op = ctx.additiveOperator(i - 1).getText();
-            String llvmOp = op.equals("+") ? "add" : "sub";
-            String temp = getUniqueTempVar();
-            ir.append("  " + temp + " = " + llvmOp + " i32 " + result + ", " + right + "\n");
-            result = temp;
+    public IrValue visitCall(Ast.Call node) {
+        Symbol method = annotations.getSymbol(node);
+        if (method == null) {
+            System.err.println("Undeclared method " + names.name(node.getNameId()));
+            return IrValue.constant(0);
         }
-        return result;
+
+        List<IrValue> arguments = new ArrayList<>();
+        for (Ast.Expression argument : node.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        List<IrType> argumentTypes = new ArrayList<>();
+        for (SemanticType type : method.getParameterTypes()) {
+            argumentTypes.add(IrType.of(type));
+        }
+        IrType returnType = typeOf(method);
+        IrValue.Register result = returnType == IrType.VOID ? null : getUniqueTempVar();
+        emit(IrInstruction.call(result, returnType, names.name(method.getNameId()), argumentTypes, arguments));
+        return result != null ? result : IrValue.constant(0);
     }
-    
+
     @Override
-    public String visitMultiplicativeExpression(JavaSubsetParser.MultiplicativeExpressionContext ctx) {
-        String result = visit(ctx.unaryExpression(0));
-        for (int i = 1; i < ctx.unaryExpression().size(); i++) {
-            String right = visit(ctx.unaryExpression(i));
-            String op = ctx.multiplicativeOperator(i - 1).getText();
-            String llvmOp = switch (op) {
-                case "*" -> "mul";
-                case "/" -> "sdiv";
-                case "%" -> "srem";
-                default -> throw new RuntimeException("Unknown operator: " + op);
-            };
-            String temp = getUniqueTempVar();
-            ir.append("  " + temp + " = " + llvmOp + " i32 " + result + ", " + right + "\n");
-            result = temp;
+    public IrValue visitArrayAccess(Ast.ArrayAccess node) {
+        Symbol symbol = annotations.getSymbol(node);
+        if (symbol == null) {
+            System.err.println("Undeclared variable " + names.name(node.getNameId()));
+            return IrValue.constant(0);
         }
+
+        IrValue index = visit(node.getIndex());
+        emit(IrInstruction.boundsCheck(index, symbol.getArrayLength()));
+        IrValue.Register result = getUniqueTempVar();
+        emit(IrInstruction.loadElement(result, elementTypeOf(symbol), slotOf(symbol), index));
         return result;
     }
-    
+
+    //Every array has a constant length
     @Override
-    public String visitUnaryExpression(JavaSubsetParser.UnaryExpressionContext ctx) {
-        if (ctx.unaryOperator() != null) {
-            String operand = visit(ctx.unaryExpression());
-            String op = ctx.unaryOperator().getText();
-            String temp = getUniqueTempVar();
-            switch (op) {
-                case "-" -> ir.append("  " + temp + " = sub i32 0, " + operand + "\n");
-                case "+" -> {
-                    return operand; 
-                }
-                case "!" -> ir.append("  " + temp + " = xor i1 " + operand + ", true" + "\n");
-                case "++" -> {
-                    ir.append("  " + temp + " = add i32 " + operand + ", 1" + "\n");
-                    return temp;
-                }
-                case "--" -> {
-                    ir.append("  " + temp + " = sub i32 " + operand + ", 1" + "\n");
-                    return temp;
-                }
-                default -> throw new RuntimeException("Unknown unary op: " + op);
-            }
-            return temp;
-        } else {
-            return visit(ctx.postfixExpression());
+    public IrValue visitArrayLength(Ast.ArrayLength node) {
+        Symbol symbol = annotations.getSymbol(node);
+        if (symbol == null) {
+            System.err.println("Undeclared variable " + names.name(node.getNameId()));
+            return IrValue.constant(0);
         }
+        return IrValue.constant(symbol.getArrayLength());
     }
-    
-    
+
+    //Creations only initialize array declarations, which lower them
     @Override
-    public String visitPostfixExpression(JavaSubsetParser.PostfixExpressionContext ctx) {
-        if (ctx.postfixOperator().isEmpty()) {
-            return visit(ctx.primaryExpression());
-        }
-    
-        if (ctx.primaryExpression().IDENTIFIER() == null) {
-            throw new RuntimeException("Postfix operators can only be applied to variables.");
-        }
-    
-        String varName = ctx.primaryExpression().IDENTIFIER().getText();
-        String varPtr = "%" + varName;
-    
-        String original = getUniqueTempVar();
-        ir.append("  " + original + " = load i32, i32* " + varPtr + "\n");
-    
-        String currentValue = original;
-        for (JavaSubsetParser.PostfixOperatorContext opCtx : ctx.postfixOperator()) {
-            String op = opCtx.getText();
-            String updated = getUniqueTempVar();
-    
-            switch (op) {
-                case "++" -> {
-                    ir.append("  " + updated + " = add i32 " + currentValue + ", 1\n");
-                    ir.append("  store i32 " + updated + ", i32* " + varPtr + "\n");
-                    currentValue = updated;
-                }
-                case "--" -> {
-                    ir.append("  " + updated + " = sub i32 " + currentValue + ", 1\n");
-                    ir.append("  store i32 " + updated + ", i32* " + varPtr + "\n");
-                    currentValue = updated;
-                }
-                default -> throw new RuntimeException("Unknown postfix operator: " + op);
-            }
-        }
-    
-        return original; 
+    public IrValue visitNewArray(Ast.NewArray node) {
+        throw new IllegalStateException("Array creation outside an array declaration.");
     }
-    
-    
-    
 
     @Override
-    public String visitPrimaryExpression(JavaSubsetParser.PrimaryExpressionContext ctx) {
-        System.out.println("IR Primary: " + ctx.getText());
-        System.out.println("  integerLiteral: " + ctx.integerLiteral());
-        System.out.println("  IDENTIFIER: " + ctx.IDENTIFIER());
-        
-        if (ctx.integerLiteral() != null) {
-            return ctx.integerLiteral().getText();
-        }
-    
-        if (ctx.STRINGLIT() != null || ctx.CHARACTER() != null || ctx.NULL_LITERAL() != null) {
-            return "0";
-        }
-    
-        if (ctx.booleanLiteral() != null) {
-            return ctx.booleanLiteral().getText().equals("true") ? "1" : "0";
-        }
-    
-        if (ctx.IDENTIFIER() != null) {
-            String varName = ctx.IDENTIFIER().getText();
-            Symbol symbol = symbolMap.get(ctx);
-            if (symbol == null) {
-                System.err.println("Undeclared variable " + varName);
-                return "0";
-            }
-    
-            String result = getUniqueTempVar();
-            String llvmType = mapJavaTypeToLLVM(symbol.getType().name().toLowerCase());String varPtr = "%" + varName;
-            if (symbol.getKind() == SymbolKind.PARAMETER) {
-                varPtr += ".addr";
-            }
-            ir.append("  " + result + " = load " + llvmType + ", " + llvmType + "* " + varPtr + "\n");
-            return result;
-        }
-    
-        if (ctx.expression() != null) {
-            return visit(ctx.expression());
-        }
-    
-        return "0"; 
+    public IrValue visitIntLiteral(Ast.IntLiteral node) {
+        return IrValue.constant(node.getValue());
     }
-    
+
     @Override
-    public String visitControlStructure(JavaSubsetParser.ControlStructureContext ctx) {
-        if (ctx.ifStatement() != null) return visit(ctx.ifStatement());
-        if (ctx.whileLoop() != null) return visit(ctx.whileLoop());
-        if (ctx.forLoop() != null) return visit(ctx.forLoop());
-        if (ctx.doWhileLoop() != null) return visit(ctx.doWhileLoop());
-        return null;
+    public IrValue visitBooleanLiteral(Ast.BooleanLiteral node) {
+        return IrValue.constant(node.getValue() ? 1 : 0);
     }
 
     @Override
-    public String visitIfStatement(JavaSubsetParser.IfStatementContext ctx) {
-        String cond = visit(ctx.expression()); 
-        String thenLabel = getUniqueLabel("then");
-        String elseLabel = ctx.ELSE() != null ? getUniqueLabel("else") : null;
-        String endLabel = getUniqueLabel("endif");
-    
+    public IrValue visitStringLiteral(Ast.StringLiteral node) {
+        return IrValue.constant(0);
+    }
+
+    @Override
+    public IrValue visitCharLiteral(Ast.CharLiteral node) {
+        return IrValue.constant(0);
+    }
+
+    @Override
+    public IrValue visitNullLiteral(Ast.NullLiteral node) {
+        return IrValue.constant(0);
+    }
+
+    @Override
+    public IrValue visitIf(Ast.If node) {
+        IrValue cond = visit(node.getCondition());
+        IrBlock thenLabel = getUniqueLabel("then");
+        IrBlock elseLabel = node.getElseBranch() != null ? getUniqueLabel("else") : null;
+        IrBlock endLabel = getUniqueLabel("endif");
+
         if (elseLabel != null) {
-            ir.append("  br i1 " + cond + ", label %" + thenLabel + ", label %" + elseLabel + "\n");
+            emit(IrInstruction.condBr(cond, thenLabel, elseLabel));
         } else {
-            ir.append("  br i1 " + cond + ", label %" + thenLabel + ", label %" + endLabel + "\n");
+            emit(IrInstruction.condBr(cond, thenLabel, endLabel));
         }
-    
-        ir.append(thenLabel + ":\n");
-        visit(ctx.block(0));
-        ir.append("  br label %" + endLabel + "\n");
-    
-        if (ctx.ELSE() != null) {
-            ir.append(elseLabel + ":\n");
-            if (ctx.ifStatement() != null) {
-                visit(ctx.ifStatement());
-            } else {
-                visit(ctx.block(1));
-            }
-            ir.append("  br label %" + endLabel + "\n");
+
+        startBlock(thenLabel);
+        visit(node.getThenBlock());
+        emit(IrInstruction.br(endLabel));
+
+        if (elseLabel != null) {
+            startBlock(elseLabel);
+            visit(node.getElseBranch());
+            emit(IrInstruction.br(endLabel));
         }
-    
-        ir.append(endLabel + ":\n");
+
+        startBlock(endLabel);
         return null;
     }
-    
+
     @Override
-    public String visitWhileLoop(JavaSubsetParser.WhileLoopContext ctx) {
-        String condLabel = getUniqueLabel("while.cond");
-        String bodyLabel = getUniqueLabel("while.body");
-        String endLabel = getUniqueLabel("while.end");
-    
-        ir.append("  br label %" + condLabel + "\n");
-    
-        ir.append(condLabel + ":\n");
-        String cond = visit(ctx.expression());
-        ir.append("  br i1 " + cond + ", label %" + bodyLabel + ", label %" + endLabel + "\n");
-    
-        ir.append(bodyLabel + ":\n");
-        visit(ctx.block());
-        ir.append("  br label %" + condLabel + "\n");
-    
-        ir.append(endLabel + ":\n");
+    public IrValue visitWhile(Ast.While node) {
+        IrBlock condLabel = getUniqueLabel("while.cond");
+        IrBlock bodyLabel = getUniqueLabel("while.body");
+        IrBlock endLabel = getUniqueLabel("while.end");
+
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(condLabel);
+        IrValue cond = visit(node.getCondition());
+        emit(IrInstruction.condBr(cond, bodyLabel, endLabel));
+
+        startBlock(bodyLabel);
+        visit(node.getBody());
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(endLabel);
         return null;
     }
-    
+
     @Override
-    public String visitDoWhileLoop(JavaSubsetParser.DoWhileLoopContext ctx) {
-        String bodyLabel = getUniqueLabel("do.body");
-        String condLabel = getUniqueLabel("do.cond");
-        String endLabel = getUniqueLabel("do.end");
-    
-        ir.append("  br label %" + bodyLabel + "\n");
-    
-        ir.append(bodyLabel + ":\n");
-        visit(ctx.block());
-        ir.append("  br label %" + condLabel + "\n");
-    
-        ir.append(condLabel + ":\n");
-        String cond = visit(ctx.expression());
-        ir.append("  br i1 " + cond + ", label %" + bodyLabel + ", label %" + endLabel + "\n");
-    
-        ir.append(endLabel + ":\n");
+    public IrValue visitDoWhile(Ast.DoWhile node) {
+        IrBlock bodyLabel = getUniqueLabel("do.body");
+        IrBlock condLabel = getUniqueLabel("do.cond");
+        IrBlock endLabel = getUniqueLabel("do.end");
+
+        emit(IrInstruction.br(bodyLabel));
+
+        startBlock(bodyLabel);
+        visit(node.getBody());
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(condLabel);
+        IrValue cond = visit(node.getCondition());
+        emit(IrInstruction.condBr(cond, bodyLabel, endLabel));
+
+        startBlock(endLabel);
         return null;
     }
-    
+
     @Override
-    public String visitForLoop(JavaSubsetParser.ForLoopContext ctx) {
-        emitAllocasForScope(ctx);
-        if (ctx.variableDeclarationExpression() != null) {
-            visit(ctx.variableDeclarationExpression());
-        } else if (ctx.assignmentExpressionList() != null) {
-            visit(ctx.assignmentExpressionList());
+    public IrValue visitFor(Ast.For node) {
+        emitAllocasForScope(node);
+        if (node.getInitDeclaration() != null) {
+            visit(node.getInitDeclaration());
         }
-    
-        String condLabel = getUniqueLabel("for.cond");
-        String bodyLabel = getUniqueLabel("for.body");
-        String updateLabel = getUniqueLabel("for.update");
-        String endLabel = getUniqueLabel("for.end");
-    
-        ir.append("  br label %" + condLabel + "\n");
-    
-        ir.append(condLabel + ":\n");
-        if (ctx.expression() != null) {
-            String cond = visit(ctx.expression());
-            ir.append("  br i1 " + cond + ", label %" + bodyLabel + ", label %" + endLabel + "\n");
-        } else {
-            ir.append("  br label %" + bodyLabel + "\n");
+        for (Ast.Assignment assignment : node.getInitAssignments()) {
+            visit(assignment);
         }
-    
-        ir.append(bodyLabel + ":\n");
-        visit(ctx.block());
-        ir.append("  br label %" + updateLabel + "\n");
-    
-        ir.append(updateLabel + ":\n");
-        if (ctx.updateExpressionList() != null) {
-            visit(ctx.updateExpressionList());
+
+        IrBlock condLabel = getUniqueLabel("for.cond");
+        IrBlock bodyLabel = getUniqueLabel("for.body");
+        IrBlock updateLabel = getUniqueLabel("for.update");
+        IrBlock endLabel = getUniqueLabel("for.end");
+
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(condLabel);
+        if (node.getCondition() != null) {
+            IrValue cond = visit(node.getCondition());
+            emit(IrInstruction.condBr(cond, bodyLabel, endLabel));
+        } else {
+            emit(IrInstruction.br(bodyLabel));
         }
-        ir.append("  br label %" + condLabel + "\n");
-    
-        ir.append(endLabel + ":\n");
-        return null;
-    }
 
-    @Override
-    public String visitAssignmentExpressionList(JavaSubsetParser.AssignmentExpressionListContext ctx) {
-        for (JavaSubsetParser.AssignmentContext a : ctx.assignment()) {
-            visit(a);
+        startBlock(bodyLabel);
+        visit(node.getBody());
+        emit(IrInstruction.br(updateLabel));
+
+        startBlock(updateLabel);
+        for (Ast.Expression update : node.getUpdates()) {
+            visit(update);
         }
+        emit(IrInstruction.br(condLabel));
+
+        startBlock(endLabel);
         return null;
     }
-    
+
     @Override
-    public String visitUpdateExpressionList(JavaSubsetParser.UpdateExpressionListContext ctx) {
-        for (JavaSubsetParser.UpdateExpressionContext e : ctx.updateExpression()) {
-            visit(e);
+    public IrValue visitBlock(Ast.Block node) {
+        emitAllocasForScope(node);
+
+        for (Ast.Statement statement : node.getStatements()) {
+            visit(statement);
         }
-        return null;
-    }
 
-    @Override
-    public String visitUpdateExpression(JavaSubsetParser.UpdateExpressionContext ctx) {
-        if (ctx.assignment() != null) return visit(ctx.assignment());
-        if (ctx.unaryExpression() != null) return visit(ctx.unaryExpression());
-        if (ctx.postfixExpression() != null) return visit(ctx.postfixExpression());
         return null;
     }
-    
+
     @Override
-    public String visitBlock(JavaSubsetParser.BlockContext ctx) {
-        emitAllocasForScope(ctx);
-    
-        for (JavaSubsetParser.StatementContext stmtCtx : ctx.statement()) {
-            visit(stmtCtx);
-        }
-    
+    public IrValue visitEmpty(Ast.Empty node) {
         return null;
     }
-    
-    
+
+
     @Override
-    public String visitReturnStatement(JavaSubsetParser.ReturnStatementContext ctx) {
-        if (ctx.expression() != null) {
-            String returnValue = visit(ctx.expression());
-    
-            ParserRuleContext methodCtx = ctx;
-            while (methodCtx != null && !(methodCtx instanceof JavaSubsetParser.MethodDeclarationContext)) {
-                methodCtx = methodCtx.getParent();
-            }
-    
-            if (methodCtx != null) {
-                Symbol methodSymbol = symbolMap.get(methodCtx);
-                if (methodSymbol != null) {
-                    String llvmType = mapJavaTypeToLLVM(methodSymbol.getType().name().toLowerCase());
-                    ir.append("  ret " + llvmType + " " + returnValue + "\n");
-                    return null;
-                }
+    public IrValue visitReturn(Ast.Return node) {
+        if (node.getValue() != null) {
+            IrValue returnValue = visit(node.getValue());
+
+            if (currentMethod != null) {
+                emit(IrInstruction.ret(typeOf(currentMethod), returnValue));
+                return null;
             }
-    
-            ir.append("  ret i32 " + returnValue + "\n");
+
+            emit(IrInstruction.ret(IrType.I32, returnValue));
         } else {
-            ir.append("  ret void\n");
+            emit(IrInstruction.ret(IrType.VOID, null));
         }
-    
+
         return null;
     }
-    
 
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,27 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * An IDENTIFIER token that carries its interned name ID. Its text is the
+ * canonical interned String, so repeated getText() calls never copy.
+ */
+public class IdentifierToken extends CommonToken {
+    private static final long serialVersionUID = 1L;
+
+    private final int nameId;
+
+    public IdentifierToken(Pair<TokenSource, CharStream> source, int type, int channel, int start, int stop,
+                           int nameId, String text) {
+        super(source, type, channel, start, stop);
+        this.nameId = nameId;
+        this.text = text;
+    }
+
+    public int getNameId() {
+        return nameId;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * Token factory that interns every IDENTIFIER into a {@link NameTable} as it is lexed.
+ * Other tokens are created exactly as the default CommonTokenFactory would.
+ */
+public class InterningTokenFactory implements TokenFactory<CommonToken> {
+    private final NameTable names;
+
+    public InterningTokenFactory(NameTable names) {
+        this.names = names;
+    }
+
+    public NameTable getNames() {
+        return names;
+    }
+
+    @Override
+    public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text,
+                              int channel, int start, int stop, int line, int charPositionInLine) {
+        CommonToken token;
+        if (type == JavaSubsetLexer.IDENTIFIER && text == null && source.b != null) {
+            int id = names.intern(source.b, start, stop);
+            token = new IdentifierToken(source, type, channel, start, stop, id, names.name(id));
+        } else {
+            token = CommonTokenFactory.DEFAULT.create(source, type, text, channel, start, stop, line, charPositionInLine);
+        }
+        token.setLine(line);
+        token.setCharPositionInLine(charPositionInLine);
+        return token;
+    }
+
+    /**
+     * The IDENTIFIER token for the code points text[start, end), as create would make it,
+     * for lexers that already hold the input as code points.
+     */
+    public CommonToken createIdentifier(Pair<TokenSource, CharStream> source, int[] text, int start, int end,
+                                        int line, int charPositionInLine) {
+        int id = names.intern(text, start, end);
+        CommonToken token = new IdentifierToken(source, JavaSubsetLexer.IDENTIFIER, CommonToken.DEFAULT_CHANNEL,
+                start, end - 1, id, names.name(id));
+        token.setLine(line);
+        token.setCharPositionInLine(charPositionInLine);
+        return token;
+    }
+
+    @Override
+    public CommonToken create(int type, String text) {
+        return CommonTokenFactory.DEFAULT.create(type, text);
+    }
+}
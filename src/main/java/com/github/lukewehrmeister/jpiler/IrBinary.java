@@ -0,0 +1,519 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form of an {@link IrModule}, and a reader that decodes it in place.
+ *
+ * Layout, with every count, index and offset an unsigned LEB128 varint:
+ * <pre>
+ *   magic "JIRB", version                     (two big-endian ints)
+ *   string table: count, then length + UTF-8 bytes per string
+ *   directory: class count, then per class
+ *       name, global count, (name, type) per global,
+ *       function count, (name, body offset) per function
+ *   function bodies
+ * </pre>
+ * Every name (classes, functions, globals, registers, labels) is an index into the string
+ * table, so a register that appears a hundred times costs a byte or two each time.
+ * Body offsets are relative to the end of the directory, which lets a reader decode one
+ * function without touching the others.
+ *
+ * A body is the return type, the parameters, the block labels (0 for the entry block,
+ * otherwise string index + 1), then each block's instructions: opcode and type packed in
+ * one varint, then only the result, operands and target block indices the opcode calls
+ * for. An operand packs its kind into the low three bits of a varint whose high bits are
+ * the string index or zigzagged constant. A call, whose shape the two do not fix, writes
+ * its result (0 for none, otherwise string index + 1), its callee's string index and its
+ * argument count, then a type byte and an operand per argument. An alloca writes its
+ * element count after its result, 0 for a plain slot.
+ *
+ * The reader wraps a ByteBuffer, usually a read-only mapping of the file, and only reads
+ * the header, string offsets and directory up front. Strings are decoded the first time
+ * an instruction refers to them, and functions when asked for.
+ */
+public final class IrBinary {
+    private static final int MAGIC = 0x4A495242; //"JIRB"
+    private static final int VERSION = 3;
+
+    private static final int REGISTER = 0;
+    private static final int GLOBAL = 1;
+    private static final int CONSTANT = 2;
+    private static final int TRUE = 3;
+    private static final int FALSE = 4;
+    //A constant too large to share a varint with its kind, followed by its own zigzag varint
+    private static final int WIDE_CONSTANT = 5;
+
+    private static final IrType[] TYPES = IrType.values();
+    private static final IrOpcode[] OPCODES = IrOpcode.values();
+
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final IrValue.Register[] registers;
+    private final IrValue.Global[] globals;
+    private final Map<String, ClassEntry> classes = new LinkedHashMap<>();
+    private final int bodies;
+
+    private IrBinary(ByteBuffer buffer) {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Not a version " + VERSION + " binary IR file.");
+            }
+            buffer.position(8);
+            int count = readVarint();
+            stringOffsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                stringOffsets[i] = buffer.position();
+                int length = readVarint();
+                buffer.position(buffer.position() + length);
+            }
+            strings = new String[count];
+            registers = new IrValue.Register[count];
+            globals = new IrValue.Global[count];
+
+            int classCount = readVarint();
+            for (int c = 0; c < classCount; c++) {
+                ClassEntry entry = new ClassEntry(string(readVarint()));
+                int globalCount = readVarint();
+                for (int g = 0; g < globalCount; g++) {
+                    entry.globals.add(new IrGlobal(global(readVarint()), TYPES[buffer.get()]));
+                }
+                int functionCount = readVarint();
+                for (int f = 0; f < functionCount; f++) {
+                    entry.functions.put(string(readVarint()), readVarint());
+                }
+                classes.put(entry.name, entry);
+            }
+            bodies = buffer.position();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary IR.", e);
+        }
+    }
+
+    /**
+     * Reads binary IR from a buffer positioned anywhere; the IR must start at index 0.
+     */
+    public static IrBinary wrap(ByteBuffer buffer) {
+        return new IrBinary(buffer.duplicate());
+    }
+
+    /**
+     * Maps a binary IR file read-only. The mapping outlives the channel, and pages are only
+     * read as the functions on them are decoded.
+     */
+    public static IrBinary map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public List<String> getClassNames() {
+        return List.copyOf(classes.keySet());
+    }
+
+    //Function names of a class, in source order
+    public List<String> getFunctionNames(String className) {
+        return List.copyOf(classEntry(className).functions.keySet());
+    }
+
+    public List<IrGlobal> getGlobals(String className) {
+        return List.copyOf(classEntry(className).globals);
+    }
+
+    /**
+     * Decodes one function, reading only its own body.
+     */
+    public IrFunction readFunction(String className, String name) {
+        Integer offset = classEntry(className).functions.get(name);
+        if (offset == null) {
+            throw new IllegalArgumentException("No function " + className + "." + name);
+        }
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodies + offset);
+        try {
+            return new FunctionReader(body).read(name);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary IR in " + className + "." + name, e);
+        }
+    }
+
+    //Decodes everything
+    public IrModule readModule() {
+        IrModule module = new IrModule();
+        for (ClassEntry entry : classes.values()) {
+            IrClass irClass = new IrClass(entry.name);
+            irClass.getGlobals().addAll(entry.globals);
+            for (String function : entry.functions.keySet()) {
+                irClass.getFunctions().add(readFunction(entry.name, function));
+            }
+            module.getClasses().add(irClass);
+        }
+        return module;
+    }
+
+    private ClassEntry classEntry(String className) {
+        ClassEntry entry = classes.get(className);
+        if (entry == null) {
+            throw new IllegalArgumentException("No class " + className);
+        }
+        return entry;
+    }
+
+    private String string(int index) {
+        String string = strings[index];
+        if (string == null) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringOffsets[index]);
+            int length = varint(view);
+            byte[] bytes = new byte[length];
+            view.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    //Registers and globals are immutable, so every reference to the same name shares one
+    private IrValue.Register register(int index) {
+        IrValue.Register register = registers[index];
+        if (register == null) {
+            register = IrValue.register(string(index));
+            registers[index] = register;
+        }
+        return register;
+    }
+
+    private IrValue.Global global(int index) {
+        IrValue.Global global = globals[index];
+        if (global == null) {
+            global = IrValue.global(string(index));
+            globals[index] = global;
+        }
+        return global;
+    }
+
+    private int readVarint() {
+        return varint(buffer);
+    }
+
+    private static int varint(ByteBuffer in) {
+        return (int) varlong(in);
+    }
+
+    private static long varlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static final class ClassEntry {
+        final String name;
+        final List<IrGlobal> globals = new ArrayList<>();
+        //Body offset of each function, relative to the end of the directory
+        final Map<String, Integer> functions = new LinkedHashMap<>();
+
+        ClassEntry(String name) {
+            this.name = name;
+        }
+    }
+
+    private final class FunctionReader {
+        private final ByteBuffer in;
+
+        FunctionReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        IrFunction read(String name) {
+            IrType returnType = TYPES[in.get()];
+            int parameterCount = varint(in);
+            List<IrFunction.Parameter> parameters = new ArrayList<>(parameterCount);
+            for (int p = 0; p < parameterCount; p++) {
+                parameters.add(new IrFunction.Parameter(register(varint(in)), TYPES[in.get()]));
+            }
+            IrFunction function = new IrFunction(name, returnType, parameters);
+
+            IrBlock[] blocks = new IrBlock[varint(in)];
+            for (int b = 0; b < blocks.length; b++) {
+                int label = varint(in);
+                blocks[b] = new IrBlock(label == 0 ? null : string(label - 1));
+                function.getBlocks().add(blocks[b]);
+            }
+            for (IrBlock block : blocks) {
+                int count = varint(in);
+                for (int i = 0; i < count; i++) {
+                    block.add(instruction(blocks));
+                }
+            }
+            return function;
+        }
+
+        private IrInstruction instruction(IrBlock[] blocks) {
+            int header = varint(in);
+            IrOpcode opcode = OPCODES[header / TYPES.length];
+            IrType type = TYPES[header % TYPES.length];
+            if (opcode == IrOpcode.CALL) {
+                return call(type);
+            }
+            IrValue.Register register = hasResult(opcode) ? register(varint(in)) : null;
+            if (opcode == IrOpcode.ALLOCA) {
+                int count = varint(in);
+                return count == 0 ? IrInstruction.alloca(register, type) : IrInstruction.arrayAlloca(register, type, count);
+            }
+            IrValue[] operands = new IrValue[operandCount(opcode, type)];
+            for (int o = 0; o < operands.length; o++) {
+                operands[o] = operand();
+            }
+            IrBlock[] targets = new IrBlock[targetCount(opcode)];
+            for (int t = 0; t < targets.length; t++) {
+                targets[t] = blocks[varint(in)];
+            }
+            return switch (opcode) {
+                case LOAD -> IrInstruction.load(register, type, operands[0]);
+                case STORE -> IrInstruction.store(type, operands[0], operands[1]);
+                case LOAD_ELEMENT -> IrInstruction.loadElement(register, type, operands[0], operands[1]);
+                case STORE_ELEMENT -> IrInstruction.storeElement(type, operands[0], operands[1], operands[2]);
+                case BOUNDS_CHECK -> IrInstruction.boundsCheck(operands[0], (int) ((IrValue.Constant) operands[1]).getValue());
+                case BR -> IrInstruction.br(targets[0]);
+                case COND_BR -> IrInstruction.condBr(operands[0], targets[0], targets[1]);
+                case RET -> IrInstruction.ret(type, operands.length == 0 ? null : operands[0]);
+                default -> IrInstruction.binary(opcode, register, type, operands[0], operands[1]);
+            };
+        }
+
+        private IrInstruction call(IrType type) {
+            int result = varint(in);
+            String callee = string(varint(in));
+            int count = varint(in);
+            List<IrType> argumentTypes = new ArrayList<>(count);
+            List<IrValue> arguments = new ArrayList<>(count);
+            for (int a = 0; a < count; a++) {
+                argumentTypes.add(TYPES[in.get()]);
+                arguments.add(operand());
+            }
+            return IrInstruction.call(result == 0 ? null : register(result - 1), type, callee, argumentTypes, arguments);
+        }
+
+        private IrValue operand() {
+            long packed = varlong(in);
+            int kind = (int) (packed & 7);
+            long payload = packed >>> 3;
+            return switch (kind) {
+                case REGISTER -> register((int) payload);
+                case GLOBAL -> global((int) payload);
+                case CONSTANT -> IrValue.constant(unzigzag(payload));
+                case TRUE -> IrValue.Constant.TRUE;
+                case FALSE -> IrValue.Constant.FALSE;
+                case WIDE_CONSTANT -> IrValue.constant(unzigzag(varlong(in)));
+                default -> throw new IllegalArgumentException("Unknown operand kind " + kind);
+            };
+        }
+    }
+
+    //What an instruction has besides its opcode and type follows from the two, so none of it is written
+    private static boolean hasResult(IrOpcode opcode) {
+        return opcode == IrOpcode.ALLOCA || opcode == IrOpcode.LOAD || opcode == IrOpcode.LOAD_ELEMENT || opcode.isBinary();
+    }
+
+    private static int operandCount(IrOpcode opcode, IrType type) {
+        return switch (opcode) {
+            case ALLOCA, BR -> 0;
+            case LOAD, COND_BR -> 1;
+            case RET -> type == IrType.VOID ? 0 : 1;
+            case STORE_ELEMENT -> 3;
+            default -> 2;
+        };
+    }
+
+    private static int targetCount(IrOpcode opcode) {
+        return switch (opcode) {
+            case BR -> 1;
+            case COND_BR -> 2;
+            default -> 0;
+        };
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // =====================================================================================
+    //                                        Writing
+    // =====================================================================================
+
+    public static byte[] encode(IrModule module) {
+        Writer writer = new Writer();
+        //Bodies first, so the directory knows their offsets
+        Output bodies = new Output();
+        List<Integer> offsets = new ArrayList<>();
+        for (IrFunction function : module.getFunctions()) {
+            offsets.add(bodies.size());
+            writer.function(function, bodies);
+        }
+
+        Output directory = new Output();
+        directory.varint(module.getClasses().size());
+        int f = 0;
+        for (IrClass irClass : module.getClasses()) {
+            directory.varint(writer.string(irClass.getName()));
+            directory.varint(irClass.getGlobals().size());
+            for (IrGlobal global : irClass.getGlobals()) {
+                directory.varint(writer.string(global.getName()));
+                directory.write(global.getType().ordinal());
+            }
+            directory.varint(irClass.getFunctions().size());
+            for (IrFunction function : irClass.getFunctions()) {
+                directory.varint(writer.string(function.getName()));
+                directory.varint(offsets.get(f++));
+            }
+        }
+
+        Output out = new Output();
+        out.fixedInt(MAGIC);
+        out.fixedInt(VERSION);
+        out.varint(writer.strings.size());
+        for (String string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.varint(bytes.length);
+            out.writeBytes(bytes);
+        }
+        out.writeBytes(directory.toByteArray());
+        out.writeBytes(bodies.toByteArray());
+        return out.toByteArray();
+    }
+
+    public static void write(IrModule module, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, encode(module));
+    }
+
+    private static final class Writer {
+        final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        int string(String string) {
+            Integer i = index.get(string);
+            if (i == null) {
+                i = strings.size();
+                strings.add(string);
+                index.put(string, i);
+            }
+            return i;
+        }
+
+        void function(IrFunction function, Output out) {
+            out.write(function.getReturnType().ordinal());
+            out.varint(function.getParameters().size());
+            for (IrFunction.Parameter parameter : function.getParameters()) {
+                out.varint(string(parameter.getRegister().getName()));
+                out.write(parameter.getType().ordinal());
+            }
+
+            Map<IrBlock, Integer> blocks = new HashMap<>();
+            out.varint(function.getBlocks().size());
+            for (IrBlock block : function.getBlocks()) {
+                blocks.put(block, blocks.size());
+                out.varint(block.getLabel() == null ? 0 : string(block.getLabel()) + 1);
+            }
+            for (IrBlock block : function.getBlocks()) {
+                out.varint(block.getInstructions().size());
+                for (IrInstruction instruction : block.getInstructions()) {
+                    instruction(instruction, blocks, out);
+                }
+            }
+        }
+
+        private void instruction(IrInstruction instruction, Map<IrBlock, Integer> blocks, Output out) {
+            out.varint(instruction.getOpcode().ordinal() * TYPES.length + instruction.getType().ordinal());
+            if (instruction.getOpcode() == IrOpcode.CALL) {
+                out.varint(instruction.getResult() == null ? 0 : string(instruction.getResult().getName()) + 1);
+                out.varint(string(instruction.getCallee()));
+                out.varint(instruction.getOperands().size());
+                for (int a = 0; a < instruction.getOperands().size(); a++) {
+                    out.write(instruction.getArgumentTypes().get(a).ordinal());
+                    operand(instruction.getOperand(a), out);
+                }
+                return;
+            }
+            if (instruction.getResult() != null) {
+                out.varint(string(instruction.getResult().getName()));
+            }
+            if (instruction.getOpcode() == IrOpcode.ALLOCA) {
+                out.varint(instruction.isArrayAlloca() ? instruction.getLength() : 0);
+                return;
+            }
+            for (IrValue operand : instruction.getOperands()) {
+                operand(operand, out);
+            }
+            for (IrBlock target : instruction.getTargets()) {
+                out.varint(blocks.get(target));
+            }
+        }
+
+        private void operand(IrValue operand, Output out) {
+            if (operand instanceof IrValue.Register register) {
+                out.varlong((long) string(register.getName()) << 3 | REGISTER);
+            } else if (operand instanceof IrValue.Global global) {
+                out.varlong((long) string(global.getName()) << 3 | GLOBAL);
+            } else {
+                IrValue.Constant constant = (IrValue.Constant) operand;
+                if (constant.toString().equals("true")) {
+                    out.varlong(TRUE);
+                } else if (constant.toString().equals("false")) {
+                    out.varlong(FALSE);
+                } else {
+                    long zigzag = (constant.getValue() << 1) ^ (constant.getValue() >> 63);
+                    if (zigzag >>> 61 == 0) {
+                        out.varlong(zigzag << 3 | CONSTANT);
+                    } else {
+                        out.varlong(WIDE_CONSTANT);
+                        out.varlong(zigzag);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void fixedInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A labelled run of instructions. The entry block of a function has no label.
+ */
+public final class IrBlock {
+    private final String label;
+    private final List<IrInstruction> instructions = new ArrayList<>();
+
+    public IrBlock(String label) {
+        this.label = label;
+    }
+
+    //Null for the entry block
+    public String getLabel() {
+        return label;
+    }
+
+    public List<IrInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public void add(IrInstruction instruction) {
+        instructions.add(instruction);
+    }
+
+    /**
+     * The first terminator in the block, or null if control falls off its end.
+     * Anything after it is unreachable.
+     */
+    public IrInstruction getTerminator() {
+        for (IrInstruction instruction : instructions) {
+            if (instruction.getOpcode().isTerminator()) {
+                return instruction;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label == null ? "<entry>" : label;
+    }
+}
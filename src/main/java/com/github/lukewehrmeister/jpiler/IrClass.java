@@ -0,0 +1,41 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A source class: its fields as globals and its methods as functions.
+ */
+public final class IrClass {
+    //Function holding the field initializers, named after the JVM's class initializer
+    public static final String INITIALIZER = "<clinit>";
+
+    private final String name;
+    private final List<IrGlobal> globals = new ArrayList<>();
+    private final List<IrFunction> functions = new ArrayList<>();
+
+    public IrClass(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<IrGlobal> getGlobals() {
+        return globals;
+    }
+
+    public List<IrFunction> getFunctions() {
+        return functions;
+    }
+
+    public IrGlobal getGlobal(String name) {
+        for (IrGlobal global : globals) {
+            if (global.getName().equals(name)) {
+                return global;
+            }
+        }
+        return null;
+    }
+}
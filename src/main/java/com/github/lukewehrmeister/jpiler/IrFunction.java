@@ -0,0 +1,86 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method in the IR: its signature and its blocks in layout order, entry block first.
+ */
+public final class IrFunction {
+    private final String name;
+    private final IrType returnType;
+    private final List<Parameter> parameters;
+    private final List<IrBlock> blocks = new ArrayList<>();
+
+    public IrFunction(String name, IrType returnType, List<Parameter> parameters) {
+        this.name = name;
+        this.returnType = returnType;
+        this.parameters = parameters;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IrType getReturnType() {
+        return returnType;
+    }
+
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    public List<IrBlock> getBlocks() {
+        return blocks;
+    }
+
+    public IrBlock getEntryBlock() {
+        return blocks.get(0);
+    }
+
+    public IrBlock getBlock(String label) {
+        for (IrBlock block : blocks) {
+            if (label.equals(block.getLabel())) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces every operand equal to {@code from} with {@code to}. Returns how many
+     * operands changed.
+     */
+    public int replaceUses(IrValue from, IrValue to) {
+        int replaced = 0;
+        for (IrBlock block : blocks) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.getOperands().size(); i++) {
+                    if (instruction.getOperand(i).equals(from)) {
+                        instruction.setOperand(i, to);
+                        replaced++;
+                    }
+                }
+            }
+        }
+        return replaced;
+    }
+
+    public static final class Parameter {
+        private final IrValue.Register register;
+        private final IrType type;
+
+        public Parameter(IrValue.Register register, IrType type) {
+            this.register = register;
+            this.type = type;
+        }
+
+        public IrValue.Register getRegister() {
+            return register;
+        }
+
+        public IrType getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * A class-level variable, addressed in instructions as @name. It starts out zero; any
+ * initializer runs in the class's {@code <clinit>} function.
+ */
+public final class IrGlobal {
+    private final IrValue.Global pointer;
+    private final IrType type;
+
+    public IrGlobal(IrValue.Global pointer, IrType type) {
+        this.pointer = pointer;
+        this.type = type;
+    }
+
+    public IrValue.Global getPointer() {
+        return pointer;
+    }
+
+    public String getName() {
+        return pointer.getName();
+    }
+
+    public IrType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One IR instruction. {@code type} is the type the instruction operates on: the allocated,
+ * loaded or stored type, the operand type of arithmetic and comparisons, or the return type.
+ * A call also names its callee, a function of the same class, and the types of its
+ * arguments, which are its operands.
+ *
+ * An alloca with a constant count operand allocates an array of that many elements. Its
+ * result is only ever the array operand of loadelem and storeelem, whose index must
+ * already have passed a boundscheck against the array's length: an element outside the
+ * array is undefined, as are the elements before their first store.
+ */
+public final class IrInstruction {
+    private static final IrType[] NO_TYPES = new IrType[0];
+
+    private final IrOpcode opcode;
+    private final IrValue.Register result;
+    private final IrType type;
+    private final IrValue[] operands;
+    private final IrBlock[] targets;
+    private final String callee;
+    private final IrType[] argumentTypes;
+
+    private IrInstruction(IrOpcode opcode, IrValue.Register result, IrType type, IrValue[] operands, IrBlock[] targets) {
+        this(opcode, result, type, operands, targets, null, NO_TYPES);
+    }
+
+    private IrInstruction(IrOpcode opcode, IrValue.Register result, IrType type, IrValue[] operands, IrBlock[] targets,
+                          String callee, IrType[] argumentTypes) {
+        this.opcode = opcode;
+        this.result = result;
+        this.type = type;
+        this.operands = operands;
+        this.targets = targets;
+        this.callee = callee;
+        this.argumentTypes = argumentTypes;
+    }
+
+    //%result = alloca type
+    public static IrInstruction alloca(IrValue.Register result, IrType type) {
+        return new IrInstruction(IrOpcode.ALLOCA, result, type, new IrValue[0], new IrBlock[0]);
+    }
+
+    //%result = alloca type, i32 count
+    public static IrInstruction arrayAlloca(IrValue.Register result, IrType type, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Array %" + result.getName() + " must have at least one element, not " + count + ".");
+        }
+        return new IrInstruction(IrOpcode.ALLOCA, result, type, new IrValue[] {IrValue.constant(count)}, new IrBlock[0]);
+    }
+
+    //%result = load type, type* pointer
+    public static IrInstruction load(IrValue.Register result, IrType type, IrValue pointer) {
+        return new IrInstruction(IrOpcode.LOAD, result, type, new IrValue[] {pointer}, new IrBlock[0]);
+    }
+
+    //store type value, type* pointer
+    public static IrInstruction store(IrType type, IrValue value, IrValue pointer) {
+        return new IrInstruction(IrOpcode.STORE, null, type, new IrValue[] {value, pointer}, new IrBlock[0]);
+    }
+
+    //%result = opcode type left, right
+    public static IrInstruction binary(IrOpcode opcode, IrValue.Register result, IrType type, IrValue left, IrValue right) {
+        if (!opcode.isBinary()) {
+            throw new IllegalArgumentException(opcode + " is not a binary instruction.");
+        }
+        return new IrInstruction(opcode, result, type, new IrValue[] {left, right}, new IrBlock[0]);
+    }
+
+    //%result = loadelem type, type* array, i32 index
+    public static IrInstruction loadElement(IrValue.Register result, IrType type, IrValue array, IrValue index) {
+        return new IrInstruction(IrOpcode.LOAD_ELEMENT, result, type, new IrValue[] {array, index}, new IrBlock[0]);
+    }
+
+    //storeelem type value, type* array, i32 index
+    public static IrInstruction storeElement(IrType type, IrValue value, IrValue array, IrValue index) {
+        return new IrInstruction(IrOpcode.STORE_ELEMENT, null, type, new IrValue[] {value, array, index}, new IrBlock[0]);
+    }
+
+    //boundscheck i32 index, length: traps unless 0 <= index < length
+    public static IrInstruction boundsCheck(IrValue index, int length) {
+        return new IrInstruction(IrOpcode.BOUNDS_CHECK, null, IrType.I32, new IrValue[] {index, IrValue.constant(length)},
+                new IrBlock[0]);
+    }
+
+    //br label %target
+    public static IrInstruction br(IrBlock target) {
+        return new IrInstruction(IrOpcode.BR, null, IrType.VOID, new IrValue[0], new IrBlock[] {target});
+    }
+
+    //br i1 condition, label %ifTrue, label %ifFalse
+    public static IrInstruction condBr(IrValue condition, IrBlock ifTrue, IrBlock ifFalse) {
+        return new IrInstruction(IrOpcode.COND_BR, null, IrType.I1, new IrValue[] {condition}, new IrBlock[] {ifTrue, ifFalse});
+    }
+
+    //ret type value, or ret void when value is null
+    public static IrInstruction ret(IrType type, IrValue value) {
+        IrValue[] operands = value == null ? new IrValue[0] : new IrValue[] {value};
+        return new IrInstruction(IrOpcode.RET, null, value == null ? IrType.VOID : type, operands, new IrBlock[0]);
+    }
+
+    //%result = call type @callee(argumentTypes[0] arguments[0], ...), without a result for a void callee
+    public static IrInstruction call(IrValue.Register result, IrType type, String callee,
+                                     List<IrType> argumentTypes, List<IrValue> arguments) {
+        if (argumentTypes.size() != arguments.size()) {
+            throw new IllegalArgumentException("Call to @" + callee + " has " + arguments.size()
+                    + " arguments but " + argumentTypes.size() + " argument types.");
+        }
+        return new IrInstruction(IrOpcode.CALL, result, type, arguments.toArray(new IrValue[0]), new IrBlock[0],
+                callee, argumentTypes.toArray(NO_TYPES));
+    }
+
+    //The same instruction defining another register, with operands and targets of its own to remap
+    public IrInstruction copy(IrValue.Register result) {
+        return new IrInstruction(opcode, result, type, operands.clone(), targets.clone(), callee, argumentTypes);
+    }
+
+    public IrOpcode getOpcode() {
+        return opcode;
+    }
+
+    public boolean isArrayAlloca() {
+        return opcode == IrOpcode.ALLOCA && operands.length == 1;
+    }
+
+    //Elements of an array alloca, or the length a bounds check checks against
+    public int getLength() {
+        return (int) ((IrValue.Constant) operands[opcode == IrOpcode.ALLOCA ? 0 : 1]).getValue();
+    }
+
+    //The register this instruction defines, or null
+    public IrValue.Register getResult() {
+        return result;
+    }
+
+    public IrType getType() {
+        return type;
+    }
+
+    public List<IrValue> getOperands() {
+        return Arrays.asList(operands);
+    }
+
+    public IrValue getOperand(int index) {
+        return operands[index];
+    }
+
+    public void setOperand(int index, IrValue value) {
+        operands[index] = value;
+    }
+
+    public List<IrBlock> getTargets() {
+        return Arrays.asList(targets);
+    }
+
+    public void setTarget(int index, IrBlock target) {
+        targets[index] = target;
+    }
+
+    //Name of the called function, or null when this is not a call
+    public String getCallee() {
+        return callee;
+    }
+
+    public List<IrType> getArgumentTypes() {
+        return Arrays.asList(argumentTypes);
+    }
+
+    @Override
+    public String toString() {
+        return IrPrinter.print(this);
+    }
+}
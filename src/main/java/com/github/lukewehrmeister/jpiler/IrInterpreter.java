@@ -0,0 +1,469 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Executes an {@link IrModule} in-process.
+ *
+ * Every function is decoded once into a flat int[] of fixed-width instructions,
+ * {opcode, a, b, c}, whose operands are indexes into the function's register file: an
+ * int[] frame holding the parameters, then every register and alloca'd slot, then the
+ * function's constants. Loads and stores of a slot become register moves, so the
+ * dispatch loop never looks at a name, a map or an IrValue. Globals live in one int[]
+ * shared by the whole module. i1, i8 and pointer values are ints like everything else;
+ * string literals are already 0 in the IR. An array takes as many consecutive frame
+ * entries as it has elements, indexed from its first, and a bounds check that fails
+ * throws an IndexOutOfBoundsException.
+ *
+ * A call's arguments do not fit the fixed width, so it points into its function's table
+ * of call sites, which holds the callee and the frame indexes of the arguments. Each call
+ * runs in a fresh frame on the Java stack, so deep enough recursion ends in a
+ * StackOverflowError.
+ *
+ * Creating an interpreter runs every class's {@code <clinit>}, in module order.
+ *
+ * With a tier-up threshold, execution is tiered: every function starts interpreted and
+ * counts its invocations and loop back-edges. Once their sum reaches the threshold it is
+ * handed to {@link HotMethodCompiler}, and calls made after its bytecode is installed run
+ * that instead. The interpreter never waits for a compile, and a call already running
+ * in the interpreter finishes there. Closing the interpreter stops its compile thread;
+ * it can still run code after that, but nothing more tiers up.
+ */
+public final class IrInterpreter implements AutoCloseable {
+    static final int MOVE = 0;
+    static final int LOAD_GLOBAL = 1;
+    static final int STORE_GLOBAL = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int DIV = 6;
+    static final int REM = 7;
+    static final int AND = 8;
+    static final int OR = 9;
+    static final int XOR = 10;
+    static final int EQ = 11;
+    static final int NE = 12;
+    static final int LT = 13;
+    static final int LE = 14;
+    static final int GT = 15;
+    static final int GE = 16;
+    static final int JUMP = 17;
+    static final int JUMP_IF = 18;
+    static final int RETURN = 19;
+    static final int RETURN_VOID = 20;
+    static final int CALL = 21;
+    static final int LOAD_ELEMENT = 22;
+    static final int STORE_ELEMENT = 23;
+    static final int CHECK_INDEX = 24;
+
+    private static final int WIDTH = 4;
+
+    //Invocations plus back-edges before a function is compiled, when tiering is on
+    public static final int DEFAULT_TIER_UP_THRESHOLD = 10_000;
+
+    private final Map<String, Function> functions = new HashMap<>();
+    private final Map<String, Integer> globalIndex = new HashMap<>();
+    private final int[] globals;
+    private final int tierUpThreshold;
+    private final HotMethodCompiler compiler;
+    private long instructionCount;
+
+    //A pure interpreter
+    public IrInterpreter(IrModule module) {
+        this(module, 0);
+    }
+
+    //Compiles functions once invocations plus back-edges reach tierUpThreshold; 0 never does
+    public IrInterpreter(IrModule module, int tierUpThreshold) {
+        if (tierUpThreshold < 0) {
+            throw new IllegalArgumentException("Tier-up threshold must not be negative: " + tierUpThreshold);
+        }
+        this.tierUpThreshold = tierUpThreshold;
+        for (IrClass irClass : module.getClasses()) {
+            for (IrGlobal global : irClass.getGlobals()) {
+                globalIndex.put(key(irClass.getName(), global.getName()), globalIndex.size());
+            }
+        }
+        globals = new int[globalIndex.size()];
+        compiler = tierUpThreshold > 0 ? new HotMethodCompiler(globals) : null;
+        for (IrClass irClass : module.getClasses()) {
+            for (IrFunction function : irClass.getFunctions()) {
+                functions.put(key(irClass.getName(), function.getName()), new Function(irClass.getName(), function));
+            }
+        }
+        for (Function function : functions.values()) {
+            function.link();
+        }
+        try {
+            for (IrClass irClass : module.getClasses()) {
+                Function initializer = functions.get(key(irClass.getName(), IrClass.INITIALIZER));
+                if (initializer != null) {
+                    execute(initializer, new int[0]);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static String key(String className, String name) {
+        return className + "." + name;
+    }
+
+    /**
+     * Calls a function with int arguments (booleans as 0 or 1) and returns its result,
+     * or 0 for a void function.
+     */
+    public int invoke(String className, String function, int... args) {
+        Function target = functions.get(key(className, function));
+        if (target == null) {
+            throw new IllegalArgumentException("No function @" + function + " in class " + className);
+        }
+        if (args.length != target.parameters) {
+            throw new IllegalArgumentException("@" + function + " takes " + target.parameters + " arguments, got " + args.length);
+        }
+        return execute(target, args);
+    }
+
+    public int getGlobal(String className, String name) {
+        Integer index = globalIndex.get(key(className, name));
+        if (index == null) {
+            throw new IllegalArgumentException("No global @" + name + " in class " + className);
+        }
+        return globals[index];
+    }
+
+    //Decoded instructions executed so far, across all interpreted calls
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public boolean isCompiled(String className, String function) {
+        Function target = functions.get(key(className, function));
+        return target != null && target.compiled != null;
+    }
+
+    //Waits for every compile queued so far; for tests and benchmarks
+    void awaitCompilations() throws InterruptedException {
+        if (compiler != null) {
+            compiler.awaitIdle();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compiler != null) {
+            compiler.close();
+        }
+    }
+
+    private void countInvocation(Function function) {
+        function.invocations++;
+        checkHotness(function);
+    }
+
+    private void countBackEdge(Function function) {
+        function.backEdges++;
+        checkHotness(function);
+    }
+
+    private void checkHotness(Function function) {
+        if (compiler != null && !function.queued && function.invocations + function.backEdges >= tierUpThreshold
+                && !function.name.equals(IrClass.INITIALIZER)) {
+            function.queued = true;
+            compiler.submit(function.className, function.source, name -> globalIndex.get(key(function.className, name)),
+                    name -> functions.get(key(function.className, name)), entry -> function.compiled = entry);
+        }
+    }
+
+    private static int invokeCompiled(MethodHandle entry, int[] args) {
+        try {
+            return (int) entry.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int execute(Function function, int[] args) {
+        MethodHandle compiled = function.compiled;
+        if (compiled != null) {
+            return invokeCompiled(compiled, args);
+        }
+        countInvocation(function);
+
+        int[] frame = function.frame.clone();
+        System.arraycopy(args, 0, frame, 0, args.length);
+        int[] code = function.code;
+        int[] globals = this.globals;
+        int pc = 0;
+        long steps = 0;
+        while (true) {
+            steps++;
+            switch (code[pc]) {
+                case MOVE -> frame[code[pc + 1]] = frame[code[pc + 2]];
+                case LOAD_GLOBAL -> frame[code[pc + 1]] = globals[code[pc + 2]];
+                case STORE_GLOBAL -> globals[code[pc + 1]] = frame[code[pc + 2]];
+                case ADD -> frame[code[pc + 1]] = frame[code[pc + 2]] + frame[code[pc + 3]];
+                case SUB -> frame[code[pc + 1]] = frame[code[pc + 2]] - frame[code[pc + 3]];
+                case MUL -> frame[code[pc + 1]] = frame[code[pc + 2]] * frame[code[pc + 3]];
+                case DIV -> frame[code[pc + 1]] = frame[code[pc + 2]] / frame[code[pc + 3]];
+                case REM -> frame[code[pc + 1]] = frame[code[pc + 2]] % frame[code[pc + 3]];
+                case AND -> frame[code[pc + 1]] = frame[code[pc + 2]] & frame[code[pc + 3]];
+                case OR -> frame[code[pc + 1]] = frame[code[pc + 2]] | frame[code[pc + 3]];
+                case XOR -> frame[code[pc + 1]] = frame[code[pc + 2]] ^ frame[code[pc + 3]];
+                case EQ -> frame[code[pc + 1]] = frame[code[pc + 2]] == frame[code[pc + 3]] ? 1 : 0;
+                case NE -> frame[code[pc + 1]] = frame[code[pc + 2]] != frame[code[pc + 3]] ? 1 : 0;
+                case LT -> frame[code[pc + 1]] = frame[code[pc + 2]] < frame[code[pc + 3]] ? 1 : 0;
+                case LE -> frame[code[pc + 1]] = frame[code[pc + 2]] <= frame[code[pc + 3]] ? 1 : 0;
+                case GT -> frame[code[pc + 1]] = frame[code[pc + 2]] > frame[code[pc + 3]] ? 1 : 0;
+                case GE -> frame[code[pc + 1]] = frame[code[pc + 2]] >= frame[code[pc + 3]] ? 1 : 0;
+                case JUMP -> {
+                    int target = code[pc + 1];
+                    if (target <= pc) {
+                        countBackEdge(function);
+                    }
+                    pc = target;
+                    continue;
+                }
+                case JUMP_IF -> {
+                    int target = frame[code[pc + 1]] != 0 ? code[pc + 2] : code[pc + 3];
+                    if (target <= pc) {
+                        countBackEdge(function);
+                    }
+                    pc = target;
+                    continue;
+                }
+                case RETURN -> {
+                    instructionCount += steps;
+                    return frame[code[pc + 1]];
+                }
+                case RETURN_VOID -> {
+                    instructionCount += steps;
+                    return 0;
+                }
+                case CALL -> {
+                    int[] arguments = function.callArguments[code[pc + 2]];
+                    int[] values = new int[arguments.length];
+                    for (int i = 0; i < arguments.length; i++) {
+                        values[i] = frame[arguments[i]];
+                    }
+                    int value = execute(function.callees[code[pc + 2]], values);
+                    if (code[pc + 1] >= 0) {
+                        frame[code[pc + 1]] = value;
+                    }
+                }
+                case LOAD_ELEMENT -> frame[code[pc + 1]] = frame[code[pc + 2] + frame[code[pc + 3]]];
+                case STORE_ELEMENT -> frame[code[pc + 1] + frame[code[pc + 2]]] = frame[code[pc + 3]];
+                case CHECK_INDEX -> Objects.checkIndex(frame[code[pc + 1]], code[pc + 2]);
+                default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+            pc += WIDTH;
+        }
+    }
+
+    private static int decode(IrOpcode opcode) {
+        return switch (opcode) {
+            case ADD -> ADD;
+            case SUB -> SUB;
+            case MUL -> MUL;
+            case SDIV -> DIV;
+            case SREM -> REM;
+            case AND -> AND;
+            case OR -> OR;
+            case XOR -> XOR;
+            case ICMP_EQ -> EQ;
+            case ICMP_NE -> NE;
+            case ICMP_SLT -> LT;
+            case ICMP_SLE -> LE;
+            case ICMP_SGT -> GT;
+            case ICMP_SGE -> GE;
+            default -> throw new IllegalArgumentException("Unsupported instruction: " + opcode.getMnemonic());
+        };
+    }
+
+    /**
+     * One decoded function: its code and a template of its register file, with the
+     * constants in place, that each call clones.
+     */
+    private final class Function implements HotMethodCompiler.Callee {
+        final String className;
+        final String name;
+        final IrFunction source;
+        final int parameters;
+        final int[] code;
+        final int[] frame;
+        //Per call site: the callee, once linked, and the frame indexes of the arguments
+        final Function[] callees;
+        final int[][] callArguments;
+
+        long invocations;
+        long backEdges;
+        boolean queued;
+        //Set by the compiler thread once the function's bytecode is loaded
+        volatile MethodHandle compiled;
+
+        private final Map<IrValue, Integer> registers = new HashMap<>();
+        //Frame entries before the constants: one per register, and one per element of each array
+        private int registerEntries;
+        private final List<IrBlock> blocks;
+        private final List<Long> constants = new ArrayList<>();
+        private final Map<Long, Integer> constantIndex = new HashMap<>();
+        private final List<String> calleeNames = new ArrayList<>();
+        private final List<int[]> callSites = new ArrayList<>();
+
+        Function(String className, IrFunction function) {
+            this.className = className;
+            this.name = function.getName();
+            this.source = function;
+            this.parameters = function.getParameters().size();
+            this.blocks = function.getBlocks();
+            for (IrFunction.Parameter parameter : function.getParameters()) {
+                registers.put(parameter.getRegister(), registerEntries++);
+            }
+            for (IrBlock block : function.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getResult() != null && !registers.containsKey(instruction.getResult())) {
+                        registers.put(instruction.getResult(), registerEntries);
+                        registerEntries += instruction.isArrayAlloca() ? instruction.getLength() : 1;
+                    }
+                }
+            }
+            this.code = decode(function);
+            this.frame = new int[registerEntries + constants.size()];
+            for (int i = 0; i < constants.size(); i++) {
+                frame[registerEntries + i] = (int) (long) constants.get(i);
+            }
+            this.callees = new Function[callSites.size()];
+            this.callArguments = callSites.toArray(new int[0][]);
+        }
+
+        //A call from another function's compiled code
+        @Override
+        public int call(int[] arguments) {
+            return execute(this, arguments);
+        }
+
+        //Resolves the callees, which are functions of the same class, once all are decoded
+        void link() {
+            for (int i = 0; i < callees.length; i++) {
+                Function callee = functions.get(key(className, calleeNames.get(i)));
+                if (callee == null) {
+                    throw new IllegalStateException("Call to undefined function @" + calleeNames.get(i) + " in @" + name);
+                }
+                if (callee.parameters != callArguments[i].length) {
+                    throw new IllegalStateException("@" + callee.name + " takes " + callee.parameters
+                            + " arguments, called with " + callArguments[i].length + " in @" + name);
+                }
+                callees[i] = callee;
+            }
+        }
+
+        private int[] decode(IrFunction function) {
+            List<int[]> instructions = new ArrayList<>();
+            Map<IrBlock, Integer> starts = new HashMap<>();
+            for (IrBlock block : blocks) {
+                starts.put(block, instructions.size() * WIDTH);
+                for (IrInstruction instruction : block.getInstructions()) {
+                    int[] decoded = decode(instruction);
+                    if (decoded != null) {
+                        instructions.add(decoded);
+                    }
+                    //Anything after the first terminator is unreachable
+                    if (instruction.getOpcode().isTerminator()) {
+                        break;
+                    }
+                }
+            }
+            //Falling off the end returns, as in JvmBackend
+            if (blocks.get(blocks.size() - 1).getTerminator() == null) {
+                instructions.add(new int[] {RETURN_VOID, 0, 0, 0});
+            }
+
+            int[] code = new int[instructions.size() * WIDTH];
+            for (int i = 0; i < instructions.size(); i++) {
+                int[] instruction = instructions.get(i);
+                //Branch operands were decoded as block numbers; make them code offsets
+                if (instruction[0] == JUMP) {
+                    instruction[1] = starts.get(blocks.get(instruction[1]));
+                } else if (instruction[0] == JUMP_IF) {
+                    instruction[2] = starts.get(blocks.get(instruction[2]));
+                    instruction[3] = starts.get(blocks.get(instruction[3]));
+                }
+                System.arraycopy(instruction, 0, code, i * WIDTH, WIDTH);
+            }
+            return code;
+        }
+
+        //The decoded instruction, or null when it needs no code
+        private int[] decode(IrInstruction instruction) {
+            IrOpcode opcode = instruction.getOpcode();
+            return switch (opcode) {
+                case ALLOCA -> null;
+                case LOAD -> instruction.getOperand(0) instanceof IrValue.Global global
+                        ? new int[] {LOAD_GLOBAL, register(instruction.getResult()), global(global), 0}
+                        : new int[] {MOVE, register(instruction.getResult()), operand(instruction.getOperand(0)), 0};
+                case STORE -> instruction.getOperand(1) instanceof IrValue.Global global
+                        ? new int[] {STORE_GLOBAL, global(global), operand(instruction.getOperand(0)), 0}
+                        : new int[] {MOVE, register(instruction.getOperand(1)), operand(instruction.getOperand(0)), 0};
+                case LOAD_ELEMENT -> new int[] {LOAD_ELEMENT, register(instruction.getResult()),
+                        register(instruction.getOperand(0)), operand(instruction.getOperand(1))};
+                case STORE_ELEMENT -> new int[] {STORE_ELEMENT, register(instruction.getOperand(1)),
+                        operand(instruction.getOperand(2)), operand(instruction.getOperand(0))};
+                case BOUNDS_CHECK -> new int[] {CHECK_INDEX, operand(instruction.getOperand(0)), instruction.getLength(), 0};
+                case BR -> new int[] {JUMP, blocks.indexOf(instruction.getTargets().get(0)), 0, 0};
+                case COND_BR -> new int[] {JUMP_IF, operand(instruction.getOperand(0)),
+                        blocks.indexOf(instruction.getTargets().get(0)), blocks.indexOf(instruction.getTargets().get(1))};
+                case RET -> instruction.getOperands().isEmpty()
+                        ? new int[] {RETURN_VOID, 0, 0, 0}
+                        : new int[] {RETURN, operand(instruction.getOperand(0)), 0, 0};
+                case CALL -> {
+                    int[] arguments = new int[instruction.getOperands().size()];
+                    for (int i = 0; i < arguments.length; i++) {
+                        arguments[i] = operand(instruction.getOperand(i));
+                    }
+                    calleeNames.add(instruction.getCallee());
+                    callSites.add(arguments);
+                    int result = instruction.getResult() == null ? -1 : register(instruction.getResult());
+                    yield new int[] {CALL, result, callSites.size() - 1, 0};
+                }
+                default -> new int[] {IrInterpreter.decode(opcode), register(instruction.getResult()),
+                        operand(instruction.getOperand(0)), operand(instruction.getOperand(1))};
+            };
+        }
+
+        private int register(IrValue value) {
+            Integer index = registers.get(value);
+            if (index == null) {
+                throw new IllegalStateException("Use of undefined value " + value + " in @" + name);
+            }
+            return index;
+        }
+
+        private int operand(IrValue value) {
+            if (value instanceof IrValue.Constant constant) {
+                //Constants sit after the registers, which are all numbered before decoding
+                return registerEntries + constantIndex.computeIfAbsent(constant.getValue(), v -> {
+                    constants.add(v);
+                    return constants.size() - 1;
+                });
+            }
+            return register(value);
+        }
+
+        private int global(IrValue.Global global) {
+            Integer index = globalIndex.get(key(className, global.getName()));
+            if (index == null) {
+                throw new IllegalStateException("Use of undefined global " + global + " in @" + name);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The IR of one compilation unit, as built by {@link IRGeneratorVisitor}.
+ * {@link IrPrinter} turns it into the textual IR.
+ */
+public final class IrModule {
+    private final List<IrClass> classes = new ArrayList<>();
+
+    public List<IrClass> getClasses() {
+        return classes;
+    }
+
+    public List<IrFunction> getFunctions() {
+        List<IrFunction> functions = new ArrayList<>();
+        for (IrClass irClass : classes) {
+            functions.addAll(irClass.getFunctions());
+        }
+        return functions;
+    }
+}
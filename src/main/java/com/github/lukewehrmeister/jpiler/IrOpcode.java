@@ -0,0 +1,69 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * IR instructions, printed with their LLVM mnemonic.
+ */
+public enum IrOpcode {
+    ALLOCA("alloca"),
+    LOAD("load"),
+    STORE("store"),
+
+    ADD("add"),
+    SUB("sub"),
+    MUL("mul"),
+    SDIV("sdiv"),
+    SREM("srem"),
+    AND("and"),
+    OR("or"),
+    XOR("xor"),
+
+    ICMP_EQ("icmp eq"),
+    ICMP_NE("icmp ne"),
+    ICMP_SLT("icmp slt"),
+    ICMP_SLE("icmp sle"),
+    ICMP_SGT("icmp sgt"),
+    ICMP_SGE("icmp sge"),
+
+    BR("br"),
+    COND_BR("br"),
+    RET("ret"),
+
+    CALL("call"),
+
+    //Elements of an array alloca, addressed by a checked index
+    LOAD_ELEMENT("loadelem"),
+    STORE_ELEMENT("storeelem"),
+    BOUNDS_CHECK("boundscheck");
+
+    private final String mnemonic;
+
+    IrOpcode(String mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    //Two operands of the instruction's type in, one value out
+    public boolean isBinary() {
+        return compareTo(ADD) >= 0 && compareTo(ICMP_SGE) <= 0;
+    }
+
+    public boolean isCompare() {
+        return compareTo(ICMP_EQ) >= 0 && compareTo(ICMP_SGE) <= 0;
+    }
+
+    public boolean isTerminator() {
+        return this == BR || this == COND_BR || this == RET;
+    }
+
+    public static IrOpcode fromMnemonic(String mnemonic) {
+        for (IrOpcode opcode : values()) {
+            if (opcode != COND_BR && opcode.mnemonic.equals(mnemonic)) {
+                return opcode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown IR instruction: " + mnemonic);
+    }
+}
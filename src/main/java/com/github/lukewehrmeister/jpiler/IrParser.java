@@ -0,0 +1,446 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the text IR that {@link IrPrinter} writes back into an {@link IrModule}, so that
+ * {@code IrParser.parse(IrPrinter.print(module))} prints exactly like {@code module}.
+ *
+ * The format is line based: a {@code ; === Class Name ===} comment opens each class,
+ * followed by its {@code @name = global type 0} lines and its {@code define} blocks.
+ * Other {@code ;} comments and blank lines are skipped. Branches may refer to labels
+ * defined further down the function, and calls to any function name at all; whether the
+ * callee exists is up to whoever runs the IR. Errors are reported as
+ * IllegalArgumentException with the line number.
+ *
+ * The scanner walks the text in place, one character at a time, rather than splitting
+ * lines or using regular expressions; names are the only substrings it allocates.
+ */
+public final class IrParser {
+    private static final String CLASS_HEADER = "; === Class ";
+
+    private final String text;
+    private int pos;
+    private int line;
+    private int lineEnd;
+    private int next; //Start of the line after this one
+
+    private final IrModule module = new IrModule();
+    private IrClass currentClass;
+    //Blocks of the function being parsed, by label, created on first mention
+    private final Map<String, IrBlock> blocks = new HashMap<>();
+    private final Set<String> defined = new HashSet<>();
+    //Labels branched to but not defined yet, with the line of the first branch
+    private final Map<String, Integer> undefined = new HashMap<>();
+
+    private IrParser(String text) {
+        this.text = text;
+    }
+
+    public static IrModule parse(String text) {
+        IrParser parser = new IrParser(text);
+        parser.parseModule();
+        return parser.module;
+    }
+
+    private void parseModule() {
+        while (nextLine()) {
+            if (startsWith(CLASS_HEADER)) {
+                String rest = text.substring(pos + CLASS_HEADER.length(), lineEnd).trim();
+                if (!rest.endsWith("===")) {
+                    throw error("Malformed class header");
+                }
+                currentClass = new IrClass(rest.substring(0, rest.length() - 3).trim());
+                module.getClasses().add(currentClass);
+            } else if (peek() == ';') {
+                continue;
+            } else if (peek() == '@') {
+                parseGlobal();
+            } else if (startsWith("define ")) {
+                parseFunction();
+            } else {
+                throw error("Expected a class header, global or function");
+            }
+        }
+    }
+
+    private void parseGlobal() {
+        IrValue.Global pointer = IrValue.global(name('@'));
+        expect(" = global ");
+        IrType type = type();
+        skipSpaces();
+        constant();
+        endOfLine();
+        owner().getGlobals().add(new IrGlobal(pointer, type));
+    }
+
+    private void parseFunction() {
+        IrClass owner = owner();
+        expect("define ");
+        IrType returnType = type();
+        expect(" ");
+        String name = name('@');
+        expect("(");
+        List<IrFunction.Parameter> parameters = new ArrayList<>();
+        while (peek() != ')') {
+            if (!parameters.isEmpty()) {
+                expect(", ");
+            }
+            IrType type = type();
+            expect(" ");
+            parameters.add(new IrFunction.Parameter(IrValue.register(name('%')), type));
+        }
+        expect(") {");
+        endOfLine();
+
+        IrFunction function = new IrFunction(name, returnType, parameters);
+        blocks.clear();
+        defined.clear();
+        undefined.clear();
+        IrBlock block = new IrBlock(null);
+        function.getBlocks().add(block);
+        while (true) {
+            if (!nextLine()) {
+                throw error("Function @" + name + " is missing its closing brace");
+            }
+            if (peek() == '}') {
+                pos++;
+                endOfLine();
+                break;
+            }
+            if (peek() == ';') {
+                continue;
+            }
+            if (peek() != ' ') {
+                //A label line: "name:"
+                int colon = text.lastIndexOf(':', lineEnd - 1);
+                if (colon < pos) {
+                    throw error("Expected an instruction or label");
+                }
+                String label = text.substring(pos, colon);
+                pos = colon + 1;
+                endOfLine();
+                if (!defined.add(label)) {
+                    throw error("Duplicate label " + label);
+                }
+                undefined.remove(label);
+                block = block(label);
+                function.getBlocks().add(block);
+                continue;
+            }
+            skipSpaces();
+            block.add(instruction());
+            endOfLine();
+        }
+        for (Map.Entry<String, Integer> missing : undefined.entrySet()) {
+            line = missing.getValue();
+            throw error("Undefined label %" + missing.getKey() + " in @" + name);
+        }
+        owner.getFunctions().add(function);
+    }
+
+    private IrInstruction instruction() {
+        if (peek() == '%') {
+            IrValue.Register result = IrValue.register(name('%'));
+            expect(" = ");
+            String mnemonic = word();
+            if (mnemonic.equals("icmp")) {
+                expect(" ");
+                mnemonic += " " + word();
+            }
+            expect(" ");
+            IrOpcode opcode = opcode(mnemonic);
+            IrType type = type();
+            switch (opcode) {
+                case ALLOCA -> {
+                    if (!startsWith(", ")) {
+                        return IrInstruction.alloca(result, type);
+                    }
+                    expect(", i32 ");
+                    return IrInstruction.arrayAlloca(result, type, length());
+                }
+                case LOAD -> {
+                    expect(", ");
+                    pointerType(type);
+                    expect(" ");
+                    return IrInstruction.load(result, type, operand());
+                }
+                case LOAD_ELEMENT -> {
+                    expect(", ");
+                    pointerType(type);
+                    expect(" ");
+                    IrValue array = operand();
+                    expect(", i32 ");
+                    return IrInstruction.loadElement(result, type, array, operand());
+                }
+                case STORE, STORE_ELEMENT, BOUNDS_CHECK, BR, COND_BR, RET -> throw error(mnemonic + " does not define a value");
+                case CALL -> {
+                    if (type == IrType.VOID) {
+                        throw error("A call to a void function does not define a value");
+                    }
+                    return call(result, type);
+                }
+                default -> {
+                    expect(" ");
+                    IrValue left = operand();
+                    expect(", ");
+                    return IrInstruction.binary(opcode, result, type, left, operand());
+                }
+            }
+        }
+        String mnemonic = word();
+        expect(" ");
+        switch (mnemonic) {
+            case "store" -> {
+                IrType type = type();
+                expect(" ");
+                IrValue value = operand();
+                expect(", ");
+                pointerType(type);
+                expect(" ");
+                return IrInstruction.store(type, value, operand());
+            }
+            case "storeelem" -> {
+                IrType type = type();
+                expect(" ");
+                IrValue value = operand();
+                expect(", ");
+                pointerType(type);
+                expect(" ");
+                IrValue array = operand();
+                expect(", i32 ");
+                return IrInstruction.storeElement(type, value, array, operand());
+            }
+            case "boundscheck" -> {
+                expect("i32 ");
+                IrValue index = operand();
+                expect(", ");
+                return IrInstruction.boundsCheck(index, length());
+            }
+            case "br" -> {
+                if (startsWith("label ")) {
+                    return IrInstruction.br(target());
+                }
+                expect("i1 ");
+                IrValue condition = operand();
+                expect(", ");
+                IrBlock ifTrue = target();
+                expect(", ");
+                return IrInstruction.condBr(condition, ifTrue, target());
+            }
+            case "ret" -> {
+                IrType type = type();
+                if (type == IrType.VOID) {
+                    return IrInstruction.ret(type, null);
+                }
+                expect(" ");
+                return IrInstruction.ret(type, operand());
+            }
+            case "call" -> {
+                //The result of a non-void call may go unused
+                return call(null, type());
+            }
+            default -> {
+                IrOpcode opcode = opcode(mnemonic);
+                throw error(opcode.getMnemonic() + " must define a value");
+            }
+        }
+    }
+
+    //The rest of a call after its return type: " @callee(type operand, ...)"
+    private IrInstruction call(IrValue.Register result, IrType type) {
+        expect(" ");
+        String callee = name('@');
+        expect("(");
+        List<IrType> argumentTypes = new ArrayList<>();
+        List<IrValue> arguments = new ArrayList<>();
+        while (peek() != ')') {
+            if (!arguments.isEmpty()) {
+                expect(", ");
+            }
+            argumentTypes.add(type());
+            expect(" ");
+            arguments.add(operand());
+        }
+        expect(")");
+        return IrInstruction.call(result, type, callee, argumentTypes, arguments);
+    }
+
+    private IrOpcode opcode(String mnemonic) {
+        try {
+            return IrOpcode.fromMnemonic(mnemonic);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    //The constant length of an array or bounds check
+    private int length() {
+        long length = constant().getValue();
+        if (length < 1 || length > Integer.MAX_VALUE) {
+            throw error("Array length must be a positive int, not " + length);
+        }
+        return (int) length;
+    }
+
+    private IrBlock target() {
+        expect("label ");
+        String label = name('%');
+        if (!defined.contains(label)) {
+            undefined.putIfAbsent(label, line);
+        }
+        return block(label);
+    }
+
+    private IrBlock block(String label) {
+        return blocks.computeIfAbsent(label, IrBlock::new);
+    }
+
+    private IrValue operand() {
+        char c = peek();
+        if (c == '%') {
+            return IrValue.register(name('%'));
+        }
+        if (c == '@') {
+            return IrValue.global(name('@'));
+        }
+        if (startsWith("true")) {
+            pos += 4;
+            return IrValue.Constant.TRUE;
+        }
+        if (startsWith("false")) {
+            pos += 5;
+            return IrValue.Constant.FALSE;
+        }
+        return constant();
+    }
+
+    private IrValue.Constant constant() {
+        int start = pos;
+        if (peek() == '-') {
+            pos++;
+        }
+        while (pos < lineEnd && Character.isDigit(text.charAt(pos))) {
+            pos++;
+        }
+        try {
+            return IrValue.constant(Long.parseLong(text, start, pos, 10));
+        } catch (NumberFormatException e) {
+            throw error("Expected an operand");
+        }
+    }
+
+    //A value type; a pointer to one is only ever read by pointerType
+    private IrType type() {
+        int start = pos;
+        while (pos < lineEnd && Character.isLetterOrDigit(text.charAt(pos))) {
+            pos++;
+        }
+        //i8* is a type of its own, spelt with the star
+        if (pos - start == 2 && text.startsWith("i8", start) && peek() == '*') {
+            pos++;
+        }
+        try {
+            return IrType.fromName(text.substring(start, pos));
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private void pointerType(IrType type) {
+        expect(type.getName());
+        expect("*");
+    }
+
+    //A %register, @global or %label name after its sigil
+    private String name(char sigil) {
+        if (peek() != sigil) {
+            throw error("Expected " + sigil);
+        }
+        int start = ++pos;
+        while (pos < lineEnd && isNameChar(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a name after " + sigil);
+        }
+        return text.substring(start, pos);
+    }
+
+    //Letters, digits and the punctuation IRGeneratorVisitor puts in names, such as n.addr and <clinit>
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '$' || c == '<' || c == '>';
+    }
+
+    private String word() {
+        int start = pos;
+        while (pos < lineEnd && Character.isLetter(text.charAt(pos))) {
+            pos++;
+        }
+        return text.substring(start, pos);
+    }
+
+    private IrClass owner() {
+        if (currentClass == null) {
+            throw error("Expected a class header before the first global or function");
+        }
+        return currentClass;
+    }
+
+    //Moves to the start of the next non-blank line; false at the end of the text
+    private boolean nextLine() {
+        while (next <= text.length()) {
+            pos = next;
+            line++;
+            int newline = text.indexOf('\n', pos);
+            lineEnd = newline < 0 ? text.length() : newline;
+            next = lineEnd + 1;
+            if (lineEnd > pos && text.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            for (int i = pos; i < lineEnd; i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private char peek() {
+        return pos < lineEnd ? text.charAt(pos) : '\n';
+    }
+
+    private boolean startsWith(String prefix) {
+        return pos + prefix.length() <= lineEnd && text.startsWith(prefix, pos);
+    }
+
+    private void expect(String literal) {
+        if (!startsWith(literal)) {
+            throw error("Expected '" + literal + "'");
+        }
+        pos += literal.length();
+    }
+
+    private void skipSpaces() {
+        while (pos < lineEnd && text.charAt(pos) == ' ') {
+            pos++;
+        }
+    }
+
+    private void endOfLine() {
+        skipSpaces();
+        if (pos != lineEnd) {
+            throw error("Unexpected '" + text.substring(pos, lineEnd) + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("IR line " + line + ": " + message);
+    }
+}
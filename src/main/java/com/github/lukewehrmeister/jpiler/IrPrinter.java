@@ -0,0 +1,79 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the IR in its LLVM-flavoured text form.
+ */
+public final class IrPrinter {
+    private IrPrinter() {
+    }
+
+    public static String print(IrModule module) {
+        StringBuilder out = new StringBuilder();
+        for (IrClass irClass : module.getClasses()) {
+            out.append("; === Class ").append(irClass.getName()).append(" ===\n");
+            for (IrGlobal global : irClass.getGlobals()) {
+                out.append(global.getPointer()).append(" = global ").append(global.getType().getName()).append(" 0\n");
+            }
+            for (IrFunction function : irClass.getFunctions()) {
+                print(function, out);
+            }
+        }
+        return out.toString();
+    }
+
+    public static String print(IrFunction function) {
+        StringBuilder out = new StringBuilder();
+        print(function, out);
+        return out.toString();
+    }
+
+    private static void print(IrFunction function, StringBuilder out) {
+        List<String> parameters = new ArrayList<>();
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            parameters.add(parameter.getType().getName() + " " + parameter.getRegister());
+        }
+        out.append("define ").append(function.getReturnType().getName()).append(" @").append(function.getName())
+                .append("(").append(String.join(", ", parameters)).append(") {\n");
+        for (IrBlock block : function.getBlocks()) {
+            if (block.getLabel() != null) {
+                out.append(block.getLabel()).append(":\n");
+            }
+            for (IrInstruction instruction : block.getInstructions()) {
+                out.append("  ").append(print(instruction)).append("\n");
+            }
+        }
+        out.append("}\n\n");
+    }
+
+    public static String print(IrInstruction instruction) {
+        IrOpcode opcode = instruction.getOpcode();
+        String type = instruction.getType().getName();
+        String result = instruction.getResult() == null ? "" : instruction.getResult() + " = ";
+        return switch (opcode) {
+            case ALLOCA -> result + "alloca " + type + (instruction.isArrayAlloca() ? ", i32 " + instruction.getLength() : "");
+            case LOAD -> result + "load " + type + ", " + type + "* " + instruction.getOperand(0);
+            case STORE -> "store " + type + " " + instruction.getOperand(0) + ", " + type + "* " + instruction.getOperand(1);
+            case LOAD_ELEMENT -> result + "loadelem " + type + ", " + type + "* " + instruction.getOperand(0)
+                    + ", i32 " + instruction.getOperand(1);
+            case STORE_ELEMENT -> "storeelem " + type + " " + instruction.getOperand(0) + ", " + type + "* "
+                    + instruction.getOperand(1) + ", i32 " + instruction.getOperand(2);
+            case BOUNDS_CHECK -> "boundscheck i32 " + instruction.getOperand(0) + ", " + instruction.getLength();
+            case BR -> "br label %" + instruction.getTargets().get(0).getLabel();
+            case COND_BR -> "br i1 " + instruction.getOperand(0) + ", label %" + instruction.getTargets().get(0).getLabel()
+                    + ", label %" + instruction.getTargets().get(1).getLabel();
+            case RET -> instruction.getOperands().isEmpty() ? "ret void" : "ret " + type + " " + instruction.getOperand(0);
+            case CALL -> {
+                List<String> arguments = new ArrayList<>();
+                for (int i = 0; i < instruction.getOperands().size(); i++) {
+                    arguments.add(instruction.getArgumentTypes().get(i).getName() + " " + instruction.getOperand(i));
+                }
+                yield result + "call " + type + " @" + instruction.getCallee() + "(" + String.join(", ", arguments) + ")";
+            }
+            default -> result + opcode.getMnemonic() + " " + type + " " + instruction.getOperand(0) + ", "
+                    + instruction.getOperand(1);
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * Value types of the IR, printed with their LLVM spelling.
+ */
+public enum IrType {
+    I1("i1", 1),
+    I8("i8", 1),
+    I16("i16", 2),
+    I32("i32", 4),
+    I64("i64", 8),
+    FLOAT("float", 4),
+    DOUBLE("double", 8),
+    PTR("i8*", 8),
+    VOID("void", 0);
+
+    private final String name;
+    private final int size;
+
+    IrType(String name, int size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //Bytes a value of the type takes in memory
+    public int getSize() {
+        return size;
+    }
+
+    public static IrType fromName(String name) {
+        for (IrType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown IR type: " + name);
+    }
+
+    //IR type of a source type
+    public static IrType of(SemanticType type) {
+        return switch (type) {
+            case INT -> I32;
+            case BOOLEAN -> I1;
+            case CHAR -> I8;
+            case STRING -> PTR;
+            case VOID -> VOID;
+            default -> throw new IllegalArgumentException("Unknown Java type: " + type.name().toLowerCase());
+        };
+    }
+}
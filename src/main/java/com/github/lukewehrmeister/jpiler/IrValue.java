@@ -0,0 +1,116 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * An instruction operand: a virtual register (%name), a global (@name) or an integer constant.
+ * Values compare by how they print, so two references to %x are the same value.
+ */
+public abstract class IrValue {
+    private IrValue() {
+    }
+
+    public static Register register(String name) {
+        return new Register(name);
+    }
+
+    public static Global global(String name) {
+        return new Global(name);
+    }
+
+    public static Constant constant(long value) {
+        return new Constant(value, Long.toString(value));
+    }
+
+    public boolean isConstant() {
+        return this instanceof Constant;
+    }
+
+    public abstract String toString();
+
+    public static final class Register extends IrValue {
+        private final String name;
+
+        private Register(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "%" + name;
+        }
+
+        //By name rather than printed text, since passes hash registers constantly
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Register other && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    public static final class Global extends IrValue {
+        private final String name;
+
+        private Global(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "@" + name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Global other && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return ~name.hashCode();
+        }
+    }
+
+    public static final class Constant extends IrValue {
+        public static final Constant TRUE = new Constant(1, "true");
+        public static final Constant FALSE = new Constant(0, "false");
+
+        private final long value;
+        private final String text;
+
+        private Constant(long value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+        //true and 1 are the same constant whichever way they print
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Constant other && value == other.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+    }
+}
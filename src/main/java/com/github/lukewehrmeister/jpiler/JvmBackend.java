@@ -0,0 +1,474 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Translates an {@link IrModule} into JVM class files, so compiled programs run directly
+ * on the JVM. Each IR class becomes a public class, each function a public static method,
+ * and each global a static field; {@code <clinit>} becomes the static initializer.
+ *
+ * Every register, parameter and alloca'd slot gets its own int local, so a load or store
+ * of a slot is an iload or istore. An array gets a local holding an int[], whatever its
+ * element type, created on entry, and a bounds check calls {@code Objects.checkIndex}.
+ * A call is an invokestatic of the callee in the same class. A no-argument {@code void main()} also gets the {@code main(String[])} entry
+ * point the java launcher looks for.
+ */
+public final class JvmBackend {
+    //Static int[] field a standalone class reads its globals from
+    static final String GLOBALS = "GLOBALS";
+    //Static Object[] field holding, in the order of callees(), what a standalone class's calls go to
+    static final String CALLEES = "CALLEES";
+    private static final String CALL_BRIDGE = HotMethodCompiler.class.getName().replace('.', '/');
+
+    private JvmBackend() {
+    }
+
+    //Class files by class name, in module order
+    public static Map<String, byte[]> compile(IrModule module) {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (IrClass irClass : module.getClasses()) {
+            classes.put(irClass.getName(), compile(irClass));
+        }
+        return classes;
+    }
+
+    //Writes <ClassName>.class for every class of the module into directory
+    public static void write(IrModule module, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, byte[]> entry : compile(module).entrySet()) {
+            Files.write(directory.resolve(entry.getKey() + ".class"), entry.getValue());
+        }
+    }
+
+    private static byte[] compile(IrClass irClass) {
+        ClassFileWriter writer = new ClassFileWriter(irClass.getName());
+        for (IrGlobal global : irClass.getGlobals()) {
+            writer.addField(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                    global.getPointer().getName(), descriptor(global.getType()));
+        }
+        for (IrFunction function : irClass.getFunctions()) {
+            new FunctionCompiler(writer, function, null).compile();
+            if (function.getName().equals("main") && function.getReturnType() == IrType.VOID
+                    && function.getParameters().isEmpty()) {
+                ClassFileWriter.Code bridge = writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                        "main", "([Ljava/lang/String;)V", 1);
+                bridge.invokestatic(irClass.getName(), "main", "()V", 0, false);
+                bridge.op(ClassFileWriter.RETURN, 0);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Compiles one function into a class of its own, for code that already keeps the
+     * function's globals elsewhere: they are read from the static int[] GLOBALS, at the
+     * index globalSlots gives each name, which the caller sets after loading the class.
+     * A static {@code int invoke(int[])} takes the arguments as an array and returns the
+     * result, or 0 for a void function.
+     *
+     * A call of the function itself is an invokestatic as usual. Any other callee is not in
+     * the class, so the call passes the callee's entry in the static Object[] CALLEES, which
+     * the caller also sets, and the arguments as an int[] to {@link HotMethodCompiler#call}.
+     */
+    static byte[] compileStandalone(String className, IrFunction function, ToIntFunction<String> globalSlots) {
+        ClassFileWriter writer = new ClassFileWriter(className);
+        writer.addField(ClassFileWriter.ACC_STATIC, GLOBALS, "[I");
+        writer.addField(ClassFileWriter.ACC_STATIC, CALLEES, "[Ljava/lang/Object;");
+        new FunctionCompiler(writer, function, globalSlots).compile();
+
+        List<IrFunction.Parameter> parameters = function.getParameters();
+        ClassFileWriter.Code invoke = writer.addMethod(ClassFileWriter.ACC_STATIC, "invoke", "([I)I", 1);
+        for (int i = 0; i < parameters.size(); i++) {
+            invoke.aload(0);
+            invoke.iconst(i);
+            invoke.op(ClassFileWriter.IALOAD, -1);
+        }
+        boolean returnsValue = function.getReturnType() != IrType.VOID;
+        invoke.invokestatic(className, function.getName(), descriptor(function), parameters.size(), returnsValue);
+        if (!returnsValue) {
+            invoke.iconst(0);
+        }
+        invoke.op(ClassFileWriter.IRETURN, -1);
+        return writer.toByteArray();
+    }
+
+    //The functions other than itself that a function calls, in the order a standalone class expects in CALLEES
+    static List<String> callees(IrFunction function) {
+        Set<String> callees = new LinkedHashSet<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.CALL && !instruction.getCallee().equals(function.getName())) {
+                    callees.add(instruction.getCallee());
+                }
+            }
+        }
+        return new ArrayList<>(callees);
+    }
+
+    static String descriptor(IrType type) {
+        return switch (type) {
+            case I1 -> "Z";
+            case I8 -> "C";
+            case I16 -> "S";
+            case I32 -> "I";
+            case VOID -> "V";
+            default -> throw new IllegalArgumentException("The JVM backend does not support " + type.getName() + " values.");
+        };
+    }
+
+    static String descriptor(IrFunction function) {
+        List<IrType> parameters = new ArrayList<>();
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            parameters.add(parameter.getType());
+        }
+        return descriptor(parameters, function.getReturnType());
+    }
+
+    static String descriptor(List<IrType> parameters, IrType returnType) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (IrType parameter : parameters) {
+            descriptor.append(descriptor(parameter));
+        }
+        return descriptor.append(')').append(descriptor(returnType)).toString();
+    }
+
+    /**
+     * Emits one function. Blocks are laid out in IR order, so a branch to the next block
+     * falls through, and a comparison feeding only the conditional branch right after it
+     * becomes a single if_icmp instruction.
+     */
+    private static final class FunctionCompiler {
+        private final ClassFileWriter writer;
+        private final IrFunction function;
+        private final Map<IrValue, Integer> locals = new HashMap<>();
+        private final Map<IrValue, IrBlock> definitions = new HashMap<>();
+        private final Map<IrValue, Integer> uses = new HashMap<>();
+        //Length of each array alloca
+        private final Map<IrValue, Integer> arrays = new LinkedHashMap<>();
+        private final Map<IrBlock, ClassFileWriter.Label> labels = new HashMap<>();
+        //Index of each global in GLOBALS, or null when globals are static fields of their own
+        private final ToIntFunction<String> globalSlots;
+        //Index in CALLEES of each function a standalone class calls, other than its own
+        private final List<String> callees;
+        private ClassFileWriter.Code code;
+
+        FunctionCompiler(ClassFileWriter writer, IrFunction function, ToIntFunction<String> globalSlots) {
+            this.writer = writer;
+            this.function = function;
+            this.globalSlots = globalSlots;
+            this.callees = globalSlots != null ? callees(function) : List.of();
+        }
+
+        void compile() {
+            boolean initializer = function.getName().equals(IrClass.INITIALIZER);
+            int access = initializer ? ClassFileWriter.ACC_STATIC : ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC;
+            List<IrFunction.Parameter> parameters = function.getParameters();
+            code = writer.addMethod(access, function.getName(), descriptor(function), parameters.size());
+            for (IrFunction.Parameter parameter : parameters) {
+                locals.put(parameter.getRegister(), locals.size());
+            }
+            Set<IrValue> zeroed = assignLocals();
+
+            //The verifier must see every local assigned on every path before it is read
+            for (IrValue value : zeroed) {
+                code.iconst(0);
+                code.istore(locals.get(value));
+            }
+            for (Map.Entry<IrValue, Integer> array : arrays.entrySet()) {
+                code.iconst(array.getValue());
+                code.newarray(ClassFileWriter.T_INT);
+                code.astore(locals.get(array.getKey()));
+            }
+
+            List<IrBlock> blocks = function.getBlocks();
+            for (IrBlock block : blocks) {
+                labels.put(block, code.newLabel());
+            }
+            for (int i = 0; i < blocks.size(); i++) {
+                IrBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+                code.mark(labels.get(blocks.get(i)));
+                emitBlock(blocks.get(i), next);
+            }
+            IrBlock last = blocks.get(blocks.size() - 1);
+            if (last.getTerminator() == null) {
+                if (function.getReturnType() == IrType.VOID) {
+                    code.op(ClassFileWriter.RETURN, 0);
+                } else {
+                    code.iconst(0);
+                    code.op(ClassFileWriter.IRETURN, -1);
+                }
+            }
+        }
+
+        //Gives every defined register a local and returns those that need a zero at entry
+        private Set<IrValue> assignLocals() {
+            Set<IrValue> zeroed = new LinkedHashSet<>();
+            for (IrBlock block : function.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    IrValue.Register result = instruction.getResult();
+                    if (result != null) {
+                        descriptor(instruction.getType()); //Rejects values no int local can hold
+                        locals.putIfAbsent(result, locals.size());
+                        definitions.put(result, block);
+                        if (instruction.isArrayAlloca()) {
+                            arrays.put(result, instruction.getLength());
+                        } else if (instruction.getOpcode() == IrOpcode.ALLOCA) {
+                            zeroed.add(result);
+                        }
+                    }
+                }
+            }
+            for (IrBlock block : function.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    for (IrValue operand : instruction.getOperands()) {
+                        uses.merge(operand, 1, Integer::sum);
+                        IrBlock definition = definitions.get(operand);
+                        if (definition != null && definition != block) {
+                            zeroed.add(operand);
+                        }
+                    }
+                }
+            }
+            zeroed.removeAll(arrays.keySet());
+            return zeroed;
+        }
+
+        private void emitBlock(IrBlock block, IrBlock next) {
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                IrInstruction instruction = instructions.get(i);
+                IrInstruction following = i + 1 < instructions.size() ? instructions.get(i + 1) : null;
+                if (instruction.getOpcode().isCompare() && following != null
+                        && following.getOpcode() == IrOpcode.COND_BR
+                        && following.getOperand(0).equals(instruction.getResult())
+                        && uses.get(instruction.getResult()) == 1) {
+                    push(instruction.getOperand(0));
+                    push(instruction.getOperand(1));
+                    branch(compareOpcode(instruction.getOpcode()), following.getTargets(), next);
+                    return;
+                }
+                emit(instruction, next);
+                //Anything after the first terminator is unreachable
+                if (instruction.getOpcode().isTerminator()) {
+                    return;
+                }
+            }
+        }
+
+        private void emit(IrInstruction instruction, IrBlock next) {
+            IrOpcode opcode = instruction.getOpcode();
+            switch (opcode) {
+                case ALLOCA -> {
+                }
+                case LOAD -> {
+                    IrValue pointer = instruction.getOperand(0);
+                    if (pointer instanceof IrValue.Global global && globalSlots != null) {
+                        code.getstatic(writer.getClassName(), GLOBALS, "[I");
+                        code.iconst(globalSlots.applyAsInt(global.getName()));
+                        code.op(ClassFileWriter.IALOAD, -1);
+                    } else if (pointer instanceof IrValue.Global global) {
+                        code.getstatic(writer.getClassName(), global.getName(), descriptor(instruction.getType()));
+                    } else {
+                        code.iload(local(pointer));
+                    }
+                    code.istore(local(instruction.getResult()));
+                }
+                case STORE -> {
+                    IrValue pointer = instruction.getOperand(1);
+                    if (pointer instanceof IrValue.Global global && globalSlots != null) {
+                        code.getstatic(writer.getClassName(), GLOBALS, "[I");
+                        code.iconst(globalSlots.applyAsInt(global.getName()));
+                        push(instruction.getOperand(0));
+                        code.op(ClassFileWriter.IASTORE, -3);
+                        return;
+                    }
+                    push(instruction.getOperand(0));
+                    if (pointer instanceof IrValue.Global global) {
+                        code.putstatic(writer.getClassName(), global.getName(), descriptor(instruction.getType()));
+                    } else {
+                        code.istore(local(pointer));
+                    }
+                }
+                case LOAD_ELEMENT -> {
+                    code.aload(local(instruction.getOperand(0)));
+                    push(instruction.getOperand(1));
+                    code.op(ClassFileWriter.IALOAD, -1);
+                    code.istore(local(instruction.getResult()));
+                }
+                case STORE_ELEMENT -> {
+                    code.aload(local(instruction.getOperand(1)));
+                    push(instruction.getOperand(2));
+                    push(instruction.getOperand(0));
+                    code.op(ClassFileWriter.IASTORE, -3);
+                }
+                case BOUNDS_CHECK -> {
+                    push(instruction.getOperand(0));
+                    code.iconst(instruction.getLength());
+                    code.invokestatic("java/util/Objects", "checkIndex", "(II)I", 2, true);
+                    code.op(ClassFileWriter.POP, -1);
+                }
+                case BR -> {
+                    IrBlock target = instruction.getTargets().get(0);
+                    if (target != next) {
+                        code.branch(ClassFileWriter.GOTO, labels.get(target));
+                    }
+                }
+                case COND_BR -> {
+                    push(instruction.getOperand(0));
+                    branch(ClassFileWriter.IFNE, instruction.getTargets(), next);
+                }
+                case RET -> {
+                    if (instruction.getOperands().isEmpty()) {
+                        code.op(ClassFileWriter.RETURN, 0);
+                    } else {
+                        push(instruction.getOperand(0));
+                        code.op(ClassFileWriter.IRETURN, -1);
+                    }
+                }
+                case CALL -> {
+                    int callee = callees.indexOf(instruction.getCallee());
+                    if (callee >= 0) {
+                        emitCallOutside(instruction, callee);
+                        return;
+                    }
+                    for (IrValue argument : instruction.getOperands()) {
+                        push(argument);
+                    }
+                    boolean returnsValue = instruction.getType() != IrType.VOID;
+                    code.invokestatic(writer.getClassName(), instruction.getCallee(),
+                            descriptor(instruction.getArgumentTypes(), instruction.getType()),
+                            instruction.getOperands().size(), returnsValue);
+                    if (instruction.getResult() != null) {
+                        code.istore(local(instruction.getResult()));
+                    } else if (returnsValue) {
+                        code.op(ClassFileWriter.POP, -1);
+                    }
+                }
+                default -> {
+                    push(instruction.getOperand(0));
+                    push(instruction.getOperand(1));
+                    int result = local(instruction.getResult());
+                    if (opcode.isCompare()) {
+                        //Materialize the i1 as 0 or 1
+                        ClassFileWriter.Label isFalse = code.newLabel();
+                        ClassFileWriter.Label done = code.newLabel();
+                        code.branch(negate(compareOpcode(opcode)), isFalse);
+                        code.iconst(1);
+                        code.istore(result);
+                        code.branch(ClassFileWriter.GOTO, done);
+                        code.mark(isFalse);
+                        code.iconst(0);
+                        code.istore(result);
+                        code.mark(done);
+                    } else {
+                        code.op(arithmeticOpcode(opcode), -1);
+                        code.istore(result);
+                    }
+                }
+            }
+        }
+
+        //Calls CALLEES[callee] through HotMethodCompiler.call, with the arguments in an int[]
+        private void emitCallOutside(IrInstruction instruction, int callee) {
+            code.getstatic(writer.getClassName(), CALLEES, "[Ljava/lang/Object;");
+            code.iconst(callee);
+            code.op(ClassFileWriter.AALOAD, -1);
+            List<IrValue> arguments = instruction.getOperands();
+            code.iconst(arguments.size());
+            code.newarray(ClassFileWriter.T_INT);
+            for (int i = 0; i < arguments.size(); i++) {
+                code.op(ClassFileWriter.DUP, 1);
+                code.iconst(i);
+                push(arguments.get(i));
+                code.op(ClassFileWriter.IASTORE, -3);
+            }
+            code.invokestatic(CALL_BRIDGE, "call", "(Ljava/lang/Object;[I)I", 2, true);
+            if (instruction.getResult() != null) {
+                code.istore(local(instruction.getResult()));
+            } else {
+                code.op(ClassFileWriter.POP, -1);
+            }
+        }
+
+        //Branches to targets[0] when the jump condition holds and to targets[1] otherwise
+        private void branch(int jump, List<IrBlock> targets, IrBlock next) {
+            IrBlock ifTrue = targets.get(0);
+            IrBlock ifFalse = targets.get(1);
+            if (ifTrue == next) {
+                code.branch(negate(jump), labels.get(ifFalse));
+            } else {
+                code.branch(jump, labels.get(ifTrue));
+                if (ifFalse != next) {
+                    code.branch(ClassFileWriter.GOTO, labels.get(ifFalse));
+                }
+            }
+        }
+
+        private void push(IrValue value) {
+            if (value instanceof IrValue.Constant constant) {
+                code.iconst((int) constant.getValue());
+            } else {
+                code.iload(local(value));
+            }
+        }
+
+        private int local(IrValue value) {
+            Integer local = locals.get(value);
+            if (local == null) {
+                throw new IllegalStateException("Use of undefined value " + value + " in @" + function.getName());
+            }
+            return local;
+        }
+    }
+
+    private static int compareOpcode(IrOpcode opcode) {
+        return switch (opcode) {
+            case ICMP_EQ -> ClassFileWriter.IF_ICMPEQ;
+            case ICMP_NE -> ClassFileWriter.IF_ICMPNE;
+            case ICMP_SLT -> ClassFileWriter.IF_ICMPLT;
+            case ICMP_SLE -> ClassFileWriter.IF_ICMPLE;
+            case ICMP_SGT -> ClassFileWriter.IF_ICMPGT;
+            case ICMP_SGE -> ClassFileWriter.IF_ICMPGE;
+            default -> throw new IllegalArgumentException(opcode + " is not a comparison.");
+        };
+    }
+
+    //The conditional branch taken exactly when jump is not
+    private static int negate(int jump) {
+        return switch (jump) {
+            case ClassFileWriter.IFEQ -> ClassFileWriter.IFNE;
+            case ClassFileWriter.IFNE -> ClassFileWriter.IFEQ;
+            case ClassFileWriter.IF_ICMPEQ -> ClassFileWriter.IF_ICMPNE;
+            case ClassFileWriter.IF_ICMPNE -> ClassFileWriter.IF_ICMPEQ;
+            case ClassFileWriter.IF_ICMPLT -> ClassFileWriter.IF_ICMPGE;
+            case ClassFileWriter.IF_ICMPGE -> ClassFileWriter.IF_ICMPLT;
+            case ClassFileWriter.IF_ICMPGT -> ClassFileWriter.IF_ICMPLE;
+            case ClassFileWriter.IF_ICMPLE -> ClassFileWriter.IF_ICMPGT;
+            default -> throw new IllegalArgumentException("Not a conditional branch: " + jump);
+        };
+    }
+
+    private static int arithmeticOpcode(IrOpcode opcode) {
+        return switch (opcode) {
+            case ADD -> ClassFileWriter.IADD;
+            case SUB -> ClassFileWriter.ISUB;
+            case MUL -> ClassFileWriter.IMUL;
+            case SDIV -> ClassFileWriter.IDIV;
+            case SREM -> ClassFileWriter.IREM;
+            case AND -> ClassFileWriter.IAND;
+            case OR -> ClassFileWriter.IOR;
+            case XOR -> ClassFileWriter.IXOR;
+            default -> throw new IllegalArgumentException("Unsupported instruction: " + opcode.getMnemonic());
+        };
+    }
+}
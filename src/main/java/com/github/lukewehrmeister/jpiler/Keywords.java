@@ -0,0 +1,154 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Reserved words of the language, looked up through a perfect hash.
+ *
+ * The lexer matches every word as IDENTIFIER and reclassifies it here, so keywords do
+ * not each need their own path through the lexer ATN. The hash reads only the first
+ * and last character and the length; for the words below it is collision-free in a
+ * 128-slot table, which the static initializer checks. A lookup is therefore one probe
+ * and at most one character-by-character comparison, and never allocates.
+ */
+final class Keywords {
+    private static final int SIZE = 128;
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 9;
+    private static final String ARGS_SUFFIX = "[] args";
+
+    private static final char[][] WORDS = new char[SIZE][];
+    private static final int[] TYPES = new int[SIZE];
+
+    static {
+        add("byte", JavaSubsetLexer.BYTE);
+        add("short", JavaSubsetLexer.SHORT);
+        add("int", JavaSubsetLexer.INT);
+        add("long", JavaSubsetLexer.LONG);
+        add("float", JavaSubsetLexer.FLOAT);
+        add("double", JavaSubsetLexer.DOUBLE);
+        add("boolean", JavaSubsetLexer.BOOLEAN);
+        add("char", JavaSubsetLexer.CHAR);
+        add("String", JavaSubsetLexer.STRING);
+
+        add("if", JavaSubsetLexer.IF);
+        add("else", JavaSubsetLexer.ELSE);
+        add("for", JavaSubsetLexer.FOR);
+        add("while", JavaSubsetLexer.WHILE);
+        add("do", JavaSubsetLexer.DO);
+
+        add("return", JavaSubsetLexer.RETURN);
+        add("class", JavaSubsetLexer.CLASS);
+        add("public", JavaSubsetLexer.PUBLIC);
+        add("private", JavaSubsetLexer.PRIVATE);
+        add("protected", JavaSubsetLexer.PROTECTED);
+        add("static", JavaSubsetLexer.STATIC);
+        add("void", JavaSubsetLexer.VOID);
+        add("import", JavaSubsetLexer.IMPORT);
+        add("new", JavaSubsetLexer.NEW);
+
+        for (String word : new String[] {"Integer", "Double", "Float", "Character", "Boolean", "Byte", "Long", "Object", "Void"}) {
+            add(word, JavaSubsetLexer.SIMPLE_KEYWORDS);
+        }
+
+        add("true", JavaSubsetLexer.TRUE);
+        add("false", JavaSubsetLexer.FALSE);
+        add("null", JavaSubsetLexer.NULL_LITERAL);
+    }
+
+    private Keywords() {
+    }
+
+    private static int hash(int first, int last, int length) {
+        return (first + last * 36 + length) & (SIZE - 1);
+    }
+
+    private static void add(String word, int type) {
+        int slot = hash(word.charAt(0), word.charAt(word.length() - 1), word.length());
+        if (WORDS[slot] != null) {
+            throw new IllegalStateException("Keyword hash collision between '" + word + "' and '"
+                    + new String(WORDS[slot]) + "'.");
+        }
+        WORDS[slot] = word.toCharArray();
+        TYPES[slot] = type;
+    }
+
+    /**
+     * Token type for the word in input[start, stop), or IDENTIFIER if it is not a keyword.
+     * The input must be positioned at stop, as it is when the lexer emits a token.
+     */
+    static int lookup(CharStream input, int start, int stop) {
+        int length = stop - start;
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return JavaSubsetLexer.IDENTIFIER;
+        }
+        int offset = start - stop;
+        int slot = hash(input.LA(offset), input.LA(-1), length);
+        char[] word = WORDS[slot];
+        if (word == null || word.length != length) {
+            return JavaSubsetLexer.IDENTIFIER;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input.LA(offset + i) != word[i]) {
+                return JavaSubsetLexer.IDENTIFIER;
+            }
+        }
+        return TYPES[slot];
+    }
+
+    /**
+     * Token type for the code points text[start, stop), or IDENTIFIER if they are not a keyword.
+     */
+    static int lookup(int[] text, int start, int stop) {
+        int length = stop - start;
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return JavaSubsetLexer.IDENTIFIER;
+        }
+        int slot = hash(text[start], text[stop - 1], length);
+        char[] word = WORDS[slot];
+        if (word == null || word.length != length) {
+            return JavaSubsetLexer.IDENTIFIER;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text[start + i] != word[i]) {
+                return JavaSubsetLexer.IDENTIFIER;
+            }
+        }
+        return TYPES[slot];
+    }
+
+    static int lookup(String text) {
+        CharStream input = CharStreams.fromString(text);
+        input.seek(text.length());
+        return lookup(input, 0, text.length());
+    }
+
+    /**
+     * Whether the input continues with "[] args", which after String forms the STRINGARGS token.
+     */
+    static boolean followedByArgs(CharStream input) {
+        for (int i = 0; i < ARGS_SUFFIX.length(); i++) {
+            if (input.LA(i + 1) != ARGS_SUFFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean followedByArgs(int[] text, int from) {
+        if (from + ARGS_SUFFIX.length() > text.length) {
+            return false;
+        }
+        for (int i = 0; i < ARGS_SUFFIX.length(); i++) {
+            if (text[from + i] != ARGS_SUFFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int argsSuffixLength() {
+        return ARGS_SUFFIX.length();
+    }
+}
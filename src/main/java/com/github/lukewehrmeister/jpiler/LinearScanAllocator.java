@@ -0,0 +1,114 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear-scan register allocation (Poletto and Sarkar) over {@link Liveness} intervals.
+ *
+ * Intervals are visited by increasing start. Those that have ended free their
+ * register; when every register is taken, the interval that ends last is spilled,
+ * either the new one or one already holding a register. A spilled value keeps its
+ * slot for its whole interval, and a slot is reused by any later interval that starts
+ * after its last occupant ends.
+ */
+public final class LinearScanAllocator {
+    private LinearScanAllocator() {
+    }
+
+    public static Allocation allocate(Liveness liveness, int registers) {
+        if (registers < 1) {
+            throw new IllegalArgumentException("Need at least one register, got " + registers);
+        }
+        Allocation allocation = new Allocation();
+        List<Liveness.Interval> active = new ArrayList<>(); //Holding registers, by increasing end
+        List<Integer> slotEnds = new ArrayList<>(); //Last position each spill slot is in use
+        Deque<Integer> freeRegisters = new ArrayDeque<>();
+        for (int r = 0; r < registers; r++) {
+            freeRegisters.add(r);
+        }
+
+        for (Liveness.Interval interval : liveness.getIntervals()) {
+            while (!active.isEmpty() && active.get(0).getEnd() < interval.getStart()) {
+                freeRegisters.push(allocation.registers.get(active.remove(0).getValue()));
+            }
+
+            if (!freeRegisters.isEmpty()) {
+                allocation.registers.put(interval.getValue(), freeRegisters.pop());
+                insert(active, interval);
+                continue;
+            }
+            Liveness.Interval last = active.get(active.size() - 1);
+            Liveness.Interval victim = interval;
+            if (last.getEnd() > interval.getEnd()) {
+                //Take the register of the interval that lives longest, and spill that one instead
+                victim = active.remove(active.size() - 1);
+                allocation.registers.put(interval.getValue(), allocation.registers.remove(victim.getValue()));
+                insert(active, interval);
+            }
+            allocation.slots.put(victim.getValue(), slot(slotEnds, victim));
+            allocation.spillCount++;
+        }
+        allocation.slotCount = slotEnds.size();
+        return allocation;
+    }
+
+    //A slot free for the whole of the interval, which may have started well before the current one
+    private static int slot(List<Integer> slotEnds, Liveness.Interval interval) {
+        for (int slot = 0; slot < slotEnds.size(); slot++) {
+            if (slotEnds.get(slot) < interval.getStart()) {
+                slotEnds.set(slot, interval.getEnd());
+                return slot;
+            }
+        }
+        slotEnds.add(interval.getEnd());
+        return slotEnds.size() - 1;
+    }
+
+    private static void insert(List<Liveness.Interval> active, Liveness.Interval interval) {
+        int i = active.size();
+        while (i > 0 && active.get(i - 1).getEnd() > interval.getEnd()) {
+            i--;
+        }
+        active.add(i, interval);
+    }
+
+    /**
+     * Where every value lives: a register numbered from 0, or a spill slot numbered from 0.
+     * Values with no interval have neither.
+     */
+    public static final class Allocation {
+        private final Map<IrValue, Integer> registers = new HashMap<>();
+        private final Map<IrValue, Integer> slots = new HashMap<>();
+        private int slotCount;
+        private int spillCount;
+
+        //The value's register, or -1
+        public int registerOf(IrValue value) {
+            return registers.getOrDefault(value, -1);
+        }
+
+        //The value's spill slot, or -1
+        public int slotOf(IrValue value) {
+            return slots.getOrDefault(value, -1);
+        }
+
+        public boolean isAllocated(IrValue value) {
+            return registers.containsKey(value) || slots.containsKey(value);
+        }
+
+        //Spill slots the frame needs
+        public int getSlotCount() {
+            return slotCount;
+        }
+
+        //Values that did not get a register
+        public int getSpillCount() {
+            return spillCount;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live variables of one function, and the live interval of every value in a linear
+ * numbering of its instructions.
+ *
+ * The values are the function's parameters and every register an instruction defines,
+ * alloca'd slots included: a slot is never address-taken, so a store to it is a
+ * definition and a load from it a use, exactly like a register. Globals and arrays live
+ * in memory and are not tracked. As in the backends, a block's instructions end at its first
+ * terminator, and a block without one falls through to the next.
+ *
+ * Instruction i of the layout reads its operands at position 2i and writes its result at
+ * 2i + 1, so a value whose last use is at instruction i does not interfere with the
+ * value instruction i defines.
+ */
+public final class Liveness {
+    private final IrFunction function;
+    private final List<IrValue> values = new ArrayList<>();
+    private final Map<IrValue, Integer> index = new HashMap<>();
+    private final Map<IrBlock, List<IrInstruction>> instructions = new HashMap<>();
+    private final Map<IrBlock, BitSet> liveIn = new HashMap<>();
+    private final Map<IrBlock, BitSet> liveOut = new HashMap<>();
+    private final List<Interval> intervals = new ArrayList<>();
+
+    public Liveness(IrFunction function) {
+        this.function = function;
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            number(parameter.getRegister());
+        }
+        for (IrBlock block : function.getBlocks()) {
+            List<IrInstruction> live = new ArrayList<>();
+            for (IrInstruction instruction : block.getInstructions()) {
+                live.add(instruction);
+                if (instruction.getResult() != null && !instruction.isArrayAlloca()) {
+                    number(instruction.getResult());
+                }
+                if (instruction.getOpcode().isTerminator()) {
+                    break;
+                }
+            }
+            instructions.put(block, live);
+        }
+        solve();
+        buildIntervals();
+    }
+
+    private void number(IrValue value) {
+        if (!index.containsKey(value)) {
+            index.put(value, values.size());
+            values.add(value);
+        }
+    }
+
+    //The tracked value an operand refers to, or -1 for constants, globals and unknown registers
+    private int tracked(IrValue operand) {
+        Integer i = index.get(operand);
+        return i == null ? -1 : i;
+    }
+
+    //Values an instruction reads
+    private void uses(IrInstruction instruction, BitSet into) {
+        List<IrValue> operands = instruction.getOperands();
+        switch (instruction.getOpcode()) {
+            case STORE -> set(into, tracked(operands.get(0)));
+            default -> operands.forEach(operand -> set(into, tracked(operand)));
+        }
+    }
+
+    //The value an instruction writes, or -1; an alloca only names a slot
+    private int definition(IrInstruction instruction) {
+        return switch (instruction.getOpcode()) {
+            case ALLOCA -> -1;
+            case STORE -> tracked(instruction.getOperand(1));
+            default -> instruction.getResult() == null ? -1 : tracked(instruction.getResult());
+        };
+    }
+
+    private static void set(BitSet bits, int i) {
+        if (i >= 0) {
+            bits.set(i);
+        }
+    }
+
+    public List<IrBlock> successors(IrBlock block) {
+        return Cfg.successors(function, block);
+    }
+
+    //Backward dataflow to a fixed point: in = use + (out - def), out = union of successors' in
+    private void solve() {
+        Map<IrBlock, BitSet> use = new HashMap<>();
+        Map<IrBlock, BitSet> def = new HashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            BitSet blockUse = new BitSet();
+            BitSet blockDef = new BitSet();
+            BitSet reads = new BitSet();
+            for (IrInstruction instruction : instructions.get(block)) {
+                reads.clear();
+                uses(instruction, reads);
+                reads.andNot(blockDef);
+                blockUse.or(reads);
+                set(blockDef, definition(instruction));
+            }
+            use.put(block, blockUse);
+            def.put(block, blockDef);
+            liveIn.put(block, new BitSet());
+            liveOut.put(block, new BitSet());
+        }
+
+        List<IrBlock> reversed = new ArrayList<>(function.getBlocks());
+        Collections.reverse(reversed);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IrBlock block : reversed) {
+                BitSet out = new BitSet();
+                for (IrBlock successor : successors(block)) {
+                    out.or(liveIn.get(successor));
+                }
+                BitSet in = (BitSet) out.clone();
+                in.andNot(def.get(block));
+                in.or(use.get(block));
+                if (!in.equals(liveIn.get(block)) || !out.equals(liveOut.get(block))) {
+                    liveIn.put(block, in);
+                    liveOut.put(block, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void buildIntervals() {
+        int[] start = new int[values.size()];
+        int[] end = new int[values.size()];
+        Arrays.fill(start, Integer.MAX_VALUE);
+        Arrays.fill(end, -1);
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            start[index.get(parameter.getRegister())] = 0;
+        }
+
+        int position = 0;
+        BitSet reads = new BitSet();
+        for (IrBlock block : function.getBlocks()) {
+            int first = position;
+            for (IrInstruction instruction : instructions.get(block)) {
+                reads.clear();
+                uses(instruction, reads);
+                for (int v = reads.nextSetBit(0); v >= 0; v = reads.nextSetBit(v + 1)) {
+                    start[v] = Math.min(start[v], position);
+                    end[v] = Math.max(end[v], position);
+                }
+                int defined = definition(instruction);
+                if (defined >= 0) {
+                    start[defined] = Math.min(start[defined], position + 1);
+                    end[defined] = Math.max(end[defined], position + 1);
+                }
+                position += 2;
+            }
+            int last = Math.max(first, position - 1);
+            BitSet in = liveIn.get(block);
+            for (int v = in.nextSetBit(0); v >= 0; v = in.nextSetBit(v + 1)) {
+                start[v] = Math.min(start[v], first);
+                end[v] = Math.max(end[v], first);
+            }
+            BitSet out = liveOut.get(block);
+            for (int v = out.nextSetBit(0); v >= 0; v = out.nextSetBit(v + 1)) {
+                start[v] = Math.min(start[v], first);
+                end[v] = Math.max(end[v], last);
+            }
+        }
+
+        for (int v = 0; v < values.size(); v++) {
+            //A value that is never defined or read, such as a slot only ever alloca'd, needs no location
+            if (end[v] >= 0) {
+                intervals.add(new Interval(values.get(v), Math.min(start[v], end[v]), end[v]));
+            }
+        }
+        intervals.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(a.end, b.end));
+    }
+
+    public IrFunction getFunction() {
+        return function;
+    }
+
+    //Instructions of a block up to and including its first terminator
+    public List<IrInstruction> getInstructions(IrBlock block) {
+        return instructions.get(block);
+    }
+
+    public Set<IrValue> getLiveIn(IrBlock block) {
+        return toValues(liveIn.get(block));
+    }
+
+    public Set<IrValue> getLiveOut(IrBlock block) {
+        return toValues(liveOut.get(block));
+    }
+
+    private Set<IrValue> toValues(BitSet bits) {
+        Set<IrValue> set = new LinkedHashSet<>();
+        for (int v = bits.nextSetBit(0); v >= 0; v = bits.nextSetBit(v + 1)) {
+            set.add(values.get(v));
+        }
+        return set;
+    }
+
+    //Intervals of every value that is defined or read, by increasing start
+    public List<Interval> getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * The positions from the first definition or live-in of a value to its last use or
+     * live-out, inclusive, ignoring any holes in between.
+     */
+    public static final class Interval {
+        private final IrValue value;
+        private final int start;
+        private final int end;
+
+        Interval(IrValue value, int start, int end) {
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+
+        public IrValue getValue() {
+            return value;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return value + " [" + start + ", " + end + "]";
+        }
+    }
+}
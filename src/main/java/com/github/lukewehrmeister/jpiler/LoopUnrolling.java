@@ -0,0 +1,524 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unrolls counted innermost loops: a loop whose header compares a slot against a
+ * bound, where the slot is advanced by a constant once per iteration. If the slot starts
+ * from a constant stored before the loop and the bound is a constant, the trip count is
+ * known at compile time. That is the shape {@code for (int i = 0; i < 4; i++)} lowers to.
+ *
+ * When a known trip count times the size of the loop fits the budget, the loop is replaced
+ * by that many copies of its body, each copy's header branching straight into the body.
+ * Otherwise it is unrolled by up to the configured factor, as far as the budget allows:
+ * the leftover iterations are peeled in front as straight copies, after which the loop
+ * runs a multiple of the factor times, so only the first body of each round checks the
+ * condition. The header is still run the same number of times in both cases, so its
+ * loads and compare are left for later passes to clean up.
+ *
+ * A loop counting up by a constant to a bound that is only known at run time, such as
+ * {@code for (int i = 0; i < n; i++)} with {@code n} not stored in the loop, gets an
+ * unrolled main loop in front of it instead. Each round of the main loop runs the body
+ * up to the factor times with one test, {@code i + (factor - 1) * step < n}, worked out
+ * as {@code i < n - (factor - 1) * step} so that it cannot overflow. Once that fails the
+ * original loop runs the rest.
+ *
+ * A loop only qualifies if its single latch is dominated by the one store to the
+ * counter, it allocates nothing, and only its header leaves it other than by returning.
+ * Copied registers and blocks get a {@code .uN} suffix.
+ */
+public final class LoopUnrolling implements FunctionPass {
+    public static final int DEFAULT_FACTOR = 4;
+    //Instructions unrolling may add to one loop
+    public static final int DEFAULT_BUDGET = 128;
+    //Longest trip count worked out by stepping the counter
+    private static final int MAX_TRIP_COUNT = 1 << 20;
+
+    private final int factor;
+    private final int budget;
+
+    public LoopUnrolling() {
+        this(DEFAULT_FACTOR, DEFAULT_BUDGET);
+    }
+
+    public LoopUnrolling(int factor, int budget) {
+        if (factor < 1 || budget < 0) {
+            throw new IllegalArgumentException("Bad unroll factor " + factor + " or budget " + budget);
+        }
+        this.factor = factor;
+        this.budget = budget;
+    }
+
+    @Override
+    public String getName() {
+        return "unroll";
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Set<IrBlock> tried = new HashSet<>();
+        boolean changed = false;
+        boolean unrolled = true;
+        //Unrolling changes the CFG under every other loop, so start over after each one
+        while (unrolled) {
+            unrolled = false;
+            Loops loops = analyses.get(AnalysisManager.Analysis.LOOPS, function);
+            for (Loops.Loop loop : loops.getLoops()) {
+                if (isInnermost(loops, loop) && tried.add(loop.getHeader())) {
+                    CountedLoop counted = CountedLoop.match(function, loop,
+                            analyses.get(AnalysisManager.Analysis.CFG, function),
+                            analyses.get(AnalysisManager.Analysis.DOMINATORS, function));
+                    if (counted != null && unroll(function, counted, tried)) {
+                        analyses.invalidate(function, false);
+                        unrolled = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isInnermost(Loops loops, Loops.Loop loop) {
+        for (Loops.Loop other : loops.getLoops()) {
+            if (other.getParent() == loop) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean unroll(IrFunction function, CountedLoop loop, Set<IrBlock> tried) {
+        int size = 0;
+        for (IrBlock block : loop.blocks) {
+            size += block.getInstructions().size();
+        }
+        Names names = new Names(function);
+        List<IrBlock> blocks = function.getBlocks();
+        if (loop.trips < 0) {
+            return unrollWithRemainder(loop, size, names, blocks, tried);
+        }
+        if ((long) loop.trips * size <= budget) {
+            IrBlock first = chain(loop, loop.trips, loop.header, names, blocks, blocks.indexOf(loop.header));
+            retarget(loop.preheader, loop.header, first);
+            replaceTerminator(loop.header, IrInstruction.br(loop.exit));
+            for (IrBlock block : loop.blocks) {
+                if (block != loop.header) {
+                    blocks.remove(block);
+                }
+            }
+            return true;
+        }
+
+        int copies = Math.min(factor, loop.trips);
+        while (copies >= 2 && (copies - 1 + loop.trips % copies) * size > budget) {
+            copies--;
+        }
+        if (copies < 2) {
+            return false;
+        }
+        IrBlock peeled = chain(loop, loop.trips % copies, loop.header, names, blocks, blocks.indexOf(loop.header));
+        retarget(loop.preheader, loop.header, peeled);
+        int end = blocks.indexOf(loop.blocks.get(loop.blocks.size() - 1)) + 1;
+        IrBlock rest = chain(loop, copies - 1, loop.header, names, blocks, end);
+        retarget(loop.latch, loop.header, rest);
+        return true;
+    }
+
+    /**
+     * Puts a main loop of straight copies in front of a loop whose bound is only known at
+     * run time, leaving the loop itself to run whatever iterations are left over. The main
+     * loop's header is added to tried so that its copies are not unrolled again.
+     */
+    private boolean unrollWithRemainder(CountedLoop loop, int size, Names names, List<IrBlock> blocks,
+                                        Set<IrBlock> tried) {
+        int copies = factor;
+        while (copies >= 2 && copies * size > budget) {
+            copies--;
+        }
+        if (copies < 2) {
+            return false;
+        }
+        //How far past the counter the last copy of a round gets, and the least bound that leaves room for a round
+        long reach = (long) (copies - 1) * loop.step;
+        long lowest = Integer.MIN_VALUE + reach;
+        if (lowest > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        List<IrBlock> added = new ArrayList<>();
+        IrValue limit;
+        IrBlock main;
+        if (loop.bound.isConstant()) {
+            long bound = ((IrValue.Constant) loop.bound).getValue();
+            if (bound < lowest) {
+                return false;
+            }
+            main = new IrBlock(names.fresh(loop.header.getLabel()));
+            limit = IrValue.constant(bound - reach);
+        } else {
+            //A bound below lowest would wrap around when the reach is taken off it, and no round fits anyway
+            IrBlock check = new IrBlock(names.fresh(loop.header.getLabel()));
+            main = new IrBlock(names.fresh(loop.header.getLabel()));
+            IrValue.Register bound = IrValue.register(names.fresh("bound"));
+            IrValue.Register fits = IrValue.register(names.fresh("fits"));
+            check.add(IrInstruction.load(bound, IrType.I32, loop.bound));
+            check.add(IrInstruction.binary(IrOpcode.ICMP_SGE, fits, IrType.I32, bound, IrValue.constant(lowest)));
+            check.add(IrInstruction.condBr(fits, main, loop.header));
+            added.add(check);
+
+            IrValue.Register reloaded = IrValue.register(names.fresh("bound"));
+            IrValue.Register difference = IrValue.register(names.fresh("limit"));
+            main.add(IrInstruction.load(reloaded, IrType.I32, loop.bound));
+            main.add(IrInstruction.binary(IrOpcode.SUB, difference, IrType.I32, reloaded, IrValue.constant(reach)));
+            limit = difference;
+        }
+        IrValue.Register counter = IrValue.register(names.fresh("counter"));
+        IrValue.Register test = IrValue.register(names.fresh("round"));
+        main.add(IrInstruction.load(counter, IrType.I32, loop.counter));
+        main.add(IrInstruction.binary(loop.inclusive ? IrOpcode.ICMP_SLE : IrOpcode.ICMP_SLT, test, IrType.I32,
+                counter, limit));
+        added.add(main);
+
+        int at = blocks.indexOf(loop.header);
+        IrBlock first = chain(loop, copies, main, names, blocks, at);
+        main.add(IrInstruction.condBr(test, first, loop.header));
+        blocks.addAll(at, added);
+        retarget(loop.preheader, loop.header, added.get(0));
+        tried.add(main);
+        return true;
+    }
+
+    /**
+     * Inserts count copies of the loop at the given layout position, each running the
+     * body unconditionally and then going on to the next, the last one to next. Returns
+     * the block to enter the chain by.
+     */
+    private static IrBlock chain(CountedLoop loop, int count, IrBlock next, Names names, List<IrBlock> blocks, int at) {
+        List<IrBlock> copied = new ArrayList<>();
+        IrBlock previousLatch = null;
+        IrBlock first = next;
+        for (int copy = 0; copy < count; copy++) {
+            Map<IrBlock, IrBlock> clones = copy(loop.blocks, names);
+            IrBlock header = clones.get(loop.header);
+            replaceTerminator(header, IrInstruction.br(clones.get(loop.body)));
+            if (previousLatch == null) {
+                first = header;
+            } else {
+                retarget(previousLatch, loop.header, header);
+            }
+            //Still the original header until the next copy or next is known
+            previousLatch = clones.get(loop.latch);
+            retarget(previousLatch, header, loop.header);
+            for (IrBlock block : loop.blocks) {
+                copied.add(clones.get(block));
+            }
+        }
+        if (previousLatch != null) {
+            retarget(previousLatch, loop.header, next);
+        }
+        blocks.addAll(at, copied);
+        return first;
+    }
+
+    //Copies the blocks, renaming the registers they define and redirecting branches between them
+    private static Map<IrBlock, IrBlock> copy(List<IrBlock> loopBlocks, Names names) {
+        Map<IrBlock, IrBlock> clones = new HashMap<>();
+        Map<IrValue, IrValue.Register> registers = new HashMap<>();
+        for (IrBlock block : loopBlocks) {
+            clones.put(block, new IrBlock(names.fresh(block.getLabel() == null ? "entry" : block.getLabel())));
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getResult() != null) {
+                    registers.put(instruction.getResult(), IrValue.register(names.fresh(instruction.getResult().getName())));
+                }
+            }
+        }
+        for (IrBlock block : loopBlocks) {
+            IrBlock clone = clones.get(block);
+            for (IrInstruction instruction : block.getInstructions()) {
+                IrInstruction copy = instruction.copy(registers.get(instruction.getResult()));
+                for (int i = 0; i < copy.getOperands().size(); i++) {
+                    IrValue.Register renamed = registers.get(copy.getOperand(i));
+                    if (renamed != null) {
+                        copy.setOperand(i, renamed);
+                    }
+                }
+                for (int t = 0; t < copy.getTargets().size(); t++) {
+                    copy.setTarget(t, clones.getOrDefault(copy.getTargets().get(t), copy.getTargets().get(t)));
+                }
+                clone.add(copy);
+                if (copy.getOpcode().isTerminator()) {
+                    break;
+                }
+            }
+        }
+        return clones;
+    }
+
+    private static void retarget(IrBlock block, IrBlock from, IrBlock to) {
+        IrInstruction terminator = block.getTerminator();
+        for (int t = 0; t < terminator.getTargets().size(); t++) {
+            if (terminator.getTargets().get(t) == from) {
+                terminator.setTarget(t, to);
+            }
+        }
+    }
+
+    private static void replaceTerminator(IrBlock block, IrInstruction terminator) {
+        List<IrInstruction> instructions = block.getInstructions();
+        instructions.set(instructions.indexOf(block.getTerminator()), terminator);
+    }
+
+    //Register and label names not yet used in the function
+    private static final class Names {
+        private final Set<String> used = new HashSet<>();
+
+        Names(IrFunction function) {
+            for (IrFunction.Parameter parameter : function.getParameters()) {
+                used.add(parameter.getRegister().getName());
+            }
+            for (IrBlock block : function.getBlocks()) {
+                used.add(block.getLabel());
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getResult() != null) {
+                        used.add(instruction.getResult().getName());
+                    }
+                }
+            }
+        }
+
+        String fresh(String base) {
+            //Copies of copies count on from the original name
+            int suffix = base.lastIndexOf(".u");
+            if (suffix > 0 && suffix + 2 < base.length() && base.substring(suffix + 2).chars().allMatch(Character::isDigit)) {
+                base = base.substring(0, suffix);
+            }
+            for (int n = 0; ; n++) {
+                String name = base + ".u" + n;
+                if (used.add(name)) {
+                    return name;
+                }
+            }
+        }
+    }
+
+    /**
+     * A loop whose header tests a counter slot that moves by a constant step once per
+     * iteration. Its trip count is known if the counter starts from a constant stored
+     * before the loop and is tested against a constant; otherwise it still qualifies if it
+     * counts up to a bound that the loop does not change.
+     */
+    private static final class CountedLoop {
+        IrBlock header;
+        IrBlock latch;
+        IrBlock preheader;
+        //Where the header goes to run the body, and to leave
+        IrBlock body;
+        IrBlock exit;
+        //The loop's blocks in layout order, header included
+        List<IrBlock> blocks;
+        //-1 if only known at run time
+        int trips;
+        //For a trip count known at run time: the loop goes on while counter < bound, or <= if inclusive
+        IrValue counter;
+        int step;
+        //A constant, or the slot the header loads it from
+        IrValue bound;
+        boolean inclusive;
+
+        static CountedLoop match(IrFunction function, Loops.Loop loop, Cfg cfg, Dominators dominators) {
+            CountedLoop counted = new CountedLoop();
+            counted.header = loop.getHeader();
+            if (loop.getLatches().size() != 1) {
+                return null;
+            }
+            counted.latch = loop.getLatches().get(0);
+            counted.blocks = new ArrayList<>();
+            for (IrBlock block : function.getBlocks()) {
+                if (loop.contains(block)) {
+                    counted.blocks.add(block);
+                }
+            }
+            for (IrBlock block : counted.blocks) {
+                IrInstruction terminator = block.getTerminator();
+                if (terminator == null) {
+                    return null;
+                }
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == IrOpcode.ALLOCA) {
+                        return null;
+                    }
+                }
+                for (IrBlock target : terminator.getTargets()) {
+                    if (!loop.contains(target) && block != counted.header) {
+                        return null;
+                    }
+                }
+            }
+
+            IrInstruction branch = counted.header.getTerminator();
+            if (branch.getOpcode() != IrOpcode.COND_BR) {
+                return null;
+            }
+            boolean continueIfTrue = loop.contains(branch.getTargets().get(0));
+            counted.body = branch.getTargets().get(continueIfTrue ? 0 : 1);
+            counted.exit = branch.getTargets().get(continueIfTrue ? 1 : 0);
+            if (!loop.contains(counted.body) || loop.contains(counted.exit)) {
+                return null;
+            }
+
+            IrInstruction compare = definition(counted.header, branch.getOperand(0));
+            if (compare == null || !compare.getOpcode().isCompare() || compare.getType() != IrType.I32) {
+                return null;
+            }
+            Map<IrValue, IrInstruction> slots = StackSlotColoring.candidates(function);
+            boolean counterOnLeft = invariant(counted, compare.getOperand(1), slots);
+            IrInstruction load = definition(counted.header, compare.getOperand(counterOnLeft ? 0 : 1));
+            IrValue bound = compare.getOperand(counterOnLeft ? 1 : 0);
+            if (load == null || load.getOpcode() != IrOpcode.LOAD || !invariant(counted, bound, slots)) {
+                return null;
+            }
+            IrValue slot = load.getOperand(0);
+            if (!slots.containsKey(slot)) {
+                return null;
+            }
+
+            Integer step = step(counted, slot, load.getResult(), dominators);
+            if (step == null || !preheader(counted, loop, cfg)) {
+                return null;
+            }
+
+            //Step the counter until the header leaves the loop, in the IR's 32-bit arithmetic
+            IrValue start = start(counted.preheader, slot);
+            if (start != null && bound.isConstant()) {
+                int counter = (int) ((IrValue.Constant) start).getValue();
+                for (int trips = 0; trips <= MAX_TRIP_COUNT; trips++) {
+                    IrValue value = IrValue.constant(counter);
+                    IrValue.Constant taken = ConstantFolding.fold(IrInstruction.binary(compare.getOpcode(),
+                            compare.getResult(), IrType.I32, counterOnLeft ? value : bound, counterOnLeft ? bound : value));
+                    if ((taken.getValue() != 0) != continueIfTrue) {
+                        counted.trips = trips;
+                        return counted;
+                    }
+                    counter += step;
+                }
+            }
+
+            //Otherwise only a counter going up to its bound is handled
+            IrOpcode opcode = compare.getOpcode();
+            boolean below = counterOnLeft ? opcode == IrOpcode.ICMP_SLT || opcode == IrOpcode.ICMP_SLE
+                    : opcode == IrOpcode.ICMP_SGT || opcode == IrOpcode.ICMP_SGE;
+            if (!continueIfTrue || !below || step <= 0) {
+                return null;
+            }
+            counted.trips = -1;
+            counted.counter = slot;
+            counted.step = step;
+            counted.bound = bound.isConstant() ? bound : definition(counted.header, bound).getOperand(0);
+            counted.inclusive = opcode == IrOpcode.ICMP_SLE || opcode == IrOpcode.ICMP_SGE;
+            return counted;
+        }
+
+        //A constant, or a load in the header from a slot the loop never stores to
+        private static boolean invariant(CountedLoop counted, IrValue value, Map<IrValue, IrInstruction> slots) {
+            if (value.isConstant()) {
+                return true;
+            }
+            IrInstruction load = definition(counted.header, value);
+            if (load == null || load.getOpcode() != IrOpcode.LOAD || !slots.containsKey(load.getOperand(0))) {
+                return false;
+            }
+            for (IrBlock block : counted.blocks) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1).equals(load.getOperand(0))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        //The instruction in the block defining the register, or null
+        private static IrInstruction definition(IrBlock block, IrValue register) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getResult() != null && instruction.getResult().equals(register)) {
+                    return instruction;
+                }
+            }
+            return null;
+        }
+
+        //The constant the counter moves by each iteration, or null if it is not stored exactly once per iteration
+        private static Integer step(CountedLoop counted, IrValue slot, IrValue headerLoad, Dominators dominators) {
+            IrInstruction store = null;
+            IrBlock storeBlock = null;
+            for (IrBlock block : counted.blocks) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1).equals(slot)) {
+                        if (store != null) {
+                            return null;
+                        }
+                        store = instruction;
+                        storeBlock = block;
+                    }
+                }
+            }
+            if (store == null || storeBlock == counted.header || !dominators.dominates(storeBlock, counted.latch)) {
+                return null;
+            }
+            IrInstruction update = definition(storeBlock, store.getOperand(0));
+            if (update == null || update.getOpcode() != IrOpcode.ADD && update.getOpcode() != IrOpcode.SUB) {
+                return null;
+            }
+            boolean constantLeft = update.getOpcode() == IrOpcode.ADD && update.getOperand(0).isConstant();
+            IrValue previous = update.getOperand(constantLeft ? 1 : 0);
+            IrValue amount = update.getOperand(constantLeft ? 0 : 1);
+            if (!amount.isConstant()) {
+                return null;
+            }
+            //The counter as of this iteration: the header's load, or a reload in the store's block
+            IrInstruction reload = definition(storeBlock, previous);
+            boolean current = previous.equals(headerLoad) || reload != null && reload.getOpcode() == IrOpcode.LOAD
+                    && reload.getOperand(0).equals(slot)
+                    && storeBlock.getInstructions().indexOf(reload) < storeBlock.getInstructions().indexOf(store);
+            if (!current) {
+                return null;
+            }
+            int step = (int) ((IrValue.Constant) amount).getValue();
+            return update.getOpcode() == IrOpcode.ADD ? step : -step;
+        }
+
+        //Finds the one block that enters the loop
+        private static boolean preheader(CountedLoop counted, Loops.Loop loop, Cfg cfg) {
+            for (IrBlock predecessor : cfg.getPredecessors(counted.header)) {
+                if (!loop.contains(predecessor) && cfg.isReachable(predecessor)) {
+                    if (counted.preheader != null) {
+                        return false;
+                    }
+                    counted.preheader = predecessor;
+                }
+            }
+            return counted.preheader != null && counted.preheader.getTerminator() != null;
+        }
+
+        //The constant the counter holds on entry, stored in the preheader, or null
+        private static IrValue start(IrBlock preheader, IrValue slot) {
+            IrValue start = null;
+            for (IrInstruction instruction : preheader.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.STORE && instruction.getOperand(1).equals(slot)) {
+                    start = instruction.getOperand(0);
+                }
+                if (instruction.getOpcode().isTerminator()) {
+                    break;
+                }
+            }
+            return start != null && start.isConstant() ? start : null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The natural loops of a function. Every edge into a block that dominates its source is a
+ * back edge; the loop it closes is its target, the header, and every block that reaches
+ * the source without going through the header. Back edges to the same header make one
+ * loop, and loops nest by containment.
+ */
+public final class Loops {
+    private final List<Loop> loops = new ArrayList<>();
+    private final Map<IrBlock, Loop> innermost = new HashMap<>();
+
+    public Loops(Cfg cfg, Dominators dominators) {
+        Map<IrBlock, Loop> byHeader = new LinkedHashMap<>();
+        for (IrBlock block : cfg.getReversePostOrder()) {
+            for (IrBlock target : cfg.getSuccessors(block)) {
+                if (dominators.dominates(target, block)) {
+                    Loop loop = byHeader.computeIfAbsent(target, Loop::new);
+                    loop.latches.add(block);
+                    collect(cfg, loop, block);
+                }
+            }
+        }
+        //Order by size so each loop's parent is the smallest larger loop containing its header
+        List<Loop> bySize = new ArrayList<>(byHeader.values());
+        bySize.sort((a, b) -> Integer.compare(a.blocks.size(), b.blocks.size()));
+        for (int i = 0; i < bySize.size(); i++) {
+            Loop loop = bySize.get(i);
+            for (int j = i + 1; j < bySize.size(); j++) {
+                if (bySize.get(j).blocks.contains(loop.header)) {
+                    loop.parent = bySize.get(j);
+                    break;
+                }
+            }
+            for (IrBlock block : loop.blocks) {
+                innermost.putIfAbsent(block, loop);
+            }
+        }
+        loops.addAll(byHeader.values());
+        loops.sort((a, b) -> Integer.compare(cfg.getOrder(a.header), cfg.getOrder(b.header)));
+    }
+
+    private static void collect(Cfg cfg, Loop loop, IrBlock latch) {
+        Deque<IrBlock> work = new ArrayDeque<>();
+        if (loop.blocks.add(latch)) {
+            work.push(latch);
+        }
+        while (!work.isEmpty()) {
+            for (IrBlock predecessor : cfg.getPredecessors(work.pop())) {
+                if (cfg.isReachable(predecessor) && loop.blocks.add(predecessor)) {
+                    work.push(predecessor);
+                }
+            }
+        }
+    }
+
+    //Every loop, outer loops before the loops they contain
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    //The innermost loop containing a block, or null
+    public Loop getLoopFor(IrBlock block) {
+        return innermost.get(block);
+    }
+
+    //How many loops contain a block
+    public int getDepth(IrBlock block) {
+        Loop loop = innermost.get(block);
+        return loop == null ? 0 : loop.getDepth();
+    }
+
+    public static final class Loop {
+        private final IrBlock header;
+        private final Set<IrBlock> blocks = new LinkedHashSet<>();
+        private final List<IrBlock> latches = new ArrayList<>();
+        private Loop parent;
+
+        Loop(IrBlock header) {
+            this.header = header;
+            blocks.add(header);
+        }
+
+        public IrBlock getHeader() {
+            return header;
+        }
+
+        //The header first, then the rest of the body
+        public Set<IrBlock> getBlocks() {
+            return blocks;
+        }
+
+        //Blocks with a back edge to the header
+        public List<IrBlock> getLatches() {
+            return latches;
+        }
+
+        //The enclosing loop, or null
+        public Loop getParent() {
+            return parent;
+        }
+
+        public int getDepth() {
+            return parent == null ? 1 : parent.getDepth() + 1;
+        }
+
+        public boolean contains(IrBlock block) {
+            return blocks.contains(block);
+        }
+    }
+}
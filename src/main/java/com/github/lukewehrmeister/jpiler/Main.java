@@ -1,16 +1,97 @@
 package com.github.lukewehrmeister.jpiler;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.*;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
+    //Lex with the hand-written FastLexer instead of the generated JavaSubsetLexer
+    static boolean fastLexer = false;
+    //Write JVM class files into the output directory instead of IR text
+    static boolean jvm = false;
+    //Write x86-64 assembly instead of IR text
+    static boolean asm = false;
+    //Write binary IR (IrBinary) instead of IR text
+    static boolean binary = false;
+    //Optimization level of the PassManager pipeline run before output
+    static int optLevel = 0;
+    //Report pass and analysis times on stderr
+    static boolean timePasses = false;
+    //Threads for function passes, or 0 for the PassManager's default of all cores
+    static int threads = 0;
+
     public static void main(String[] args) {
+        DfaCache.loadBundled();
+
+        if (args.length > 0 && args[0].equals("--fast-lexer")) {
+            fastLexer = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        while (args.length > 0 && (args[0].startsWith("-O") || args[0].startsWith("-threads=") || args[0].equals("--time-passes"))) {
+            try {
+                if (args[0].equals("--time-passes")) {
+                    timePasses = true;
+                } else if (args[0].startsWith("-threads=")) {
+                    threads = Opt.threads(args[0]);
+                } else {
+                    optLevel = Opt.level(args[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length == 3 && args[0].equals("--jvm")) {
+            jvm = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length == 3 && args[0].equals("--asm")) {
+            asm = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length == 3 && args[0].equals("--binary")) {
+            binary = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length > 0 && args[0].equals("--opt")) {
+            System.exit(Opt.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        if (args.length >= 3 && args[0].equals("--run")) {
+            System.exit(run(args[1], args[2], Arrays.copyOfRange(args, 3, args.length)));
+        }
+
+        if (args.length == 3 && args[0].equals("--watch")) {
+            try {
+                new WatchMode(Paths.get(args[1]), Paths.get(args[2])).run();
+            } catch (IOException e) {
+                System.err.println("IO Error: " + e.getMessage());
+                System.exit(3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         if (args.length != 2) {
-            System.err.println("Usage: java -jar Jpiler.jar <input-file.java> <output-ir.txt>");
+            System.err.println("Usage: java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] <input-file.java> <output-ir.txt>");
+            System.err.println("       java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] --jvm <input-file.java> <output-class-dir>");
+            System.err.println("       java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] --asm <input-file.java> <output.s>");
+            System.err.println("       java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] --binary <input-file.java> <output.irb>");
+            System.err.println("       java -jar Jpiler.jar --opt [-O<n> | -passes=name,...] [-threads=n] [--time-passes] [--frame-sizes] <input-ir> <output-ir>");
+            System.err.println("       java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] --run <input-file.java> <Class.method> [int-args...]");
+            System.err.println("       java -jar Jpiler.jar [--fast-lexer] [-O<n>] [-threads=n] [--time-passes] --watch <input-file-or-dir> <output-file-or-dir>");
             System.exit(1);
         }
 
@@ -20,30 +101,30 @@ public class Main {
         try {
             String code = new String(Files.readAllBytes(Paths.get(inputPath)));
 
-            CharStream input = CharStreams.fromString(code);
-            JavaSubsetLexer lexer = new JavaSubsetLexer(input);
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            JavaSubsetParser parser = new JavaSubsetParser(tokens);
-            ParseTree tree = parser.compilationUnit();
-
-            SymbolTableVisitor semanticVisitor = new SymbolTableVisitor();
-            semanticVisitor.visit(tree);
-            if (!semanticVisitor.getErrors().isEmpty()) {
+            List<String> errors = new ArrayList<>();
+            IrModule module = compileToModule(code, errors);
+            if (module == null) {
                 System.err.println("Semantic Errors:");
-                for (String err : semanticVisitor.getErrors()) {
+                for (String err : errors) {
                     System.err.println("  " + err);
                 }
                 System.exit(2);
             }
+            optimize(module);
 
-            IRGeneratorVisitor irVisitor = new IRGeneratorVisitor(
-                semanticVisitor.getTableForContext(),
-                semanticVisitor.getSymbolMap()
-            );
-            irVisitor.visit(tree);
-
-            Files.writeString(Paths.get(outputPath), irVisitor.getIR());
-            System.out.println("IR written to " + outputPath);
+            if (jvm) {
+                JvmBackend.write(module, Paths.get(outputPath));
+                System.out.println("Classes written to " + outputPath);
+            } else if (asm) {
+                Files.writeString(Paths.get(outputPath), new X86Emitter(X86Emitter.REGISTERS.length).emit(module));
+                System.out.println("Assembly written to " + outputPath);
+            } else if (binary) {
+                IrBinary.write(module, Paths.get(outputPath));
+                System.out.println("Binary IR written to " + outputPath);
+            } else {
+                Files.writeString(Paths.get(outputPath), IrPrinter.print(module));
+                System.out.println("IR written to " + outputPath);
+            }
         } catch (IOException e) {
             System.err.println("IO Error: " + e.getMessage());
             System.exit(3);
@@ -53,4 +134,88 @@ public class Main {
             System.exit(4);
         }
     }
+
+    //Compiles a source file and interprets one of its methods, printing the result
+    static int run(String inputPath, String entry, String[] args) {
+        int dot = entry.indexOf('.');
+        if (dot < 0) {
+            System.err.println("Expected <Class.method>, got " + entry);
+            return 1;
+        }
+        try {
+            List<String> errors = new ArrayList<>();
+            IrModule module = compileToModule(Files.readString(Paths.get(inputPath)), errors);
+            if (module == null) {
+                System.err.println("Semantic Errors:");
+                for (String err : errors) {
+                    System.err.println("  " + err);
+                }
+                return 2;
+            }
+            optimize(module);
+            int[] values = Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+            try (IrInterpreter interpreter = new IrInterpreter(module, IrInterpreter.DEFAULT_TIER_UP_THRESHOLD)) {
+                int result = interpreter.invoke(entry.substring(0, dot), entry.substring(dot + 1), values);
+                System.out.println(entry + " returned " + result);
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e.getMessage());
+            return 3;
+        } catch (RuntimeException e) {
+            System.err.println("Runtime Error: " + e.getMessage());
+            return 4;
+        } catch (StackOverflowError e) {
+            //Recursion too deep for the interpreter's own stack, reported like any other failed run
+            System.err.println("Runtime Error: stack overflow in " + entry);
+            return 4;
+        }
+    }
+
+    //Runs the pipeline for the selected -O level
+    static void optimize(IrModule module) {
+        try (PassManager manager = PassManager.forLevel(optLevel).setTiming(timePasses)) {
+            if (threads > 0) {
+                manager.setThreads(threads);
+            }
+            manager.run(module);
+            if (timePasses) {
+                manager.printTimings(System.err);
+            }
+        }
+    }
+
+    /**
+     * Runs the full front end over one source file.
+     * Returns the generated IR, or null after adding the semantic errors to {@code errors}.
+     */
+    static String compile(String code, List<String> errors) {
+        IrModule module = compileToModule(code, errors);
+        return module == null ? null : IrPrinter.print(module);
+    }
+
+    /**
+     * Runs the full front end over one source file.
+     * Returns the IR module, or null after adding the semantic errors to {@code errors}.
+     */
+    static IrModule compileToModule(String code, List<String> errors) {
+        NameTable names = new NameTable();
+        CharStream input = CharStreams.fromString(code);
+        TokenSource lexer = fastLexer ? new FastLexer(input) : new JavaSubsetLexer(input);
+        lexer.setTokenFactory(new InterningTokenFactory(names));
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        JavaSubsetParser parser = new JavaSubsetParser(tokens);
+        Ast.CompilationUnit unit = new AstBuilder(names).build(parser.compilationUnit());
+
+        SymbolTableVisitor semanticVisitor = new SymbolTableVisitor();
+        semanticVisitor.visit(unit);
+        if (!semanticVisitor.getErrors().isEmpty()) {
+            errors.addAll(semanticVisitor.getErrors());
+            return null;
+        }
+
+        IRGeneratorVisitor irVisitor = new IRGeneratorVisitor(semanticVisitor.getAnnotations(), names);
+        irVisitor.visit(unit);
+        return irVisitor.getModule();
+    }
 }
@@ -0,0 +1,10 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * A transformation that looks at the whole module at once, for facts no single function
+ * holds, such as every store to a global.
+ */
+public interface ModulePass extends Pass {
+    //Returns whether anything changed
+    boolean run(IrModule module, AnalysisManager analyses);
+}
@@ -0,0 +1,183 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * Interns identifier spellings into dense int IDs (0, 1, 2, ...).
+ *
+ * The lexer feeds it through {@link InterningTokenFactory}, so every later phase can
+ * compare, hash and index names as ints and only turn them back into strings when
+ * printing IR or error messages.
+ */
+public class NameTable {
+    private static final int EMPTY = -1;
+
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int[] slots;
+    private int size;
+
+    public NameTable() {
+        slots = new int[128];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown name id: " + id);
+        }
+        return names[id];
+    }
+
+    public int intern(CharSequence text) {
+        int hash = hash(text);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (id == EMPTY) {
+                return insert(text.toString(), hash, i);
+            }
+            if (hashes[id] == hash && contentEquals(names[id], text)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Interns the characters input[start..stop] without materializing a String when the
+     * name has been seen before. The stream must be positioned just past {@code stop},
+     * which is where a lexer leaves it when emitting a token.
+     */
+    public int intern(CharStream input, int start, int stop) {
+        int offset = start - input.index();
+        int length = stop - start + 1;
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + input.LA(offset + i);
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (id == EMPTY) {
+                return insert(input.getText(Interval.of(start, stop)), hash, i);
+            }
+            if (hashes[id] == hash && matches(names[id], input, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Interns the code points text[start, end), materializing a String only for a name
+     * not seen before.
+     */
+    public int intern(int[] text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text[i];
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (id == EMPTY) {
+                return insert(new String(text, start, end - start), hash, i);
+            }
+            if (hashes[id] == hash && matches(names[id], text, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * The ID of an IDENTIFIER token, interning its text if it did not come through
+     * an {@link InterningTokenFactory}.
+     */
+    public int idOf(Token token) {
+        if (token instanceof IdentifierToken identifier) {
+            return identifier.getNameId();
+        }
+        return intern(token.getText());
+    }
+
+    private int insert(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id;
+        }
+    }
+
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean contentEquals(String name, CharSequence text) {
+        if (name.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, int[] text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, CharStream input, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != input.LA(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The optimizer on its own: loads saved IR, runs a {@link PassManager} pipeline over it,
+ * and writes the IR back out. Files ending in .irb are read and written as
+ * {@link IrBinary}, anything else as text.
+ *
+ * Usage: Opt [-O0|-O1|-O2 | -passes=name,...] [-threads=n] [--time-passes] [--frame-sizes] <input-ir> <output-ir>
+ *
+ * Without a level or pass list the -O2 pipeline runs. Function passes run on all cores
+ * unless -threads says otherwise. --frame-sizes reports the bytes of stack slots each
+ * function allocates before and after the pipeline.
+ */
+public final class Opt {
+    //Every pass -passes can name
+    static final Map<String, Supplier<Pass>> PASSES = new LinkedHashMap<>();
+
+    static {
+        register(GlobalConstantPropagation::new);
+        register(ConstantFolding::new);
+        register(SparseConditionalConstantPropagation::new);
+        register(CfgSimplification::new);
+        register(TailRecursionElimination::new);
+        register(LoopUnrolling::new);
+        register(BoundsCheckElimination::new);
+        register(DeadCodeElimination::new);
+        register(StoreToLoadForwarding::new);
+        register(DeadStoreElimination::new);
+        register(StackSlotColoring::new);
+    }
+
+    private Opt() {
+    }
+
+    private static void register(Supplier<Pass> pass) {
+        PASSES.put(pass.get().getName(), pass);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    //Runs the CLI and returns its exit code
+    static int run(String[] args) {
+        PassManager manager = PassManager.forLevel(PassManager.MAX_LEVEL);
+        boolean timePasses = false;
+        boolean frameSizes = false;
+        int threads = 0;
+        int first = 0;
+        try {
+            for (; first < args.length && args[first].startsWith("-"); first++) {
+                String option = args[first];
+                if (option.equals("--time-passes")) {
+                    timePasses = true;
+                } else if (option.equals("--frame-sizes")) {
+                    frameSizes = true;
+                } else if (option.startsWith("-threads=")) {
+                    threads = threads(option);
+                } else if (option.startsWith("-passes=")) {
+                    String list = option.substring("-passes=".length());
+                    manager = new PassManager(passes(list.isEmpty() ? List.of() : List.of(list.split(","))));
+                } else {
+                    manager = PassManager.forLevel(level(option));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        if (args.length - first != 2) {
+            System.err.println("Usage: Opt [-O0|-O1|-O2 | -passes=name,...] [-threads=n] [--time-passes] [--frame-sizes] <input-ir> <output-ir>");
+            System.err.println("Passes: " + String.join(", ", PASSES.keySet()));
+            return 1;
+        }
+
+        Path input = Paths.get(args[first]);
+        Path output = Paths.get(args[first + 1]);
+        try {
+            IrModule module = read(input);
+            if (threads > 0) {
+                manager.setThreads(threads);
+            }
+            Map<IrFunction, Integer> before = frameSizes(module);
+            manager.setTiming(timePasses).run(module);
+            write(module, output);
+            if (timePasses) {
+                manager.printTimings(System.err);
+            }
+            if (frameSizes) {
+                printFrameSizes(module, before, System.err);
+            }
+            System.out.println("IR written to " + output);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e.getMessage());
+            return 3;
+        } catch (IllegalArgumentException e) {
+            System.err.println(input + ": " + e.getMessage());
+            return 2;
+        } finally {
+            manager.close();
+        }
+    }
+
+    //The level of an -O<n> option
+    static int level(String option) {
+        if (option.matches("-O\\d")) {
+            int level = option.charAt(2) - '0';
+            if (level <= PassManager.MAX_LEVEL) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown option " + option + ". Levels are -O0 to -O" + PassManager.MAX_LEVEL);
+    }
+
+    //The thread count of a -threads=n option
+    static int threads(String option) {
+        try {
+            int threads = Integer.parseInt(option.substring("-threads=".length()));
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below
+        }
+        throw new IllegalArgumentException("Expected a positive thread count: " + option);
+    }
+
+    private static Map<IrFunction, Integer> frameSizes(IrModule module) {
+        Map<IrFunction, Integer> sizes = new HashMap<>();
+        for (IrFunction function : module.getFunctions()) {
+            sizes.put(function, StackSlotColoring.frameSize(function));
+        }
+        return sizes;
+    }
+
+    //One line per function with stack slots, then the totals
+    static void printFrameSizes(IrModule module, Map<IrFunction, Integer> before, PrintStream out) {
+        out.println("===-- Frame sizes (bytes) --===");
+        int totalBefore = 0;
+        int totalAfter = 0;
+        for (IrClass cls : module.getClasses()) {
+            for (IrFunction function : cls.getFunctions()) {
+                int was = before.getOrDefault(function, 0);
+                int is = StackSlotColoring.frameSize(function);
+                if (was > 0 || is > 0) {
+                    out.printf("  %6d -> %6d  %s.%s%n", was, is, cls.getName(), function.getName());
+                }
+                totalBefore += was;
+                totalAfter += is;
+            }
+        }
+        out.printf("  %6d -> %6d  Total%n", totalBefore, totalAfter);
+    }
+
+    static List<Pass> passes(List<String> names) {
+        List<Pass> passes = new ArrayList<>();
+        for (String name : names) {
+            Supplier<Pass> pass = PASSES.get(name.trim());
+            if (pass == null) {
+                throw new IllegalArgumentException("Unknown pass '" + name + "'. Passes: " + String.join(", ", PASSES.keySet()));
+            }
+            passes.add(pass.get());
+        }
+        return passes;
+    }
+
+    static IrModule read(Path file) throws IOException {
+        if (file.toString().endsWith(".irb")) {
+            return IrBinary.map(file).readModule();
+        }
+        return IrParser.parse(Files.readString(file));
+    }
+
+    static void write(IrModule module, Path file) throws IOException {
+        if (file.toString().endsWith(".irb")) {
+            IrBinary.write(module, file);
+        } else {
+            Files.writeString(file, IrPrinter.print(module));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * A transformation the {@link PassManager} can schedule: a {@link FunctionPass} or a
+ * {@link ModulePass}.
+ */
+public interface Pass {
+    //The name the pass is selected by on the command line
+    String getName();
+
+    /**
+     * Whether the pass leaves every function's blocks and branch targets alone, so the
+     * analyses derived from the control-flow graph stay valid even when it changes code.
+     */
+    default boolean preservesCfg() {
+        return false;
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a pipeline of passes over a module, sharing one {@link AnalysisManager} between
+ * them. A module pass sees the whole module; analyses are only dropped for what a pass
+ * reports it changed.
+ *
+ * Function passes only touch the function they are given, so each run of consecutive
+ * function passes is applied function by function, every function going through the
+ * whole run before the next. That is what lets the functions go to a fork-join pool in
+ * parallel: the result is the same whichever order they finish in, and the same as
+ * running each pass over all functions before the next. Module passes are barriers
+ * between runs.
+ *
+ * With timing enabled, the manager records the time and changes of every pass for
+ * {@link #printTimings}, along with the time spent computing each analysis. In parallel
+ * the times are summed over threads.
+ *
+ * A pool made by {@link #setThreads} belongs to the manager, which shuts it down when
+ * the thread count changes again or the manager is closed.
+ */
+public final class PassManager implements AutoCloseable {
+    //Highest level forLevel accepts
+    public static final int MAX_LEVEL = 2;
+
+    private final List<Pass> passes;
+    private final AnalysisManager analyses = new AnalysisManager();
+    private final Map<String, Timing> timings = new LinkedHashMap<>();
+    private boolean timing;
+    //Runs function passes on the pool, or on the calling thread when null
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    //Whether pool was made by setThreads rather than shared
+    private boolean ownsPool;
+    private long wallNanos;
+
+    public PassManager(List<Pass> passes) {
+        this.passes = List.copyOf(passes);
+    }
+
+    /**
+     * The pipeline for an optimization level: -O0 runs nothing, -O1 the cheap local
+     * cleanups, and -O2 everything.
+     */
+    public static PassManager forLevel(int level) {
+        List<Pass> passes = new ArrayList<>();
+        switch (level) {
+            case 0 -> {
+            }
+            case 1 -> {
+                passes.add(new StoreToLoadForwarding());
+                passes.add(new ConstantFolding());
+                passes.add(new DeadStoreElimination());
+                passes.add(new DeadCodeElimination());
+            }
+            case 2 -> {
+                passes.add(new GlobalConstantPropagation());
+                //Before forwarding turns loads of the parameter slots into the parameters
+                passes.add(new TailRecursionElimination());
+                passes.add(new StoreToLoadForwarding());
+                passes.add(new ConstantFolding());
+                passes.add(new SparseConditionalConstantPropagation());
+                passes.add(new CfgSimplification());
+                //While loops still compare their counter in the header, before unrolling copies the body
+                passes.add(new BoundsCheckElimination());
+                passes.add(new LoopUnrolling());
+                passes.add(new StoreToLoadForwarding());
+                passes.add(new SparseConditionalConstantPropagation());
+                passes.add(new CfgSimplification());
+                passes.add(new DeadStoreElimination());
+                passes.add(new DeadCodeElimination());
+                passes.add(new StackSlotColoring());
+            }
+            default -> throw new IllegalArgumentException("Unknown optimization level -O" + level);
+        }
+        return new PassManager(passes);
+    }
+
+    public PassManager setTiming(boolean timing) {
+        this.timing = timing;
+        return this;
+    }
+
+    /**
+     * How many threads function passes may use: 1 runs them on the calling thread,
+     * anything more on a pool of that size. The default is the common pool.
+     */
+    public PassManager setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1, got " + threads);
+        }
+        close();
+        if (threads > 1 && threads == ForkJoinPool.getCommonPoolParallelism()) {
+            pool = ForkJoinPool.commonPool();
+        } else if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+            ownsPool = true;
+        }
+        return this;
+    }
+
+    /**
+     * Shuts down the pool setThreads made, if any; later runs use the calling thread.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+            ownsPool = false;
+        }
+        pool = null;
+    }
+
+    //The pool function passes run on, or null for the calling thread
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    public AnalysisManager getAnalyses() {
+        return analyses;
+    }
+
+    //Runs every pass in order and returns whether any changed the module
+    public boolean run(IrModule module) {
+        long start = System.nanoTime();
+        boolean changed = false;
+        int i = 0;
+        while (i < passes.size()) {
+            if (passes.get(i) instanceof ModulePass pass) {
+                changed |= runModulePass(pass, module);
+                i++;
+                continue;
+            }
+            List<FunctionPass> run = new ArrayList<>();
+            for (; i < passes.size() && passes.get(i) instanceof FunctionPass pass; i++) {
+                run.add(pass);
+            }
+            changed |= runFunctionPasses(run, module.getFunctions());
+        }
+        wallNanos += System.nanoTime() - start;
+        return changed;
+    }
+
+    private boolean runModulePass(ModulePass pass, IrModule module) {
+        long start = System.nanoTime();
+        boolean changed = pass.run(module, analyses);
+        if (changed) {
+            analyses.invalidateAll(pass.preservesCfg());
+        }
+        if (timing) {
+            timing(pass).record(System.nanoTime() - start, changed ? 1 : 0);
+        }
+        return changed;
+    }
+
+    private boolean runFunctionPasses(List<FunctionPass> run, List<IrFunction> functions) {
+        Timing[] times = new Timing[run.size()];
+        for (int p = 0; p < times.length; p++) {
+            times[p] = timing ? timing(run.get(p)) : new Timing();
+            times[p].runs++;
+        }
+        LongAdder changes = new LongAdder();
+        if (pool == null || functions.size() < 2) {
+            for (IrFunction function : functions) {
+                runFunctionPasses(run, function, times, changes);
+            }
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> runInHalves(run, functions, 0, functions.size(), times, changes)));
+        }
+        return changes.sum() > 0;
+    }
+
+    private void runFunctionPasses(List<FunctionPass> run, IrFunction function, Timing[] times, LongAdder changes) {
+        for (int p = 0; p < run.size(); p++) {
+            FunctionPass pass = run.get(p);
+            long start = timing ? System.nanoTime() : 0;
+            boolean changed = pass.run(function, analyses);
+            if (changed) {
+                analyses.invalidate(function, pass.preservesCfg());
+                changes.increment();
+            }
+            if (timing) {
+                times[p].record(System.nanoTime() - start, changed ? 1 : 0);
+            }
+        }
+    }
+
+    //Splits a range of functions in halves as pool tasks until each task has one
+    private void runInHalves(List<FunctionPass> run, List<IrFunction> functions, int from, int to, Timing[] times,
+                             LongAdder changes) {
+        if (to - from == 1) {
+            runFunctionPasses(run, functions.get(from), times, changes);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        ForkJoinTask.invokeAll(ForkJoinTask.adapt(() -> runInHalves(run, functions, from, middle, times, changes)),
+                ForkJoinTask.adapt(() -> runInHalves(run, functions, middle, to, times, changes)));
+    }
+
+    private Timing timing(Pass pass) {
+        return timings.computeIfAbsent(pass.getName(), name -> new Timing());
+    }
+
+    /**
+     * Writes the time of every pass and analysis, slowest first within each. Pass times
+     * include the analyses they asked for.
+     */
+    public void printTimings(PrintStream out) {
+        out.println("===-------------------------------------------------------------------------===");
+        out.println("                          Pass execution timing report");
+        out.println("===-------------------------------------------------------------------------===");
+        long total = 0;
+        out.printf("  %10s  %5s  %7s  %s%n", "Time (ms)", "Runs", "Changed", "Pass");
+        List<Map.Entry<String, Timing>> sorted = new ArrayList<>(timings.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue().nanos.sum(), a.getValue().nanos.sum()));
+        for (Map.Entry<String, Timing> entry : sorted) {
+            Timing t = entry.getValue();
+            total += t.nanos.sum();
+            out.printf("  %10.3f  %5d  %7d  %s%n", t.nanos.sum() / 1e6, t.runs, t.changes.sum(), entry.getKey());
+        }
+        out.printf("  %10.3f  %5s  %7s  %s%n", total / 1e6, "", "", "Total");
+        out.printf("  %10.3f  %5s  %7s  %s%n", wallNanos / 1e6, "", "", "Wall time" + (pool == null ? "" : ", "
+                + pool.getParallelism() + " threads"));
+        List<AnalysisManager.Analysis<?>> built = new ArrayList<>();
+        for (AnalysisManager.Analysis<?> analysis : AnalysisManager.Analysis.values()) {
+            if (analyses.getComputeCount(analysis) > 0) {
+                built.add(analysis);
+            }
+        }
+        if (built.isEmpty()) {
+            return;
+        }
+        out.printf("  %10s  %5s  %7s  %s%n", "Time (ms)", "Built", "", "Analysis");
+        built.sort((a, b) -> Long.compare(analyses.getNanos(b), analyses.getNanos(a)));
+        for (AnalysisManager.Analysis<?> analysis : built) {
+            out.printf("  %10.3f  %5d  %7s  %s%n", analyses.getNanos(analysis) / 1e6,
+                    analyses.getComputeCount(analysis), "", analysis.getName());
+        }
+    }
+
+    //Updated from every thread running the pass, except runs, which the calling thread counts
+    private static final class Timing {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder changes = new LongAdder();
+        int runs;
+
+        void record(long nanos, int changes) {
+            this.nanos.add(nanos);
+            this.changes.add(changes);
+        }
+    }
+}
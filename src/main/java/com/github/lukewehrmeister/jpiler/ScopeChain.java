@@ -0,0 +1,103 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The chain of lexical scopes that are open while walking the tree.
+ *
+ * Instead of searching every enclosing SymbolTable on each lookup, every name ID
+ * indexes the innermost binding currently in effect, and each binding remembers the
+ * one it shadows. Declarations are also logged on a trail so that closing a scope
+ * only undoes the k names it declared. Lookup is O(1) regardless of nesting depth.
+ */
+public class ScopeChain {
+    private Binding[] innermost = new Binding[64];
+    private final List<SymbolTable> tables = new ArrayList<>();
+    private int[] trail = new int[64];
+    private int trailSize;
+    private int[] scopeStart = new int[16];
+
+    private static final class Binding {
+        final Symbol symbol;
+        final int depth;
+        final Binding shadowed;
+
+        Binding(Symbol symbol, int depth, Binding shadowed) {
+            this.symbol = symbol;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+    }
+
+    public void push(SymbolTable table) {
+        int depth = tables.size();
+        if (depth == scopeStart.length) {
+            scopeStart = Arrays.copyOf(scopeStart, depth * 2);
+        }
+        scopeStart[depth] = trailSize;
+        tables.add(table);
+    }
+
+    public SymbolTable pop() {
+        if (tables.isEmpty()) {
+            throw new IllegalStateException("No active scope to pop.");
+        }
+        int depth = tables.size() - 1;
+        while (trailSize > scopeStart[depth]) {
+            int nameId = trail[--trailSize];
+            innermost[nameId] = innermost[nameId].shadowed;
+        }
+        return tables.remove(depth);
+    }
+
+    public boolean isEmpty() {
+        return tables.isEmpty();
+    }
+
+    public int depth() {
+        return tables.size();
+    }
+
+    public SymbolTable current() {
+        if (tables.isEmpty()) {
+            throw new IllegalStateException("No active scope.");
+        }
+        return tables.get(tables.size() - 1);
+    }
+
+    /**
+     * Adds a symbol to the innermost scope, shadowing any outer binding of the same name.
+     */
+    public void declare(int nameId, Symbol symbol) {
+        int depth = tables.size() - 1;
+        current().add(nameId, symbol);
+        if (nameId >= innermost.length) {
+            innermost = Arrays.copyOf(innermost, Math.max(nameId + 1, innermost.length * 2));
+        }
+        if (trailSize == trail.length) {
+            trail = Arrays.copyOf(trail, trailSize * 2);
+        }
+        innermost[nameId] = new Binding(symbol, depth, innermost[nameId]);
+        trail[trailSize++] = nameId;
+    }
+
+    public Symbol resolve(int nameId) {
+        Binding binding = nameId < innermost.length ? innermost[nameId] : null;
+        return binding == null ? null : binding.symbol;
+    }
+
+    public boolean isDeclaredInCurrentScope(int nameId) {
+        Binding binding = nameId < innermost.length ? innermost[nameId] : null;
+        return binding != null && binding.depth == tables.size() - 1;
+    }
+
+    /**
+     * The open scopes from outermost to innermost.
+     */
+    public List<SymbolTable> tables() {
+        return Collections.unmodifiableList(tables);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.lukewehrmeister.jpiler;
+
+/**
+ * What semantic analysis learned about the AST, handed to the IR generator:
+ * the scope opened by each scoping node and the symbol each declarator, name
+ * and assignment refers to.
+ *
+ * {@link AstBuilder} numbers nodes densely, so the facts are kept in flat arrays
+ * sized to the tree and indexed by node ID; a lookup is a single array load.
+ */
+public class SemanticAnnotations {
+    private final Symbol[] symbols;
+    private final SymbolTable[] tables;
+
+    public SemanticAnnotations(int nodeCount) {
+        symbols = new Symbol[nodeCount];
+        tables = new SymbolTable[nodeCount];
+    }
+
+    public int getNodeCount() {
+        return symbols.length;
+    }
+
+    public void setSymbol(Ast.Node node, Symbol symbol) {
+        symbols[node.getId()] = symbol;
+    }
+
+    public void setTable(Ast.Node node, SymbolTable table) {
+        tables[node.getId()] = table;
+    }
+
+    public Symbol getSymbol(Ast.Node node) {
+        return symbols[node.getId()];
+    }
+
+    public SymbolTable getTable(Ast.Node node) {
+        return tables[node.getId()];
+    }
+}
@@ -8,6 +8,9 @@ public enum SemanticType {
     STRING,
     VOID,
     NULL,
+    INT_ARRAY,
+    BOOLEAN_ARRAY,
+    CHAR_ARRAY,
     UNKNOWN; 
 
     public static SemanticType fromString(String text) {
@@ -19,8 +22,35 @@ public enum SemanticType {
             case "String" -> STRING;
             case "void" -> VOID;
             case "null" -> NULL;
+            case "int[]" -> INT_ARRAY;
+            case "boolean[]" -> BOOLEAN_ARRAY;
+            case "char[]" -> CHAR_ARRAY;
             case "unknown" -> UNKNOWN;
             default -> throw new IllegalArgumentException("Unknown type: " + text);
         };
     }
+
+    public boolean isArray() {
+        return this == INT_ARRAY || this == BOOLEAN_ARRAY || this == CHAR_ARRAY;
+    }
+
+    //Type of an array's elements, or null when this is not an array type
+    public SemanticType getElementType() {
+        return switch (this) {
+            case INT_ARRAY -> INT;
+            case BOOLEAN_ARRAY -> BOOLEAN;
+            case CHAR_ARRAY -> CHAR;
+            default -> null;
+        };
+    }
+
+    //The array type with elements of this type, or null when there is none
+    public SemanticType getArrayType() {
+        return switch (this) {
+            case INT -> INT_ARRAY;
+            case BOOLEAN -> BOOLEAN_ARRAY;
+            case CHAR -> CHAR_ARRAY;
+            default -> null;
+        };
+    }
 }
@@ -0,0 +1,254 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck), carried through alloca'd
+ * slots as well as registers, so that {@code int x = 5; if (x > 3)} loses its compare
+ * and the arm that can never run.
+ *
+ * Every register and every slot is unknown, a constant, or overdefined. Blocks are only
+ * visited once an edge into them is found executable, and a conditional branch on a
+ * constant marks only the edge it takes. The IR is not in SSA form, so the contents of
+ * the slots are tracked per block: a block starts from the join of what its executable
+ * predecessors leave behind, and is visited again whenever that drops. A register whose
+ * value drops sends the blocks that read it back to the worklist.
+ *
+ * On entry every slot holds 0, as the backends and the interpreter give a slot read
+ * before any store. Slots used other than as the pointer of a load or store, globals,
+ * array elements, parameters, call results and registers defined more than once are
+ * overdefined.
+ *
+ * Afterwards loads and arithmetic with a constant value are replaced by it, constant
+ * conditional branches become plain ones, and blocks never found executable are
+ * deleted. Stores are left for later passes.
+ */
+public final class SparseConditionalConstantPropagation implements FunctionPass {
+    //The lattice below every constant; unknown is a missing entry
+    private static final Object OVERDEFINED = new Object();
+
+    @Override
+    public String getName() {
+        return "sccp";
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Solver solver = new Solver(function);
+        solver.solve();
+        return solver.rewrite();
+    }
+
+    private static Object join(Object a, Object b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null || a.equals(b)) {
+            return a;
+        }
+        return OVERDEFINED;
+    }
+
+    private static final class Solver {
+        private final IrFunction function;
+        private final Set<IrValue> slots;
+        private final Map<IrValue, Integer> definitions;
+        //Blocks reading each register
+        private final Map<IrValue, Set<IrBlock>> readers = new HashMap<>();
+        private final Map<IrValue, Object> registers = new HashMap<>();
+        //Slot contents on entry to every block reached so far
+        private final Map<IrBlock, Map<IrValue, Object>> entryStates = new HashMap<>();
+        private final Deque<IrBlock> worklist = new ArrayDeque<>();
+        private final Set<IrBlock> queued = new HashSet<>();
+
+        Solver(IrFunction function) {
+            this.function = function;
+            this.slots = StackSlotColoring.candidates(function).keySet();
+            this.definitions = ConstantFolding.countDefinitions(function);
+            for (IrFunction.Parameter parameter : function.getParameters()) {
+                registers.put(parameter.getRegister(), OVERDEFINED);
+            }
+            for (IrBlock block : function.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    for (IrValue operand : instruction.getOperands()) {
+                        if (operand instanceof IrValue.Register) {
+                            readers.computeIfAbsent(operand, k -> new HashSet<>()).add(block);
+                        }
+                    }
+                }
+            }
+        }
+
+        void solve() {
+            Map<IrValue, Object> entry = new HashMap<>();
+            for (IrValue slot : slots) {
+                entry.put(slot, IrValue.constant(0));
+            }
+            IrBlock first = function.getEntryBlock();
+            entryStates.put(first, entry);
+            enqueue(first);
+            while (!worklist.isEmpty()) {
+                IrBlock block = worklist.poll();
+                queued.remove(block);
+                visit(block);
+            }
+        }
+
+        private void enqueue(IrBlock block) {
+            if (queued.add(block)) {
+                worklist.add(block);
+            }
+        }
+
+        private void visit(IrBlock block) {
+            Map<IrValue, Object> state = new HashMap<>(entryStates.get(block));
+            for (IrInstruction instruction : block.getInstructions()) {
+                switch (instruction.getOpcode()) {
+                    case ALLOCA -> {
+                    }
+                    case STORE -> {
+                        if (slots.contains(instruction.getOperand(1))) {
+                            state.put(instruction.getOperand(1), value(instruction.getOperand(0)));
+                        }
+                    }
+                    case LOAD -> define(instruction.getResult(), slots.contains(instruction.getOperand(0))
+                            ? state.get(instruction.getOperand(0)) : OVERDEFINED);
+                    case BR -> flow(instruction.getTargets().get(0), state);
+                    case COND_BR -> {
+                        Object condition = value(instruction.getOperand(0));
+                        //An unknown condition reads a register no visited block defines; take both ways
+                        if (!(condition instanceof IrValue.Constant constant)) {
+                            flow(instruction.getTargets().get(0), state);
+                            flow(instruction.getTargets().get(1), state);
+                        } else {
+                            flow(instruction.getTargets().get(constant.getValue() != 0 ? 0 : 1), state);
+                        }
+                    }
+                    case RET, STORE_ELEMENT, BOUNDS_CHECK -> {
+                    }
+                    case LOAD_ELEMENT -> define(instruction.getResult(), OVERDEFINED);
+                    case CALL -> {
+                        if (instruction.getResult() != null) {
+                            define(instruction.getResult(), OVERDEFINED);
+                        }
+                    }
+                    default -> define(instruction.getResult(), evaluate(instruction));
+                }
+                if (instruction.getOpcode().isTerminator()) {
+                    return;
+                }
+            }
+            //Falls through to the next block, if any
+            for (IrBlock next : Cfg.successors(function, block)) {
+                flow(next, state);
+            }
+        }
+
+        private Object evaluate(IrInstruction instruction) {
+            Object left = value(instruction.getOperand(0));
+            Object right = value(instruction.getOperand(1));
+            if (left == OVERDEFINED || right == OVERDEFINED) {
+                return OVERDEFINED;
+            }
+            if (left == null || right == null) {
+                return null;
+            }
+            IrValue.Constant folded = ConstantFolding.fold(IrInstruction.binary(instruction.getOpcode(),
+                    instruction.getResult(), instruction.getType(), (IrValue) left, (IrValue) right));
+            return folded == null ? OVERDEFINED : folded;
+        }
+
+        private Object value(IrValue operand) {
+            if (operand instanceof IrValue.Constant) {
+                return operand;
+            }
+            if (operand instanceof IrValue.Register) {
+                return registers.get(operand);
+            }
+            return OVERDEFINED;
+        }
+
+        private void define(IrValue register, Object value) {
+            if (definitions.getOrDefault(register, 0) > 1) {
+                value = OVERDEFINED;
+            }
+            Object old = registers.get(register);
+            Object joined = join(old, value);
+            if (joined != null && !joined.equals(old)) {
+                registers.put(register, joined);
+                for (IrBlock reader : readers.getOrDefault(register, Set.of())) {
+                    if (entryStates.containsKey(reader)) {
+                        enqueue(reader);
+                    }
+                }
+            }
+        }
+
+        //Marks the edge executable and merges the slots it carries into the target's entry state
+        private void flow(IrBlock target, Map<IrValue, Object> state) {
+            Map<IrValue, Object> entry = entryStates.get(target);
+            if (entry == null) {
+                entryStates.put(target, new HashMap<>(state));
+                enqueue(target);
+                return;
+            }
+            boolean changed = false;
+            for (Map.Entry<IrValue, Object> slot : entry.entrySet()) {
+                Object joined = join(slot.getValue(), state.get(slot.getKey()));
+                if (!Objects.equals(joined, slot.getValue())) {
+                    slot.setValue(joined);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                enqueue(target);
+            }
+        }
+
+        boolean rewrite() {
+            boolean changed = function.getBlocks().removeIf(block -> !entryStates.containsKey(block));
+            Map<IrValue, IrValue> constants = new HashMap<>();
+            for (Map.Entry<IrValue, Object> register : registers.entrySet()) {
+                if (register.getValue() instanceof IrValue.Constant constant) {
+                    constants.put(register.getKey(), constant);
+                }
+            }
+            for (IrBlock block : function.getBlocks()) {
+                List<IrInstruction> instructions = block.getInstructions();
+                List<IrInstruction> kept = new ArrayList<>(instructions.size());
+                for (IrInstruction instruction : instructions) {
+                    if (instruction.getResult() != null && instruction.getOpcode() != IrOpcode.ALLOCA
+                            && constants.containsKey(instruction.getResult())) {
+                        continue;
+                    }
+                    for (int i = 0; i < instruction.getOperands().size(); i++) {
+                        IrValue constant = constants.get(instruction.getOperand(i));
+                        if (constant != null) {
+                            instruction.setOperand(i, constant);
+                            changed = true;
+                        }
+                    }
+                    if (instruction.getOpcode() == IrOpcode.COND_BR
+                            && instruction.getOperand(0) instanceof IrValue.Constant condition) {
+                        instruction = IrInstruction.br(instruction.getTargets().get(condition.getValue() != 0 ? 0 : 1));
+                    }
+                    kept.add(instruction);
+                }
+                if (!kept.equals(instructions)) {
+                    instructions.clear();
+                    instructions.addAll(kept);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges alloca'd slots whose lifetimes never overlap, such as the locals of sibling
+ * blocks or of successive loops, so the frame only holds the slots that are live
+ * together.
+ *
+ * Lifetimes come from {@link Liveness}, which already treats a store to a slot as its
+ * definition and a load as a use. Two slots interfere when one is stored to while the
+ * other is live, and slots of the same type that do not interfere are colored greedily
+ * in alloca order: each later slot is renamed to the first one it can share with, and
+ * its alloca removed.
+ *
+ * A slot that is live on entry is read before any store, and reads 0 in the backends
+ * and the interpreter, so it keeps a slot of its own. So does any slot used other than
+ * as the pointer of a load or store.
+ */
+public final class StackSlotColoring implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "stackcolor";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Map<IrValue, IrInstruction> slots = candidates(function);
+        if (slots.size() < 2) {
+            return false;
+        }
+        Liveness liveness = analyses.get(AnalysisManager.Analysis.LIVENESS, function);
+        slots.keySet().removeAll(liveness.getLiveIn(function.getBlocks().get(0)));
+        Map<IrValue, Set<IrValue>> interference = interference(function, liveness, slots.keySet());
+
+        //Each color is its first slot followed by the slots renamed to it
+        List<List<IrValue>> colors = new ArrayList<>();
+        boolean changed = false;
+        for (Map.Entry<IrValue, IrInstruction> slot : slots.entrySet()) {
+            List<IrValue> color = colorFor(colors, slot.getKey(), slot.getValue().getType(), slots, interference);
+            if (color == null) {
+                colors.add(new ArrayList<>(List.of(slot.getKey())));
+                continue;
+            }
+            color.add(slot.getKey());
+            function.replaceUses(slot.getKey(), color.get(0));
+            for (IrBlock block : function.getBlocks()) {
+                block.getInstructions().remove(slot.getValue());
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    //The scalar allocas whose result is only ever the pointer of a load or store, in order
+    static Map<IrValue, IrInstruction> candidates(IrFunction function) {
+        Map<IrValue, IrInstruction> slots = new LinkedHashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.ALLOCA && !instruction.isArrayAlloca()) {
+                    slots.put(instruction.getResult(), instruction);
+                }
+            }
+        }
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                List<IrValue> operands = instruction.getOperands();
+                for (int i = 0; i < operands.size(); i++) {
+                    boolean pointer = instruction.getOpcode() == IrOpcode.LOAD
+                            || instruction.getOpcode() == IrOpcode.STORE && i == 1;
+                    if (!pointer) {
+                        slots.remove(operands.get(i));
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+
+    //Walks every block backwards from its live-out slots, linking each stored slot to those live across the store
+    static Map<IrValue, Set<IrValue>> interference(IrFunction function, Liveness liveness, Set<IrValue> slots) {
+        Map<IrValue, Set<IrValue>> interference = new HashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            Set<IrValue> live = new HashSet<>(liveness.getLiveOut(block));
+            live.retainAll(slots);
+            List<IrInstruction> instructions = liveness.getInstructions(block);
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                IrInstruction instruction = instructions.get(i);
+                if (instruction.getOpcode() == IrOpcode.STORE && slots.contains(instruction.getOperand(1))) {
+                    IrValue stored = instruction.getOperand(1);
+                    for (IrValue other : live) {
+                        if (!other.equals(stored)) {
+                            interference.computeIfAbsent(stored, k -> new HashSet<>()).add(other);
+                            interference.computeIfAbsent(other, k -> new HashSet<>()).add(stored);
+                        }
+                    }
+                    live.remove(stored);
+                } else if (instruction.getOpcode() == IrOpcode.LOAD && slots.contains(instruction.getOperand(0))) {
+                    live.add(instruction.getOperand(0));
+                }
+            }
+        }
+        return interference;
+    }
+
+    private static List<IrValue> colorFor(List<List<IrValue>> colors, IrValue slot, IrType type,
+            Map<IrValue, IrInstruction> slots, Map<IrValue, Set<IrValue>> interference) {
+        Set<IrValue> conflicts = interference.getOrDefault(slot, Set.of());
+        for (List<IrValue> color : colors) {
+            if (slots.get(color.get(0)).getType() == type && color.stream().noneMatch(conflicts::contains)) {
+                return color;
+            }
+        }
+        return null;
+    }
+
+    //Bytes of all the function's allocas, arrays included, before any alignment
+    public static int frameSize(IrFunction function) {
+        int size = 0;
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.ALLOCA) {
+                    size += instruction.getType().getSize() * (instruction.isArrayAlloca() ? instruction.getLength() : 1);
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces a load with the value last stored to or loaded from the same slot or global,
+ * when nothing can have written it since. The generator reloads a variable right after
+ * storing it ({@code int x = result; x++;}), so most of these loads go.
+ *
+ * Within a block the stores and loads are followed in order. A block then starts from
+ * what is known at the end of its immediate dominator, less every slot or global stored
+ * on some path from there to it, loops included. Slots and globals never alias: slots
+ * are only ever used as the pointer of a load or store, and each global has its own
+ * address. A call may store to any global, so it forgets them all, but no slot.
+ *
+ * Only constants and registers defined once are forwarded, so a replacement always
+ * holds the value the load would have read.
+ */
+public final class StoreToLoadForwarding implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "forward";
+    }
+
+    @Override
+    public boolean preservesCfg() {
+        return true;
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        Cfg cfg = analyses.get(AnalysisManager.Analysis.CFG, function);
+        Dominators dominators = analyses.get(AnalysisManager.Analysis.DOMINATORS, function);
+        Map<IrValue, Integer> definitions = ConstantFolding.countDefinitions(function);
+        Set<IrValue> slots = StackSlotColoring.candidates(function).keySet();
+
+        Map<IrValue, IrValue> replacements = new HashMap<>();
+        Set<IrInstruction> forwarded = new HashSet<>();
+        //What each visited block leaves in memory, by pointer
+        Map<IrBlock, Map<IrValue, IrValue>> exits = new HashMap<>();
+        //Reverse postorder visits every block after its immediate dominator
+        for (IrBlock block : cfg.getReversePostOrder()) {
+            IrBlock dominator = dominators.getImmediateDominator(block);
+            Map<IrValue, IrValue> known = new HashMap<>();
+            if (dominator != null) {
+                known.putAll(exits.get(dominator));
+                forgetStoresBetween(cfg, dominator, block, known);
+            }
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.STORE && tracked(instruction.getOperand(1), slots)) {
+                    IrValue value = resolve(replacements, instruction.getOperand(0));
+                    if (isStable(value, definitions)) {
+                        known.put(instruction.getOperand(1), value);
+                    } else {
+                        known.remove(instruction.getOperand(1));
+                    }
+                } else if (instruction.getOpcode() == IrOpcode.LOAD && tracked(instruction.getOperand(0), slots)) {
+                    IrValue value = known.get(instruction.getOperand(0));
+                    if (value != null && definitions.get(instruction.getResult()) == 1) {
+                        replacements.put(instruction.getResult(), value);
+                        forwarded.add(instruction);
+                    } else if (isStable(instruction.getResult(), definitions)) {
+                        known.put(instruction.getOperand(0), instruction.getResult());
+                    }
+                } else if (instruction.getOpcode() == IrOpcode.CALL) {
+                    forgetGlobals(known);
+                }
+                if (instruction.getOpcode().isTerminator()) {
+                    break;
+                }
+            }
+            exits.put(block, known);
+        }
+        if (forwarded.isEmpty()) {
+            return false;
+        }
+
+        for (IrBlock block : function.getBlocks()) {
+            block.getInstructions().removeIf(forwarded::contains);
+            for (IrInstruction instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.getOperands().size(); i++) {
+                    IrValue operand = instruction.getOperand(i);
+                    if (replacements.containsKey(operand)) {
+                        instruction.setOperand(i, resolve(replacements, operand));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean tracked(IrValue pointer, Set<IrValue> slots) {
+        return pointer instanceof IrValue.Global || slots.contains(pointer);
+    }
+
+    private static boolean isStable(IrValue value, Map<IrValue, Integer> definitions) {
+        return value.isConstant() || value instanceof IrValue.Register && definitions.getOrDefault(value, 0) == 1;
+    }
+
+    private static IrValue resolve(Map<IrValue, IrValue> replacements, IrValue value) {
+        IrValue replacement = replacements.get(value);
+        while (replacement != null) {
+            value = replacement;
+            replacement = replacements.get(value);
+        }
+        return value;
+    }
+
+    private static void forgetGlobals(Map<IrValue, IrValue> known) {
+        known.keySet().removeIf(pointer -> pointer instanceof IrValue.Global);
+    }
+
+    /**
+     * Forgets the pointers stored, and the globals a call may store, in any block on a
+     * path from the dominator to the block, found by walking back from the block's
+     * predecessors until the dominator.
+     */
+    private static void forgetStoresBetween(Cfg cfg, IrBlock dominator, IrBlock block, Map<IrValue, IrValue> known) {
+        List<IrBlock> predecessors = cfg.getPredecessors(block);
+        if (predecessors.size() == 1 && predecessors.get(0) == dominator) {
+            return;
+        }
+        Set<IrValue> stored = new HashSet<>();
+        boolean calls = false;
+        Set<IrBlock> seen = new HashSet<>();
+        Deque<IrBlock> work = new ArrayDeque<>();
+        seen.add(dominator);
+        for (IrBlock predecessor : predecessors) {
+            if (seen.add(predecessor)) {
+                work.push(predecessor);
+            }
+        }
+        while (!work.isEmpty()) {
+            IrBlock current = work.pop();
+            for (IrInstruction instruction : current.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.STORE) {
+                    stored.add(instruction.getOperand(1));
+                } else if (instruction.getOpcode() == IrOpcode.CALL) {
+                    calls = true;
+                }
+            }
+            for (IrBlock predecessor : cfg.getPredecessors(current)) {
+                if (cfg.isReachable(predecessor) && seen.add(predecessor)) {
+                    work.push(predecessor);
+                }
+            }
+        }
+        known.keySet().removeAll(stored);
+        if (calls) {
+            forgetGlobals(known);
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package com.github.lukewehrmeister.jpiler;
 
+import java.util.List;
+
 public class Symbol {
-    private final String name;  
+    private final int nameId;
     private final SemanticType type;  
     private final SymbolKind kind;
     private final String accessModifier; 
     private boolean initialized;
+    private List<SemanticType> parameterTypes = List.of();
+    private int arrayLength;
     
     // Constructor
-    public Symbol(String name, SemanticType type, SymbolKind kind, String accessModifier, boolean initialized) {
-        this.name = name;
+    public Symbol(int nameId, SemanticType type, SymbolKind kind, String accessModifier, boolean initialized) {
+        this.nameId = nameId;
         this.type = type;
         this.kind = kind;
         this.accessModifier = accessModifier;
@@ -17,18 +21,19 @@ public class Symbol {
     }
 
     //For methods and classes
-    public Symbol(String name, SemanticType type, SymbolKind kind, String accessModifier) {
-        this(name, type, kind, accessModifier, false);
+    public Symbol(int nameId, SemanticType type, SymbolKind kind, String accessModifier) {
+        this(nameId, type, kind, accessModifier, false);
     }
 
     //For variables and parameters
-    public Symbol(String name, SemanticType type, SymbolKind kind, boolean initialized) {
-        this(name, type, kind, "default", initialized);
+    public Symbol(int nameId, SemanticType type, SymbolKind kind, boolean initialized) {
+        this(nameId, type, kind, "default", initialized);
     }
 
     // Getters
-    public String getName() {
-        return name;
+    //The name is interned in the compilation's NameTable; look it up there to print it
+    public int getNameId() {
+        return nameId;
     }
 
     public SemanticType getType() {
@@ -51,10 +56,28 @@ public class Symbol {
     public void setInitialized(boolean initialized) {
         this.initialized = initialized;
     }
+
+    //Declared parameter types, for methods
+    public List<SemanticType> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public void setParameterTypes(List<SemanticType> parameterTypes) {
+        this.parameterTypes = parameterTypes;
+    }
+
+    //Number of elements, for arrays, which are all created with a constant length
+    public int getArrayLength() {
+        return arrayLength;
+    }
+
+    public void setArrayLength(int arrayLength) {
+        this.arrayLength = arrayLength;
+    }
     
     // Override toString for easier debugging
     @Override
     public String toString() {
-        return "Symbol{name='" + name + "', type='" + type + "'}";
+        return "Symbol{nameId=" + nameId + ", type='" + type + "'}";
     }
 }
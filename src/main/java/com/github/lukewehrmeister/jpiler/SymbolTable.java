@@ -1,33 +1,33 @@
 package com.github.lukewehrmeister.jpiler;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 public class SymbolTable {
-    private Map<String, Symbol> symbols;
+    private IntMap<Symbol> symbols;
 
     public SymbolTable() {
-        symbols = new HashMap<>();
+        symbols = new IntMap<>();
     }
 
-    public void add(String name, Symbol symbol) {
-        if (symbols.containsKey(name)) {
-            System.err.println("Error: Variable '" + name + "' already declared in this scope.");
+    public void add(int nameId, Symbol symbol) {
+        if (symbols.containsKey(nameId)) {
+            System.err.println("Error: " + symbol + " already declared in this scope.");
         } else {
-            symbols.put(name, symbol);
+            symbols.put(nameId, symbol);
         }
     }
 
-    public Symbol get(String name) {
-        return symbols.get(name);
+    public Symbol get(int nameId) {
+        return symbols.get(nameId);
     }
 
-    public boolean contains(String name) {
-        return symbols.containsKey(name);
+    public boolean contains(int nameId) {
+        return symbols.containsKey(nameId);
     }
 
-    public Map<String, Symbol> getSymbols() {
-        return symbols;
+    // Symbols in declaration order
+    public List<Symbol> getSymbols() {
+        return symbols.values();
     }
     
 }
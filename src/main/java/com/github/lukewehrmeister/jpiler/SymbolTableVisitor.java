@@ -2,73 +2,64 @@ package com.github.lukewehrmeister.jpiler;
 
 import java.util.*;
 
-import org.antlr.v4.runtime.ParserRuleContext;
 
+public class SymbolTableVisitor implements AstVisitor<SemanticType> {
+    //Arrays live in the frame of the method that declares them, so their length is capped
+    static final int MAX_ARRAY_LENGTH = 1 << 16;
 
-public class SymbolTableVisitor extends JavaSubsetBaseVisitor<SemanticType>{
-    private Stack<SymbolTable> scopes = new Stack<>();
+    private ScopeChain scopes = new ScopeChain();
     private List<String> errors = new ArrayList<>();
-    private Map<ParserRuleContext, SymbolTable> tableForContext = new HashMap<>();
-    private Map<ParserRuleContext, Symbol> symbolMap = new HashMap<>();
+    private SemanticAnnotations annotations;
     private Deque<SemanticType> returnTypeStack = new ArrayDeque<>();
+    private NameTable names;
 
+    public SymbolTableVisitor() {
+    }
 
-    public SymbolTable getSymbolTableForContext(ParserRuleContext ctx) {
-        return tableForContext.get(ctx); 
+    public SymbolTable getSymbolTableForNode(Ast.Node node) {
+        return annotations.getTable(node);
     }
 
-    public Symbol getSymbolForContext(ParserRuleContext ctx) {
-        return symbolMap.get(ctx);  
+    public Symbol getSymbolForNode(Ast.Node node) {
+        return annotations.getSymbol(node);
     }
 
 
-    private void addSymbol(String name, Symbol symbol) {
+    private void addSymbol(int nameId, Symbol symbol) {
         if (scopes.isEmpty()) {
-            throw new IllegalStateException("No active scope to add symbol '" + name + "'.");
+            throw new IllegalStateException("No active scope to add symbol '" + names.name(nameId) + "'.");
         }
-        SymbolTable scope = scopes.peek();
-        if (scope.contains(name)) {
-            reportError("Symbol '" + name + "' already declared in this scope.");
+        if (scopes.isDeclaredInCurrentScope(nameId)) {
+            reportError("Symbol '" + names.name(nameId) + "' already declared in this scope.");
         } else {
-            scope.add(name, symbol);
+            scopes.declare(nameId, symbol);
         }
     }
 
-    public Map<ParserRuleContext, SymbolTable> getTableForContext() { 
-        return tableForContext; 
-    }
-    
-    public Map<ParserRuleContext, Symbol> getSymbolMap() { 
-        return symbolMap; 
+    public SemanticAnnotations getAnnotations() {
+        return annotations;
     }
 
-    public List<String> getErrors() { 
-        return errors; 
+    public List<String> getErrors() {
+        return errors;
     }
 
-    private Symbol resolveSymbol(String name) {
-        for (int i = scopes.size() - 1; i >= 0; --i) {
-            Symbol sym = scopes.get(i).getSymbols().get(name);
-            if (sym != null) {
-                return sym;
-            }
-        }
-        return null;
+    private Symbol resolveSymbol(int nameId) {
+        return scopes.resolve(nameId);
     }
-    
+
 
     private void reportError(String msg) {
         errors.add(msg);
         System.err.println("Semantic Error: " + msg);
     }
-    
+
     public void printSymbolTables() {
         int level = 0;
-        for (SymbolTable table : scopes) {
+        for (SymbolTable table : scopes.tables()) {
             System.out.println("Scope level " + level + ":");
-            for (String name : table.getSymbols().keySet()) {
-                Symbol symbol = table.get(name);
-                System.out.println("  " + name + " : " + symbol.getType());
+            for (Symbol symbol : table.getSymbols()) {
+                System.out.println("  " + names.name(symbol.getNameId()) + " : " + symbol.getType());
             }
             level++;
         }
@@ -77,82 +68,70 @@ public class SymbolTableVisitor extends JavaSubsetBaseVisitor<SemanticType>{
 
 
     @Override
-    public SemanticType visitCompilationUnit(JavaSubsetParser.CompilationUnitContext ctx) {
+    public SemanticType visitCompilationUnit(Ast.CompilationUnit node) {
+        names = node.getNames();
+        annotations = new SemanticAnnotations(node.getNodeCount());
+
         SymbolTable global = new SymbolTable();
         scopes.push(global);
-        tableForContext.put(ctx, global);
+        annotations.setTable(node, global);
 
-        for (JavaSubsetParser.ClassDeclarationContext classCtx : ctx.classDeclaration()) {
-            visit(classCtx);
+        for (Ast.ClassDeclaration classDecl : node.getClasses()) {
+            visit(classDecl);
         }
         scopes.pop();
         return null;
     }
-    
+
     @Override
-    public SemanticType visitClassDeclaration(JavaSubsetParser.ClassDeclarationContext ctx) {
-        String className = ctx.IDENTIFIER().getText();
-        String accessModifier = ctx.accessModifier() != null
-        ? ctx.accessModifier().getText()
-        : "default";
-        
-        Symbol classSymbol = new Symbol(className, SemanticType.CLASS, SymbolKind.CLASS, accessModifier);
+    public SemanticType visitClassDeclaration(Ast.ClassDeclaration node) {
+        int className = node.getNameId();
+
+        Symbol classSymbol = new Symbol(className, SemanticType.CLASS, SymbolKind.CLASS, node.getAccessModifier());
         addSymbol(className, classSymbol);
-        symbolMap.put(ctx, classSymbol);
+        annotations.setSymbol(node, classSymbol);
 
         SymbolTable classScope = new SymbolTable();
         scopes.push(classScope);
-        tableForContext.put(ctx, classScope);
-
-        visit(ctx.classBody());
-        scopes.pop(); 
+        annotations.setTable(node, classScope);
 
-        return null;
-    }
-
-
-    @Override
-    public SemanticType visitClassBody(JavaSubsetParser.ClassBodyContext ctx) {
-        for (JavaSubsetParser.ClassBodyDeclarationContext declCtx : ctx.classBodyDeclaration()) {
-            visit(declCtx);
-        }
-        return null;
-    }
-    
-    @Override
-    public SemanticType visitClassBodyDeclaration(JavaSubsetParser.ClassBodyDeclarationContext ctx) {
-        if (ctx.methodDeclaration() != null) {
-            visit(ctx.methodDeclaration());
-        } else if (ctx.variableDeclaration() != null) {
-            visit(ctx.variableDeclaration());
+        for (Ast.Node member : node.getMembers()) {
+            visit(member);
         }
+        scopes.pop();
+
         return null;
     }
 
     @Override
-    public SemanticType visitMethodDeclaration(JavaSubsetParser.MethodDeclarationContext ctx) {
-        SemanticType expectedReturnType = SemanticType.fromString(ctx.returnType().getText());
+    public SemanticType visitMethodDeclaration(Ast.MethodDeclaration node) {
+        SemanticType expectedReturnType = node.getReturnType();
         returnTypeStack.push(expectedReturnType);
-        
+
         try {
-            String methodName = ctx.IDENTIFIER().getText();
-       
-            String accessModifier = ctx.accessModifier() != null ? ctx.accessModifier().getText() : "default";
+            int methodName = node.getNameId();
+            if (expectedReturnType.isArray()) {
+                reportError("Method '" + names.name(methodName) + "' cannot return an array.");
+            }
 
-            Symbol methodSymbol = new Symbol(methodName, expectedReturnType, SymbolKind.METHOD, accessModifier);
+            Symbol methodSymbol = new Symbol(methodName, expectedReturnType, SymbolKind.METHOD, node.getAccessModifier());
+            List<SemanticType> parameterTypes = new ArrayList<>();
+            for (Ast.Parameter param : node.getParameters()) {
+                parameterTypes.add(param.getType());
+            }
+            //Set before the body is visited, so the method can call itself
+            methodSymbol.setParameterTypes(List.copyOf(parameterTypes));
             addSymbol(methodName, methodSymbol);
-            symbolMap.put(ctx, methodSymbol);
+            annotations.setSymbol(node, methodSymbol);
 
             SymbolTable methodScope = new SymbolTable();
             scopes.push(methodScope);
-            tableForContext.put(ctx, methodScope);
-        
-            if (ctx.parameterList() != null) {
-                visit(ctx.parameterList());
-            }
-            if (ctx.block() != null) {
-                visit(ctx.block());
+            annotations.setTable(node, methodScope);
+
+            for (Ast.Parameter param : node.getParameters()) {
+                visit(param);
             }
+            visit(node.getBody());
             scopes.pop();
         } finally {
             returnTypeStack.pop();
@@ -161,369 +140,356 @@ public class SymbolTableVisitor extends JavaSubsetBaseVisitor<SemanticType>{
     }
 
     @Override
-    public SemanticType visitParameterList(JavaSubsetParser.ParameterListContext ctx) {
-        for (JavaSubsetParser.ParameterContext paramCtx : ctx.parameter()) {
-            visit(paramCtx);
+    public SemanticType visitParameter(Ast.Parameter node) {
+        int paramName = node.getNameId();
+        if (node.getType().isArray()) {
+            reportError("Parameter '" + names.name(paramName) + "' cannot be an array; arrays are local to their method.");
         }
-        return null;
-    }    
 
-    @Override
-    public SemanticType visitParameter(JavaSubsetParser.ParameterContext ctx) {
-        String paramName = ctx.IDENTIFIER().getText();
-        SemanticType paramType = SemanticType.fromString(ctx.type().getText());
-        
-        Symbol paramSymbol = new Symbol(paramName, paramType, SymbolKind.PARAMETER, true);
+        Symbol paramSymbol = new Symbol(paramName, node.getType(), SymbolKind.PARAMETER, true);
         addSymbol(paramName, paramSymbol);
-        symbolMap.put(ctx, paramSymbol);
+        annotations.setSymbol(node, paramSymbol);
 
         return null;
-    }    
+    }
 
     @Override
-    public SemanticType visitVariableDeclaration(JavaSubsetParser.VariableDeclarationContext ctx) {
-        String varTypeString = ctx.type().getText();
-        SemanticType varType = SemanticType.fromString(varTypeString);
-    
-        for (JavaSubsetParser.VariableDeclaratorContext declaratorCtx : ctx.variableDeclarators().variableDeclarator()) {
-            String varName = declaratorCtx.IDENTIFIER().getText(); 
+    public SemanticType visitVariableDeclaration(Ast.VariableDeclaration node) {
+        for (Ast.Declarator declarator : node.getDeclarators()) {
+            int varName = declarator.getNameId();
             Symbol existingSymbol = resolveSymbol(varName);
 
             if (existingSymbol != null) {
-                reportError("Variable '" + varName + "' already defined in the current scope.");
+                reportError("Variable '" + names.name(varName) + "' already defined in the current scope.");
             } else {
-                boolean initialized = declaratorCtx.expression() != null;
-                
-                Symbol varSymbol = new Symbol(varName, varType, SymbolKind.VARIABLE, initialized);
+                boolean initialized = declarator.getInitializer() != null;
+
+                Symbol varSymbol = new Symbol(varName, node.getType(), SymbolKind.VARIABLE, initialized);
                 addSymbol(varName, varSymbol);
-                symbolMap.put(declaratorCtx, varSymbol);
-                
-                if (initialized) {
-                    visit(declaratorCtx.expression());
+                annotations.setSymbol(declarator, varSymbol);
+
+                if (node.getType().isArray()) {
+                    declareArray(varSymbol, declarator.getInitializer());
+                } else if (initialized) {
+                    visit(declarator.getInitializer());
                 }
             }
         }
         return null;
     }
-    
-    @Override
-    public SemanticType visitVariableDeclarationExpression(JavaSubsetParser.VariableDeclarationExpressionContext ctx) {
-        String varTypeString = ctx.type().getText();
-        SemanticType varType = SemanticType.fromString(varTypeString);
 
-        for (JavaSubsetParser.VariableDeclaratorContext declaratorCtx : ctx.variableDeclarators().variableDeclarator()) {
-            String varName = declaratorCtx.IDENTIFIER().getText(); 
-            Symbol existingSymbol = resolveSymbol(varName);
-    
-            if (existingSymbol != null) {
-                reportError("Variable '" + varName + "' already defined in the current scope.");
-            } else {
-                boolean initialized = declaratorCtx.expression() != null;
-                
-                Symbol varSymbol = new Symbol(varName, varType, SymbolKind.VARIABLE, initialized);
-                addSymbol(varName, varSymbol);
-                symbolMap.put(declaratorCtx, varSymbol);
-                
-                if (initialized) {
-                    visit(declaratorCtx.expression());
-                }
-            }
+    //An array must be a local created by its declaration, as in int[] a = new int[10];
+    private void declareArray(Symbol symbol, Ast.Expression initializer) {
+        String name = names.name(symbol.getNameId());
+        if (returnTypeStack.isEmpty()) {
+            reportError("Array '" + name + "' cannot be a field; arrays are local to their method.");
+        } else if (!(initializer instanceof Ast.NewArray creation)) {
+            reportError("Array '" + name + "' must be initialized with new and a constant length.");
+        } else if (creation.getElementType() != symbol.getType().getElementType()) {
+            reportError("Type mismatch in declaration of '" + name + "': cannot assign "
+                    + creation.getElementType().getArrayType() + " to " + symbol.getType() + ".");
+        } else if (!(creation.getLength() instanceof Ast.IntLiteral length)
+                || length.getValue() < 1 || length.getValue() > MAX_ARRAY_LENGTH) {
+            reportError("Length of array '" + name + "' must be an int literal from 1 to " + MAX_ARRAY_LENGTH + ".");
+        } else {
+            symbol.setArrayLength((int) length.getValue());
         }
+    }
+
+    //Declarators are handled by their VariableDeclaration, which knows the type
+    @Override
+    public SemanticType visitDeclarator(Ast.Declarator node) {
         return null;
     }
 
     @Override
-    public SemanticType visitAssignment(JavaSubsetParser.AssignmentContext ctx) {
-        String name = ctx.IDENTIFIER().getText();
+    public SemanticType visitAssignment(Ast.Assignment node) {
+        int name = node.getNameId();
         Symbol symbol = resolveSymbol(name);
-    
+
         if (symbol == null) {
-            reportError("Variable '" + name + "' not declared in any accessible scope.");
+            reportError("Variable '" + names.name(name) + "' not declared in any accessible scope.");
+        } else if (node.getIndex() != null) {
+            SemanticType elementType = indexArray(symbol, node.getIndex());
+            SemanticType rhsType = visit(node.getValue());
+            if (elementType != null && elementType != rhsType) {
+                reportError("Type mismatch in assignment to an element of '" + names.name(name) + "': cannot assign "
+                        + rhsType + " to " + elementType + ".");
+            }
+            annotations.setSymbol(node, symbol);
+        } else if (symbol.getType().isArray()) {
+            visit(node.getValue());
+            reportError("Array '" + names.name(name) + "' cannot be assigned; assign its elements instead.");
         } else {
-            SemanticType rhsType = visit(ctx.expression());
+            SemanticType rhsType = visit(node.getValue());
             SemanticType lhsType = symbol.getType();
-            
+
             if (!lhsType.equals(rhsType)) {
-                reportError("Type mismatch in assignment to '" + name + "': cannot assign " + rhsType + " to " + lhsType + ".");
+                reportError("Type mismatch in assignment to '" + names.name(name) + "': cannot assign " + rhsType + " to " + lhsType + ".");
             }
             symbol.setInitialized(true);
-            symbolMap.put(ctx, symbol);
+            annotations.setSymbol(node, symbol);
         }
-    
+
         return null;
     }
 
     @Override
-    public SemanticType visitExpression(JavaSubsetParser.ExpressionContext ctx) {
-        if (ctx.assignment() != null) {
-            return visit(ctx.assignment());
-        } else {
-            return visit(ctx.logicalOrExpression());
-        }
+    public SemanticType visitExpressionStatement(Ast.ExpressionStatement node) {
+        return visit(node.getExpression());
     }
 
     @Override
-    public SemanticType visitLogicalOrExpression(JavaSubsetParser.LogicalOrExpressionContext ctx) {
-        SemanticType type = visit(ctx.logicalAndExpression(0));
-    
-        if (ctx.logicalAndExpression().size() == 1) {
-            return type; 
-        }
-        for (int i = 1; i < ctx.logicalAndExpression().size(); i++) {
-            SemanticType right = visit(ctx.logicalAndExpression(i));
-            if (type != SemanticType.BOOLEAN || right != SemanticType.BOOLEAN) {
-                reportError("Logical OR requires boolean operands.");
-                return SemanticType.UNKNOWN;
+    public SemanticType visitBinary(Ast.Binary node) {
+        SemanticType left = visit(node.getLeft());
+        SemanticType right = visit(node.getRight());
+
+        switch (node.getOperator()) {
+            case OR -> {
+                if (left != SemanticType.BOOLEAN || right != SemanticType.BOOLEAN) {
+                    reportError("Logical OR requires boolean operands.");
+                    return SemanticType.UNKNOWN;
+                }
+                return SemanticType.BOOLEAN;
             }
-        }
-        return SemanticType.BOOLEAN;
-    }
-    
-
-    @Override
-    public SemanticType visitLogicalAndExpression(JavaSubsetParser.LogicalAndExpressionContext ctx) {
-        SemanticType type = visit(ctx.equalityExpression(0));
-    
-        if (ctx.equalityExpression().size() == 1) {
-            return type; 
-        }
-        for (int i = 1; i < ctx.equalityExpression().size(); i++) {
-            SemanticType right = visit(ctx.equalityExpression(i));
-            if (type != SemanticType.BOOLEAN || right != SemanticType.BOOLEAN) {
-                reportError("Logical AND requires boolean operands.");
-                return SemanticType.UNKNOWN;
+            case AND -> {
+                if (left != SemanticType.BOOLEAN || right != SemanticType.BOOLEAN) {
+                    reportError("Logical AND requires boolean operands.");
+                    return SemanticType.UNKNOWN;
+                }
+                return SemanticType.BOOLEAN;
             }
-        }
-    
-        return SemanticType.BOOLEAN; 
-    }
-    
-
-    @Override
-    public SemanticType visitEqualityExpression(JavaSubsetParser.EqualityExpressionContext ctx) {
-        SemanticType type = visit(ctx.relationalExpression(0));
-        System.out.println("Equality: " + ctx.getText() + " → " + type);
-        if (ctx.relationalExpression().size() == 1) {
-            return type; 
-        }
-    
-        for (int i = 1; i < ctx.relationalExpression().size(); i++) {
-            SemanticType right = visit(ctx.relationalExpression(i));
-            if (!type.equals(right)) {
-                reportError("Equality operator applied to mismatched types.");
-                return SemanticType.UNKNOWN;
+            case EQ, NE -> {
+                if (!left.equals(right)) {
+                    reportError("Equality operator applied to mismatched types.");
+                    return SemanticType.UNKNOWN;
+                }
+                return SemanticType.BOOLEAN;
             }
-        }
-        return SemanticType.BOOLEAN;
-    }
-    
-
-    @Override
-    public SemanticType visitRelationalExpression(JavaSubsetParser.RelationalExpressionContext ctx) {
-        SemanticType type = visit(ctx.additiveExpression(0));
-        if (ctx.additiveExpression().size() == 1) {
-            return type;
-        }
-        for (int i = 1; i < ctx.additiveExpression().size(); i++) {
-            SemanticType right = visit(ctx.additiveExpression(i));
-            if (type != right || (type != SemanticType.INT && type != SemanticType.CHAR && type != SemanticType.STRING)) {
-                reportError("Invalid types for relational operator.");
-                return SemanticType.UNKNOWN;
+            case LT, LE, GT, GE -> {
+                if (left != right || (left != SemanticType.INT && left != SemanticType.CHAR && left != SemanticType.STRING)) {
+                    reportError("Invalid types for relational operator.");
+                    return SemanticType.UNKNOWN;
+                }
+                return SemanticType.BOOLEAN;
             }
-        }
-        return SemanticType.BOOLEAN;
-    }
-    
-
-    @Override
-    public SemanticType visitAdditiveExpression(JavaSubsetParser.AdditiveExpressionContext ctx) {
-        SemanticType type = visit(ctx.multiplicativeExpression(0));
-        System.out.println("ADDITIVE: " + ctx.getText() + " → " + type);
-        for (int i = 1; i < ctx.multiplicativeExpression().size(); i++) {
-            SemanticType right = visit(ctx.multiplicativeExpression(i));
-            if (type == SemanticType.STRING || right == SemanticType.STRING) {
-                type = SemanticType.STRING;
-            } else if (type == SemanticType.INT && right == SemanticType.INT) {
-                type = SemanticType.INT;
-            } else {
+            case ADD, SUB -> {
+                if (left == SemanticType.STRING || right == SemanticType.STRING) {
+                    return SemanticType.STRING;
+                } else if (left == SemanticType.INT && right == SemanticType.INT) {
+                    return SemanticType.INT;
+                }
                 reportError("Invalid types for '+' or '-' operator.");
                 return SemanticType.UNKNOWN;
             }
+            default -> {
+                if (left != SemanticType.INT || right != SemanticType.INT) {
+                    reportError("Multiplicative operators require int operands.");
+                    return SemanticType.UNKNOWN;
+                }
+                return SemanticType.INT;
+            }
         }
-        return type;
     }
 
     @Override
-    public SemanticType visitMultiplicativeExpression(JavaSubsetParser.MultiplicativeExpressionContext ctx) {
-        SemanticType type = visit(ctx.unaryExpression(0));
-    
-        if (ctx.unaryExpression().size() == 1) {
-            return type; 
-        }
-    
-        for (int i = 1; i < ctx.unaryExpression().size(); i++) {
-            SemanticType right = visit(ctx.unaryExpression(i));
-            if (type != SemanticType.INT || right != SemanticType.INT) {
-                reportError("Multiplicative operators require int operands.");
-                return SemanticType.UNKNOWN;
-            }
-        }
-    
-        return SemanticType.INT; 
+    public SemanticType visitUnary(Ast.Unary node) {
+        return switch (node.getOperator()) {
+            case PLUS, NEGATE -> visit(node.getOperand()) == SemanticType.INT ? SemanticType.INT : SemanticType.UNKNOWN;
+            case NOT -> visit(node.getOperand()) == SemanticType.BOOLEAN ? SemanticType.BOOLEAN : SemanticType.UNKNOWN;
+            case PRE_INCREMENT, PRE_DECREMENT -> handleIncrementOrDecrement(node.getOperand());
+        };
     }
-    
 
     @Override
-    public SemanticType visitUnaryExpression(JavaSubsetParser.UnaryExpressionContext ctx) {
-        SemanticType operandType;
-        if (ctx.unaryOperator() != null) {
-            operandType = visit(ctx.unaryExpression());
-            System.out.println("UNARY: " + ctx.getText() + " → " + operandType);
-            String op = ctx.unaryOperator().getText();
-            return switch (op) {
-                case "-", "+", "++", "--" -> operandType == SemanticType.INT ? SemanticType.INT : SemanticType.UNKNOWN;
-                case "!" -> operandType == SemanticType.BOOLEAN ? SemanticType.BOOLEAN : SemanticType.UNKNOWN;
-                default -> {
-                    reportError("Unknown unary operator: " + op);
-                    yield SemanticType.UNKNOWN;
-                }
-            };
-        } else {
-            operandType = visit(ctx.postfixExpression());
-            System.out.println("UNARY: " + ctx.getText() + " → " + operandType);
-            return operandType;
-        }
-    }    
-    
-    @Override
-    public SemanticType visitPostfixExpression(JavaSubsetParser.PostfixExpressionContext ctx) {
-        if (!ctx.postfixOperator().isEmpty()) {
-            return handleIncrementOrDecrement(ctx.primaryExpression());
-        }
-        return visit(ctx.primaryExpression());
+    public SemanticType visitPostfix(Ast.Postfix node) {
+        return handleIncrementOrDecrement(node.getOperand());
     }
-    
 
-    private SemanticType handleIncrementOrDecrement(JavaSubsetParser.PrimaryExpressionContext ctx) {
-        if (ctx.IDENTIFIER() != null) {
-            String name = ctx.IDENTIFIER().getText();
+
+    private SemanticType handleIncrementOrDecrement(Ast.Expression operand) {
+        if (operand instanceof Ast.Name nameNode) {
+            int name = nameNode.getNameId();
             Symbol symbol = resolveSymbol(name);
             if (symbol == null) {
-                reportError("Variable '" + name + "' is not declared.");
+                reportError("Variable '" + names.name(name) + "' is not declared.");
                 return SemanticType.UNKNOWN;
             }
             if (!symbol.getInitialized()) {
-                reportError("Variable '" + name + "' is used before initialization.");
+                reportError("Variable '" + names.name(name) + "' is used before initialization.");
                 return SemanticType.UNKNOWN;
             }
-    
+
             if (symbol.getType() != SemanticType.INT) {
                 reportError("Increment/decrement is only supported on int types.");
                 return SemanticType.UNKNOWN;
             }
-    
-            symbolMap.put(ctx, symbol);
+
+            annotations.setSymbol(nameNode, symbol);
             return SemanticType.INT;
         }
-    
+
+        reportError("Increment/decrement can only be applied to variables.");
         return SemanticType.UNKNOWN;
-    }    
+    }
 
     @Override
-    public SemanticType visitPrimaryExpression(JavaSubsetParser.PrimaryExpressionContext ctx) {
-        System.out.println("PRIMARY: " + ctx.getText());
+    public SemanticType visitName(Ast.Name node) {
+        int name = node.getNameId();
+        Symbol symbol = resolveSymbol(name);
 
-        
-        if (ctx.integerLiteral() != null) {
-            System.out.println("PrimaryExpression marks as int");
-            return SemanticType.INT;
-        } else if (ctx.STRINGLIT() != null) {
-            return SemanticType.STRING;  
-        } else if (ctx.CHARACTER() != null) {
-            return SemanticType.CHAR;
-        } else if (ctx.booleanLiteral() != null) {
-            return SemanticType.BOOLEAN;  
-        } else if (ctx.NULL_LITERAL() != null) {
-            return SemanticType.NULL;  
-        } else if (ctx.IDENTIFIER() != null) {
-
-            String name = ctx.IDENTIFIER().getText();
-            Symbol symbol = resolveSymbol(name);
+        if (symbol == null) {
+            reportError("Variable '" + names.name(name) + "' is not declared.");
+            return SemanticType.UNKNOWN;
+        } else if (!symbol.getInitialized()) {
+            reportError("Variable '" + names.name(name) + "' is used before being initialized.");
+            return SemanticType.UNKNOWN;
+        } else if (symbol.getType().isArray()) {
+            reportError("Array '" + names.name(name) + "' can only be indexed or have its length read.");
+            return SemanticType.UNKNOWN;
+        }
+        annotations.setSymbol(node, symbol);
+        return symbol.getType();
+    }
 
-            if (symbol == null) {
-                reportError("Variable '" + name + "' is not declared.");
-                return SemanticType.UNKNOWN;
-            } else if (!symbol.getInitialized()) {
-                reportError("Variable '" + name + "' is used before being initialized.");
-                return SemanticType.UNKNOWN;
-            } else {
-                symbolMap.put(ctx, symbol);
-                return symbol.getType();
-            }
-        } else if (ctx.expression() != null) {
-            return visit(ctx.expression());
+    //Checks array[index] and returns the element type, or null after reporting why it is not one
+    private SemanticType indexArray(Symbol symbol, Ast.Expression index) {
+        SemanticType indexType = visit(index);
+        if (!symbol.getType().isArray()) {
+            reportError("'" + names.name(symbol.getNameId()) + "' is not an array.");
+            return null;
         }
-        return SemanticType.UNKNOWN;
+        if (indexType != SemanticType.INT) {
+            reportError("Array index must be of type int, but found " + indexType + ".");
+            return null;
+        }
+        return symbol.getType().getElementType();
     }
 
     @Override
-    public SemanticType visitUpdateExpressionList(JavaSubsetParser.UpdateExpressionListContext ctx) {
-        for (JavaSubsetParser.UpdateExpressionContext exprCtx : ctx.updateExpression()) {
-            visit(exprCtx);
+    public SemanticType visitArrayAccess(Ast.ArrayAccess node) {
+        int name = node.getNameId();
+        Symbol symbol = resolveSymbol(name);
+        if (symbol == null) {
+            visit(node.getIndex());
+            reportError("Variable '" + names.name(name) + "' is not declared.");
+            return SemanticType.UNKNOWN;
         }
-        return null;
+        SemanticType elementType = indexArray(symbol, node.getIndex());
+        if (elementType == null) {
+            return SemanticType.UNKNOWN;
+        }
+        annotations.setSymbol(node, symbol);
+        return elementType;
+    }
+
+    @Override
+    public SemanticType visitArrayLength(Ast.ArrayLength node) {
+        int name = node.getNameId();
+        Symbol symbol = resolveSymbol(name);
+        if (symbol == null) {
+            reportError("Variable '" + names.name(name) + "' is not declared.");
+            return SemanticType.UNKNOWN;
+        } else if (!symbol.getType().isArray()) {
+            reportError("'" + names.name(name) + "' is not an array and has no length.");
+            return SemanticType.UNKNOWN;
+        }
+        annotations.setSymbol(node, symbol);
+        return SemanticType.INT;
     }
-    
+
+    //Creations are checked by the declaration they initialize; anywhere else they are an error
     @Override
-    public SemanticType visitUpdateExpression(JavaSubsetParser.UpdateExpressionContext ctx) {
-        if (ctx.assignment() != null) {
-            return visit(ctx.assignment());
-        } else if (ctx.unaryExpression() != null) {
-            return visit(ctx.unaryExpression());
-        } else if (ctx.postfixExpression() != null) {
-            return visit(ctx.postfixExpression());
+    public SemanticType visitNewArray(Ast.NewArray node) {
+        visit(node.getLength());
+        reportError("Arrays can only be created to initialize a local array variable.");
+        return SemanticType.UNKNOWN;
+    }
+
+    //Only methods declared so far in the enclosing class are visible, the current one included
+    @Override
+    public SemanticType visitCall(Ast.Call node) {
+        int name = node.getNameId();
+        Symbol symbol = resolveSymbol(name);
+        List<SemanticType> argumentTypes = new ArrayList<>();
+        for (Ast.Expression argument : node.getArguments()) {
+            argumentTypes.add(visit(argument));
         }
-        return null;
+
+        if (symbol == null) {
+            reportError("Method '" + names.name(name) + "' is not declared.");
+            return SemanticType.UNKNOWN;
+        } else if (symbol.getKind() != SymbolKind.METHOD) {
+            reportError("'" + names.name(name) + "' is not a method.");
+            return SemanticType.UNKNOWN;
+        } else if (!argumentTypes.equals(symbol.getParameterTypes())) {
+            reportError("Method '" + names.name(name) + "' expects arguments " + symbol.getParameterTypes()
+                    + " but was called with " + argumentTypes + ".");
+            return SemanticType.UNKNOWN;
+        }
+        annotations.setSymbol(node, symbol);
+        return symbol.getType();
     }
 
-    
+    @Override
+    public SemanticType visitIntLiteral(Ast.IntLiteral node) {
+        return SemanticType.INT;
+    }
+
+    @Override
+    public SemanticType visitBooleanLiteral(Ast.BooleanLiteral node) {
+        return SemanticType.BOOLEAN;
+    }
+
+    @Override
+    public SemanticType visitStringLiteral(Ast.StringLiteral node) {
+        return SemanticType.STRING;
+    }
+
+    @Override
+    public SemanticType visitCharLiteral(Ast.CharLiteral node) {
+        return SemanticType.CHAR;
+    }
+
+    @Override
+    public SemanticType visitNullLiteral(Ast.NullLiteral node) {
+        return SemanticType.NULL;
+    }
+
+
 
     @Override
-    public SemanticType visitIfStatement(JavaSubsetParser.IfStatementContext ctx) {
-        SemanticType conditionType = visit(ctx.expression());
+    public SemanticType visitIf(Ast.If node) {
+        SemanticType conditionType = visit(node.getCondition());
         if (conditionType != SemanticType.BOOLEAN) {
             reportError("Condition in 'if' statement must be of type boolean, but found " + conditionType);
         }
-    
-        visit(ctx.block(0)); 
-    
-        if (ctx.ELSE() != null) {
-            if (ctx.ifStatement() != null) {
-                visit(ctx.ifStatement()); 
-            } else {
-                visit(ctx.block(1));
-            }
+
+        visit(node.getThenBlock());
+
+        if (node.getElseBranch() != null) {
+            visit(node.getElseBranch());
         }
-    
+
         return null;
     }
-    
-    
+
+
     @Override
-    public SemanticType visitWhileLoop(JavaSubsetParser.WhileLoopContext ctx) {
-        SemanticType conditionType = visit(ctx.expression());
+    public SemanticType visitWhile(Ast.While node) {
+        SemanticType conditionType = visit(node.getCondition());
         if (conditionType != SemanticType.BOOLEAN) {
             reportError("Condition in 'while' loop must be of type boolean, but found " + conditionType);
         }
-        visit(ctx.block());
+        visit(node.getBody());
         return null;
     }
-    
-    
+
+
     @Override
-    public SemanticType visitDoWhileLoop(JavaSubsetParser.DoWhileLoopContext ctx) {
-        visit(ctx.block());
-        SemanticType cond = visit(ctx.expression());
+    public SemanticType visitDoWhile(Ast.DoWhile node) {
+        visit(node.getBody());
+        SemanticType cond = visit(node.getCondition());
         if (cond != SemanticType.BOOLEAN) {
             reportError("Condition in 'do-while' must be boolean, but found " + cond);
         }
@@ -531,60 +497,60 @@ public class SymbolTableVisitor extends JavaSubsetBaseVisitor<SemanticType>{
     }
 
     @Override
-    public SemanticType visitForLoop(JavaSubsetParser.ForLoopContext ctx) {
+    public SemanticType visitFor(Ast.For node) {
         SymbolTable forScope = new SymbolTable();
         scopes.push(forScope);
-        tableForContext.put(ctx, forScope);
-    
-        if (ctx.variableDeclarationExpression() != null) {
-            visit(ctx.variableDeclarationExpression());
+        annotations.setTable(node, forScope);
+
+        if (node.getInitDeclaration() != null) {
+            visit(node.getInitDeclaration());
+        }
+        for (Ast.Assignment assignment : node.getInitAssignments()) {
+            visit(assignment);
         }
-        if (ctx.expression() != null) {
-            visit(ctx.expression());
+        if (node.getCondition() != null) {
+            visit(node.getCondition());
         }
-        if (ctx.updateExpressionList() != null) {
-            visit(ctx.updateExpressionList());
+        for (Ast.Expression update : node.getUpdates()) {
+            visit(update);
         }
-    
-        visit(ctx.block());
+
+        visit(node.getBody());
         scopes.pop();
-    
-        return null;
-    }
 
-    @Override
-    public SemanticType visitAssignmentExpressionList(JavaSubsetParser.AssignmentExpressionListContext ctx) {
-        for (JavaSubsetParser.AssignmentContext assignmentCtx : ctx.assignment()) {
-            visit(assignmentCtx);
-        }
         return null;
     }
 
     @Override
-    public SemanticType visitBlock(JavaSubsetParser.BlockContext ctx) {
+    public SemanticType visitBlock(Ast.Block node) {
         SymbolTable blockScope = new SymbolTable();
         scopes.push(blockScope);
-        tableForContext.put(ctx, blockScope);
+        annotations.setTable(node, blockScope);
 
-        for (JavaSubsetParser.StatementContext stmtCtx : ctx.statement()) {
-            visit(stmtCtx);
+        for (Ast.Statement statement : node.getStatements()) {
+            visit(statement);
         }
 
         scopes.pop();
         return null;
     }
 
+    @Override
+    public SemanticType visitEmpty(Ast.Empty node) {
+        return null;
+    }
+
 
     @Override
-    public SemanticType visitReturnStatement(JavaSubsetParser.ReturnStatementContext ctx) {
+    public SemanticType visitReturn(Ast.Return node) {
         SemanticType expected = returnTypeStack.peek();
         if (expected == null) {
             reportError("‘return’ not inside a method");
             return SemanticType.UNKNOWN;
         }
 
-        if (ctx.expression() != null) {
-            SemanticType actual = visit(ctx.expression());
+        if (node.getValue() != null) {
+            SemanticType actual = visit(node.getValue());
 
             if (expected == SemanticType.VOID) {
                 reportError("Void method cannot return a value.");
@@ -599,8 +565,8 @@ public class SymbolTableVisitor extends JavaSubsetBaseVisitor<SemanticType>{
                 return SemanticType.UNKNOWN;
             }
         }
-    
+
         return expected;
     }
-    
+
 }
@@ -0,0 +1,174 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns a function's calls to itself in tail position into jumps back to its start, so
+ * {@code return gcd(b, a % b);} runs in one frame however deep the recursion goes.
+ *
+ * A call is in tail position when the function returns its result straight after it, or
+ * returns nothing after a void call, possibly through blocks that only jump on. The
+ * entry block is split after its allocas and the stores of the parameters into their
+ * {@code %name.addr} slots, and the rest of it becomes a {@code tailrecurse} block. A
+ * tail call then stores its arguments into the parameter slots and branches there.
+ *
+ * A new call would find its other slots holding 0, so each slot the loop can read before
+ * storing it is set back to 0 before the branch. Parameters must be read only through
+ * their slots, as the generator leaves them, so this runs before any pass that forwards
+ * the parameter registers themselves.
+ */
+public final class TailRecursionElimination implements FunctionPass {
+    static final String HEADER = "tailrecurse";
+
+    @Override
+    public String getName() {
+        return "tailrec";
+    }
+
+    @Override
+    public boolean run(IrFunction function, AnalysisManager analyses) {
+        int prologue = prologueLength(function);
+        Map<IrValue, IrValue> parameterSlots = parameterSlots(function, prologue);
+        if (parameterSlots == null || function.getBlocks().stream().noneMatch(block -> tailCall(function, block) != null)) {
+            return false;
+        }
+
+        IrBlock entry = function.getEntryBlock();
+        IrBlock header = new IrBlock(freshLabel(function));
+        List<IrInstruction> body = entry.getInstructions().subList(prologue, entry.getInstructions().size());
+        header.getInstructions().addAll(body);
+        body.clear();
+        entry.add(IrInstruction.br(header));
+        function.getBlocks().add(1, header);
+
+        analyses.invalidate(function, false);
+        Liveness liveness = analyses.get(AnalysisManager.Analysis.LIVENESS, function);
+        Map<IrValue, IrInstruction> slots = StackSlotColoring.candidates(function);
+        List<IrValue> stale = new ArrayList<>();
+        for (IrValue value : liveness.getLiveIn(header)) {
+            if (slots.containsKey(value) && !parameterSlots.containsValue(value)) {
+                stale.add(value);
+            }
+        }
+
+        List<IrFunction.Parameter> parameters = function.getParameters();
+        for (IrBlock block : function.getBlocks()) {
+            IrInstruction call = tailCall(function, block);
+            if (call == null) {
+                continue;
+            }
+            List<IrInstruction> instructions = block.getInstructions();
+            instructions.subList(instructions.indexOf(call), instructions.size()).clear();
+            //The arguments are already computed, so the order of the stores does not matter
+            for (int i = 0; i < parameters.size(); i++) {
+                IrFunction.Parameter parameter = parameters.get(i);
+                instructions.add(IrInstruction.store(parameter.getType(), call.getOperand(i),
+                        parameterSlots.get(parameter.getRegister())));
+            }
+            for (IrValue slot : stale) {
+                instructions.add(IrInstruction.store(slots.get(slot).getType(), IrValue.constant(0), slot));
+            }
+            instructions.add(IrInstruction.br(header));
+        }
+        return true;
+    }
+
+    //The self-call the block ends with in tail position, or null
+    private static IrInstruction tailCall(IrFunction function, IrBlock block) {
+        List<IrInstruction> instructions = block.getInstructions();
+        IrInstruction terminator = block.getTerminator();
+        if (terminator == null) {
+            return null;
+        }
+        int at = instructions.indexOf(terminator);
+        if (at == 0) {
+            return null;
+        }
+        IrInstruction call = instructions.get(at - 1);
+        if (call.getOpcode() != IrOpcode.CALL || !call.getCallee().equals(function.getName())
+                || call.getOperands().size() != function.getParameters().size()) {
+            return null;
+        }
+        return returns(function, terminator, call.getResult()) ? call : null;
+    }
+
+    //Whether the terminator returns the value, or returns from a void function when it is null
+    private static boolean returns(IrFunction function, IrInstruction terminator, IrValue value) {
+        Set<IrBlock> seen = new HashSet<>();
+        while (terminator.getOpcode() == IrOpcode.BR) {
+            IrBlock target = terminator.getTargets().get(0);
+            List<IrBlock> blocks = function.getBlocks();
+            if (!seen.add(target)) {
+                return false;
+            }
+            if (target.getInstructions().isEmpty()) {
+                //Falls through, or off the end of a void function
+                int next = blocks.indexOf(target) + 1;
+                if (next == blocks.size()) {
+                    return value == null && function.getReturnType() == IrType.VOID;
+                }
+                terminator = IrInstruction.br(blocks.get(next));
+            } else if (target.getInstructions().size() == 1 && target.getTerminator() != null) {
+                terminator = target.getTerminator();
+            } else {
+                return false;
+            }
+        }
+        if (terminator.getOpcode() != IrOpcode.RET) {
+            return false;
+        }
+        return value == null ? terminator.getOperands().isEmpty()
+                : !terminator.getOperands().isEmpty() && terminator.getOperand(0).equals(value);
+    }
+
+    //Leading allocas of the entry block and stores of parameters into slots
+    private static int prologueLength(IrFunction function) {
+        Set<IrValue> parameters = new HashSet<>();
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            parameters.add(parameter.getRegister());
+        }
+        List<IrInstruction> instructions = function.getEntryBlock().getInstructions();
+        int length = 0;
+        while (length < instructions.size()) {
+            IrInstruction instruction = instructions.get(length);
+            boolean prologue = instruction.getOpcode() == IrOpcode.ALLOCA
+                    || instruction.getOpcode() == IrOpcode.STORE && parameters.contains(instruction.getOperand(0));
+            if (!prologue) {
+                break;
+            }
+            length++;
+        }
+        return length;
+    }
+
+    //The slot each parameter is stored to in the prologue, or null unless that is its only use
+    private static Map<IrValue, IrValue> parameterSlots(IrFunction function, int prologue) {
+        Map<IrValue, Integer> uses = DeadCodeElimination.countUses(function);
+        Set<IrValue> slots = StackSlotColoring.candidates(function).keySet();
+        Map<IrValue, IrValue> parameterSlots = new HashMap<>();
+        for (IrInstruction instruction : function.getEntryBlock().getInstructions().subList(0, prologue)) {
+            if (instruction.getOpcode() == IrOpcode.STORE && slots.contains(instruction.getOperand(1))) {
+                parameterSlots.put(instruction.getOperand(0), instruction.getOperand(1));
+            }
+        }
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            if (!parameterSlots.containsKey(parameter.getRegister()) || uses.get(parameter.getRegister()) != 1) {
+                return null;
+            }
+        }
+        return parameterSlots;
+    }
+
+    private static String freshLabel(IrFunction function) {
+        String label = HEADER;
+        for (int i = 1; function.getBlock(label) != null; i++) {
+            label = HEADER + "." + i;
+        }
+        return label;
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps one JVM alive and recompiles sources whenever they change on disk.
+ * Input may be a single .java file (output is then a file) or a directory
+ * tree (output is then a directory receiving one .ir.txt per source).
+ * Each rebuild runs the same -O pipeline as a one-shot compile.
+ */
+public class WatchMode {
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    private final Path input;
+    private final Path output;
+    private final boolean directoryMode;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+    public WatchMode(Path input, Path output) {
+        this.input = input.toAbsolutePath().normalize();
+        this.output = output.toAbsolutePath().normalize();
+        this.directoryMode = Files.isDirectory(this.input);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        rebuild(initialSources());
+
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            if (directoryMode) {
+                registerTree(watcher, input);
+            } else {
+                register(watcher, input.getParent());
+            }
+            System.out.println("Watching " + input + " for changes (Ctrl+C to stop)");
+
+            while (true) {
+                WatchKey key = watcher.take();
+                Set<Path> touched = new LinkedHashSet<>();
+                collect(watcher, key, touched);
+
+                // Editors save in bursts (truncate, write, rename); wait for the dust to settle.
+                while ((key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(watcher, key, touched);
+                }
+                rebuild(touched);
+            }
+        }
+    }
+
+    /**
+     * Recompiles each of the given sources in-process and reports per-file and total timings.
+     */
+    void rebuild(Collection<Path> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        long batchStart = System.nanoTime();
+        int failed = 0;
+        for (Path source : sources) {
+            if (!compileOne(source)) {
+                failed++;
+            }
+        }
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart);
+        System.out.println("Rebuilt " + sources.size() + " file(s) in " + totalMillis + " ms"
+                + (failed > 0 ? " (" + failed + " failed)" : ""));
+    }
+
+    private boolean compileOne(Path source) {
+        long start = System.nanoTime();
+        try {
+            String code = Files.readString(source);
+            List<String> errors = new ArrayList<>();
+            IrModule module = Main.compileToModule(code, errors);
+            if (module == null) {
+                System.err.println(source + ": Semantic Errors:");
+                for (String err : errors) {
+                    System.err.println("  " + err);
+                }
+                return false;
+            }
+            Main.optimize(module);
+            String ir = IrPrinter.print(module);
+
+            Path target = outputFor(source);
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Files.writeString(target, ir);
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            String shown = directoryMode ? input.relativize(source).toString() : source.getFileName().toString();
+            System.out.printf("  %s -> %s (%.2f ms)%n", shown, target, micros / 1000.0);
+            return true;
+        } catch (NoSuchFileException e) {
+            // Deleted between the event and the rebuild; nothing to compile.
+            return true;
+        } catch (IOException e) {
+            System.err.println(source + ": IO Error: " + e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            System.err.println(source + ": Unexpected Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Maps a source file to the IR file it compiles into.
+     */
+    Path outputFor(Path source) {
+        if (!directoryMode) {
+            return output;
+        }
+        Path relative = input.relativize(source.toAbsolutePath().normalize());
+        String fileName = relative.getFileName().toString();
+        String irName = fileName.substring(0, fileName.length() - ".java".length()) + ".ir.txt";
+        Path parent = relative.getParent();
+        return parent == null ? output.resolve(irName) : output.resolve(parent).resolve(irName);
+    }
+
+    private List<Path> initialSources() throws IOException {
+        if (!directoryMode) {
+            return List.of(input);
+        }
+        try (Stream<Path> files = Files.walk(input)) {
+            return files.filter(this::isSource).sorted().toList();
+        }
+    }
+
+    private boolean isSource(Path path) {
+        if (!directoryMode) {
+            return path.equals(input);
+        }
+        return path.getFileName().toString().endsWith(".java") && !path.startsWith(output)
+                && Files.isRegularFile(path);
+    }
+
+    private void collect(WatchService watcher, WatchKey key, Set<Path> touched) throws IOException {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                // Events were dropped; fall back to rebuilding everything we know about.
+                touched.addAll(initialSources());
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && directoryMode && Files.isDirectory(changed)) {
+                registerTree(watcher, changed);
+                try (Stream<Path> files = Files.walk(changed)) {
+                    files.filter(this::isSource).forEach(touched::add);
+                }
+            } else if (event.kind() != ENTRY_DELETE && isSource(changed)) {
+                touched.add(changed);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private void registerTree(WatchService watcher, Path root) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                if (!dir.startsWith(output)) {
+                    register(watcher, dir);
+                }
+            }
+        }
+    }
+
+    private void register(WatchService watcher, Path dir) throws IOException {
+        watchedDirs.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+    }
+}
@@ -0,0 +1,483 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Emits x86-64 assembly (GNU as, AT&T syntax) for an {@link IrModule}, with registers
+ * from {@link LinearScanAllocator}.
+ *
+ * Each function becomes a global symbol {@code Class.method} following the System V
+ * calling convention, with int parameters in edi, esi, edx, ecx, r8d, r9d and then on
+ * the stack, and the result in eax; {@code <clinit>} becomes {@code Class..clinit}. Each
+ * global becomes a 32-bit {@code Class.field} in .data. Values are allocated to the first
+ * {@code registers} of {@link #REGISTERS}, none of which carries an argument, so the
+ * parameters can be moved into place in any order, and so can a call's arguments. eax,
+ * ecx and edx are scratch. A call pushes the caller-saved r10 and r11 around itself when
+ * the function allocates them.
+ *
+ * Arrays sit at the bottom of the frame, addressed from rsp with the index sign-extended
+ * into rcx, and every element takes 4 bytes. A failed bounds check jumps to a ud2 after
+ * the function's epilogue, so it traps.
+ *
+ * Besides the text, the emitter counts what register allocation decides: spilled values,
+ * moves, and instructions that touch a spill slot.
+ */
+public final class X86Emitter {
+    //Allocatable registers, in the order the allocator hands them out; the first five are callee-saved
+    static final String[] REGISTERS = {"ebx", "r12d", "r13d", "r14d", "r15d", "r10d", "r11d"};
+    private static final String[] SAVED = {"rbx", "r12", "r13", "r14", "r15"};
+    //The 64-bit names of the rest, which calls clobber
+    private static final String[] CLOBBERED = {"r10", "r11"};
+    private static final String[] ARGUMENTS = {"edi", "esi", "edx", "ecx", "r8d", "r9d"};
+
+    private final int registers;
+    private final StringBuilder out = new StringBuilder();
+    private int instructionCount;
+    private int moveCount;
+    private int spillAccessCount;
+    private int spillCount;
+
+    //Fields of the function being emitted
+    private String className;
+    private String symbol;
+    private Liveness liveness;
+    private LinearScanAllocator.Allocation allocation;
+    private int savedCount;
+    //Caller-saved registers the function allocates, which a call must preserve
+    private List<Integer> callerSaved;
+    //Offset of each array from rsp
+    private final Map<IrValue, Integer> arrays = new HashMap<>();
+    private boolean boundsChecked;
+
+    public X86Emitter(int registers) {
+        if (registers < 1 || registers > REGISTERS.length) {
+            throw new IllegalArgumentException("Registers must be between 1 and " + REGISTERS.length + ", got " + registers);
+        }
+        this.registers = registers;
+    }
+
+    public String emit(IrModule module) {
+        out.append("\t.text\n");
+        for (IrClass irClass : module.getClasses()) {
+            out.append("# === Class ").append(irClass.getName()).append(" ===\n");
+            for (IrFunction function : irClass.getFunctions()) {
+                emitFunction(irClass, function);
+            }
+        }
+        for (IrClass irClass : module.getClasses()) {
+            if (irClass.getGlobals().isEmpty()) {
+                continue;
+            }
+            out.append("\t.data\n");
+            for (IrGlobal global : irClass.getGlobals()) {
+                String name = irClass.getName() + "." + global.getName();
+                out.append("\t.globl ").append(name).append('\n');
+                out.append(name).append(":\n\t.long 0\n");
+            }
+        }
+        out.append("\t.section .note.GNU-stack,\"\",@progbits\n");
+        return out.toString();
+    }
+
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getSpillAccessCount() {
+        return spillAccessCount;
+    }
+
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    static String symbol(String className, String function) {
+        return className + "." + (function.equals(IrClass.INITIALIZER) ? ".clinit" : function);
+    }
+
+    private void emitFunction(IrClass irClass, IrFunction function) {
+        className = irClass.getName();
+        symbol = symbol(className, function.getName());
+        liveness = new Liveness(function);
+        allocation = LinearScanAllocator.allocate(liveness, registers);
+        spillCount += allocation.getSpillCount();
+
+        Set<Integer> used = new TreeSet<>();
+        Set<Integer> clobbered = new TreeSet<>();
+        for (Liveness.Interval interval : liveness.getIntervals()) {
+            int register = allocation.registerOf(interval.getValue());
+            if (register >= 0 && register < SAVED.length) {
+                used.add(register);
+            } else if (register >= 0) {
+                clobbered.add(register);
+            }
+        }
+        savedCount = used.size();
+        callerSaved = List.copyOf(clobbered);
+        arrays.clear();
+        boundsChecked = false;
+        int arrayBytes = 0;
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.isArrayAlloca()) {
+                    arrays.put(instruction.getResult(), arrayBytes);
+                    arrayBytes += 4 * instruction.getLength();
+                }
+            }
+        }
+        //Keep rsp 16-byte aligned below the saved registers, spill slots and arrays
+        int frame = (allocation.getSlotCount() * 4 + arrayBytes + 15) / 16 * 16 + (savedCount % 2) * 8;
+
+        out.append("\t.globl ").append(symbol).append('\n');
+        out.append("\t.type ").append(symbol).append(", @function\n");
+        out.append(symbol).append(":\n");
+        insn("pushq", "%rbp");
+        insn("movq", "%rsp", "%rbp");
+        for (int register : used) {
+            insn("pushq", "%" + SAVED[register]);
+        }
+        if (frame > 0) {
+            insn("subq", "$" + frame, "%rsp");
+        }
+
+        List<IrFunction.Parameter> parameters = function.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            IrValue register = parameters.get(i).getRegister();
+            if (allocation.isAllocated(register)) {
+                move(i < ARGUMENTS.length ? "%" + ARGUMENTS[i] : (16 + 8 * (i - ARGUMENTS.length)) + "(%rbp)", location(register));
+            }
+        }
+        //Slots read before any store hold 0, as in the interpreter
+        IrBlock entry = function.getEntryBlock();
+        for (IrValue value : liveness.getLiveIn(entry)) {
+            if (!isParameter(function, value)) {
+                move("$0", location(value));
+            }
+        }
+
+        List<IrBlock> blocks = function.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            IrBlock block = blocks.get(i);
+            if (block.getLabel() != null) {
+                out.append(label(block)).append(":\n");
+            }
+            emitBlock(block, i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+        }
+
+        IrBlock last = blocks.get(blocks.size() - 1);
+        if (last.getTerminator() == null && function.getReturnType() != IrType.VOID) {
+            move("$0", "%eax");
+        }
+        out.append(epilogue()).append(":\n");
+        if (frame > 0) {
+            insn("addq", "$" + frame, "%rsp");
+        }
+        List<Integer> restore = List.copyOf(used);
+        for (int i = restore.size() - 1; i >= 0; i--) {
+            insn("popq", "%" + SAVED[restore.get(i)]);
+        }
+        insn("popq", "%rbp");
+        insn("ret");
+        if (boundsChecked) {
+            out.append(boundsFailure()).append(":\n");
+            insn("ud2");
+        }
+        out.append("\t.size ").append(symbol).append(", .-").append(symbol).append("\n\n");
+    }
+
+    private static boolean isParameter(IrFunction function, IrValue value) {
+        for (IrFunction.Parameter parameter : function.getParameters()) {
+            if (parameter.getRegister().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void emitBlock(IrBlock block, IrBlock next) {
+        List<IrInstruction> instructions = liveness.getInstructions(block);
+        for (int i = 0; i < instructions.size(); i++) {
+            IrInstruction instruction = instructions.get(i);
+            IrInstruction following = i + 1 < instructions.size() ? instructions.get(i + 1) : null;
+            IrOpcode opcode = instruction.getOpcode();
+            if (opcode.isCompare() && following != null && following.getOpcode() == IrOpcode.COND_BR
+                    && following.getOperand(0).equals(instruction.getResult())
+                    && !liveness.getLiveOut(block).contains(instruction.getResult())) {
+                compare(instruction);
+                branch(condition(opcode), following.getTargets(), next);
+                return;
+            }
+            switch (opcode) {
+                case ALLOCA -> {
+                }
+                case LOAD -> move(operand(instruction.getOperand(0)), location(instruction.getResult()));
+                case STORE -> move(operand(instruction.getOperand(0)), operand(instruction.getOperand(1)));
+                case BR -> {
+                    IrBlock target = instruction.getTargets().get(0);
+                    if (target != next) {
+                        insn("jmp", label(target));
+                    }
+                }
+                case COND_BR -> {
+                    String condition = operand(instruction.getOperand(0));
+                    if (condition.startsWith("$")) {
+                        IrBlock target = instruction.getTargets().get(condition.equals("$0") ? 1 : 0);
+                        if (target != next) {
+                            insn("jmp", label(target));
+                        }
+                    } else {
+                        insn("cmpl", "$0", condition);
+                        branch("ne", instruction.getTargets(), next);
+                    }
+                }
+                case RET -> {
+                    if (!instruction.getOperands().isEmpty()) {
+                        move(operand(instruction.getOperand(0)), "%eax");
+                    }
+                    if (next != null) {
+                        insn("jmp", epilogue());
+                    }
+                }
+                case CALL -> call(instruction);
+                case LOAD_ELEMENT -> move(element(instruction.getOperand(0), instruction.getOperand(1)),
+                        location(instruction.getResult()));
+                case STORE_ELEMENT -> move(operand(instruction.getOperand(0)),
+                        element(instruction.getOperand(1), instruction.getOperand(2)));
+                case BOUNDS_CHECK -> boundsCheck(instruction);
+                case SDIV, SREM -> {
+                    move(operand(instruction.getOperand(0)), "%eax");
+                    insn("cltd");
+                    String divisor = operand(instruction.getOperand(1));
+                    if (divisor.startsWith("$")) {
+                        move(divisor, "%ecx");
+                        divisor = "%ecx";
+                    }
+                    insn("idivl", divisor);
+                    move(opcode == IrOpcode.SDIV ? "%eax" : "%edx", location(instruction.getResult()));
+                }
+                default -> {
+                    if (opcode.isCompare()) {
+                        compare(instruction);
+                        insn("set" + condition(opcode), "%al");
+                        insn("movzbl", "%al", "%eax");
+                        move("%eax", location(instruction.getResult()));
+                    } else {
+                        arithmetic(instruction);
+                    }
+                }
+            }
+        }
+    }
+
+    //The memory operand of array[index], with a variable index in rcx
+    private String element(IrValue array, IrValue index) {
+        Integer offset = arrays.get(array);
+        if (offset == null) {
+            throw new IllegalStateException(array + " is not an array in " + symbol);
+        }
+        if (index instanceof IrValue.Constant constant) {
+            return (offset + 4 * (int) constant.getValue()) + "(%rsp)";
+        }
+        insn("movslq", location(index), "%rcx");
+        return offset + "(%rsp,%rcx,4)";
+    }
+
+    //An unsigned compare also sends negative indexes to the trap
+    private void boundsCheck(IrInstruction instruction) {
+        int length = instruction.getLength();
+        String index = operand(instruction.getOperand(0));
+        if (index.startsWith("$")) {
+            int value = Integer.parseInt(index.substring(1));
+            if (value < 0 || value >= length) {
+                boundsChecked = true;
+                insn("jmp", boundsFailure());
+            }
+            return;
+        }
+        boundsChecked = true;
+        insn("cmpl", "$" + length, index);
+        insn("jae", boundsFailure());
+    }
+
+    //Arguments past the sixth are pushed last to first, with padding to keep rsp 16-byte aligned
+    private void call(IrInstruction instruction) {
+        List<IrValue> arguments = instruction.getOperands();
+        int stacked = Math.max(0, arguments.size() - ARGUMENTS.length);
+        boolean pad = (callerSaved.size() + stacked) % 2 != 0;
+        for (int register : callerSaved) {
+            insn("pushq", "%" + CLOBBERED[register - SAVED.length]);
+        }
+        if (pad) {
+            insn("subq", "$8", "%rsp");
+        }
+        for (int i = arguments.size() - 1; i >= ARGUMENTS.length; i--) {
+            move(operand(arguments.get(i)), "%eax");
+            insn("pushq", "%rax");
+        }
+        for (int i = 0; i < Math.min(arguments.size(), ARGUMENTS.length); i++) {
+            move(operand(arguments.get(i)), "%" + ARGUMENTS[i]);
+        }
+        insn("call", symbol(className, instruction.getCallee()));
+        int popped = 8 * stacked + (pad ? 8 : 0);
+        if (popped > 0) {
+            insn("addq", "$" + popped, "%rsp");
+        }
+        for (int i = callerSaved.size() - 1; i >= 0; i--) {
+            insn("popq", "%" + CLOBBERED[callerSaved.get(i) - SAVED.length]);
+        }
+        if (instruction.getResult() != null) {
+            move("%eax", location(instruction.getResult()));
+        }
+    }
+
+    //result = left op right, in place in the result's register when it is one
+    private void arithmetic(IrInstruction instruction) {
+        IrOpcode opcode = instruction.getOpcode();
+        String mnemonic = switch (opcode) {
+            case ADD -> "addl";
+            case SUB -> "subl";
+            case MUL -> "imull";
+            case AND -> "andl";
+            case OR -> "orl";
+            case XOR -> "xorl";
+            default -> throw new IllegalArgumentException("Unsupported instruction: " + opcode.getMnemonic());
+        };
+        String left = operand(instruction.getOperand(0));
+        String right = operand(instruction.getOperand(1));
+        String result = location(instruction.getResult());
+        if (result.equals(right) && !result.equals(left) && opcode != IrOpcode.SUB) {
+            String swap = left;
+            left = right;
+            right = swap;
+        }
+        if (!isMemory(result) && !result.equals(right)) {
+            move(left, result);
+            insn(mnemonic, right, result);
+        } else {
+            move(left, "%eax");
+            insn(mnemonic, right, "%eax");
+            move("%eax", result);
+        }
+    }
+
+    //Sets the flags for left - right
+    private void compare(IrInstruction instruction) {
+        String left = operand(instruction.getOperand(0));
+        String right = operand(instruction.getOperand(1));
+        if (left.startsWith("$") || (isMemory(left) && isMemory(right))) {
+            move(left, "%eax");
+            left = "%eax";
+        }
+        insn("cmpl", right, left);
+    }
+
+    //Jumps to targets[0] when condition holds and to targets[1] otherwise
+    private void branch(String condition, List<IrBlock> targets, IrBlock next) {
+        IrBlock ifTrue = targets.get(0);
+        IrBlock ifFalse = targets.get(1);
+        if (ifTrue == next) {
+            insn("j" + negate(condition), label(ifFalse));
+        } else {
+            insn("j" + condition, label(ifTrue));
+            if (ifFalse != next) {
+                insn("jmp", label(ifFalse));
+            }
+        }
+    }
+
+    private static String condition(IrOpcode opcode) {
+        return switch (opcode) {
+            case ICMP_EQ -> "e";
+            case ICMP_NE -> "ne";
+            case ICMP_SLT -> "l";
+            case ICMP_SLE -> "le";
+            case ICMP_SGT -> "g";
+            case ICMP_SGE -> "ge";
+            default -> throw new IllegalArgumentException(opcode + " is not a comparison.");
+        };
+    }
+
+    private static String negate(String condition) {
+        return switch (condition) {
+            case "e" -> "ne";
+            case "ne" -> "e";
+            case "l" -> "ge";
+            case "ge" -> "l";
+            case "g" -> "le";
+            case "le" -> "g";
+            default -> throw new IllegalArgumentException("Unknown condition: " + condition);
+        };
+    }
+
+    private String label(IrBlock block) {
+        return ".L" + symbol + "." + block.getLabel();
+    }
+
+    private String epilogue() {
+        return ".L" + symbol + ".ret";
+    }
+
+    private String boundsFailure() {
+        return ".L" + symbol + ".bounds";
+    }
+
+    private String operand(IrValue value) {
+        if (value instanceof IrValue.Constant constant) {
+            return "$" + (int) constant.getValue();
+        }
+        if (value instanceof IrValue.Global global) {
+            return className + "." + global.getName() + "(%rip)";
+        }
+        return location(value);
+    }
+
+    private String location(IrValue value) {
+        int register = allocation.registerOf(value);
+        if (register >= 0) {
+            return "%" + REGISTERS[register];
+        }
+        int slot = allocation.slotOf(value);
+        if (slot < 0) {
+            throw new IllegalStateException("No location for " + value + " in " + symbol);
+        }
+        return -(8 * savedCount + 4 * (slot + 1)) + "(%rbp)";
+    }
+
+    private static boolean isMemory(String operand) {
+        return operand.endsWith(")");
+    }
+
+    private void move(String from, String to) {
+        if (from.equals(to)) {
+            return;
+        }
+        if (isMemory(from) && isMemory(to)) {
+            insn("movl", from, "%eax");
+            from = "%eax";
+        }
+        insn("movl", from, to);
+    }
+
+    private void insn(String mnemonic, String... operands) {
+        out.append('\t').append(mnemonic);
+        for (int i = 0; i < operands.length; i++) {
+            out.append(i == 0 ? " " : ", ").append(operands[i]);
+            if (operands[i].startsWith("-") && operands[i].endsWith("(%rbp)")) {
+                spillAccessCount++;
+            }
+        }
+        out.append('\n');
+        instructionCount++;
+        if (mnemonic.startsWith("mov")) {
+            moveCount++;
+        }
+    }
+}
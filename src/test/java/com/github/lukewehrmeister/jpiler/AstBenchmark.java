@@ -0,0 +1,110 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.*;
+
+/**
+ * Compares what the front end keeps alive after parsing: the full ANTLR parse tree
+ * against the lowered AST, and times semantic analysis plus IR generation on the AST.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.AstBenchmark
+ */
+public class AstBenchmark {
+    private static final int METHODS = 2000;
+    private static final int COPIES = 10;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        String code = SideTableBenchmark.generateProgram(METHODS);
+
+        ParseTree tree = parse(code);
+        Ast.CompilationUnit unit = new AstBuilder(new NameTable()).build((JavaSubsetParser.CompilationUnitContext) tree);
+        System.out.println("Parse tree: " + countRuleNodes(tree) + " rule contexts, " + countTerminals(tree)
+                + " terminals   AST: " + unit.getNodeCount() + " nodes");
+
+        long treeBytes = retainedBytes(() -> parse(code));
+        long astBytes = retainedBytes(() -> new AstBuilder(new NameTable())
+                .build((JavaSubsetParser.CompilationUnitContext) parse(code)));
+        System.out.printf("Retained memory   parse tree: %8.1f KB   AST: %8.1f KB%n",
+                treeBytes / 1024.0, astBytes / 1024.0);
+
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            double lowerMs = 0;
+            double passesMs = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                ParseTree fresh = parse(code);
+                long start = System.nanoTime();
+                Ast.CompilationUnit lowered = new AstBuilder(new NameTable())
+                        .build((JavaSubsetParser.CompilationUnitContext) fresh);
+                long built = System.nanoTime();
+                SymbolTableVisitor semantic = new SymbolTableVisitor();
+                semantic.visit(lowered);
+                IRGeneratorVisitor generator = new IRGeneratorVisitor(semantic.getAnnotations(), lowered.getNames());
+                generator.visit(lowered);
+                long done = System.nanoTime();
+                if (generator.getIR().isEmpty()) {
+                    throw new IllegalStateException();
+                }
+                lowerMs = (built - start) / 1e6;
+                passesMs = (done - built) / 1e6;
+            }
+            System.out.printf("Lowering: %7.2f ms   semantic + IR on AST: %7.2f ms%n", lowerMs, passesMs);
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * Heap retained by COPIES instances of what {@code factory} builds, per instance.
+     */
+    private static long retainedBytes(Supplier<Object> factory) {
+        Object[] keep = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            keep[i] = factory.get();
+        }
+        long after = usedHeap();
+        if (keep[COPIES - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / COPIES;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int countRuleNodes(ParseTree node) {
+        int count = node instanceof ParserRuleContext ? 1 : 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += countRuleNodes(node.getChild(i));
+        }
+        return count;
+    }
+
+    private static int countTerminals(ParseTree node) {
+        int count = node instanceof TerminalNode ? 1 : 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += countTerminals(node.getChild(i));
+        }
+        return count;
+    }
+
+    private static ParseTree parse(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        return parser.compilationUnit();
+    }
+}
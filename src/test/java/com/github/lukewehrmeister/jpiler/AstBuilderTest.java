@@ -0,0 +1,132 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AstBuilderTest {
+
+    private static Ast.CompilationUnit lower(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        return new AstBuilder(new NameTable()).build(parser.compilationUnit());
+    }
+
+    private static Ast.Expression returnedExpression(String expression) {
+        Ast.CompilationUnit unit = lower("class A { int f() { return " + expression + "; } }");
+        Ast.MethodDeclaration method = (Ast.MethodDeclaration) unit.getClasses().get(0).getMembers().get(0);
+        return ((Ast.Return) method.getBody().getStatements().get(0)).getValue();
+    }
+
+    @Test
+    void testPrecedenceChainsCollapse() {
+        Ast.Expression literal = returnedExpression("7");
+        assertTrue(literal instanceof Ast.IntLiteral);
+        assertEquals(7, ((Ast.IntLiteral) literal).getValue());
+
+        Ast.Expression parenthesized = returnedExpression("((x))");
+        assertTrue(parenthesized instanceof Ast.Name);
+    }
+
+    @Test
+    void testBinaryOperatorsFoldLeftByPrecedence() {
+        Ast.Binary sub = (Ast.Binary) returnedExpression("a - b - c * d");
+        assertEquals(Ast.BinaryOperator.SUB, sub.getOperator());
+        assertTrue(sub.getRight() instanceof Ast.Binary);
+        assertEquals(Ast.BinaryOperator.MUL, ((Ast.Binary) sub.getRight()).getOperator());
+
+        Ast.Binary inner = (Ast.Binary) sub.getLeft();
+        assertEquals(Ast.BinaryOperator.SUB, inner.getOperator());
+        assertTrue(inner.getLeft() instanceof Ast.Name);
+        assertTrue(inner.getRight() instanceof Ast.Name);
+    }
+
+    @Test
+    void testIntegerLiteralsAreDecoded() {
+        assertEquals(31, ((Ast.IntLiteral) returnedExpression("0x1F")).getValue());
+        assertEquals(5, ((Ast.IntLiteral) returnedExpression("0b101")).getValue());
+        assertEquals(8, ((Ast.IntLiteral) returnedExpression("010")).getValue());
+        assertEquals(0, ((Ast.IntLiteral) returnedExpression("0")).getValue());
+    }
+
+    @Test
+    void testIncrementsLower() {
+        Ast.Postfix postfix = (Ast.Postfix) returnedExpression("i++--");
+        assertArrayEquals(new int[] {1, -1}, postfix.getSteps());
+
+        Ast.Unary prefix = (Ast.Unary) returnedExpression("--i");
+        assertEquals(Ast.UnaryOperator.PRE_DECREMENT, prefix.getOperator());
+    }
+
+    @Test
+    void testNodeIdsAreDenseAndUnique() {
+        Ast.CompilationUnit unit = lower("""
+            class A {
+                int x;
+                public static void main(String[] args) {
+                    for (int i = 0; i < 3; i++) {
+                        if (i == 1) { x = i; } else if (i == 2) { ; } else { x = -i; }
+                    }
+                }
+            }
+            """);
+
+        List<Ast.Node> nodes = new ArrayList<>();
+        collect(unit, nodes);
+        boolean[] seen = new boolean[unit.getNodeCount()];
+        for (Ast.Node node : nodes) {
+            assertFalse(seen[node.getId()], "Duplicate node ID " + node.getId());
+            seen[node.getId()] = true;
+        }
+        assertEquals(unit.getNodeCount(), nodes.size());
+
+        Ast.MethodDeclaration main = (Ast.MethodDeclaration) unit.getClasses().get(0).getMembers().get(1);
+        assertTrue(main.getParameters().isEmpty(), "String[] args lowers to no parameters.");
+    }
+
+    private static void collect(Ast.Node node, List<Ast.Node> out) {
+        if (node == null) {
+            return;
+        }
+        out.add(node);
+        if (node instanceof Ast.CompilationUnit unit) {
+            unit.getClasses().forEach(c -> collect(c, out));
+        } else if (node instanceof Ast.ClassDeclaration cls) {
+            cls.getMembers().forEach(m -> collect(m, out));
+        } else if (node instanceof Ast.MethodDeclaration method) {
+            method.getParameters().forEach(p -> collect(p, out));
+            collect(method.getBody(), out);
+        } else if (node instanceof Ast.VariableDeclaration decl) {
+            decl.getDeclarators().forEach(d -> collect(d, out));
+        } else if (node instanceof Ast.Declarator declarator) {
+            collect(declarator.getInitializer(), out);
+        } else if (node instanceof Ast.Block block) {
+            block.getStatements().forEach(s -> collect(s, out));
+        } else if (node instanceof Ast.ExpressionStatement stmt) {
+            collect(stmt.getExpression(), out);
+        } else if (node instanceof Ast.If ifNode) {
+            collect(ifNode.getCondition(), out);
+            collect(ifNode.getThenBlock(), out);
+            collect(ifNode.getElseBranch(), out);
+        } else if (node instanceof Ast.For forNode) {
+            collect(forNode.getInitDeclaration(), out);
+            forNode.getInitAssignments().forEach(a -> collect(a, out));
+            collect(forNode.getCondition(), out);
+            forNode.getUpdates().forEach(u -> collect(u, out));
+            collect(forNode.getBody(), out);
+        } else if (node instanceof Ast.Assignment assignment) {
+            collect(assignment.getValue(), out);
+        } else if (node instanceof Ast.Binary binary) {
+            collect(binary.getLeft(), out);
+            collect(binary.getRight(), out);
+        } else if (node instanceof Ast.Unary unary) {
+            collect(unary.getOperand(), out);
+        } else if (node instanceof Ast.Postfix postfix) {
+            collect(postfix.getOperand(), out);
+        }
+    }
+}
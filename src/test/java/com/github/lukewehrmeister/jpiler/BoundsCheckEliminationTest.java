@@ -0,0 +1,129 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.countOpcode;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.function;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundsCheckEliminationTest {
+    private static final String ARRAYS = """
+        class B {
+            int fill(int x) {
+                int[] a = new int[10];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] = x * i;
+                }
+                int s = 0;
+                for (int i = 0; i < 10; i++) {
+                    s = s + a[i];
+                }
+                return s;
+            }
+            int down(int x) {
+                int[] a = new int[8];
+                int s = 0;
+                for (int i = a.length - 1; i >= 0; i--) {
+                    a[i] = x + i;
+                    s = s + a[i];
+                }
+                return s;
+            }
+            int stride(int x) {
+                int[] a = new int[10];
+                for (int i = 0; i < 9; i = i + 2) {
+                    a[i + 1] = x;
+                }
+                return a[1] + a[9];
+            }
+            int wrap(int n) {
+                int[] a = new int[8];
+                for (int i = 0; i < n; i++) {
+                    a[i % 8] = a[i % 8] + i;
+                }
+                return a[(n % 8 + 8) % 8];
+            }
+            int offByOne(int x) {
+                int[] a = new int[4];
+                for (int i = 0; i <= a.length; i++) {
+                    a[i] = x;
+                }
+                return a[0];
+            }
+            int unknown(int n) {
+                int[] a = new int[4];
+                a[2] = 5;
+                int s = 0;
+                for (int i = 0; i < n; i++) {
+                    s = s + a[i];
+                }
+                return s + a[n % 4];
+            }
+        }
+        """;
+
+    private static long checks(IrFunction function) {
+        return countOpcode(function, IrOpcode.BOUNDS_CHECK);
+    }
+
+    //The result, or the message of the failed bounds check
+    private static Object run(IrModule module, String name, int argument) {
+        try {
+            return IrTestSupport.run(module, "B", name, argument);
+        } catch (IndexOutOfBoundsException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    void testRemovesChecksOfCanonicalLoops() {
+        IrModule original = compile(ARRAYS);
+        IrModule module = compile(ARRAYS);
+        BoundsCheckElimination bce = new BoundsCheckElimination();
+        for (String name : new String[] {"fill", "down", "stride", "wrap"}) {
+            IrFunction function = function(module, name);
+            assertTrue(bce.run(function, new AnalysisManager()), name);
+            assertEquals(0, checks(function), name);
+        }
+        for (int x : new int[] {0, 3, -7, 20}) {
+            for (String name : new String[] {"fill", "down", "stride", "wrap"}) {
+                assertEquals(run(original, name, x), run(module, name, x), name + "(" + x + ")");
+            }
+        }
+        assertEquals(IrPrinter.print(module), IrPrinter.print(IrParser.parse(IrPrinter.print(module))));
+    }
+
+    @Test
+    void testKeepsChecksThatMayFail() {
+        IrModule module = compile(ARRAYS);
+        BoundsCheckElimination bce = new BoundsCheckElimination();
+        //Only a[0] goes; i reaches the length on the last pass
+        IrFunction offByOne = function(module, "offByOne");
+        assertTrue(bce.run(offByOne, new AnalysisManager()));
+        assertEquals(1, checks(offByOne));
+        assertEquals("Index 4 out of bounds for length 4", run(module, "offByOne", 1));
+
+        //Only a[2] goes; n may be past the end or negative
+        IrFunction unknown = function(module, "unknown");
+        assertTrue(bce.run(unknown, new AnalysisManager()));
+        assertEquals(2, checks(unknown));
+        assertEquals(5, run(module, "unknown", 3));
+        assertEquals("Index 4 out of bounds for length 4", run(module, "unknown", 5));
+        assertEquals("Index -1 out of bounds for length 4", run(module, "unknown", -1));
+    }
+
+    @Test
+    void testLoopChecksAreGoneAtO2() {
+        IrModule original = compile(ARRAYS);
+        IrModule module = compile(ARRAYS);
+        PassManager.forLevel(2).run(module);
+        assertEquals(0, checks(function(module, "fill")));
+        assertEquals(0, checks(function(module, "down")));
+        for (String name : new String[] {"fill", "down", "stride", "wrap", "offByOne", "unknown"}) {
+            for (int x : new int[] {-1, 0, 3, 9}) {
+                assertEquals(run(original, name, x), run(module, name, x), name + "(" + x + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CfgSimplificationTest {
+    static final String LADDER = """
+        class E {
+            int f(int x) {
+                int r = 0;
+                if (x < 0) {
+                    r = 1;
+                } else if (x < 10) {
+                    r = 2;
+                } else if (x < 20) {
+                    r = 3;
+                } else {
+                    r = 4;
+                }
+                for (int i = 0; i < x; ) {
+                    i = i + 5;
+                    r = r + 1;
+                }
+                return r;
+            }
+        }
+        """;
+
+    @Test
+    void testCollapsesElseIfChainsAndEmptyUpdates() {
+        IrModule module = compile(LADDER);
+        IrFunction function = module.getFunctions().get(0);
+        int[] inputs = {-1, 5, 15, 25};
+        int[] expected = new int[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            expected[i] = run(module, "E", "f", inputs[i]);
+        }
+        assertEquals(14, function.getBlocks().size());
+
+        assertTrue(new CfgSimplification().run(function));
+        String ir = IrPrinter.print(function);
+        //endif.8 and endif.5 only jumped on to endif.2, and for.update.11 on to for.cond.9
+        assertEquals(11, function.getBlocks().size(), ir);
+        assertFalse(ir.contains("endif.8"), ir);
+        assertFalse(ir.contains("endif.5"), ir);
+        assertFalse(ir.contains("for.update"), ir);
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(expected[i], run(module, "E", "f", inputs[i]));
+        }
+        assertFalse(new CfgSimplification().run(function));
+    }
+
+    @Test
+    void testMergesStraightLineBlocks() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %t0 = add i32 %x, 1
+              br label %a
+            b:
+              %t2 = mul i32 %t1, 3
+              ret i32 %t2
+              ret i32 0
+            a:
+              %t1 = add i32 %t0, 2
+              br label %b
+            }
+            """).getFunctions().get(0);
+        assertTrue(new CfgSimplification().run(function));
+        assertEquals("""
+            define i32 @f(i32 %x) {
+              %t0 = add i32 %x, 1
+              %t1 = add i32 %t0, 2
+              %t2 = mul i32 %t1, 3
+              ret i32 %t2
+            }
+
+            """, IrPrinter.print(function));
+    }
+
+    @Test
+    void testFoldsBranchesAndThreadsToTheEnd() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define void @f(i1 %c) {
+              br i1 %c, label %same, label %same
+            same:
+              br i1 true, label %store, label %spin
+            spin:
+              br label %spin
+            store:
+              store i32 1, i32* @g
+              br i1 %c, label %end, label %forward
+            forward:
+              br label %end
+            end:
+            }
+            """).getFunctions().get(0);
+        assertTrue(new CfgSimplification().run(function));
+        assertEquals("""
+            define void @f(i1 %c) {
+              store i32 1, i32* @g
+              ret void
+            }
+
+            """, IrPrinter.print(function));
+    }
+
+    @Test
+    void testKeepsLoopsAndFallThroughs() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define void @f(i1 %c) {
+              br label %loop
+            loop:
+              br i1 %c, label %loop, label %done
+            done:
+              br label %spin
+            spin:
+              br label %spin
+            }
+            """).getFunctions().get(0);
+        assertTrue(new CfgSimplification().run(function));
+        assertEquals("""
+            define void @f(i1 %c) {
+              br label %loop
+            loop:
+              br i1 %c, label %loop, label %spin
+            spin:
+              br label %spin
+            }
+
+            """, IrPrinter.print(function));
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFoldingTest {
+
+    private static IrFunction fold(String ir) {
+        IrFunction function = IrParser.parse(ir).getFunctions().get(0);
+        new ConstantFolding().run(function);
+        return function;
+    }
+
+    @Test
+    void testFoldsChainsAndComparisons() {
+        IrFunction function = fold("""
+            ; === Class A ===
+            define i1 @f() {
+              %t0 = mul i32 4, 2
+              %t1 = add i32 3, %t0
+              %t2 = icmp sgt i32 %t1, 10
+              %t3 = xor i1 %t2, true
+              ret i1 %t3
+            }
+            """);
+        assertEquals("define i1 @f() {\n  ret i1 false\n}\n\n", IrPrinter.print(function));
+    }
+
+    @Test
+    void testWrapsLikeTheBackends() {
+        IrFunction function = fold("""
+            ; === Class A ===
+            define i32 @f() {
+              %t0 = add i32 2147483647, 1
+              %t1 = sdiv i32 %t0, -1
+              ret i32 %t1
+            }
+            """);
+        assertEquals("define i32 @f() {\n  ret i32 -2147483648\n}\n\n", IrPrinter.print(function));
+    }
+
+    @Test
+    void testLeavesDivisionByZeroAndVariables() {
+        String ir = """
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %t0 = sdiv i32 1, 0
+              %t1 = srem i32 %t0, 0
+              %t2 = add i32 %x, 1
+              ret i32 %t2
+            }
+
+            """;
+        IrFunction function = IrParser.parse(ir).getFunctions().get(0);
+        assertFalse(new ConstantFolding().run(function));
+        assertEquals(ir.substring(ir.indexOf("define")), IrPrinter.print(function));
+    }
+
+    @Test
+    void testSkipsRegistersDefinedTwice() {
+        IrFunction function = fold("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %t0 = add i32 1, 1
+              %t0 = add i32 %x, 1
+              ret i32 %t0
+            }
+            """);
+        assertTrue(IrPrinter.print(function).contains("ret i32 %t0"));
+    }
+}
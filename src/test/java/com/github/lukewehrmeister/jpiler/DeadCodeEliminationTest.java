@@ -0,0 +1,44 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadCodeEliminationTest {
+
+    @Test
+    void testRemovesUnusedChains() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %unused = alloca i32
+              %t0 = add i32 %x, 1
+              %t1 = mul i32 %t0, %t0
+              %t2 = icmp eq i32 %t1, 0
+              %t3 = sdiv i32 %x, 2
+              ret i32 %x
+            }
+            """).getFunctions().get(0);
+        assertTrue(new DeadCodeElimination().run(function));
+        assertEquals("define i32 @f(i32 %x) {\n  ret i32 %x\n}\n\n", IrPrinter.print(function));
+        assertFalse(new DeadCodeElimination().run(function));
+    }
+
+    @Test
+    void testKeepsEffects() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define void @f(i32 %x) {
+              %slot = alloca i32
+              store i32 %x, i32* %slot
+              store i32 %x, i32* @g
+              %t0 = sdiv i32 1, %x
+              %t1 = srem i32 %x, 0
+              ret void
+            }
+            """).getFunctions().get(0);
+        assertFalse(new DeadCodeElimination().run(function));
+        assertEquals(6, function.getEntryBlock().getInstructions().size());
+    }
+}
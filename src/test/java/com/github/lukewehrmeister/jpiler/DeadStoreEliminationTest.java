@@ -0,0 +1,65 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadStoreEliminationTest {
+
+    @Test
+    void testRemovesOverwrittenAndUnreadStores() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define i32 @f(i32 %a) {
+              %x = alloca i32
+              %y = alloca i32
+              store i32 1, i32* %x
+              store i32 %a, i32* %x
+              store i32 5, i32* %y
+              store i32 1, i32* @g
+              store i32 2, i32* @g
+              %t0 = load i32, i32* %x
+              store i32 %t0, i32* %x
+              ret i32 %t0
+            }
+            """).getFunctions().get(0);
+        assertTrue(new DeadStoreElimination().run(function, new AnalysisManager()));
+        assertEquals("""
+            define i32 @f(i32 %a) {
+              %x = alloca i32
+              %y = alloca i32
+              store i32 %a, i32* %x
+              store i32 2, i32* @g
+              %t0 = load i32, i32* %x
+              ret i32 %t0
+            }
+
+            """, IrPrinter.print(function));
+    }
+
+    @Test
+    void testKeepsStoresReadLaterOrElsewhere() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define i32 @f(i32 %n) {
+              %i = alloca i32
+              store i32 0, i32* %i
+              store i32 %n, i32* @g
+              br label %loop
+            loop:
+              %t0 = load i32, i32* %i
+              %t1 = add i32 %t0, 1
+              store i32 %t1, i32* %i
+              store i32 %t1, i32* @g
+              %t2 = icmp slt i32 %t1, %n
+              br i1 %t2, label %loop, label %done
+            done:
+              ret i32 %t1
+            }
+            """).getFunctions().get(0);
+        //The store to i is read on the next iteration, and @g is only overwritten in another block
+        assertFalse(new DeadStoreElimination().run(function, new AnalysisManager()));
+    }
+}
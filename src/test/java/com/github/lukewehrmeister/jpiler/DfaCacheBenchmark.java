@@ -0,0 +1,88 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One-shot compile latency with and without the bundled DFA cache. Each sample is a
+ * fresh JVM that compiles input.java once, which is what a CLI invocation pays.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.DfaCacheBenchmark
+ */
+public class DfaCacheBenchmark {
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals("--child")) {
+            child(args[1].equals("cached"));
+            return;
+        }
+        long[][] cold = new long[RUNS][];
+        long[][] cached = new long[RUNS][];
+        for (int run = 0; run < RUNS; run++) {
+            cold[run] = spawn("cold");
+            cached[run] = spawn("cached");
+        }
+        report("Cold DFAs", cold);
+        report("Bundled DFA cache", cached);
+    }
+
+    private static void child(boolean cached) throws IOException {
+        String code = Files.readString(Paths.get("input.java"));
+        long init = System.nanoTime();
+        //Deserializing the ATNs is paid either way; keep it out of both measurements
+        int decisions = JavaSubsetLexer._ATN.getNumberOfDecisions() + JavaSubsetParser._ATN.getNumberOfDecisions();
+        long start = System.nanoTime();
+        if (cached && !DfaCache.loadBundled()) {
+            throw new IllegalStateException("No DFA cache on the classpath; run mvn process-classes first.");
+        }
+        long loaded = System.nanoTime();
+        Main.compile(code, new ArrayList<>());
+        long end = System.nanoTime();
+        System.out.println((start - init) + " " + (loaded - start) + " " + (end - loaded) + " " + decisions);
+    }
+
+    private static long[] spawn(String mode) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), DfaCacheBenchmark.class.getName(), "--child", mode)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        String line;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = out.readLine();
+        }
+        if (process.waitFor() != 0 || line == null) {
+            throw new IllegalStateException("Benchmark child failed.");
+        }
+        return Arrays.stream(line.split(" ")).mapToLong(Long::parseLong).toArray();
+    }
+
+    private static void report(String label, long[][] samples) {
+        List<Long> init = new ArrayList<>();
+        List<Long> load = new ArrayList<>();
+        List<Long> compile = new ArrayList<>();
+        List<Long> total = new ArrayList<>();
+        for (long[] sample : samples) {
+            init.add(sample[0]);
+            load.add(sample[1]);
+            compile.add(sample[2]);
+            total.add(sample[1] + sample[2]);
+        }
+        System.out.printf("%-18s median ATN init %.2f ms, then load %.2f ms + first compile %.2f ms = %.2f ms%n",
+                label, median(init) / 1e6, median(load) / 1e6, median(compile) / 1e6, median(total) / 1e6);
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DfaCacheTest {
+
+    private static void clearDfas() {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(""));
+        lexer.getInterpreter().clearDFA();
+        new JavaSubsetParser(new CommonTokenStream(lexer)).getInterpreter().clearDFA();
+    }
+
+    private static int lexerStates() {
+        return DfaCache.countStates(JavaSubsetLexer._decisionToDFA);
+    }
+
+    private static int parserStates() {
+        return DfaCache.countStates(JavaSubsetParser._decisionToDFA);
+    }
+
+    private static byte[] serialize() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DfaCache.write(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] trainedCache() throws IOException {
+        clearDfas();
+        DfaCache.train(Files.readString(Paths.get("src/main/dfa-corpus/Training.java")));
+        DfaCache.train(Files.readString(Paths.get("input.java")));
+        return serialize();
+    }
+
+    @Test
+    void testRoundTripIsExact() throws IOException {
+        byte[] cache = trainedCache();
+        int lexer = lexerStates();
+        int parser = parserStates();
+        assertTrue(lexer > 0 && parser > 0);
+
+        clearDfas();
+        assertTrue(DfaCache.read(new ByteArrayInputStream(cache)));
+        assertEquals(lexer, lexerStates());
+        assertEquals(parser, parserStates());
+        assertArrayEquals(cache, serialize());
+    }
+
+    @Test
+    void testRestoredDfasNeedNoWarmUp() throws IOException {
+        byte[] cache = trainedCache();
+        clearDfas();
+        DfaCache.read(new ByteArrayInputStream(cache));
+        int lexer = lexerStates();
+        int parser = parserStates();
+
+        DfaCache.train(Files.readString(Paths.get("input.java")));
+        assertEquals(lexer, lexerStates());
+        assertEquals(parser, parserStates());
+    }
+
+    @Test
+    void testRestoredDfasKeepGrowingAndCompileTheSame() throws IOException {
+        String program = SideTableBenchmark.generateProgram(10);
+        clearDfas();
+        String expected = Main.compile(program, new ArrayList<>());
+
+        byte[] cache = trainedCache();
+        clearDfas();
+        DfaCache.read(new ByteArrayInputStream(cache));
+        assertEquals(expected, Main.compile(program, new ArrayList<>()));
+        assertEquals(expected, Main.compile(program, new ArrayList<>()));
+    }
+
+    @Test
+    void testCacheForAnotherGrammarIsIgnored() throws IOException {
+        byte[] cache = trainedCache();
+        cache[8] ^= 1; //Lexer ATN hash
+        clearDfas();
+        assertFalse(DfaCache.read(new ByteArrayInputStream(cache)));
+        assertEquals(0, lexerStates());
+        assertEquals(0, parserStates());
+    }
+
+    @Test
+    void testBundledCacheLoads() {
+        clearDfas();
+        assertTrue(DfaCache.loadBundled());
+        assertTrue(lexerStates() > 0);
+        assertTrue(parserStates() > 0);
+    }
+}
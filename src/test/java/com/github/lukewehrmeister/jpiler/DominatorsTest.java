@@ -0,0 +1,74 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DominatorsTest {
+
+    static final String DIAMOND = """
+        ; === Class A ===
+        define i32 @f(i32 %x) {
+          %t0 = icmp slt i32 %x, 0
+          br i1 %t0, label %neg, label %pos
+        neg:
+          br label %join
+        pos:
+          br label %join
+        dead:
+          br label %join
+        join:
+          ret i32 %x
+        }
+        """;
+
+    @Test
+    void testCfgEdgesAndOrder() {
+        IrFunction f = IrParser.parse(DIAMOND).getFunctions().get(0);
+        Cfg cfg = new Cfg(f);
+        IrBlock entry = f.getEntryBlock();
+        assertEquals(List.of(f.getBlock("neg"), f.getBlock("pos")), cfg.getSuccessors(entry));
+        assertEquals(List.of(f.getBlock("neg"), f.getBlock("pos"), f.getBlock("dead")), cfg.getPredecessors(f.getBlock("join")));
+        assertFalse(cfg.isReachable(f.getBlock("dead")));
+        assertEquals(4, cfg.getReversePostOrder().size());
+        assertEquals(entry, cfg.getReversePostOrder().get(0));
+        assertEquals(f.getBlock("join"), cfg.getReversePostOrder().get(3));
+    }
+
+    @Test
+    void testDiamondDominators() {
+        IrFunction f = IrParser.parse(DIAMOND).getFunctions().get(0);
+        Dominators dominators = new Dominators(new Cfg(f));
+        IrBlock entry = f.getEntryBlock();
+        assertNull(dominators.getImmediateDominator(entry));
+        assertEquals(entry, dominators.getImmediateDominator(f.getBlock("join")));
+        assertEquals(entry, dominators.getImmediateDominator(f.getBlock("neg")));
+        assertTrue(dominators.dominates(entry, f.getBlock("pos")));
+        assertTrue(dominators.dominates(f.getBlock("pos"), f.getBlock("pos")));
+        assertFalse(dominators.dominates(f.getBlock("neg"), f.getBlock("join")));
+        //Unreachable blocks neither dominate nor are dominated
+        assertNull(dominators.getImmediateDominator(f.getBlock("dead")));
+        assertFalse(dominators.dominates(entry, f.getBlock("dead")));
+    }
+
+    @Test
+    void testFallThroughAndSelfLoops() {
+        IrFunction f = IrParser.parse("""
+            ; === Class A ===
+            define void @f() {
+              %x = alloca i32
+            spin:
+              br i1 true, label %spin, label %out
+            out:
+              ret void
+            }
+            """).getFunctions().get(0);
+        Cfg cfg = new Cfg(f);
+        assertEquals(List.of(f.getBlock("spin")), cfg.getSuccessors(f.getEntryBlock()));
+        assertEquals(List.of(f.getEntryBlock(), f.getBlock("spin")), cfg.getPredecessors(f.getBlock("spin")));
+        Dominators dominators = new Dominators(cfg);
+        assertEquals(f.getBlock("spin"), dominators.getImmediateDominator(f.getBlock("out")));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.*;
+
+/**
+ * Warm throughput of the generated JavaSubsetLexer against the hand-written FastLexer on
+ * the same input, both interning identifiers the way Main.compile does.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.FastLexerBenchmark
+ */
+public class FastLexerBenchmark {
+    private static final int METHODS = 2000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) {
+        String code = SideTableBenchmark.generateProgram(METHODS);
+        double generated = measure("JavaSubsetLexer", code, JavaSubsetLexer::new);
+        double fast = measure("FastLexer", code, FastLexer::new);
+        System.out.printf("Speedup: %.2fx%n", generated / fast);
+    }
+
+    private static double measure(String label, String code, Function<CharStream, TokenSource> lexer) {
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            tokens = lex(lexer.apply(CharStreams.fromString(code)));
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-16s %d tokens, best %.2f ms, %.1f M tokens/s%n",
+                label, tokens, best / 1e6, tokens / (best / 1e9) / 1e6);
+        return best;
+    }
+
+    private static int lex(TokenSource lexer) {
+        lexer.setTokenFactory(new InterningTokenFactory(new NameTable()));
+        int count = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            count++;
+        }
+        return count;
+    }
+}
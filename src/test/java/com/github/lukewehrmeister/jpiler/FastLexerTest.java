@@ -0,0 +1,133 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential tests: FastLexer must produce exactly the tokens JavaSubsetLexer does.
+ */
+class FastLexerTest {
+
+    private static List<Token> lex(TokenSource source) {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = source.nextToken();
+            tokens.add(token);
+        } while (token.getType() != Token.EOF);
+        return tokens;
+    }
+
+    private static String describe(Token t) {
+        return JavaSubsetLexer.VOCABULARY.getSymbolicName(t.getType()) + " '" + t.getText() + "' ["
+                + t.getStartIndex() + ".." + t.getStopIndex() + "] " + t.getLine() + ":" + t.getCharPositionInLine()
+                + " ch" + t.getChannel();
+    }
+
+    private static void assertSameTokens(String input) {
+        List<Token> expected = lex(new JavaSubsetLexer(CharStreams.fromString(input)));
+        List<Token> actual = lex(new FastLexer(CharStreams.fromString(input)));
+        int count = Math.max(expected.size(), actual.size());
+        for (int i = 0; i < count; i++) {
+            String want = i < expected.size() ? describe(expected.get(i)) : "<none>";
+            String got = i < actual.size() ? describe(actual.get(i)) : "<none>";
+            assertEquals(want, got, "Token " + i + " of " + escape(input));
+        }
+    }
+
+    private static String escape(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + '"';
+    }
+
+    @Test
+    void testKeywordsIdentifiersAndOperators() {
+        assertSameTokens("public static void main(String[] args) { }");
+        assertSameTokens("if(x == true){y = z + 5;} else if(y== false){y++;}else{z /= 3;}");
+        assertSameTokens("a+++b---c += d -= e *= f %= g <= h >= i != j && k || l ! m < n > o = p . q , r ;");
+        assertSameTokens("Integer Double Float Character Boolean Byte Long Object Void import new protected");
+        assertSameTokens("String[]  args String[] argsx String[]args String");
+        assertSameTokens("int[] a = new int[10]; a[i+1] = a[ i ]+a.length; boolean[]b");
+        assertSameTokens("shortened _x x_1 __ e e5 e+5 E-12abc e+ e5x true1 nul null");
+    }
+
+    @Test
+    void testNumericLiterals() {
+        assertSameTokens("0 5 10 0x1A 0X 0x 0xG 0x1AG 0b0110 0b 0b2 0B1 010 089 0778 00");
+        assertSameTokens("5employees 1_000 1e5 1. 1.5 .5 1.e5 1.e 1.5e+ 1.5e+5 1.5E-3f 2.0d 3.f 4.5fx 0.5 09.5");
+    }
+
+    @Test
+    void testLiteralsCommentsAndInvalidCharacters() {
+        assertSameTokens("\"hello\" \"esc\\\"aped\" \"\" \"unterminated");
+        assertSameTokens("\"ends in backslash\\");
+        assertSameTokens("'a' '\\n' '\\'' '' 'ab' ' '\\");
+        assertSameTokens("a // comment\nb /* multi\nline */ c /* unterminated");
+        assertSameTokens("x /*/ y */ z /**/ w");
+        assertSameTokens("# @ [ ] $ ~ ^ ? : & | \f é 日本 \uD83D\uDE00 ok");
+        assertSameTokens("line1\r\nline2\rline3\n\n\tindented");
+        assertSameTokens("");
+    }
+
+    @Test
+    void testSourceFiles() throws IOException {
+        assertSameTokens(Files.readString(Paths.get("input.java")));
+        assertSameTokens(SideTableBenchmark.generateProgram(20));
+    }
+
+    @Test
+    void testRandomInputs() {
+        String[] fragments = {
+            "int", "String", "[] args", "x", "e", "E", "_", "0", "1", "7", "9", "0x", "0b", "f", "d", ".",
+            "+", "-", "*", "/", "%", "=", "<", ">", "!", "&", "|", "(", ")", "{", "}", ";", ",",
+            "\"", "'", "\\", " ", "\n", "\r", "\t", "//", "/*", "*/", "#", "é", "true", "null", "if", "else"
+        };
+        Random random = new Random(42);
+        for (int n = 0; n < 3000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertSameTokens(sb.toString());
+        }
+    }
+
+    @Test
+    void testInterningFactorySeesTheSameIdentifiers() {
+        String code = "class A { int alpha; void f(int beta) { alpha = beta + alpha; } }";
+        NameTable expectedNames = new NameTable();
+        JavaSubsetLexer generated = new JavaSubsetLexer(CharStreams.fromString(code));
+        generated.setTokenFactory(new InterningTokenFactory(expectedNames));
+        NameTable actualNames = new NameTable();
+        FastLexer fast = new FastLexer(CharStreams.fromString(code));
+        fast.setTokenFactory(new InterningTokenFactory(actualNames));
+
+        List<Token> expected = lex(generated);
+        List<Token> actual = lex(fast);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expectedNames.idOf(expected.get(i)), actualNames.idOf(actual.get(i)));
+        }
+        assertEquals(expectedNames.size(), actualNames.size());
+        for (int id = 0; id < expectedNames.size(); id++) {
+            assertEquals(expectedNames.name(id), actualNames.name(id));
+        }
+    }
+
+    @Test
+    void testParserAcceptsFastLexerTokens() {
+        String code = "class A { int f(int a) { int b = a * 2; return b; } }";
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(new FastLexer(CharStreams.fromString(code))));
+        parser.compilationUnit();
+        assertEquals(0, parser.getNumberOfSyntaxErrors());
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalConstantPropagationTest {
+
+    @Test
+    void testFieldsAssignedOnceBecomeConstants() {
+        IrModule module = compile("""
+            class Config {
+                int scale = 3;
+                int count = 0;
+
+                int apply(int x) {
+                    count = count + 1;
+                    return x * scale + count;
+                }
+            }
+            """);
+        assertTrue(new GlobalConstantPropagation().run(module, new AnalysisManager()));
+        String apply = IrPrinter.print(module.getClasses().get(0).getFunctions().get(0));
+        assertFalse(apply.contains("load i32, i32* @scale"), apply);
+        assertTrue(apply.contains("mul i32 %t2, 3"), apply);
+        //count is reassigned, and the field itself stays for outside readers
+        assertTrue(apply.contains("load i32, i32* @count"));
+        assertNotNull(module.getClasses().get(0).getGlobal("scale"));
+
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            assertEquals(7, interpreter.invoke("Config", "apply", 2));
+            assertEquals(3, interpreter.getGlobal("Config", "scale"));
+        }
+    }
+
+    @Test
+    void testLeavesNonConstantInitializers() {
+        IrModule module = IrParser.parse("""
+            ; === Class A ===
+            @a = global i32 0
+            @b = global i32 0
+            define i32 @get() {
+              %t0 = load i32, i32* @b
+              ret i32 %t0
+            }
+
+            define void @<clinit>() {
+              store i32 5, i32* @a
+              %t0 = load i32, i32* @a
+              store i32 %t0, i32* @b
+              ret void
+            }
+            """);
+        assertFalse(new GlobalConstantPropagation().run(module, new AnalysisManager()));
+    }
+}
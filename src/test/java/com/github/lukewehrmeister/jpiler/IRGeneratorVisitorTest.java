@@ -3,6 +3,11 @@ package com.github.lukewehrmeister.jpiler;
 import org.antlr.v4.runtime.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class IRGeneratorVisitorTest {
@@ -13,17 +18,17 @@ public class IRGeneratorVisitorTest {
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         JavaSubsetParser parser = new JavaSubsetParser(tokens);
     
-        JavaSubsetParser.CompilationUnitContext tree = parser.compilationUnit();
+        Ast.CompilationUnit unit = new AstBuilder(new NameTable()).build(parser.compilationUnit());
     
         SymbolTableVisitor semanticVisitor = new SymbolTableVisitor();
-        semanticVisitor.visit(tree);
+        semanticVisitor.visit(unit);
         assertTrue(semanticVisitor.getErrors().isEmpty(), "Semantic errors: " + semanticVisitor.getErrors());
     
         IRGeneratorVisitor irGenerator = new IRGeneratorVisitor(
-            semanticVisitor.getTableForContext(),
-            semanticVisitor.getSymbolMap()
+            semanticVisitor.getAnnotations(),
+            unit.getNames()
         );
-        irGenerator.visit(tree);
+        irGenerator.visit(unit);
     
         return irGenerator.getIR();
     }
@@ -80,6 +85,7 @@ public class IRGeneratorVisitorTest {
             ; === Class Counter ===
             define void @count() {
               %i = alloca i32
+              %x = alloca i32
               store i32 0, i32* %i
               br label %for.cond.0
             for.cond.0:
@@ -87,7 +93,6 @@ public class IRGeneratorVisitorTest {
               %t1 = icmp slt i32 %t0, 3
               br i1 %t1, label %for.body.1, label %for.end.3
             for.body.1:
-              %x = alloca i32
               %t2 = load i32, i32* %i
               store i32 %t2, i32* %x
               br label %for.update.2
@@ -105,6 +110,44 @@ public class IRGeneratorVisitorTest {
         assertEquals(expectedIR, actualIR, "IR does not match expected output.");
     }
 
+    @Test
+    public void testSiblingScopeLocalsGetTheirOwnEntrySlots() {
+        String input = """
+            class Scopes {
+                int f(int n) {
+                    int x = n;
+                    while (x < 10) {
+                        int y = x;
+                        x = y + 1;
+                    }
+                    for (int i = 0; i < 5; i++) {
+                        int y = i * 2;
+                        x = x + y;
+                    }
+                    for (int i = 0; i < 2; i++) {
+                        x = x + i;
+                    }
+                    return x;
+                }
+            }
+        """;
+
+        IrModule module = compile(input);
+        IrFunction function = module.getClasses().get(0).getFunctions().get(0);
+        List<String> allocas = new ArrayList<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrOpcode.ALLOCA) {
+                    assertNull(block.getLabel(), "alloca outside the entry block: " + instruction);
+                    allocas.add(instruction.getResult().toString());
+                }
+            }
+        }
+        assertEquals(List.of("%n.addr", "%x", "%y", "%i", "%y.1", "%i.1"), allocas);
+        assertTrue(IrPrinter.print(module).contains("i32* %y.1\n"));
+        assertEquals(10 + 20 + 1, run(module, "Scopes", "f", 0));
+    }
+
     @Test
     public void testArithmeticExpressionIR() {
         String input = """
@@ -281,5 +324,34 @@ public class IRGeneratorVisitorTest {
     }
     
 
+    @Test
+    public void testFieldsBecomeGlobalsInitializedInClinit() {
+        String input = """
+            class Counter {
+                int count = 5;
+                int get() {
+                    return count;
+                }
+            }
+            """;
+
+        String expectedIR = """
+            ; === Class Counter ===
+            @count = global i32 0
+            define i32 @get() {
+              %t0 = load i32, i32* @count
+              ret i32 %t0
+            }
+
+            define void @<clinit>() {
+              store i32 5, i32* @count
+              ret void
+            }
+            """.replace("\r\n", "\n").replaceAll("[ \t]+(?=\n)", "").trim();
+
+        String actualIR = generateIRFor(input).replace("\r\n", "\n").replaceAll("[ \t]+(?=\n)", "").trim();
+        assertEquals(expectedIR, actualIR, "IR does not match expected output for fields.");
+    }
+
 }
 
@@ -0,0 +1,39 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntMapTest {
+
+    @Test
+    void testPutGetAndReplace() {
+        IntMap<String> map = new IntMap<>();
+        assertNull(map.put(7, "seven"));
+        assertNull(map.put(-3, "minus three"));
+        assertEquals("seven", map.put(7, "SEVEN"));
+
+        assertEquals("SEVEN", map.get(7));
+        assertEquals("minus three", map.get(-3));
+        assertNull(map.get(8));
+        assertTrue(map.containsKey(-3));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testValuesKeepInsertionOrderAcrossGrowth() {
+        IntMap<Integer> map = new IntMap<>();
+        for (int i = 0; i < 500; i++) {
+            map.put(1000 - i * 3, i);
+        }
+        List<Integer> values = map.values();
+        assertEquals(500, values.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, values.get(i));
+            assertEquals(1000 - i * 3, map.keyAt(i));
+            assertEquals(i, map.get(1000 - i * 3));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary IR against the text IR on a generated workload: file size, time to write,
+ * time to load the whole module (IrParser against a mapped IrBinary file, with
+ * recompiling the source for scale), and time to load one function.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.IrBinaryBenchmark
+ */
+public class IrBinaryBenchmark {
+    private static final int METHODS = 2000;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        String source = SideTableBenchmark.generateProgram(METHODS);
+        IrModule module = Main.compileToModule(source, new ArrayList<>());
+        Path file = Files.createTempFile("jpiler", ".irb");
+        file.toFile().deleteOnExit();
+        IrBinary.write(module, file);
+        String text = IrPrinter.print(module);
+        System.out.printf("Size              text: %8.1f KB   binary: %8.1f KB%n",
+                text.length() / 1024.0, Files.size(file) / 1024.0);
+
+        double print = 0;
+        double encode = 0;
+        double recompile = 0;
+        double parse = 0;
+        double load = 0;
+        double loadOne = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            IrPrinter.print(module);
+            print = ms(start);
+            start = System.nanoTime();
+            IrBinary.encode(module);
+            encode = ms(start);
+            start = System.nanoTime();
+            Main.compileToModule(source, new ArrayList<>());
+            recompile = ms(start);
+            start = System.nanoTime();
+            IrParser.parse(text);
+            parse = ms(start);
+            start = System.nanoTime();
+            IrBinary.map(file).readModule();
+            load = ms(start);
+            start = System.nanoTime();
+            IrBinary binary = IrBinary.map(file);
+            List<String> functions = binary.getFunctionNames("Big");
+            binary.readFunction("Big", functions.get(functions.size() / 2));
+            loadOne = ms(start);
+        }
+        System.out.printf("Write (ms)        text: %8.2f      binary: %8.2f%n", print, encode);
+        System.out.printf("Load module (ms)  text: %8.2f      binary: %8.2f   (recompile: %.2f)%n", parse, load, recompile);
+        System.out.printf("Load one function (ms)         binary: %8.3f%n", loadOne);
+    }
+
+    private static double ms(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IrBinaryTest {
+
+    @TempDir
+    Path dir;
+
+    private static IrModule roundTrip(IrModule module) {
+        return IrBinary.wrap(ByteBuffer.wrap(IrBinary.encode(module))).readModule();
+    }
+
+    @Test
+    void testRoundTripPrintsTheSameText() throws IOException {
+        for (String source : List.of(Files.readString(Paths.get("input.java")), SideTableBenchmark.generateProgram(20),
+                IrInterpreterBenchmark.PROGRAM)) {
+            IrModule module = compile(source);
+            String text = IrPrinter.print(module);
+            assertEquals(text, IrPrinter.print(roundTrip(module)));
+            assertTrue(IrBinary.encode(module).length * 3 < text.length(), "Binary IR should be a third the size of the text");
+        }
+    }
+
+    @Test
+    void testGlobalsBooleansAndConstants() {
+        IrModule module = compile("""
+            class Flags {
+                boolean on = true;
+                int low = -2147483648;
+
+                int pick(boolean b) {
+                    boolean off = false;
+                    if (b || off) {
+                        return 2147483647;
+                    }
+                    return -1;
+                }
+            }
+            """);
+        IrModule copy = roundTrip(module);
+        assertEquals(IrPrinter.print(module), IrPrinter.print(copy));
+        assertEquals(IrType.I1, copy.getClasses().get(0).getGlobal("on").getType());
+    }
+
+    @Test
+    void testConstantsOutsideTheIntRange() {
+        IrModule module = new IrModule();
+        IrClass irClass = new IrClass("Wide");
+        IrFunction function = new IrFunction("f", IrType.I64, List.of());
+        IrBlock entry = new IrBlock(null);
+        entry.add(IrInstruction.binary(IrOpcode.ADD, IrValue.register("t0"), IrType.I64,
+                IrValue.constant(Long.MIN_VALUE), IrValue.constant(Long.MAX_VALUE)));
+        entry.add(IrInstruction.ret(IrType.I64, IrValue.register("t0")));
+        function.getBlocks().add(entry);
+        irClass.getFunctions().add(function);
+        module.getClasses().add(irClass);
+        assertEquals(IrPrinter.print(module), IrPrinter.print(roundTrip(module)));
+    }
+
+    @Test
+    void testReadsOneFunctionFromAMappedFile() throws IOException {
+        IrModule module = compile(SideTableBenchmark.generateProgram(10));
+        Path file = dir.resolve("big.irb");
+        IrBinary.write(module, file);
+
+        IrBinary binary = IrBinary.map(file);
+        assertEquals(List.of("Big"), binary.getClassNames());
+        assertEquals(10, binary.getFunctionNames("Big").size());
+        IrFunction m7 = binary.readFunction("Big", "m7");
+        assertEquals(IrPrinter.print(module.getClasses().get(0).getFunctions().get(7)), IrPrinter.print(m7));
+        assertThrows(IllegalArgumentException.class, () -> binary.readFunction("Big", "m99"));
+        assertThrows(IllegalArgumentException.class, () -> binary.getFunctionNames("Small"));
+    }
+
+    @Test
+    void testRejectsForeignAndTruncatedInput() {
+        byte[] bytes = IrBinary.encode(compile(IrInterpreterBenchmark.PROGRAM));
+        assertThrows(IllegalArgumentException.class, () -> IrBinary.wrap(ByteBuffer.wrap("class A {}".getBytes())));
+        IrBinary truncated = IrBinary.wrap(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 5)));
+        assertThrows(IllegalArgumentException.class, truncated::readModule);
+        assertThrows(IllegalArgumentException.class, () -> IrBinary.wrap(ByteBuffer.wrap(Arrays.copyOf(bytes, 12))));
+    }
+
+    @Test
+    void testCalls() {
+        IrModule module = compile("""
+            class Calls {
+                int count = 0;
+
+                void tick() {
+                    count = count + 1;
+                }
+
+                int gcd(int a, int b) {
+                    tick();
+                    if (b == 0) {
+                        return a;
+                    }
+                    return gcd(b, a % b);
+                }
+            }
+            """);
+        IrModule copy = roundTrip(module);
+        assertEquals(IrPrinter.print(module), IrPrinter.print(copy));
+        assertEquals(12, run(copy, "Calls", "gcd", 84, 36));
+    }
+
+    @Test
+    void testArrays() {
+        IrModule module = compile("""
+            class Arrays {
+                int sum(int n) {
+                    int[] a = new int[12];
+                    for (int i = 0; i < n; i++) {
+                        a[i] = i;
+                    }
+                    int total = 0;
+                    for (int i = 0; i < a.length; i++) {
+                        total = total + a[i];
+                    }
+                    return total;
+                }
+            }
+            """);
+        IrModule copy = roundTrip(module);
+        assertEquals(IrPrinter.print(module), IrPrinter.print(copy));
+        assertEquals(45, run(copy, "Arrays", "sum", 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> run(copy, "Arrays", "sum", 13));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+
+/**
+ * Warm throughput of the IR interpreter in decoded instructions per second, on a
+ * loop-heavy method with arithmetic, comparisons, branches and global traffic.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.IrInterpreterBenchmark
+ */
+public class IrInterpreterBenchmark {
+    private static final int ROUNDS = 20;
+    private static final int N = 1500;
+
+    static final String PROGRAM = """
+        class Work {
+            int calls = 0;
+
+            int run(int n) {
+                int acc = 0;
+                for (int i = 0; i < n; i++) {
+                    int j = 0;
+                    while (j < n) {
+                        if ((i + j) % 3 == 0) {
+                            acc = acc + i * j;
+                        } else {
+                            acc = acc - j;
+                        }
+                        j++;
+                    }
+                }
+                calls = calls + 1;
+                return acc;
+            }
+        }
+        """;
+
+    public static void main(String[] args) {
+        try (IrInterpreter interpreter = new IrInterpreter(Main.compileToModule(PROGRAM, new ArrayList<>()))) {
+            long best = Long.MAX_VALUE;
+            long instructions = 0;
+            int result = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = interpreter.getInstructionCount();
+                long start = System.nanoTime();
+                result = interpreter.invoke("Work", "run", N);
+                best = Math.min(best, System.nanoTime() - start);
+                instructions = interpreter.getInstructionCount() - before;
+            }
+            System.out.printf("run(%d) = %d: %d instructions, best %.2f ms, %.1f M instructions/s%n",
+                    N, result, instructions, best / 1e6, instructions / (best / 1e9) / 1e6);
+        }
+    }
+}
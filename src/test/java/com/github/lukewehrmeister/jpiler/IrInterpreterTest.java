@@ -0,0 +1,369 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IrInterpreterTest {
+
+    @Test
+    void testLoopsAndBranches() {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Loops {
+                int sumTo(int n) {
+                    int sum = 0;
+                    for (int i = 1; i <= n; i++) {
+                        sum = sum + i;
+                    }
+                    return sum;
+                }
+
+                int atLeastOnce(int n) {
+                    int runs = 0;
+                    do {
+                        runs = runs + 1;
+                    } while (runs < n);
+                    return runs;
+                }
+
+                int sign(int n) {
+                    if (n < 0) {
+                        return -1;
+                    } else if (n == 0) {
+                        return 0;
+                    }
+                    return 1;
+                }
+            }
+            """))) {
+            assertEquals(5050, interpreter.invoke("Loops", "sumTo", 100));
+            assertEquals(1, interpreter.invoke("Loops", "atLeastOnce", 0));
+            assertEquals(4, interpreter.invoke("Loops", "atLeastOnce", 4));
+            assertEquals(-1, interpreter.invoke("Loops", "sign", -5));
+            assertEquals(0, interpreter.invoke("Loops", "sign", 0));
+            assertEquals(1, interpreter.invoke("Loops", "sign", 9));
+        }
+    }
+
+    @Test
+    void testBooleansIncrementsAndArithmetic() {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Logic {
+                boolean between(int x, int low, int high) {
+                    boolean inside = x >= low && x <= high;
+                    return !(!inside || false);
+                }
+
+                int steps(int x) {
+                    int y = x++;
+                    int z = ++x;
+                    x--;
+                    return x * 100 + y * 10 + z;
+                }
+
+                int combine(int a, int b) {
+                    return (a * 3 - b / 2) % 7 + -a;
+                }
+            }
+            """))) {
+            assertEquals(1, interpreter.invoke("Logic", "between", 5, 1, 9));
+            assertEquals(0, interpreter.invoke("Logic", "between", 10, 1, 9));
+            assertEquals(213, interpreter.invoke("Logic", "steps", 1));
+            assertEquals((-4 * 3 - 100 / 2) % 7 + 4, interpreter.invoke("Logic", "combine", -4, 100));
+        }
+    }
+
+    @Test
+    void testFieldsAreInitializedAndShared() {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Counter {
+                int count = 40;
+                int step = 0;
+
+                void tick() {
+                    step = step + 1;
+                    count = count + step;
+                }
+            }
+            """))) {
+            assertEquals(40, interpreter.getGlobal("Counter", "count"));
+            interpreter.invoke("Counter", "tick");
+            interpreter.invoke("Counter", "tick");
+            assertEquals(43, interpreter.getGlobal("Counter", "count"));
+            assertEquals(2, interpreter.getGlobal("Counter", "step"));
+        }
+    }
+
+    @Test
+    void testRunsTheSampleProgram() throws IOException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile(Files.readString(Paths.get("input.java"))))) {
+            assertEquals(0, interpreter.invoke("Calculator", "compute"));
+            assertTrue(interpreter.getInstructionCount() > 0);
+        }
+    }
+
+    //Every method of a generated workload returns what the JVM backend's bytecode returns
+    @Test
+    void testAgreesWithJvmBackend() throws ReflectiveOperationException {
+        IrModule module = compile(SideTableBenchmark.generateProgram(5));
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            Map<String, byte[]> classes = JvmBackend.compile(module);
+            Class<?> big = new ClassLoader(null) {
+                @Override
+                protected Class<?> findClass(String name) {
+                    return defineClass(name, classes.get(name), 0, classes.get(name).length);
+                }
+            }.loadClass("Big");
+            for (int m = 0; m < 5; m++) {
+                Method method = big.getMethod("m" + m, int.class, int.class);
+                for (int a = -2; a < 40; a += 7) {
+                    for (int b = -3; b < 5; b++) {
+                        assertEquals(method.invoke(null, a, b), interpreter.invoke("Big", "m" + m, a, b));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnknownFunctionsAndWrongArity() {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class A {
+                int f(int x) {
+                    return x;
+                }
+            }
+            """))) {
+            assertThrows(IllegalArgumentException.class, () -> interpreter.invoke("A", "g", 1));
+            assertThrows(IllegalArgumentException.class, () -> interpreter.invoke("A", "f"));
+        }
+    }
+
+    @Test
+    void testCallsAndRecursion() {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Rec {
+                int depth = 0;
+
+                int fib(int n) {
+                    depth = depth + 1;
+                    if (n < 2) {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+
+                int down(int n) {
+                    if (n == 0) {
+                        return 0;
+                    }
+                    return down(n - 1) + 1;
+                }
+            }
+            """))) {
+            assertEquals(55, interpreter.invoke("Rec", "fib", 10));
+            assertEquals(177, interpreter.getGlobal("Rec", "depth"));
+            assertThrows(StackOverflowError.class, () -> interpreter.invoke("Rec", "down", 10_000_000));
+            assertThrows(IllegalStateException.class, () -> new IrInterpreter(IrParser.parse("""
+                ; === Class A ===
+                define i32 @f(i32 %x) {
+                  %t0 = call i32 @g(i32 %x)
+                  ret i32 %t0
+                }
+                """)));
+        }
+    }
+
+    @Test
+    void testInvocationsTierUpToBytecode() throws InterruptedException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Math {
+                int twice(int x) {
+                    return x * 2;
+                }
+            }
+            """), 3)) {
+            assertEquals(2, interpreter.invoke("Math", "twice", 1));
+            assertEquals(4, interpreter.invoke("Math", "twice", 2));
+            interpreter.awaitCompilations();
+            assertFalse(interpreter.isCompiled("Math", "twice"));
+
+            assertEquals(6, interpreter.invoke("Math", "twice", 3));
+            interpreter.awaitCompilations();
+            assertTrue(interpreter.isCompiled("Math", "twice"));
+
+            long interpreted = interpreter.getInstructionCount();
+            assertEquals(-14, interpreter.invoke("Math", "twice", -7));
+            assertEquals(interpreted, interpreter.getInstructionCount());
+        }
+    }
+
+    @Test
+    void testBackEdgesTierUpALongLoop() throws InterruptedException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Loops {
+                int sumTo(int n) {
+                    int sum = 0;
+                    for (int i = 1; i <= n; i++) {
+                        sum = sum + i;
+                    }
+                    return sum;
+                }
+            }
+            """), 50)) {
+            assertEquals(5050, interpreter.invoke("Loops", "sumTo", 100));
+            interpreter.awaitCompilations();
+            assertTrue(interpreter.isCompiled("Loops", "sumTo"));
+            assertEquals(500500, interpreter.invoke("Loops", "sumTo", 1000));
+        }
+    }
+
+    @Test
+    void testBothTiersShareGlobals() throws InterruptedException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Counter {
+                int count = 0;
+
+                void tick() {
+                    count = count + 1;
+                }
+            }
+            """), 2)) {
+            interpreter.invoke("Counter", "tick");
+            interpreter.invoke("Counter", "tick");
+            interpreter.awaitCompilations();
+            assertTrue(interpreter.isCompiled("Counter", "tick"));
+            interpreter.invoke("Counter", "tick");
+            assertEquals(3, interpreter.getGlobal("Counter", "count"));
+        }
+    }
+
+    @Test
+    void testFunctionsThatCallTierUp() throws InterruptedException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Calls {
+                int total = 0;
+
+                int fact(int n) {
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * fact(n - 1);
+                }
+
+                int square(int x) {
+                    return x * x;
+                }
+
+                void add(int x) {
+                    total = total + x;
+                }
+
+                int sumOfSquares(int n) {
+                    int sum = 0;
+                    for (int i = 1; i <= n; i++) {
+                        sum = sum + square(i);
+                        add(i);
+                    }
+                    return sum;
+                }
+            }
+            """), 20)) {
+            //Twenty invocations of fact; sumOfSquares(3) counts 1 + 3 back-edges, and 3 calls of each callee
+            assertEquals(3628800, interpreter.invoke("Calls", "fact", 10));
+            assertEquals(3628800, interpreter.invoke("Calls", "fact", 10));
+            for (int i = 0; i < 5; i++) {
+                assertEquals(14, interpreter.invoke("Calls", "sumOfSquares", 3));
+            }
+            interpreter.awaitCompilations();
+            assertTrue(interpreter.isCompiled("Calls", "fact"));
+            assertTrue(interpreter.isCompiled("Calls", "sumOfSquares"));
+            assertFalse(interpreter.isCompiled("Calls", "square"));
+
+            //Compiled code calls itself, and goes back to the interpreter for the others
+            assertEquals(479001600, interpreter.invoke("Calls", "fact", 12));
+            assertEquals(14, interpreter.invoke("Calls", "sumOfSquares", 3));
+            assertEquals(6 * 6, interpreter.getGlobal("Calls", "total"));
+
+            //Until they tier up too, after which no call is interpreted
+            assertEquals(385, interpreter.invoke("Calls", "sumOfSquares", 10));
+            interpreter.awaitCompilations();
+            assertTrue(interpreter.isCompiled("Calls", "square"));
+            assertTrue(interpreter.isCompiled("Calls", "add"));
+            long interpreted = interpreter.getInstructionCount();
+            assertEquals(42925, interpreter.invoke("Calls", "sumOfSquares", 50));
+            assertEquals(interpreted, interpreter.getInstructionCount());
+            assertEquals(6 * 6 + 55 + 1275, interpreter.getGlobal("Calls", "total"));
+        }
+    }
+
+    @Test
+    void testClosedInterpretersStopTieringUp() throws InterruptedException {
+        IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Math {
+                int twice(int x) {
+                    return x * 2;
+                }
+            }
+            """), 2);
+        interpreter.close();
+        assertEquals(2, interpreter.invoke("Math", "twice", 1));
+        assertEquals(4, interpreter.invoke("Math", "twice", 2));
+        assertEquals(6, interpreter.invoke("Math", "twice", 3));
+        interpreter.awaitCompilations();
+        assertFalse(interpreter.isCompiled("Math", "twice"));
+    }
+
+    @Test
+    void testUncompilableFunctionsStayInterpreted() throws InterruptedException {
+        try (IrInterpreter interpreter = new IrInterpreter(compile("""
+            class Text {
+                int length() {
+                    String s = "hi";
+                    return 2;
+                }
+            }
+            """), 1)) {
+            assertEquals(2, interpreter.invoke("Text", "length"));
+            interpreter.awaitCompilations();
+            assertFalse(interpreter.isCompiled("Text", "length"));
+            assertEquals(2, interpreter.invoke("Text", "length"));
+        }
+    }
+
+    @Test
+    void testArraysAreZeroedAndChecked() {
+        IrModule module = compile("""
+            class Sieve {
+                int primes(int n) {
+                    boolean[] composite = new boolean[100];
+                    int count = 0;
+                    for (int i = 2; i < n; i++) {
+                        if (!composite[i]) {
+                            count++;
+                            for (int j = i * i; j < n; j = j + i) {
+                                composite[j] = true;
+                            }
+                        }
+                    }
+                    return count;
+                }
+            }
+            """);
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            assertEquals(25, interpreter.invoke("Sieve", "primes", 100));
+            //Each call gets a fresh array, zeroed again
+            assertEquals(25, interpreter.invoke("Sieve", "primes", 100));
+            IndexOutOfBoundsException e = assertThrows(IndexOutOfBoundsException.class,
+                    () -> interpreter.invoke("Sieve", "primes", 101));
+            assertEquals("Index 100 out of bounds for length 100", e.getMessage());
+        }
+    }
+}
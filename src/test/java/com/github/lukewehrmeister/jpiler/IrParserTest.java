@@ -0,0 +1,163 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IrParserTest {
+
+    private static String print(String source) {
+        return IrPrinter.print(compile(source));
+    }
+
+    private static void assertRoundTrip(String ir) {
+        assertEquals(ir, IrPrinter.print(IrParser.parse(ir)));
+    }
+
+    @Test
+    void testRoundTripsCompilerOutput() throws IOException {
+        assertRoundTrip(Files.readString(Paths.get("output.ir.txt")));
+        assertRoundTrip(print(Files.readString(Paths.get("input.java"))));
+        assertRoundTrip(print(SideTableBenchmark.generateProgram(30)));
+        assertRoundTrip(print(IrInterpreterBenchmark.PROGRAM));
+    }
+
+    @Test
+    void testGlobalsPointersAndInitializers() {
+        String ir = print("""
+            class Text {
+                String name = "top";
+                char initial = 'x';
+                boolean on = true;
+
+                boolean flip(boolean b) {
+                    String s = "hi";
+                    return !b;
+                }
+            }
+            """);
+        assertTrue(ir.contains("i8** %s"));
+        IrModule module = IrParser.parse(ir);
+        assertEquals(IrType.PTR, module.getClasses().get(0).getGlobal("name").getType());
+        assertEquals(List.of("flip", IrClass.INITIALIZER),
+                module.getFunctions().stream().map(IrFunction::getName).toList());
+        assertEquals(ir, IrPrinter.print(module));
+    }
+
+    @Test
+    void testForwardBranchesShareTheirBlock() {
+        IrModule module = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %t0 = icmp slt i32 %x, 0
+              br i1 %t0, label %neg, label %done
+            neg:
+              ret i32 -1
+            done:
+              ret i32 %x
+            }
+            """);
+        IrFunction f = module.getFunctions().get(0);
+        assertEquals(3, f.getBlocks().size());
+        assertSame(f.getBlock("neg"), f.getEntryBlock().getTerminator().getTargets().get(0));
+        assertEquals(-1, run(module, "A", "f", -5));
+        assertEquals(7, run(module, "A", "f", 7));
+    }
+
+    @Test
+    void testErrorsNameTheLine() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> IrParser.parse("""
+            ; === Class A ===
+            define void @f() {
+              %t0 = frob i32 1, 2
+              ret void
+            }
+            """));
+        assertTrue(e.getMessage().startsWith("IR line 3:"), e.getMessage());
+
+        e = assertThrows(IllegalArgumentException.class, () -> IrParser.parse("""
+            ; === Class A ===
+            define void @f() {
+              br label %nowhere
+            }
+            """));
+        assertEquals("IR line 3: Undefined label %nowhere in @f", e.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> IrParser.parse("define void @f() {\n}\n"));
+        assertThrows(IllegalArgumentException.class, () -> IrParser.parse("; === Class A ===\ndefine void @f() {\n  ret void\n"));
+        assertThrows(IllegalArgumentException.class, () -> IrParser.parse("; === Class A ===\n@x = global i32 0 junk\n"));
+    }
+
+    @Test
+    void testCallsRoundTrip() {
+        String ir = print("""
+            class Calls {
+                int total = 0;
+
+                void add(int n) {
+                    total = total + n;
+                }
+
+                int twice(int x, boolean neg) {
+                    add(x);
+                    if (neg) {
+                        return -twice(x, false);
+                    }
+                    return x * 2;
+                }
+            }
+            """);
+        assertTrue(ir.contains("  call void @add(i32 %t"));
+        assertTrue(ir.contains("= call i32 @twice(i32 %t"));
+        assertRoundTrip(ir);
+        assertEquals(-10, run(IrParser.parse(ir), "Calls", "twice", 5, 1));
+    }
+
+    @Test
+    void testArraysRoundTrip() {
+        String ir = print("""
+            class Arrays {
+                int last(int n) {
+                    int[] a = new int[5];
+                    boolean[] odd = new boolean[5];
+                    for (int i = 0; i < a.length; i++) {
+                        a[i] = i * n;
+                        odd[i] = i % 2 == 1;
+                    }
+                    if (odd[3]) {
+                        return a[4];
+                    }
+                    return 0;
+                }
+            }
+            """);
+        assertTrue(ir.contains("%a = alloca i32, i32 5"));
+        assertTrue(ir.contains("  boundscheck i32 %t"));
+        assertTrue(ir.contains("  storeelem i1 %t"));
+        assertTrue(ir.contains("= loadelem i32, i32* %a, i32 4"));
+        assertRoundTrip(ir);
+        assertEquals(12, run(IrParser.parse(ir), "Arrays", "last", 3));
+
+        assertThrows(IllegalArgumentException.class, () -> IrParser.parse("""
+            ; === Class A ===
+            define void @f() {
+              %a = alloca i32, i32 0
+              ret void
+            }
+            """));
+        assertThrows(IllegalArgumentException.class, () -> IrParser.parse("""
+            ; === Class A ===
+            define void @f() {
+              %t0 = boundscheck i32 1, 2
+              ret void
+            }
+            """));
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fixtures shared by the tests that compile a program and look at or run its IR.
+ */
+final class IrTestSupport {
+
+    private IrTestSupport() {
+    }
+
+    //Runs the front end, failing the test on semantic errors
+    static IrModule compile(String source) {
+        List<String> errors = new ArrayList<>();
+        IrModule module = Main.compileToModule(source, errors);
+        assertNotNull(module, "Semantic errors: " + errors);
+        return module;
+    }
+
+    static IrFunction function(IrModule module, String name) {
+        for (IrFunction function : module.getFunctions()) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        throw new AssertionError("No function " + name);
+    }
+
+    static long countOpcode(IrFunction function, IrOpcode opcode) {
+        return function.getBlocks().stream().flatMap(block -> block.getInstructions().stream())
+                .filter(instruction -> instruction.getOpcode() == opcode).count();
+    }
+
+    //Invokes a method in a fresh interpreter, so no globals carry over from an earlier call
+    static int run(IrModule module, String className, String method, int... arguments) {
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            return interpreter.invoke(className, method, arguments);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmBackendTest {
+
+    //Loads every class of one compiled program, verifying it as the JVM does for untrusted code
+    private static final class ProgramLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        ProgramLoader(Map<String, byte[]> classes) {
+            super(null);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static Class<?> load(String source, String className) throws ClassNotFoundException {
+        List<String> errors = new ArrayList<>();
+        IrModule module = Main.compileToModule(source, errors);
+        assertNotNull(module, "Semantic errors: " + errors);
+        return Class.forName(className, true, new ProgramLoader(JvmBackend.compile(module)));
+    }
+
+    private static Object call(Class<?> owner, String name, Object... args) throws ReflectiveOperationException {
+        for (Method method : owner.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                return method.invoke(null, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    @Test
+    void testArithmeticAndParameters() throws ReflectiveOperationException {
+        Class<?> math = load("""
+            class Math {
+                int combine(int a, int b) {
+                    int x = a * 3 - b / 2;
+                    return x % 7 + -a;
+                }
+            }
+            """, "Math");
+        assertEquals((10 * 3 - 9 / 2) % 7 + -10, call(math, "combine", 10, 9));
+        assertEquals((-4 * 3 - 100 / 2) % 7 + 4, call(math, "combine", -4, 100));
+    }
+
+    @Test
+    void testLoopsAndBranches() throws ReflectiveOperationException {
+        Class<?> loops = load("""
+            class Loops {
+                int sumTo(int n) {
+                    int sum = 0;
+                    for (int i = 1; i <= n; i++) {
+                        sum = sum + i;
+                    }
+                    return sum;
+                }
+
+                int countDown(int n) {
+                    int steps = 0;
+                    while (n > 0) {
+                        n--;
+                        steps++;
+                    }
+                    return steps;
+                }
+
+                int atLeastOnce(int n) {
+                    int runs = 0;
+                    do {
+                        runs = runs + 1;
+                    } while (runs < n);
+                    return runs;
+                }
+
+                int sign(int n) {
+                    if (n < 0) {
+                        return -1;
+                    } else if (n == 0) {
+                        return 0;
+                    }
+                    return 1;
+                }
+            }
+            """, "Loops");
+        assertEquals(5050, call(loops, "sumTo", 100));
+        assertEquals(0, call(loops, "sumTo", 0));
+        assertEquals(7, call(loops, "countDown", 7));
+        assertEquals(1, call(loops, "atLeastOnce", 0));
+        assertEquals(4, call(loops, "atLeastOnce", 4));
+        assertEquals(-1, call(loops, "sign", -5));
+        assertEquals(0, call(loops, "sign", 0));
+        assertEquals(1, call(loops, "sign", 9));
+    }
+
+    @Test
+    void testBooleansAndIncrements() throws ReflectiveOperationException {
+        Class<?> logic = load("""
+            class Logic {
+                boolean between(int x, int low, int high) {
+                    boolean inside = x >= low && x <= high;
+                    return !(!inside || false);
+                }
+
+                int steps(int x) {
+                    int y = x++;
+                    int z = ++x;
+                    x--;
+                    return x * 100 + y * 10 + z;
+                }
+            }
+            """, "Logic");
+        assertEquals(true, call(logic, "between", 5, 1, 9));
+        assertEquals(false, call(logic, "between", 10, 1, 9));
+        assertEquals(2 * 100 + 1 * 10 + 3, call(logic, "steps", 1));
+    }
+
+    @Test
+    void testFieldsAndStaticInitializer() throws ReflectiveOperationException {
+        Class<?> counter = load("""
+            class Counter {
+                int count = 40;
+                int step = 0;
+
+                void tick() {
+                    step = step + 1;
+                    count = count + step;
+                }
+
+                int get() {
+                    return count;
+                }
+            }
+            """, "Counter");
+        assertEquals(40, call(counter, "get"));
+        call(counter, "tick");
+        call(counter, "tick");
+        assertEquals(43, call(counter, "get"));
+    }
+
+    @Test
+    void testVoidMainIsAnEntryPoint() throws ReflectiveOperationException {
+        Class<?> program = load("""
+            class Program {
+                int runs = 0;
+
+                public static void main(String[] args) {
+                    runs = runs + 1;
+                }
+            }
+            """, "Program");
+        program.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        assertEquals(1, program.getField("runs").get(null));
+    }
+
+    @Test
+    void testCallsAndRecursion() throws ReflectiveOperationException {
+        Class<?> calls = load("""
+            class Calls {
+                int total = 0;
+
+                int fact(int n) {
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * fact(n - 1);
+                }
+
+                void add(int n) {
+                    total = total + n;
+                }
+
+                int run(int n) {
+                    add(fact(n));
+                    add(1);
+                    return total;
+                }
+            }
+            """, "Calls");
+        assertEquals(120 + 1, call(calls, "run", 5));
+        assertEquals(720, call(calls, "fact", 6));
+    }
+
+    @Test
+    void testLocalsNamedLikeTemporaries() throws ReflectiveOperationException {
+        String source = """
+            class C {
+                int f(int n) {
+                    int t2 = 100;
+                    int a = n + n;
+                    return t2 + a;
+                }
+                int g(int t0) {
+                    int t1 = t0 * 3;
+                    {
+                        int t3 = t1 + 1;
+                        t1 = t3;
+                    }
+                    return t0 + t1;
+                }
+            }
+            """;
+        IrModule module = IrTestSupport.compile(source);
+        assertEquals(110, IrTestSupport.run(module, "C", "f", 5));
+        assertEquals(5 + 16, IrTestSupport.run(module, "C", "g", 5));
+        PassManager.forLevel(2).run(module);
+        assertEquals(110, IrTestSupport.run(module, "C", "f", 5));
+        assertEquals(5 + 16, IrTestSupport.run(module, "C", "g", 5));
+
+        Class<?> c = load(source, "C");
+        assertEquals(110, call(c, "f", 5));
+        assertEquals(5 + 16, call(c, "g", 5));
+    }
+
+    @Test
+    void testStringsAreRejected() {
+        IrModule module = Main.compileToModule("""
+            class Text {
+                void greet() {
+                    String s = "hi";
+                }
+            }
+            """, new ArrayList<>());
+        assertThrows(IllegalArgumentException.class, () -> JvmBackend.compile(module));
+    }
+
+    @Test
+    void testArraysAreZeroedAndChecked() throws ReflectiveOperationException {
+        Class<?> sieve = load("""
+            class Sieve {
+                int primes(int n) {
+                    boolean[] composite = new boolean[100];
+                    int count = 0;
+                    for (int i = 2; i < n; i++) {
+                        if (!composite[i]) {
+                            count++;
+                            for (int j = i * i; j < n; j = j + i) {
+                                composite[j] = true;
+                            }
+                        }
+                    }
+                    return count;
+                }
+            }
+            """, "Sieve");
+        assertEquals(25, call(sieve, "primes", 100));
+        assertEquals(25, call(sieve, "primes", 100));
+        InvocationTargetException e = assertThrows(InvocationTargetException.class, () -> call(sieve, "primes", 101));
+        assertTrue(e.getCause() instanceof IndexOutOfBoundsException, e.getCause().toString());
+    }
+}
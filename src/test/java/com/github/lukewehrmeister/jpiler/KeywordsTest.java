@@ -0,0 +1,55 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordsTest {
+
+    private static Token firstToken(String input) {
+        return new JavaSubsetLexer(CharStreams.fromString(input)).nextToken();
+    }
+
+    @Test
+    void testEveryKeywordIsReclassified() {
+        Object[][] expected = {
+                {"byte", JavaSubsetLexer.BYTE}, {"short", JavaSubsetLexer.SHORT}, {"int", JavaSubsetLexer.INT},
+                {"long", JavaSubsetLexer.LONG}, {"float", JavaSubsetLexer.FLOAT}, {"double", JavaSubsetLexer.DOUBLE},
+                {"boolean", JavaSubsetLexer.BOOLEAN}, {"char", JavaSubsetLexer.CHAR}, {"String", JavaSubsetLexer.STRING},
+                {"if", JavaSubsetLexer.IF}, {"else", JavaSubsetLexer.ELSE}, {"for", JavaSubsetLexer.FOR},
+                {"while", JavaSubsetLexer.WHILE}, {"do", JavaSubsetLexer.DO}, {"return", JavaSubsetLexer.RETURN},
+                {"class", JavaSubsetLexer.CLASS}, {"public", JavaSubsetLexer.PUBLIC}, {"private", JavaSubsetLexer.PRIVATE},
+                {"protected", JavaSubsetLexer.PROTECTED}, {"static", JavaSubsetLexer.STATIC}, {"void", JavaSubsetLexer.VOID},
+                {"import", JavaSubsetLexer.IMPORT}, {"new", JavaSubsetLexer.NEW}, {"true", JavaSubsetLexer.TRUE},
+                {"false", JavaSubsetLexer.FALSE}, {"null", JavaSubsetLexer.NULL_LITERAL}
+        };
+        for (Object[] pair : expected) {
+            String word = (String) pair[0];
+            assertEquals((int) pair[1], Keywords.lookup(word), word);
+            assertEquals((int) pair[1], firstToken(word + " ").getType(), word);
+        }
+        for (String word : new String[] {"Integer", "Double", "Float", "Character", "Boolean", "Byte", "Long", "Object", "Void"}) {
+            assertEquals(JavaSubsetLexer.SIMPLE_KEYWORDS, Keywords.lookup(word), word);
+        }
+    }
+
+    @Test
+    void testNearMissesStayIdentifiers() {
+        for (String word : new String[] {"i", "in", "Int", "ints", "fore", "dO", "strings", "Str", "protectedd", "nulL"}) {
+            assertEquals(JavaSubsetLexer.IDENTIFIER, Keywords.lookup(word), word);
+            assertEquals(JavaSubsetLexer.IDENTIFIER, firstToken(word).getType(), word);
+        }
+    }
+
+    @Test
+    void testStringArgsIsOneToken() {
+        Token stringArgs = firstToken("String[] args)");
+        assertEquals(JavaSubsetLexer.STRINGARGS, stringArgs.getType());
+        assertEquals("String[] args", stringArgs.getText());
+
+        Token string = firstToken("String[]  args");
+        assertEquals(JavaSubsetLexer.STRING, string.getType());
+        assertEquals("String", string.getText());
+    }
+}
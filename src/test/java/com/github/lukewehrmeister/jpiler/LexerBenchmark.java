@@ -0,0 +1,71 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.*;
+
+/**
+ * Lexer throughput and cold-start cost. The first file lexed in a JVM pays for ATN
+ * deserialization and DFA construction; later files reuse the shared DFA cache.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.LexerBenchmark
+ */
+public class LexerBenchmark {
+    private static final int METHODS = 2000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        String small = SideTableBenchmark.generateProgram(5);
+        CharStreams.fromString(small);
+        long initStart = System.nanoTime();
+        Class.forName(JavaSubsetLexer.class.getName(), true, LexerBenchmark.class.getClassLoader());
+        long init = System.nanoTime() - initStart;
+        long coldStart = System.nanoTime();
+        int coldTokens = lex(small);
+        long cold = System.nanoTime() - coldStart;
+        System.out.printf("Lexer ATN: %d states   DFA states after first file: %d%n",
+                JavaSubsetLexer._ATN.states.size(), dfaStates());
+        System.out.printf("Lexer class init (ATN deserialization): %.2f ms%n", init / 1e6);
+        System.out.printf("Cold first file: %d tokens in %.2f ms%n", coldTokens, cold / 1e6);
+
+        // With the JIT warm, clear the shared DFA each time to isolate what building it costs.
+        long warmup = Long.MAX_VALUE;
+        for (int round = 0; round < 200; round++) {
+            new JavaSubsetLexer(CharStreams.fromString("")).getInterpreter().clearDFA();
+            long start = System.nanoTime();
+            lex(small);
+            warmup = Math.min(warmup, System.nanoTime() - start);
+        }
+        System.out.printf("Small file with an empty DFA cache: best %.3f ms, %d DFA states built%n",
+                warmup / 1e6, dfaStates());
+
+        String big = SideTableBenchmark.generateProgram(METHODS);
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            tokens = lex(big);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("Warm: %d tokens, best %.2f ms, %.1f M tokens/s%n",
+                tokens, best / 1e6, tokens / (best / 1e9) / 1e6);
+    }
+
+    private static int lex(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        lexer.setTokenFactory(new InterningTokenFactory(new NameTable()));
+        int count = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int dfaStates() {
+        int states = 0;
+        for (org.antlr.v4.runtime.dfa.DFA dfa : JavaSubsetLexer._decisionToDFA) {
+            states += dfa.states.size();
+        }
+        return states;
+    }
+}
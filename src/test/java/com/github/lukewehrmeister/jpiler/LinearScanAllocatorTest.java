@@ -0,0 +1,83 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinearScanAllocatorTest {
+
+    private static boolean overlap(Liveness.Interval a, Liveness.Interval b) {
+        return a.getStart() <= b.getEnd() && b.getStart() <= a.getEnd();
+    }
+
+    //No two values that are live at once share a register or a spill slot
+    private static void assertValid(Liveness liveness, LinearScanAllocator.Allocation allocation, int registers) {
+        List<Liveness.Interval> intervals = liveness.getIntervals();
+        for (Liveness.Interval interval : intervals) {
+            int register = allocation.registerOf(interval.getValue());
+            int slot = allocation.slotOf(interval.getValue());
+            assertTrue(register >= 0 ^ slot >= 0, interval.toString());
+            assertTrue(register < registers);
+            assertTrue(slot < allocation.getSlotCount());
+        }
+        for (int i = 0; i < intervals.size(); i++) {
+            for (int j = i + 1; j < intervals.size(); j++) {
+                Liveness.Interval a = intervals.get(i);
+                Liveness.Interval b = intervals.get(j);
+                if (!overlap(a, b)) {
+                    continue;
+                }
+                int register = allocation.registerOf(a.getValue());
+                assertFalse(register >= 0 && register == allocation.registerOf(b.getValue()), a + " and " + b);
+                int slot = allocation.slotOf(a.getValue());
+                assertFalse(slot >= 0 && slot == allocation.slotOf(b.getValue()), a + " and " + b);
+            }
+        }
+    }
+
+    @Test
+    void testAllocationsAreValidForEveryRegisterCount() {
+        IrModule module = Main.compileToModule(SideTableBenchmark.generateProgram(3), new java.util.ArrayList<>());
+        for (IrFunction function : module.getFunctions()) {
+            Liveness liveness = new Liveness(function);
+            for (int registers = 1; registers <= 8; registers++) {
+                assertValid(liveness, LinearScanAllocator.allocate(liveness, registers), registers);
+            }
+        }
+    }
+
+    //A value evicted from its register is spilled for its whole interval, so it must not reuse the slot of one that was live when it started
+    @Test
+    void testEvictedValuesGetSlotsFreeForTheirWholeInterval() {
+        Liveness liveness = new Liveness(LivenessTest.function("""
+            class A {
+                int f(int a, int b, int c, int d, int e, int f) {
+                    return a * b - c / (d + 1) + e % 3 + f;
+                }
+            }
+            """, "f"));
+        for (int registers = 1; registers <= 3; registers++) {
+            assertValid(liveness, LinearScanAllocator.allocate(liveness, registers), registers);
+        }
+    }
+
+    @Test
+    void testFewerRegistersSpillMore() {
+        Liveness liveness = new Liveness(LivenessTest.function(LivenessTest.LOOP, "sumTo"));
+        LinearScanAllocator.Allocation one = LinearScanAllocator.allocate(liveness, 1);
+        LinearScanAllocator.Allocation six = LinearScanAllocator.allocate(liveness, 6);
+        assertTrue(one.getSpillCount() > 0);
+        assertEquals(0, six.getSpillCount());
+        assertEquals(0, six.getSlotCount());
+        //Slots are reused once the value holding them is dead
+        assertTrue(one.getSlotCount() < one.getSpillCount());
+    }
+
+    @Test
+    void testRejectsZeroRegisters() {
+        Liveness liveness = new Liveness(LivenessTest.function(LivenessTest.LOOP, "sumTo"));
+        assertThrows(IllegalArgumentException.class, () -> LinearScanAllocator.allocate(liveness, 0));
+    }
+}
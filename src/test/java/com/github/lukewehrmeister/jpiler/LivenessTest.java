@@ -0,0 +1,89 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LivenessTest {
+
+    static IrFunction function(String source, String name) {
+        IrModule module = Main.compileToModule(source, new ArrayList<>());
+        assertNotNull(module);
+        for (IrFunction function : module.getFunctions()) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        throw new AssertionError("No function " + name);
+    }
+
+    static final String LOOP = """
+        class Loops {
+            int sumTo(int n) {
+                int sum = 0;
+                for (int i = 1; i <= n; i++) {
+                    sum = sum + i;
+                }
+                return sum;
+            }
+        }
+        """;
+
+    @Test
+    void testLoopCarriedSlotsAreLiveAroundTheLoop() {
+        IrFunction function = function(LOOP, "sumTo");
+        Liveness liveness = new Liveness(function);
+        IrBlock cond = function.getBlocks().get(1);
+        IrBlock end = function.getBlocks().get(function.getBlocks().size() - 1);
+
+        assertEquals(Set.of(IrValue.register("n.addr"), IrValue.register("sum"), IrValue.register("i")),
+                liveness.getLiveIn(cond));
+        assertEquals(Set.of(IrValue.register("sum")), liveness.getLiveIn(end));
+        assertEquals(Set.of(), liveness.getLiveOut(end));
+        //The parameter is copied to its slot on entry and never read again
+        assertEquals(Set.of(IrValue.register("n")), liveness.getLiveIn(function.getEntryBlock()));
+    }
+
+    @Test
+    void testIntervalsCoverDefinitionToLastUse() {
+        IrFunction function = function("""
+            class Math {
+                int f(int a) {
+                    int x = a + 1;
+                    return x * 2;
+                }
+            }
+            """, "f");
+        Liveness liveness = new Liveness(function);
+        for (Liveness.Interval interval : liveness.getIntervals()) {
+            assertTrue(interval.getStart() <= interval.getEnd(), interval.toString());
+            if (interval.getValue().equals(IrValue.register("t0"))) {
+                //%t0 = load a.addr, then %t1 = add %t0, 1: defined at one instruction, dead after the next
+                assertEquals(interval.getStart() + 1, interval.getEnd());
+            }
+        }
+        assertEquals(0, liveness.getIntervals().get(0).getStart());
+    }
+
+    @Test
+    void testInstructionsAfterATerminatorAreIgnored() {
+        IrFunction function = function("""
+            class A {
+                int f(int a) {
+                    if (a > 0) {
+                        return 1;
+                    }
+                    return 2;
+                }
+            }
+            """, "f");
+        Liveness liveness = new Liveness(function);
+        IrBlock then = function.getBlocks().get(1);
+        assertEquals(IrOpcode.RET, then.getInstructions().get(0).getOpcode());
+        assertEquals(1, liveness.getInstructions(then).size());
+        assertEquals(Set.of(), liveness.getLiveOut(then));
+    }
+}
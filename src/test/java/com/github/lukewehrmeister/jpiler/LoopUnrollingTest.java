@@ -0,0 +1,139 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.function;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopUnrollingTest {
+    private static final String LOOPS = """
+        class U {
+            int small(int x) {
+                int s = 0;
+                for (int i = 0; i < 4; i++) {
+                    s = s + x * i;
+                }
+                return s;
+            }
+            int nested(int n) {
+                int s = 0;
+                for (int j = 0; j < n; j++) {
+                    int i = 10;
+                    while (i > 0) {
+                        s = s + i * j;
+                        i = i - 3;
+                    }
+                }
+                return s;
+            }
+            int big(int x) {
+                int s = 0;
+                for (int i = 0; i < 1003; i = i + 1) {
+                    s = s + x * i;
+                }
+                return s;
+            }
+            int never(int x) {
+                for (int i = 5; i < 5; i++) {
+                    x = x + 1;
+                }
+                return x;
+            }
+            int unknown(int n) {
+                int s = 0;
+                for (int i = 0; i < n; i++) {
+                    s = s + i;
+                }
+                for (int i = 0; i < 8; i++) {
+                    i = i + s;
+                }
+                return s;
+            }
+            int span(int a, int b) {
+                int s = 0;
+                for (int i = a; i <= b; i = i + 2) {
+                    s = s + 1;
+                }
+                return s;
+            }
+        }
+        """;
+
+    private static int run(IrModule module, String name, int... arguments) {
+        return IrTestSupport.run(module, "U", name, arguments);
+    }
+
+    @Test
+    void testFullyUnrollsSmallConstantLoops() {
+        IrModule original = compile(LOOPS);
+        IrModule module = compile(LOOPS);
+        LoopUnrolling unrolling = new LoopUnrolling();
+        assertTrue(unrolling.run(function(module, "small"), new AnalysisManager()));
+        assertTrue(unrolling.run(function(module, "nested"), new AnalysisManager()));
+        assertTrue(unrolling.run(function(module, "never"), new AnalysisManager()));
+        for (int x : new int[] {0, 3, -7}) {
+            assertEquals(run(original, "small", x), run(module, "small", x));
+            assertEquals(run(original, "nested", x), run(module, "nested", x));
+            assertEquals(run(original, "never", x), run(module, "never", x));
+        }
+
+        //Only the header's own test is left, and it always exits
+        new CfgSimplification().run(function(module, "small"));
+        new SparseConditionalConstantPropagation().run(function(module, "small"));
+        new CfgSimplification().run(function(module, "small"));
+        String small = IrPrinter.print(function(module, "small"));
+        assertFalse(small.contains("br i1"), small);
+        assertEquals(4, small.split("mul i32").length - 1, small);
+        assertFalse(IrPrinter.print(function(module, "never")).contains("add i32"));
+        //The outer loop stays, the inner one runs i = 10, 7, 4, 1 in a row
+        String nested = IrPrinter.print(function(module, "nested"));
+        assertEquals(1, nested.split("br i1").length - 1, nested);
+        assertTrue(nested.contains(".u3"), nested);
+    }
+
+    @Test
+    void testPartiallyUnrollsWithinTheBudget() {
+        IrModule original = compile(LOOPS);
+        IrModule module = compile(LOOPS);
+        IrFunction big = function(module, "big");
+        assertTrue(new LoopUnrolling(4, 200).run(big, new AnalysisManager()));
+        String ir = IrPrinter.print(big);
+        //1003 = 3 peeled iterations + 250 rounds of 4, each round testing the condition once
+        assertEquals(3 + 1 + 3, ir.split("icmp slt").length - 1, ir);
+        assertEquals(1, ir.split("br i1").length - 1, ir);
+        for (int x : new int[] {0, 1, 12345}) {
+            assertEquals(run(original, "big", x), run(module, "big", x));
+        }
+
+        //No room for even two bodies
+        assertFalse(new LoopUnrolling(4, 4).run(function(compile(LOOPS), "big"),
+                new AnalysisManager()));
+        assertThrows(IllegalArgumentException.class, () -> new LoopUnrolling(0, 10));
+    }
+
+    @Test
+    void testUnrollsLoopsWithARunTimeBound() {
+        IrModule original = compile(LOOPS);
+        IrModule module = compile(LOOPS);
+        //The first loop gets a main loop of four bodies in front; the second stores to its counter in the body
+        IrFunction unknown = function(module, "unknown");
+        assertTrue(new LoopUnrolling().run(unknown, new AnalysisManager()));
+        String ir = IrPrinter.print(unknown);
+        long sums = ir.lines().filter(line -> line.trim().startsWith("store") && line.endsWith("i32* %s")).count();
+        assertEquals(1 + 4 + 1, sums, ir);
+        assertEquals(3 + 1, ir.split("br i1").length - 1, ir);
+        for (int n : new int[] {0, 1, 3, 4, 1003, -5}) {
+            assertEquals(run(original, "unknown", n), run(module, "unknown", n), "unknown(" + n + ")");
+        }
+
+        //Bounds where taking the reach off, or adding it to the counter, would overflow
+        assertTrue(new LoopUnrolling().run(function(module, "span"), new AnalysisManager()));
+        int[][] spans = {{0, 0}, {0, 7}, {-3, 100}, {Integer.MIN_VALUE, Integer.MIN_VALUE + 5},
+                {Integer.MAX_VALUE - 20, Integer.MAX_VALUE - 1}, {5, 4}};
+        for (int[] span : spans) {
+            assertEquals(run(original, "span", span), run(module, "span", span), span[0] + ".." + span[1]);
+        }
+        assertEquals(IrPrinter.print(module), IrPrinter.print(IrParser.parse(IrPrinter.print(module))));
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopsTest {
+
+    private static Loops loops(IrFunction function) {
+        Cfg cfg = new Cfg(function);
+        return new Loops(cfg, new Dominators(cfg));
+    }
+
+    @Test
+    void testNestedLoopsFromSource() {
+        IrFunction f = LivenessTest.function("""
+            class A {
+                int grid(int n) {
+                    int sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        int j = 0;
+                        while (j < i) {
+                            sum = sum + j;
+                            j++;
+                        }
+                    }
+                    return sum;
+                }
+            }
+            """, "grid");
+        Loops loops = loops(f);
+        assertEquals(2, loops.getLoops().size());
+        Loops.Loop outer = loops.getLoops().get(0);
+        Loops.Loop inner = loops.getLoops().get(1);
+        assertNull(outer.getParent());
+        assertSame(outer, inner.getParent());
+        assertEquals(2, inner.getDepth());
+        assertTrue(outer.getBlocks().containsAll(inner.getBlocks()));
+        assertEquals(1, outer.getLatches().size());
+
+        assertEquals(0, loops.getDepth(f.getEntryBlock()));
+        assertSame(inner, loops.getLoopFor(inner.getHeader()));
+        IrBlock last = f.getBlocks().get(f.getBlocks().size() - 1);
+        assertNull(loops.getLoopFor(last));
+    }
+
+    @Test
+    void testDoWhileIsOneLoop() {
+        IrFunction f = LivenessTest.function("""
+            class A {
+                int count(int n) {
+                    int runs = 0;
+                    do {
+                        runs = runs + 1;
+                    } while (runs < n);
+                    return runs;
+                }
+            }
+            """, "count");
+        Loops loops = loops(f);
+        assertEquals(1, loops.getLoops().size());
+        List<String> labels = new ArrayList<>();
+        for (IrBlock block : loops.getLoops().get(0).getBlocks()) {
+            labels.add(block.getLabel());
+        }
+        assertFalse(labels.contains(null));
+        assertEquals(0, loops.getDepth(f.getEntryBlock()));
+    }
+
+    @Test
+    void testStraightLineCodeHasNoLoops() {
+        IrFunction f = IrParser.parse(DominatorsTest.DIAMOND).getFunctions().get(0);
+        assertTrue(loops(f).getLoops().isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameTableTest {
+
+    @Test
+    void testInternReturnsDenseStableIds() {
+        NameTable names = new NameTable();
+        int x = names.intern("x");
+        int y = names.intern("y");
+
+        assertEquals(0, x);
+        assertEquals(1, y);
+        assertEquals(x, names.intern(new StringBuilder("x")));
+        assertEquals("y", names.name(y));
+        assertEquals(2, names.size());
+
+        int[] text = "a x xy".codePoints().toArray();
+        assertEquals(x, names.intern(text, 2, 3));
+        assertEquals(2, names.intern(text, 4, 6));
+        assertEquals(2, names.intern("xy"));
+    }
+
+    @Test
+    void testInternSurvivesRehash() {
+        NameTable names = new NameTable();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, names.intern("name" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, names.intern("name" + i));
+            assertEquals("name" + i, names.name(i));
+        }
+    }
+
+    @Test
+    void testLexerInternsIdentifiers() {
+        NameTable names = new NameTable();
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString("int count = count + other;"));
+        lexer.setTokenFactory(new InterningTokenFactory(names));
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+
+        assertTrue(tokens.get(1) instanceof IdentifierToken);
+        assertTrue(tokens.get(3) instanceof IdentifierToken);
+        assertEquals(((IdentifierToken) tokens.get(1)).getNameId(), ((IdentifierToken) tokens.get(3)).getNameId());
+        assertEquals("count", tokens.get(1).getText());
+        assertSame(tokens.get(1).getText(), tokens.get(3).getText());
+        assertEquals(2, names.size());
+        assertEquals(JavaSubsetLexer.INT, tokens.get(0).getType());
+        assertFalse(tokens.get(0) instanceof IdentifierToken);
+    }
+
+    @Test
+    void testIdOfFallsBackForPlainTokens() {
+        NameTable names = new NameTable();
+        Token plain = CommonTokenFactory.DEFAULT.create(JavaSubsetLexer.IDENTIFIER, "total");
+
+        assertEquals(names.intern("total"), names.idOf(plain));
+    }
+}
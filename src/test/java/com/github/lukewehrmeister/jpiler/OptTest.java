@@ -0,0 +1,67 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testOptimizesSavedIr() throws IOException {
+        Path input = dir.resolve("in.ir.txt");
+        Path output = dir.resolve("out.ir.txt");
+        Files.writeString(input, IrPrinter.print(compile(Files.readString(Path.of("input.java")))));
+        assertEquals(0, Opt.run(new String[] {input.toString(), output.toString()}));
+        //compute only stores to locals nobody reads again
+        assertTrue(Files.readString(output).contains("define void @compute() {\n}\n"));
+        String optimized = Files.readString(output);
+        assertEquals(0, Opt.run(new String[] {"-threads=2", input.toString(), output.toString()}));
+        assertEquals(optimized, Files.readString(output));
+        assertEquals(0, Opt.run(new String[] {"--frame-sizes", "-passes=stackcolor", input.toString(), output.toString()}));
+        assertEquals(0, Opt.run(new String[] {"-passes=forward,constfold", input.toString(), output.toString()}));
+        assertTrue(Files.readString(output).contains("store i32 12, i32* %x"));
+
+        assertEquals(0, Opt.run(new String[] {"-passes=", input.toString(), output.toString()}));
+        assertEquals(Files.readString(input), Files.readString(output));
+    }
+
+    @Test
+    void testReadsAndWritesBinaryIr() throws IOException {
+        Path input = dir.resolve("in.irb");
+        Path output = dir.resolve("out.irb");
+        IrModule module = compile(SideTableBenchmark.generateProgram(5));
+        IrBinary.write(module, input);
+        assertEquals(0, Opt.run(new String[] {"-passes=constfold,dce", input.toString(), output.toString()}));
+
+        //Optimized code computes the same results
+        try (IrInterpreter before = new IrInterpreter(module);
+             IrInterpreter after = new IrInterpreter(IrBinary.map(output).readModule())) {
+            for (int m = 0; m < 5; m++) {
+                for (int a = -3; a < 30; a += 4) {
+                    assertEquals(before.invoke("Big", "m" + m, a, 2), after.invoke("Big", "m" + m, a, 2));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRejectsBadArguments() throws IOException {
+        Path input = dir.resolve("bad.ir.txt");
+        Files.writeString(input, "define void @f() {\n}\n");
+        assertEquals(1, Opt.run(new String[] {"only-one"}));
+        assertEquals(1, Opt.run(new String[] {"-passes=inline", input.toString(), dir.resolve("o").toString()}));
+        assertEquals(1, Opt.run(new String[] {"-threads=0", input.toString(), dir.resolve("o").toString()}));
+        assertEquals(1, Opt.run(new String[] {"-threads=many", input.toString(), dir.resolve("o").toString()}));
+        assertEquals(2, Opt.run(new String[] {input.toString(), dir.resolve("o").toString()}));
+        assertEquals(3, Opt.run(new String[] {dir.resolve("missing").toString(), dir.resolve("o").toString()}));
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+
+/**
+ * Wall time of the -O2 pipeline over a big generated class, with function passes on one
+ * thread and on pools of increasing size. Every run checks that the optimized IR matches
+ * the sequential one.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.ParallelPassBenchmark
+ */
+public class ParallelPassBenchmark {
+    private static final int METHODS = 4000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        String source = PassManagerTest.foldableProgram(METHODS);
+        String expected = null;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(METHODS + " methods, " + cores + " cores");
+        for (int round = 0; round < ROUNDS; round++) {
+            //Warm up both the sequential and the fork-join paths
+            try (PassManager manager = PassManager.forLevel(2).setThreads(1 + round % 2)) {
+                manager.run(Main.compileToModule(source, new ArrayList<>()));
+            }
+        }
+        for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                IrModule module = Main.compileToModule(source, new ArrayList<>());
+                try (PassManager manager = PassManager.forLevel(2).setThreads(threads)) {
+                    long start = System.nanoTime();
+                    manager.run(module);
+                    best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                }
+                String ir = IrPrinter.print(module);
+                if (expected == null) {
+                    expected = ir;
+                } else if (!expected.equals(ir)) {
+                    throw new AssertionError("Parallel output differs with " + threads + " threads");
+                }
+            }
+            System.out.printf("  %2d threads: %8.2f ms%n", threads, best);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassManagerTest {
+
+    //A pass that asks for an analysis of every function and optionally changes the code
+    private static final class Probe implements FunctionPass {
+        final AnalysisManager.Analysis<?> analysis;
+        final boolean change;
+        final boolean keepsCfg;
+
+        Probe(AnalysisManager.Analysis<?> analysis, boolean change, boolean keepsCfg) {
+            this.analysis = analysis;
+            this.change = change;
+            this.keepsCfg = keepsCfg;
+        }
+
+        @Override
+        public String getName() {
+            return "probe";
+        }
+
+        @Override
+        public boolean preservesCfg() {
+            return keepsCfg;
+        }
+
+        @Override
+        public boolean run(IrFunction function, AnalysisManager analyses) {
+            analyses.get(analysis, function);
+            return change;
+        }
+    }
+
+    private static IrModule module() {
+        return compile(SideTableBenchmark.generateProgram(4));
+    }
+
+    @Test
+    void testAnalysesAreCachedUntilAPassChangesCode() {
+        AnalysisManager.Analysis<?> loops = AnalysisManager.Analysis.LOOPS;
+        PassManager manager = new PassManager(List.of(new Probe(loops, false, false), new Probe(loops, false, false)));
+        manager.run(module());
+        AnalysisManager analyses = manager.getAnalyses();
+        assertEquals(4, analyses.getComputeCount(loops));
+        //Loops asked for dominators, which asked for the CFG, once per function each
+        assertEquals(4, analyses.getComputeCount(AnalysisManager.Analysis.DOMINATORS));
+        assertEquals(4, analyses.getComputeCount(AnalysisManager.Analysis.CFG));
+
+        manager = new PassManager(List.of(new Probe(loops, true, false), new Probe(loops, false, false)));
+        manager.run(module());
+        assertEquals(8, manager.getAnalyses().getComputeCount(loops));
+        assertEquals(8, manager.getAnalyses().getComputeCount(AnalysisManager.Analysis.CFG));
+    }
+
+    @Test
+    void testCfgPreservingPassesKeepCfgAnalyses() {
+        AnalysisManager.Analysis<?> dominators = AnalysisManager.Analysis.DOMINATORS;
+        AnalysisManager.Analysis<?> liveness = AnalysisManager.Analysis.LIVENESS;
+        PassManager manager = new PassManager(List.of(new Probe(dominators, true, true), new Probe(liveness, true, true),
+                new Probe(dominators, false, true), new Probe(liveness, false, true)));
+        manager.run(module());
+        assertEquals(4, manager.getAnalyses().getComputeCount(dominators));
+        assertEquals(8, manager.getAnalyses().getComputeCount(liveness));
+    }
+
+    @Test
+    void testLevelsTradeWorkForCode() {
+        assertTrue(PassManager.forLevel(0).getPasses().isEmpty());
+        assertTrue(PassManager.forLevel(1).getPasses().size() < PassManager.forLevel(2).getPasses().size());
+        assertThrows(IllegalArgumentException.class, () -> PassManager.forLevel(3));
+
+        String source = """
+            class A {
+                int k = 6;
+
+                int f(int x) {
+                    int y = 2 * 3;
+                    return x + y * k;
+                }
+            }
+            """;
+        String o0 = IrPrinter.print(optimize(source, 0));
+        String o1 = IrPrinter.print(optimize(source, 1));
+        String o2 = IrPrinter.print(optimize(source, 2));
+        assertEquals(IrPrinter.print(compile(source)), o0);
+        assertTrue(o1.length() < o0.length());
+        assertTrue(o2.length() < o1.length());
+        for (String level : List.of(o0, o1, o2)) {
+            assertEquals(41, run(IrParser.parse(level), "A", "f", 5));
+        }
+    }
+
+    private static IrModule optimize(String source, int level) {
+        IrModule module = compile(source);
+        PassManager.forLevel(level).run(module);
+        return module;
+    }
+
+    //Methods full of constant arithmetic and dead temporaries, so every pass has work in every function
+    static String foldableProgram(int methods) {
+        StringBuilder source = new StringBuilder("class Wide {\n    int base = 4;\n");
+        for (int m = 0; m < methods; m++) {
+            source.append("    int m").append(m).append("(int x) {\n")
+                    .append("        int a = ").append(m).append(" * 3 + base;\n")
+                    .append("        int b = (a - 2) * (").append(m % 7).append(" + 1);\n")
+                    .append("        if (x > b) {\n            return x - a;\n        }\n")
+                    .append("        return b + x * base;\n    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    @Test
+    void testParallelRunsMatchSequentialOnes() {
+        String source = foldableProgram(200);
+        IrModule sequential = compile(source);
+        IrModule parallel = compile(source);
+        try (PassManager one = PassManager.forLevel(2).setThreads(1);
+             PassManager four = PassManager.forLevel(2).setThreads(4)) {
+            assertTrue(one.run(sequential));
+            assertTrue(four.run(parallel));
+        }
+        assertEquals(IrPrinter.print(sequential), IrPrinter.print(parallel));
+        assertNotEquals(IrPrinter.print(compile(source)), IrPrinter.print(parallel));
+    }
+
+    @Test
+    void testParallelAnalysesAreComputedOncePerFunction() {
+        AnalysisManager.Analysis<?> loops = AnalysisManager.Analysis.LOOPS;
+        try (PassManager manager = new PassManager(List.of(new Probe(loops, false, false), new Probe(loops, false, false)))
+                .setThreads(4)) {
+            IrModule module = compile(foldableProgram(100));
+            int functions = module.getClasses().get(0).getFunctions().size(); //m0..m99 and <clinit>
+            manager.run(module);
+            assertEquals(functions, manager.getAnalyses().getComputeCount(loops));
+            assertEquals(functions, manager.getAnalyses().getComputeCount(AnalysisManager.Analysis.CFG));
+        }
+    }
+
+    @Test
+    void testParallelFailuresReachTheCaller() {
+        FunctionPass broken = new FunctionPass() {
+            @Override
+            public String getName() {
+                return "broken";
+            }
+
+            @Override
+            public boolean run(IrFunction function, AnalysisManager analyses) {
+                if (function.getName().equals("m37")) {
+                    throw new IllegalStateException("m37");
+                }
+                return false;
+            }
+        };
+        IrModule module = compile(foldableProgram(64));
+        try (PassManager manager = new PassManager(List.of(broken)).setThreads(3)) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> manager.run(module));
+            assertTrue(e.getMessage().contains("m37"), e.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> manager.setThreads(0));
+        }
+    }
+
+    @Test
+    void testOwnedPoolsAreShutDown() {
+        PassManager manager = new PassManager(List.of()).setThreads(3);
+        ForkJoinPool first = manager.getPool();
+        manager.setThreads(2);
+        assertTrue(first.isShutdown());
+        ForkJoinPool second = manager.getPool();
+        manager.close();
+        assertTrue(second.isShutdown());
+        assertNull(manager.getPool());
+        //The common pool is shared, so closing leaves it running
+        PassManager shared = new PassManager(List.of());
+        shared.close();
+        assertFalse(ForkJoinPool.commonPool().isShutdown());
+        //Runs after closing stay on the calling thread
+        assertFalse(manager.run(compile(foldableProgram(4))));
+    }
+
+    @Test
+    void testTimingReport() {
+        PassManager manager = PassManager.forLevel(2).setTiming(true);
+        manager.run(module());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        manager.printTimings(new PrintStream(bytes, true));
+        String report = bytes.toString();
+        for (Pass pass : manager.getPasses()) {
+            assertTrue(report.contains(pass.getName()), report);
+        }
+        assertTrue(report.contains("Total"));
+    }
+}
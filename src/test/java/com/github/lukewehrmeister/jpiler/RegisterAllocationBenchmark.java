@@ -0,0 +1,31 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+
+/**
+ * Code quality of the x86-64 output as the register budget shrinks: spilled values,
+ * moves, instructions touching a spill slot, and total instructions, on the generated
+ * workload and on IrInterpreterBenchmark's loop.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.RegisterAllocationBenchmark
+ */
+public class RegisterAllocationBenchmark {
+
+    public static void main(String[] args) {
+        measure("Generated (200 methods)", Main.compileToModule(SideTableBenchmark.generateProgram(200), new ArrayList<>()));
+        measure("Work loop", Main.compileToModule(IrInterpreterBenchmark.PROGRAM, new ArrayList<>()));
+    }
+
+    private static void measure(String label, IrModule module) {
+        System.out.println(label);
+        System.out.printf("  %-9s %8s %8s %14s %12s%n", "registers", "spills", "moves", "spill accesses", "instructions");
+        for (int registers = 1; registers <= X86Emitter.REGISTERS.length; registers++) {
+            X86Emitter emitter = new X86Emitter(registers);
+            emitter.emit(module);
+            System.out.printf("  %-9d %8d %8d %14d %12d%n", registers, emitter.getSpillCount(), emitter.getMoveCount(),
+                    emitter.getSpillAccessCount(), emitter.getInstructionCount());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+import org.antlr.v4.runtime.*;
+
+/**
+ * Compares symbol resolution by walking a Stack of per-scope HashMaps (the previous
+ * implementation) against ScopeChain on deeply nested generated code.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.ScopeChainBenchmark
+ */
+public class ScopeChainBenchmark {
+    private static final int[] DEPTHS = {8, 32, 128, 512};
+    private static final long REFS_PER_ROUND = 4_000_000;
+
+    public static void main(String[] args) {
+        System.out.println("depth  refs      stack-walk ns/ref  scope-chain ns/ref  speedup");
+        for (int depth : DEPTHS) {
+            long refs = (long) depth * (depth + 1) / 2;
+            int iterations = (int) Math.max(10, REFS_PER_ROUND / refs);
+            double stackNs = 0;
+            double chainNs = 0;
+            for (int round = 0; round < 5; round++) {
+                // Earlier rounds are warmup; the last one is reported.
+                stackNs = timeStackWalk(depth, iterations) / (double) (refs * iterations);
+                chainNs = timeScopeChain(depth, iterations) / (double) (refs * iterations);
+            }
+            System.out.printf("%5d  %8d  %17.2f  %18.2f  %6.1fx%n", depth, refs, stackNs, chainNs, stackNs / chainNs);
+        }
+
+        System.out.println();
+        System.out.println("End-to-end SymbolTableVisitor over generated nesting:");
+        for (int depth : DEPTHS) {
+            String code = generateNestedProgram(depth);
+            Ast.CompilationUnit unit = parse(code);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 20; i++) {
+                long start = System.nanoTime();
+                new SymbolTableVisitor().visit(unit);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("  depth %4d: %8.3f ms%n", depth, best / 1e6);
+        }
+    }
+
+    /**
+     * A method whose body nests {@code depth} blocks; block k declares v_k and reads every v_0..v_k.
+     */
+    static String generateNestedProgram(int depth) {
+        StringBuilder sb = new StringBuilder("class Deep {\n  void nest() {\n");
+        for (int d = 0; d < depth; d++) {
+            sb.append("  {\n    int v").append(d).append(" = 0;\n");
+            for (int r = 0; r <= d; r++) {
+                sb.append("    v").append(d).append(" = v").append(r).append(";\n");
+            }
+        }
+        for (int d = 0; d < depth; d++) {
+            sb.append("  }\n");
+        }
+        return sb.append("  }\n}\n").toString();
+    }
+
+    private static Ast.CompilationUnit parse(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        return new AstBuilder(new NameTable()).build(parser.compilationUnit());
+    }
+
+    private static String[] names(int depth) {
+        String[] names = new String[depth];
+        for (int d = 0; d < depth; d++) {
+            names[d] = "v" + d;
+        }
+        return names;
+    }
+
+    private static long timeStackWalk(int depth, int iterations) {
+        String[] names = names(depth);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            Stack<Map<String, Symbol>> scopes = new Stack<>();
+            for (int d = 0; d < depth; d++) {
+                Map<String, Symbol> table = new HashMap<>();
+                table.put(names[d], new Symbol(d, SemanticType.INT, SymbolKind.VARIABLE, true));
+                scopes.push(table);
+                for (int r = 0; r <= d; r++) {
+                    for (int i = scopes.size() - 1; i >= 0; --i) {
+                        Symbol sym = scopes.get(i).get(names[r]);
+                        if (sym != null) {
+                            sink += sym.hashCode();
+                            break;
+                        }
+                    }
+                }
+            }
+            while (!scopes.isEmpty()) {
+                scopes.pop();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+
+    private static long timeScopeChain(int depth, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            ScopeChain scopes = new ScopeChain();
+            for (int d = 0; d < depth; d++) {
+                scopes.push(new SymbolTable());
+                scopes.declare(d, new Symbol(d, SemanticType.INT, SymbolKind.VARIABLE, true));
+                for (int r = 0; r <= d; r++) {
+                    sink += scopes.resolve(r).hashCode();
+                }
+            }
+            while (!scopes.isEmpty()) {
+                scopes.pop();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScopeChainTest {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    private static Symbol var(int nameId) {
+        return new Symbol(nameId, SemanticType.INT, SymbolKind.VARIABLE, true);
+    }
+
+    @Test
+    void testResolveFindsOuterScopes() {
+        ScopeChain scopes = new ScopeChain();
+        scopes.push(new SymbolTable());
+        Symbol x = var(X);
+        scopes.declare(X, x);
+        scopes.push(new SymbolTable());
+        scopes.push(new SymbolTable());
+
+        assertSame(x, scopes.resolve(X));
+        assertNull(scopes.resolve(Y));
+        assertFalse(scopes.isDeclaredInCurrentScope(X));
+    }
+
+    @Test
+    void testPopRestoresShadowedBinding() {
+        ScopeChain scopes = new ScopeChain();
+        scopes.push(new SymbolTable());
+        Symbol outer = var(X);
+        scopes.declare(X, outer);
+
+        scopes.push(new SymbolTable());
+        Symbol inner = var(X);
+        scopes.declare(X, inner);
+        scopes.declare(Y, var(Y));
+        assertSame(inner, scopes.resolve(X));
+        assertTrue(scopes.isDeclaredInCurrentScope(X));
+
+        SymbolTable popped = scopes.pop();
+        assertSame(inner, popped.get(X));
+        assertSame(outer, scopes.resolve(X));
+        assertNull(scopes.resolve(Y));
+        assertTrue(scopes.isDeclaredInCurrentScope(X));
+    }
+
+    @Test
+    void testPopOnEmptyChainThrows() {
+        assertThrows(IllegalStateException.class, () -> new ScopeChain().pop());
+    }
+
+    @Test
+    void testDeepNestingGrowsMarks() {
+        ScopeChain scopes = new ScopeChain();
+        for (int d = 0; d < 100; d++) {
+            scopes.push(new SymbolTable());
+            scopes.declare(d, var(d));
+        }
+        assertEquals(100, scopes.depth());
+        assertNotNull(scopes.resolve(0));
+        for (int d = 0; d < 100; d++) {
+            scopes.pop();
+        }
+        assertNull(scopes.resolve(0));
+        assertTrue(scopes.isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticAnnotationsTest {
+
+    private static Ast.CompilationUnit lower(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        return new AstBuilder(new NameTable()).build(parser.compilationUnit());
+    }
+
+    @Test
+    void testTablesAreSizedToTheTree() {
+        Ast.CompilationUnit unit = lower("class A { void f() { int x = 1; } }");
+        SymbolTableVisitor visitor = new SymbolTableVisitor();
+        visitor.visit(unit);
+
+        assertEquals(unit.getNodeCount(), visitor.getAnnotations().getNodeCount());
+    }
+
+    @Test
+    void testScopesAndSymbolsLandOnTheirNodes() {
+        Ast.CompilationUnit unit = lower("class A { void f(int p) { int x = p; } }");
+        SymbolTableVisitor visitor = new SymbolTableVisitor();
+        visitor.visit(unit);
+        SemanticAnnotations annotations = visitor.getAnnotations();
+        NameTable names = unit.getNames();
+
+        Ast.ClassDeclaration cls = unit.getClasses().get(0);
+        Ast.MethodDeclaration method = (Ast.MethodDeclaration) cls.getMembers().get(0);
+        Ast.VariableDeclaration decl = (Ast.VariableDeclaration) method.getBody().getStatements().get(0);
+        Ast.Declarator x = decl.getDeclarators().get(0);
+        Ast.Name p = (Ast.Name) x.getInitializer();
+
+        assertNotNull(annotations.getTable(unit));
+        assertEquals("A", names.name(annotations.getSymbol(cls).getNameId()));
+        assertSame(annotations.getSymbol(method.getParameters().get(0)), annotations.getSymbol(p));
+        assertEquals(x.getNameId(), annotations.getSymbol(x).getNameId());
+        assertSame(annotations.getSymbol(x), annotations.getTable(method.getBody()).get(x.getNameId()));
+        assertNull(annotations.getTable(x));
+    }
+
+    @Test
+    void testUnannotatedNodesReadAsNull() {
+        Ast.CompilationUnit unit = lower("class A { int f() { return 1 + 2; } }");
+        SemanticAnnotations annotations = new SemanticAnnotations(unit.getNodeCount());
+
+        assertNull(annotations.getSymbol(unit));
+        assertNull(annotations.getTable(unit.getClasses().get(0)));
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.antlr.v4.runtime.*;
+
+/**
+ * Measures the semantic side tables handed from SymbolTableVisitor to IRGeneratorVisitor:
+ * a pair of HashMap&lt;Ast.Node, ...&gt; against SemanticAnnotations' dense arrays,
+ * holding exactly the same entries.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.SideTableBenchmark
+ */
+public class SideTableBenchmark {
+    private static final int METHODS = 2000;
+    private static final int COPIES = 20;
+    private static final int LOOKUP_ROUNDS = 200;
+
+    public static void main(String[] args) {
+        Ast.CompilationUnit unit = parse(generateProgram(METHODS));
+        SymbolTableVisitor visitor = new SymbolTableVisitor();
+        visitor.visit(unit);
+
+        SemanticAnnotations annotations = visitor.getAnnotations();
+        List<Ast.Node> annotated = new ArrayList<>();
+        collectAnnotated(unit, annotations, annotated);
+        System.out.println("Annotated nodes: " + annotated.size() + " (of " + unit.getNodeCount() + " AST nodes)");
+
+        SymbolTable[] tables = new SymbolTable[annotated.size()];
+        Symbol[] symbols = new Symbol[annotated.size()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = annotations.getTable(annotated.get(i));
+            symbols[i] = annotations.getSymbol(annotated.get(i));
+        }
+
+        long mapBytes = retainedBytes(() -> buildMaps(annotated, tables, symbols));
+        long denseBytes = retainedBytes(() -> buildDense(annotated, tables, symbols));
+        System.out.printf("Retained memory   HashMap pair: %8.1f KB   dense arrays: %8.1f KB%n",
+                mapBytes / 1024.0, denseBytes / 1024.0);
+
+        MapPair maps = buildMaps(annotated, tables, symbols);
+        SemanticAnnotations dense = (SemanticAnnotations) buildDense(annotated, tables, symbols);
+
+        double mapNs = 0;
+        double denseNs = 0;
+        for (int round = 0; round < 5; round++) {
+            mapNs = timeMapLookups(annotated, maps);
+            denseNs = timeDenseLookups(annotated, dense);
+        }
+        System.out.printf("Lookup (ns/node)  HashMap pair: %8.2f      dense arrays: %8.2f%n", mapNs, denseNs);
+    }
+
+    //The two HashMaps the side tables replaced, one per kind of annotation
+    private record MapPair(Map<Ast.Node, Object> tables, Map<Ast.Node, Object> symbols) {
+    }
+
+    private static MapPair buildMaps(List<Ast.Node> nodes, SymbolTable[] tables, Symbol[] symbols) {
+        Map<Ast.Node, Object> tableForContext = new HashMap<>();
+        Map<Ast.Node, Object> symbolMap = new HashMap<>();
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null) {
+                tableForContext.put(nodes.get(i), tables[i]);
+            }
+            if (symbols[i] != null) {
+                symbolMap.put(nodes.get(i), symbols[i]);
+            }
+        }
+        return new MapPair(tableForContext, symbolMap);
+    }
+
+    private static Object buildDense(List<Ast.Node> nodes, SymbolTable[] tables, Symbol[] symbols) {
+        SemanticAnnotations dense = new SemanticAnnotations(nodeCount(nodes));
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null) {
+                dense.setTable(nodes.get(i), tables[i]);
+            }
+            if (symbols[i] != null) {
+                dense.setSymbol(nodes.get(i), symbols[i]);
+            }
+        }
+        return dense;
+    }
+
+    private static int nodeCount(List<Ast.Node> nodes) {
+        int max = 0;
+        for (Ast.Node node : nodes) {
+            max = Math.max(max, node.getId() + 1);
+        }
+        return max;
+    }
+
+    private static double timeMapLookups(List<Ast.Node> nodes, MapPair maps) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            for (Ast.Node node : nodes) {
+                Object table = maps.tables().get(node);
+                Object symbol = maps.symbols().get(node);
+                sink += (table == null ? 0 : 1) + (symbol == null ? 0 : 2);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return report(elapsed, sink, nodes.size());
+    }
+
+    private static double timeDenseLookups(List<Ast.Node> nodes, SemanticAnnotations dense) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            for (Ast.Node node : nodes) {
+                Object table = dense.getTable(node);
+                Object symbol = dense.getSymbol(node);
+                sink += (table == null ? 0 : 1) + (symbol == null ? 0 : 2);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return report(elapsed, sink, nodes.size());
+    }
+
+    private static double report(long elapsed, long sink, int nodes) {
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed / (double) ((long) nodes * LOOKUP_ROUNDS);
+    }
+
+    /**
+     * Heap retained by COPIES instances of what {@code factory} builds, per instance.
+     */
+    private static long retainedBytes(Supplier<Object> factory) {
+        Object[] keep = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            keep[i] = factory.get();
+        }
+        long after = usedHeap();
+        if (keep[COPIES - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / COPIES;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void collectAnnotated(Ast.Node node, SemanticAnnotations annotations, List<Ast.Node> out) {
+        if (node == null) {
+            return;
+        }
+        if (annotations.getTable(node) != null || annotations.getSymbol(node) != null) {
+            out.add(node);
+        }
+        if (node instanceof Ast.CompilationUnit unit) {
+            unit.getClasses().forEach(c -> collectAnnotated(c, annotations, out));
+        } else if (node instanceof Ast.ClassDeclaration cls) {
+            cls.getMembers().forEach(m -> collectAnnotated(m, annotations, out));
+        } else if (node instanceof Ast.MethodDeclaration method) {
+            method.getParameters().forEach(p -> collectAnnotated(p, annotations, out));
+            collectAnnotated(method.getBody(), annotations, out);
+        } else if (node instanceof Ast.VariableDeclaration decl) {
+            decl.getDeclarators().forEach(d -> collectAnnotated(d, annotations, out));
+        } else if (node instanceof Ast.Declarator declarator) {
+            collectAnnotated(declarator.getInitializer(), annotations, out);
+        } else if (node instanceof Ast.Block block) {
+            block.getStatements().forEach(st -> collectAnnotated(st, annotations, out));
+        } else if (node instanceof Ast.ExpressionStatement stmt) {
+            collectAnnotated(stmt.getExpression(), annotations, out);
+        } else if (node instanceof Ast.If ifNode) {
+            collectAnnotated(ifNode.getCondition(), annotations, out);
+            collectAnnotated(ifNode.getThenBlock(), annotations, out);
+            collectAnnotated(ifNode.getElseBranch(), annotations, out);
+        } else if (node instanceof Ast.While whileNode) {
+            collectAnnotated(whileNode.getCondition(), annotations, out);
+            collectAnnotated(whileNode.getBody(), annotations, out);
+        } else if (node instanceof Ast.For forNode) {
+            collectAnnotated(forNode.getInitDeclaration(), annotations, out);
+            collectAnnotated(forNode.getCondition(), annotations, out);
+            forNode.getUpdates().forEach(u -> collectAnnotated(u, annotations, out));
+            collectAnnotated(forNode.getBody(), annotations, out);
+        } else if (node instanceof Ast.Return ret) {
+            collectAnnotated(ret.getValue(), annotations, out);
+        } else if (node instanceof Ast.Assignment assignment) {
+            collectAnnotated(assignment.getValue(), annotations, out);
+        } else if (node instanceof Ast.Binary binary) {
+            collectAnnotated(binary.getLeft(), annotations, out);
+            collectAnnotated(binary.getRight(), annotations, out);
+        } else if (node instanceof Ast.Postfix postfix) {
+            collectAnnotated(postfix.getOperand(), annotations, out);
+        }
+    }
+
+    static String generateProgram(int methods) {
+        StringBuilder sb = new StringBuilder("class Big {\n");
+        for (int m = 0; m < methods; m++) {
+            sb.append("  int m").append(m).append("(int a, int b) {\n")
+              .append("    int sum = 0;\n")
+              .append("    for (int i = 0; i < a; i++) {\n")
+              .append("      int t = i * b + 3;\n")
+              .append("      if (t > 10) { sum = sum + t; } else { sum = sum - 1; }\n")
+              .append("    }\n")
+              .append("    while (sum > 100) { sum = sum / 2; }\n")
+              .append("    return sum;\n")
+              .append("  }\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private static Ast.CompilationUnit parse(String code) {
+        JavaSubsetLexer lexer = new JavaSubsetLexer(CharStreams.fromString(code));
+        JavaSubsetParser parser = new JavaSubsetParser(new CommonTokenStream(lexer));
+        return new AstBuilder(new NameTable()).build(parser.compilationUnit());
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseConditionalConstantPropagationTest {
+
+    @Test
+    void testResolvesBranchesOnConstantLocals() {
+        IrModule module = compile("""
+            class A {
+                int f() {
+                    int x = 5;
+                    int y = 0;
+                    if (x > 3) {
+                        y = x * 2;
+                    } else {
+                        y = 1;
+                    }
+                    return y + 1;
+                }
+            }
+            """);
+        IrFunction function = module.getFunctions().get(0);
+        assertTrue(new SparseConditionalConstantPropagation().run(function));
+        String ir = IrPrinter.print(function);
+        assertFalse(ir.contains("icmp"), ir);
+        assertFalse(ir.contains("else"), ir);
+        assertFalse(ir.contains("load"), ir);
+        assertTrue(ir.contains("ret i32 11"), ir);
+        assertEquals(11, run(module, "A", "f"));
+        assertFalse(new SparseConditionalConstantPropagation().run(function));
+    }
+
+    @Test
+    void testKeepsValuesChangedInLoopsAndDropsArmsInside() {
+        String source = """
+            class A {
+                int f(int n) {
+                    int limit = 5;
+                    int sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (limit > 10) {
+                            sum = sum + 100;
+                        } else {
+                            sum = sum + limit;
+                        }
+                    }
+                    return sum;
+                }
+            }
+            """;
+        IrModule module = compile(source);
+        IrFunction function = module.getFunctions().get(0);
+        assertTrue(new SparseConditionalConstantPropagation().run(function));
+        String ir = IrPrinter.print(function);
+        assertFalse(ir.contains("100"), ir);
+        //The loop condition and sum still depend on n
+        assertTrue(ir.contains("icmp slt"), ir);
+        assertTrue(ir.contains("add i32 %t"), ir);
+        for (int n = 0; n < 4; n++) {
+            assertEquals(5 * n, run(module, "A", "f", n));
+        }
+    }
+
+    @Test
+    void testRemovesBranchesOnConfigurationFieldsAtO2() {
+        IrModule module = compile("""
+            class Config {
+                boolean verbose = false;
+                int level = 2;
+                int f(int x) {
+                    if (verbose) {
+                        x = x * 1000;
+                    }
+                    while (level > 3) {
+                        x = x - 1;
+                    }
+                    return x + level;
+                }
+            }
+            """);
+        PassManager.forLevel(2).run(module);
+        String ir = IrPrinter.print(module.getClasses().get(0).getFunctions().get(0));
+        assertFalse(ir.contains("br i1"), ir);
+        assertFalse(ir.contains("1000"), ir);
+        assertEquals(9, run(module, "Config", "f", 7));
+    }
+
+    @Test
+    void testLeavesUnknownAndUnsafeValues() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define i32 @f(i32 %x) {
+              %slot = alloca i32
+              %t0 = load i32, i32* %slot
+              %t1 = sdiv i32 7, %t0
+              %t2 = load i32, i32* @g
+              %t3 = add i32 %t2, %x
+              br i1 false, label %dead, label %live
+            dead:
+              ret i32 %t1
+            live:
+              ret i32 %t3
+            }
+            """).getFunctions().get(0);
+        assertTrue(new SparseConditionalConstantPropagation().run(function));
+        assertEquals("""
+            define i32 @f(i32 %x) {
+              %slot = alloca i32
+              %t1 = sdiv i32 7, 0
+              %t2 = load i32, i32* @g
+              %t3 = add i32 %t2, %x
+              br label %live
+            live:
+              ret i32 %t3
+            }
+
+            """, IrPrinter.print(function));
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StackSlotColoringTest {
+    private static final String SIBLINGS = """
+        class Siblings {
+            int f(int n) {
+                int total = 0;
+                if (n > 3) {
+                    int a = n * 2;
+                    total = total + a;
+                } else {
+                    int b = n + 7;
+                    total = total + b;
+                }
+                for (int i = 0; i < n; i++) {
+                    int c = i;
+                    total = total + c;
+                }
+                for (int j = 0; j < 2; j++) {
+                    int d = j + 1;
+                    total = total + d;
+                }
+                return total;
+            }
+        }
+        """;
+
+    @Test
+    void testMergesSlotsOfSiblingScopes() {
+        IrModule module = Main.compileToModule(SIBLINGS, new ArrayList<>());
+        IrFunction function = module.getFunctions().get(0);
+        int[] expected = new int[6];
+        for (int n = 0; n < expected.length; n++) {
+            expected[n] = IrTestSupport.run(Main.compileToModule(SIBLINGS, new ArrayList<>()), "Siblings", "f", n);
+        }
+        //n.addr, total, a, b, i, c, j, d
+        assertEquals(32, StackSlotColoring.frameSize(function));
+
+        assertTrue(new StackSlotColoring().run(function));
+        //total and n.addr live throughout; a, b, c and d take turns with each other or the loop counters
+        assertEquals(16, StackSlotColoring.frameSize(function));
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            for (int n = 0; n < expected.length; n++) {
+                assertEquals(expected[n], interpreter.invoke("Siblings", "f", n));
+            }
+        }
+        assertFalse(new StackSlotColoring().run(function));
+    }
+
+    @Test
+    void testKeepsSlotsLiveAcrossALoopApart() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %a = alloca i32
+              %b = alloca i32
+              store i32 %x, i32* %a
+              store i32 0, i32* %b
+              br label %loop
+            loop:
+              %t0 = load i32, i32* %b
+              %t1 = load i32, i32* %a
+              %t2 = add i32 %t0, %t1
+              store i32 %t2, i32* %b
+              %t3 = icmp slt i32 %t2, 100
+              br i1 %t3, label %loop, label %done
+            done:
+              %t4 = load i32, i32* %b
+              ret i32 %t4
+            }
+            """).getFunctions().get(0);
+        assertFalse(new StackSlotColoring().run(function));
+    }
+
+    @Test
+    void testKeepsTypesLiveInsAndOtherUsesApart() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %x) {
+              %flag = alloca i1
+              %early = alloca i32
+              %escaped = alloca i8*
+              %other = alloca i8*
+              %a = alloca i32
+              %b = alloca i32
+              %t0 = load i32, i32* %early
+              store i1 true, i1* %flag
+              store i8* %escaped, i8** %other
+              store i32 %x, i32* %a
+              %t1 = load i32, i32* %a
+              store i32 %t1, i32* %b
+              %t2 = load i32, i32* %b
+              ret i32 %t2
+            }
+            """).getFunctions().get(0);
+        assertTrue(new StackSlotColoring().run(function));
+        String ir = IrPrinter.print(function);
+        assertFalse(ir.contains("%b"), ir);
+        assertTrue(ir.contains("store i32 %t1, i32* %a"), ir);
+        for (String kept : new String[] {"%flag = alloca i1", "%early = alloca i32", "%escaped = alloca i8*", "%other = alloca i8*"}) {
+            assertTrue(ir.contains(kept), ir);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time to first IR: wall-clock time of one CLI invocation compiling input.java, from
+ * process start to exit, for the plain jar and for the jpiler launcher (AppCDS archive
+ * plus short-run JVM flags). Needs the packaged jar and archive.
+ *
+ * Run with:
+ *   mvn package -DskipTests && mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.StartupBenchmark
+ */
+public class StartupBenchmark {
+    private static final int RUNS = 15;
+    private static final String JAR = "target/Jpiler-1.0-SNAPSHOT.jar";
+    private static final String FLAGS = "-XX:+UseSerialGC -XX:TieredStopAtLevel=1";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (!Files.exists(Paths.get(JAR)) || !Files.exists(Paths.get("target/jpiler.jsa"))) {
+            throw new IllegalStateException("Run mvn package first.");
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Path output = Files.createTempFile("startup", ".ir.txt");
+        String[][] commands = {
+            command(java + " -Xshare:off -jar " + JAR, output),
+            command(java + " -jar " + JAR, output),
+            command(java + " " + FLAGS + " -jar " + JAR, output),
+            command("sh jpiler", output),
+        };
+        String[] labels = {"No CDS", "JDK default CDS", "Short-run flags", "jpiler (AppCDS + flags)"};
+
+        List<List<Long>> samples = new ArrayList<>();
+        for (int i = 0; i < commands.length; i++) {
+            run(commands[i]); //Warm the page cache
+            samples.add(new ArrayList<>());
+        }
+        for (int run = 0; run < RUNS; run++) {
+            for (int i = 0; i < commands.length; i++) {
+                samples.get(i).add(run(commands[i]));
+            }
+        }
+        for (int i = 0; i < commands.length; i++) {
+            List<Long> sorted = samples.get(i);
+            sorted.sort(null);
+            System.out.printf("%-24s median %.1f ms, min %.1f ms%n",
+                    labels[i], sorted.get(sorted.size() / 2) / 1e6, sorted.get(0) / 1e6);
+        }
+        Files.delete(output);
+    }
+
+    private static String[] command(String line, Path output) {
+        List<String> command = new ArrayList<>(Arrays.asList(line.split(" ")));
+        command.add("input.java");
+        command.add(output.toString());
+        return command.toArray(new String[0]);
+    }
+
+    private static long run(String[] command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File("/dev/null")))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Failed: " + String.join(" ", command));
+        }
+        return System.nanoTime() - start;
+    }
+}
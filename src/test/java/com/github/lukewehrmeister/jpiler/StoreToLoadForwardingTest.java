@@ -0,0 +1,93 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreToLoadForwardingTest {
+
+    @Test
+    void testForwardsStoresAndRepeatedLoadsInABlock() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            @g = global i32 0
+            define i32 @f(i32 %a) {
+              %a.addr = alloca i32
+              store i32 %a, i32* %a.addr
+              %x = alloca i32
+              %t0 = load i32, i32* %a.addr
+              store i32 %t0, i32* %x
+              %t1 = load i32, i32* %x
+              %t2 = add i32 %t1, 1
+              store i32 %t2, i32* %x
+              %t3 = load i32, i32* @g
+              %t4 = load i32, i32* @g
+              %t5 = load i32, i32* %x
+              %t6 = mul i32 %t5, %t4
+              store i32 %t6, i32* @g
+              %t7 = load i32, i32* @g
+              ret i32 %t7
+            }
+            """).getFunctions().get(0);
+        assertTrue(new StoreToLoadForwarding().run(function));
+        String ir = IrPrinter.print(function);
+        assertEquals(1, ir.split("load").length - 1, ir);
+        assertTrue(ir.contains("%t2 = add i32 %a, 1"), ir);
+        assertTrue(ir.contains("%t6 = mul i32 %t2, %t3"), ir);
+        assertTrue(ir.contains("ret i32 %t6"), ir);
+        assertFalse(new StoreToLoadForwarding().run(function));
+    }
+
+    @Test
+    void testForwardsDownTheDominatorTreeUnlessAPathStores() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i32 %n) {
+              %i = alloca i32
+              %k = alloca i32
+              store i32 0, i32* %i
+              store i32 7, i32* %k
+              br label %cond
+            cond:
+              %t0 = load i32, i32* %i
+              %t1 = icmp slt i32 %t0, %n
+              br i1 %t1, label %body, label %done
+            body:
+              %t2 = load i32, i32* %k
+              %t3 = add i32 %t0, %t2
+              store i32 %t3, i32* %i
+              br label %cond
+            done:
+              %t4 = load i32, i32* %k
+              %t5 = load i32, i32* %i
+              %t6 = add i32 %t4, %t5
+              ret i32 %t6
+            }
+            """).getFunctions().get(0);
+        assertTrue(new StoreToLoadForwarding().run(function));
+        String ir = IrPrinter.print(function);
+        //k is never stored in the loop, i is
+        assertTrue(ir.contains("%t3 = add i32 %t0, 7"), ir);
+        assertTrue(ir.contains("%t6 = add i32 7, %t0"), ir);
+        assertTrue(ir.contains("%t0 = load i32, i32* %i"), ir);
+    }
+
+    @Test
+    void testDropsWhatAnyIncomingPathStores() {
+        IrFunction function = IrParser.parse("""
+            ; === Class A ===
+            define i32 @f(i1 %c) {
+              %x = alloca i32
+              store i32 1, i32* %x
+              br i1 %c, label %then, label %join
+            then:
+              store i32 2, i32* %x
+              br label %join
+            join:
+              %t0 = load i32, i32* %x
+              ret i32 %t0
+            }
+            """).getFunctions().get(0);
+        assertFalse(new StoreToLoadForwarding().run(function));
+    }
+}
@@ -2,9 +2,10 @@ package com.github.lukewehrmeister.jpiler;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 
 class SymbolTableVisitorTest {
 
@@ -14,9 +15,9 @@ class SymbolTableVisitorTest {
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         JavaSubsetParser parser = new JavaSubsetParser(tokens);
 
-        ParseTree tree = parser.compilationUnit();
+        Ast.CompilationUnit unit = new AstBuilder(new NameTable()).build(parser.compilationUnit());
         SymbolTableVisitor visitor = new SymbolTableVisitor();
-        visitor.visit(tree);
+        visitor.visit(unit);
         return visitor;
     }
 
@@ -319,5 +320,99 @@ class SymbolTableVisitorTest {
         assertTrue(visitor.getErrors().isEmpty(), "Expected no error with multiple parameters.");
     }
     
-}
 
+    @Test
+    public void testCallsCheckTheirArguments() {
+        String code = """
+            class Calls {
+                int twice(int x) {
+                    return twice(x) + x;
+                }
+
+                void use(boolean b) {
+                    int y = twice(3);
+                    twice(b);
+                    twice(1, 2);
+                    later();
+                    int z = y();
+                }
+
+                void later() {
+                }
+            }
+            """;
+        SymbolTableVisitor visitor = getVisitorFor(code);
+        //Methods are only visible once declared
+        assertEquals(List.of(
+                "Method 'twice' expects arguments [INT] but was called with [BOOLEAN].",
+                "Method 'twice' expects arguments [INT] but was called with [INT, INT].",
+                "Method 'later' is not declared.",
+                "'y' is not a method."), visitor.getErrors());
+    }
+
+    @Test
+    public void testValidArrays() {
+        String code = """
+            class Arrays {
+                int sum() {
+                    int[] a = new int[8];
+                    boolean[] seen = new boolean[8];
+                    char[] text = new char[4];
+                    int total = 0;
+                    for (int i = 0; i < a.length; i++) {
+                        a[i] = i * i;
+                        seen[i] = a[i] > 10;
+                        total = total + a[i];
+                    }
+                    text[0] = 'x';
+                    return total;
+                }
+            }
+            """;
+        SymbolTableVisitor visitor = getVisitorFor(code);
+        assertTrue(visitor.getErrors().isEmpty(), "Expected no errors: " + visitor.getErrors());
+    }
+
+    @Test
+    public void testInvalidArrays() {
+        String code = """
+            class Arrays {
+                int[] field = new int[2];
+                int[] make() {
+                    return 0;
+                }
+                void take(int[] a) {
+                }
+                void use(int n) {
+                    int[] a = new int[n];
+                    int[] b = new int[4];
+                    int[] c = new boolean[4];
+                    int[] d;
+                    b[true] = 1;
+                    b[0] = false;
+                    b = b;
+                    n[0] = 1;
+                    int x = b;
+                    int y = n.length;
+                }
+            }
+            """;
+        SymbolTableVisitor visitor = getVisitorFor(code);
+        assertEquals(List.of(
+                "Array 'field' cannot be a field; arrays are local to their method.",
+                "Method 'make' cannot return an array.",
+                "Method return type does not match declared return type.",
+                "Parameter 'a' cannot be an array; arrays are local to their method.",
+                "Length of array 'a' must be an int literal from 1 to 65536.",
+                "Type mismatch in declaration of 'c': cannot assign BOOLEAN_ARRAY to INT_ARRAY.",
+                "Array 'd' must be initialized with new and a constant length.",
+                "Array index must be of type int, but found BOOLEAN.",
+                "Type mismatch in assignment to an element of 'b': cannot assign BOOLEAN to INT.",
+                //b = b: the right-hand side is read whole, and the left-hand side is assigned whole
+                "Array 'b' can only be indexed or have its length read.",
+                "Array 'b' cannot be assigned; assign its elements instead.",
+                "'n' is not an array.",
+                "Array 'b' can only be indexed or have its length read.",
+                "'n' is not an array and has no length."), visitor.getErrors());
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.lukewehrmeister.jpiler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.compile;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.countOpcode;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.function;
+import static com.github.lukewehrmeister.jpiler.IrTestSupport.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TailRecursionEliminationTest {
+    private static final String CALLS = """
+        class R {
+            int calls = 0;
+            int gcd(int a, int b) {
+                if (b == 0) {
+                    return a;
+                }
+                return gcd(b, a % b);
+            }
+            int sum(int n, int acc) {
+                if (n == 0) {
+                    return acc;
+                }
+                return sum(n - 1, acc + n);
+            }
+            int fact(int n) {
+                if (n <= 1) {
+                    return 1;
+                }
+                return n * fact(n - 1);
+            }
+            void count(int n) {
+                if (n > 0) {
+                    calls = calls + 1;
+                    count(n - 1);
+                }
+            }
+            int stale(int n) {
+                int x;
+                if (n > 5) {
+                    x = n;
+                }
+                if (n == 0) {
+                    return x;
+                }
+                return stale(n - 1);
+            }
+        }
+        """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testTailCallsBecomeJumps() {
+        IrModule original = compile(CALLS);
+        IrModule module = compile(CALLS);
+        TailRecursionElimination tailrec = new TailRecursionElimination();
+        for (String name : new String[] {"gcd", "sum", "count", "stale"}) {
+            IrFunction function = function(module, name);
+            assertTrue(tailrec.run(function, new AnalysisManager()), name);
+            assertEquals(0, countOpcode(function, IrOpcode.CALL), name);
+            assertNotNull(function.getBlock(TailRecursionElimination.HEADER), name);
+        }
+        try (IrInterpreter before = new IrInterpreter(original);
+             IrInterpreter after = new IrInterpreter(module)) {
+            assertEquals(before.invoke("R", "gcd", 84, 36), after.invoke("R", "gcd", 84, 36));
+            assertEquals(before.invoke("R", "sum", 100, 0), after.invoke("R", "sum", 100, 0));
+            //Each call starts with x holding 0, not what the call before stored
+            assertEquals(before.invoke("R", "stale", 8), after.invoke("R", "stale", 8));
+            before.invoke("R", "count", 7);
+            after.invoke("R", "count", 7);
+            assertEquals(before.getGlobal("R", "calls"), after.getGlobal("R", "calls"));
+        }
+        assertEquals(IrPrinter.print(module), IrPrinter.print(IrParser.parse(IrPrinter.print(module))));
+    }
+
+    @Test
+    void testLeavesOtherCallsAlone() {
+        IrModule module = compile(CALLS);
+        IrFunction fact = function(module, "fact");
+        assertFalse(new TailRecursionElimination().run(fact, new AnalysisManager()));
+        assertEquals(1, countOpcode(fact, IrOpcode.CALL));
+    }
+
+    @Test
+    void testDeepRecursionRunsInOneFrameAtO2() {
+        IrModule module = compile(CALLS);
+        PassManager.forLevel(2).run(module);
+        assertEquals((int) 5000050000L, run(module, "R", "sum", 100_000, 0));
+    }
+
+    @Test
+    void testDeepRecursionIsARuntimeError() throws IOException {
+        Path source = dir.resolve("R.java");
+        Files.writeString(source, CALLS);
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(captured, true));
+        try {
+            //fact is not a tail call, so every level keeps its frame even without -O2
+            assertEquals(4, Main.run(source.toString(), "R.fact", new String[] {"10000000"}));
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals("Runtime Error: stack overflow in R.fact", captured.toString().trim());
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.util.ArrayList;
+
+/**
+ * Interpreter-only against tiered execution on repeated calls of IrInterpreterBenchmark's
+ * workload: time to the first result, and total time as the calls keep coming.
+ *
+ * Run with:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.github.lukewehrmeister.jpiler.TieredExecutionBenchmark
+ */
+public class TieredExecutionBenchmark {
+    private static final int CALLS = 400;
+    private static final int N = 300;
+
+    public static void main(String[] args) throws InterruptedException {
+        IrModule module = Main.compileToModule(IrInterpreterBenchmark.PROGRAM, new ArrayList<>());
+        //Warm the interpreter and backend code itself so neither run pays for it
+        try (IrInterpreter interpreter = new IrInterpreter(module, 1000)) {
+            measure("Warm-up", interpreter);
+        }
+
+        try (IrInterpreter interpreter = new IrInterpreter(module)) {
+            measure("Interpreter only", interpreter);
+        }
+        try (IrInterpreter interpreter = new IrInterpreter(module, IrInterpreter.DEFAULT_TIER_UP_THRESHOLD)) {
+            measure("Tiered", interpreter);
+        }
+    }
+
+    private static void measure(String label, IrInterpreter interpreter) throws InterruptedException {
+        long start = System.nanoTime();
+        long first = 0;
+        int tierUpCall = -1;
+        for (int call = 0; call < CALLS; call++) {
+            interpreter.invoke("Work", "run", N);
+            if (call == 0) {
+                first = System.nanoTime() - start;
+            }
+            if (tierUpCall < 0 && interpreter.isCompiled("Work", "run")) {
+                tierUpCall = call;
+            }
+        }
+        long total = System.nanoTime() - start;
+        interpreter.awaitCompilations();
+        System.out.printf("%-18s first call %.2f ms, %d calls %.1f ms%s%n", label, first / 1e6, CALLS, total / 1e6,
+                tierUpCall < 0 ? "" : ", compiled code from call " + tierUpCall);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchModeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOutputForSingleFile() {
+        Path source = tempDir.resolve("Calc.java");
+        Path target = tempDir.resolve("out.ir.txt");
+        WatchMode watch = new WatchMode(source, target);
+
+        assertEquals(target.toAbsolutePath(), watch.outputFor(source));
+    }
+
+    @Test
+    void testOutputForDirectoryMirrorsLayout() throws Exception {
+        Path src = Files.createDirectories(tempDir.resolve("src/nested"));
+        Path out = tempDir.resolve("out");
+        WatchMode watch = new WatchMode(tempDir.resolve("src"), out);
+
+        assertEquals(out.resolve("nested/Calc.ir.txt").toAbsolutePath(), watch.outputFor(src.resolve("Calc.java")));
+    }
+
+    @Test
+    void testRebuildOnlyTouchedFiles() throws Exception {
+        Path src = Files.createDirectories(tempDir.resolve("src"));
+        Path out = tempDir.resolve("out");
+        Path first = Files.writeString(src.resolve("A.java"), "class A { void f() { int x = 1; } }");
+        Files.writeString(src.resolve("B.java"), "class B { void g() { int y = 2; } }");
+
+        WatchMode watch = new WatchMode(src, out);
+        watch.rebuild(List.of(first));
+
+        assertTrue(Files.readString(out.resolve("A.ir.txt")).contains("define void @f()"));
+        assertFalse(Files.exists(out.resolve("B.ir.txt")), "Untouched file should not be rebuilt.");
+    }
+
+    @Test
+    void testRebuildSurvivesSemanticErrors() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("Bad.java"), "class Bad { void f() { y = 1; } }");
+        Path target = tempDir.resolve("Bad.ir.txt");
+
+        WatchMode watch = new WatchMode(source, target);
+        watch.rebuild(List.of(source));
+
+        assertFalse(Files.exists(target), "No IR should be written for a file with semantic errors.");
+    }
+
+    @Test
+    void testRebuildUsesTheOptimizationLevel() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("Fold.java"), "class Fold { int f() { int x = 1; return x + 1; } }");
+        Path target = tempDir.resolve("Fold.ir.txt");
+
+        int level = Main.optLevel;
+        Main.optLevel = 2;
+        try {
+            new WatchMode(source, target).rebuild(List.of(source));
+        } finally {
+            Main.optLevel = level;
+        }
+
+        String ir = Files.readString(target);
+        assertTrue(ir.contains("ret i32 2"), ir);
+        assertFalse(ir.contains("alloca"), ir);
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.lukewehrmeister.jpiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class X86EmitterTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String PROGRAM = """
+        class Loops {
+            int total = 7;
+
+            int sumTo(int n) {
+                int sum = 0;
+                for (int i = 1; i <= n; i++) {
+                    sum = sum + i;
+                }
+                return sum;
+            }
+
+            int mix(int a, int b, int c, int d, int e, int f, int g, int h) {
+                int x = a * b - c / (d + 1) + e % 3;
+                boolean big = x > 10 && g != h;
+                if (big) {
+                    x = x - g;
+                } else {
+                    x = x + h;
+                }
+                total = total + x;
+                return x;
+            }
+
+            int sign(int n) {
+                if (n < 0) {
+                    return -1;
+                } else if (n == 0) {
+                    return 0;
+                }
+                return 1;
+            }
+
+            int fib(int n) {
+                if (n < 2) {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+
+            int spread(int n) {
+                int a = n + 1;
+                int b = n + 2;
+                return mix(a, b, 3, 4, 5, 6, 7, 8) + a * b;
+            }
+        }
+        """;
+
+    private static final String DRIVER = """
+        #include <stdio.h>
+        extern int sumTo(int) __asm__("Loops.sumTo");
+        extern int mix(int, int, int, int, int, int, int, int) __asm__("Loops.mix");
+        extern int sign(int) __asm__("Loops.sign");
+        extern int fib(int) __asm__("Loops.fib");
+        extern int spread(int) __asm__("Loops.spread");
+        extern void clinit(void) __asm__("Loops..clinit");
+        extern int total __asm__("Loops.total");
+        int main(void) {
+            clinit();
+            int sum = sumTo(100);
+            int big = mix(5, 7, 20, 3, 8, 4, 2, 9);
+            int small = mix(1, 2, 3, 4, 5, 6, 7, 8);
+            int spreads = spread(2);
+            printf("%d %d %d %d %d %d %d %d %d\\n", sum, big, small, sign(-3), sign(0), sign(8), fib(10), spreads, total);
+            return 0;
+        }
+        """;
+
+    private static String emit(int registers) {
+        return new X86Emitter(registers).emit(Main.compileToModule(PROGRAM, new ArrayList<>()));
+    }
+
+    @Test
+    void testEmitsFunctionsGlobalsAndSavesOnlyUsedRegisters() {
+        String asm = emit(2);
+        assertTrue(asm.contains(".globl Loops.sumTo\n"));
+        assertTrue(asm.contains("Loops..clinit:\n"));
+        assertTrue(asm.contains("Loops.total:\n\t.long 0\n"));
+        assertTrue(asm.contains("\tpushq %rbx\n\tpushq %r12\n"));
+        assertFalse(asm.contains("%r13"));
+    }
+
+    @Test
+    void testFewerRegistersMeanMoreSpillCode() {
+        IrModule module = Main.compileToModule(PROGRAM, new ArrayList<>());
+        X86Emitter one = new X86Emitter(1);
+        X86Emitter all = new X86Emitter(X86Emitter.REGISTERS.length);
+        one.emit(module);
+        all.emit(module);
+        assertTrue(one.getSpillCount() > all.getSpillCount());
+        assertTrue(one.getSpillAccessCount() > all.getSpillAccessCount());
+        assertTrue(all.getMoveCount() > 0);
+    }
+
+    //Assembles the output with the system C compiler, where there is one, and checks every register count computes the same
+    @Test
+    void testAssembledCodeRuns() throws IOException, InterruptedException {
+        assumeTrue(run(dir, "gcc", "--version") != null, "No gcc on this machine");
+        Files.writeString(dir.resolve("driver.c"), DRIVER);
+        String expected = "5050 30 " + (1 * 2 - 3 / 5 + 5 % 3 + 8) + " -1 0 1 55 " + (7 + 3 * 4) + " " + (7 + 30 + 12 + 7) + "\n";
+        for (int registers = 1; registers <= X86Emitter.REGISTERS.length; registers++) {
+            Files.writeString(dir.resolve("loops.s"), emit(registers));
+            assertNotNull(run(dir, "gcc", "-o", "loops", "driver.c", "loops.s"), "Assembly failed with " + registers + " registers");
+            assertEquals(expected, run(dir, dir.resolve("loops").toString()), registers + " registers");
+        }
+    }
+
+    //A bad index traps, so the driver exits normally only when every index is in bounds
+    @Test
+    void testArraysRunAndTrapOutOfBounds() throws IOException, InterruptedException {
+        assumeTrue(run(dir, "gcc", "--version") != null, "No gcc on this machine");
+        String source = """
+            class Arrays {
+                int squares(int n) {
+                    int[] a = new int[16];
+                    for (int i = 0; i < a.length; i++) {
+                        a[i] = i * i;
+                    }
+                    int total = 0;
+                    for (int i = 0; i < n; i++) {
+                        total = total + a[i];
+                    }
+                    return total;
+                }
+            }
+            """;
+        Files.writeString(dir.resolve("driver.c"), """
+            #include <stdio.h>
+            #include <stdlib.h>
+            extern int squares(int) __asm__("Arrays.squares");
+            int main(int argc, char **argv) {
+                printf("%d\\n", squares(atoi(argv[1])));
+                return 0;
+            }
+            """);
+        for (int level = 0; level <= PassManager.MAX_LEVEL; level++) {
+            IrModule module = Main.compileToModule(source, new ArrayList<>());
+            PassManager.forLevel(level).run(module);
+            Files.writeString(dir.resolve("arrays.s"), new X86Emitter(X86Emitter.REGISTERS.length).emit(module));
+            assertNotNull(run(dir, "gcc", "-o", "arrays", "driver.c", "arrays.s"), "Assembly failed at -O" + level);
+            String program = dir.resolve("arrays").toString();
+            assertEquals("1240\n", run(dir, program, "16"), "-O" + level);
+            assertNull(run(dir, program, "17"), "-O" + level);
+        }
+    }
+
+    //Output of a successful command, or null
+    private static String run(Path dir, String... command) throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            return null;
+        }
+        String output = new String(process.getInputStream().readAllBytes());
+        return process.waitFor(60, TimeUnit.SECONDS) && process.exitValue() == 0 ? output : null;
+    }
+}